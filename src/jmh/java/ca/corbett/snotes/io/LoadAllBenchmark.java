@@ -0,0 +1,65 @@
+package ca.corbett.snotes.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a full load of a data directory, which is what the user waits for at startup.
+ * The directory is written once per trial by CorpusGenerator, so every iteration loads the same files.
+ * Note that the OS file cache will be warm after the first iteration, so this measures our own
+ * parsing and bookkeeping much more than it measures the disk.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadAllBenchmark {
+
+    @Param({"1000", "10000"})
+    public int noteCount;
+
+    private File dataDir;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("snotes-benchmark").toFile();
+        new CorpusGenerator(CorpusGenerator.DEFAULT_SEED).setNoteCount(noteCount).generate(dataDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public int loadAll() throws IOException {
+        DataManager dataManager = new DataManager(dataDir);
+        try {
+            dataManager.loadAllNow();
+            return dataManager.getNotes().size();
+        }
+        finally {
+            dataManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading and saving a single Note, and working out where a Note should be saved.
+ * The saves go through the real crash-safe write path, so they include an fsync, and the
+ * results will depend heavily on the disk that java.io.tmpdir is on.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnotesIOBenchmark {
+
+    private File dataDir;
+    private File noteFile;
+    private Note datedNote;
+    private Note undatedNote;
+    private Note savedNote;
+    private String[] alternateTexts;
+    private int saveCount;
+
+    @Setup
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("snotes-benchmark").toFile();
+        List<Note> notes = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED).setNoteCount(50).generateNotes();
+        datedNote = notes.stream().filter(Note::hasDate).findFirst().orElseThrow();
+        undatedNote = notes.stream().filter(note -> !note.hasDate()).findFirst().orElseThrow();
+
+        noteFile = SnotesIO.computeFile(dataDir, datedNote);
+        SnotesIO.saveNote(datedNote, noteFile);
+        savedNote = SnotesIO.loadNote(noteFile);
+        alternateTexts = new String[]{notes.get(1).getText(), notes.get(2).getText()};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public Note loadNote() throws IOException {
+        return SnotesIO.loadNote(noteFile);
+    }
+
+    /**
+     * Saves a Note whose text has changed, so that the file really is rewritten every time.
+     */
+    @Benchmark
+    public Note saveChangedNote() throws IOException {
+        savedNote.setText(alternateTexts[saveCount++ % 2]);
+        SnotesIO.saveNote(savedNote, noteFile);
+        return savedNote;
+    }
+
+    /**
+     * Saves a Note that hasn't really changed, which should be caught by the content hash and skipped.
+     */
+    @Benchmark
+    public Note saveUnchangedNote() throws IOException {
+        savedNote.markDirty();
+        SnotesIO.saveNote(savedNote, noteFile);
+        return savedNote;
+    }
+
+    @Benchmark
+    public File computeFileForDatedNote() {
+        return SnotesIO.computeFile(dataDir, datedNote);
+    }
+
+    @Benchmark
+    public File computeFileForUndatedNote() {
+        return SnotesIO.computeFile(dataDir, undatedNote);
+    }
+}
@@ -0,0 +1,46 @@
+package ca.corbett.snotes.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the small model objects that get created for every single Note we load:
+ * Tags, YMDDates, and TagLists parsed from what the user typed.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    private final String rawTags = "work, meeting  standup,project review";
+
+    @Benchmark
+    public Tag newTag() {
+        return new Tag("Meeting");
+    }
+
+    @Benchmark
+    public YMDDate newYMDDate() {
+        return new YMDDate("2024-06-15");
+    }
+
+    @Benchmark
+    public TagList tagListFromRawString() {
+        return TagList.fromRawString(rawTags);
+    }
+}
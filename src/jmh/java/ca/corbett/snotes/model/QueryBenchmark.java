@@ -0,0 +1,77 @@
+package ca.corbett.snotes.model;
+
+import ca.corbett.snotes.io.CorpusGenerator;
+import ca.corbett.snotes.model.filter.DateFilterType;
+import ca.corbett.snotes.model.filter.TagFilter;
+import ca.corbett.snotes.model.filter.TextFilter;
+import ca.corbett.snotes.model.filter.YearFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Query execution over collections of various sizes. The queries here are the
+ * shapes we actually see: a simple text search, a tag search, and a saved query that
+ * combines a few filters with a result limit.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int noteCount;
+
+    private List<Note> notes;
+    private Query textQuery;
+    private Query tagQuery;
+    private Query combinedQuery;
+
+    @Setup
+    public void setup() {
+        notes = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED).setNoteCount(noteCount).generateNotes();
+
+        textQuery = new Query();
+        textQuery.addFilter(new TextFilter("deadline"));
+
+        tagQuery = new Query();
+        tagQuery.addFilter(new TagFilter(List.of(new Tag("standup")), TagFilter.FilterType.ANY));
+
+        combinedQuery = new Query();
+        combinedQuery.addFilter(new TagFilter(List.of(new Tag("work"), new Tag("meeting")), TagFilter.FilterType.ALL));
+        combinedQuery.addFilter(new YearFilter(2020, DateFilterType.AFTER_INCLUSIVE));
+        combinedQuery.addFilter(new TextFilter("budget"));
+    }
+
+    @Benchmark
+    public List<Note> textSearch() {
+        return textQuery.execute(notes);
+    }
+
+    @Benchmark
+    public List<Note> tagSearch() {
+        return tagQuery.execute(notes);
+    }
+
+    @Benchmark
+    public List<Note> combinedSearchWithLimit() {
+        return combinedQuery.execute(notes, 10);
+    }
+}
@@ -0,0 +1,129 @@
+package ca.corbett.snotes.model.filter;
+
+import ca.corbett.snotes.io.CorpusGenerator;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.YMDDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks isFiltered() for each of our Filter types. Each benchmark runs its Filter over the
+ * same fixed set of Notes, and JMH divides by the number of Notes, so the results are the average
+ * cost of filtering one Note.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final int NOTE_COUNT = 10_000;
+
+    private List<Note> notes;
+    private Filter dateFilter;
+    private Filter dayOfMonthFilter;
+    private Filter dayOfWeekFilter;
+    private Filter monthFilter;
+    private Filter yearFilter;
+    private Filter tagFilter;
+    private Filter textFilter;
+    private Filter caseSensitiveTextFilter;
+    private Filter undatedFilter;
+
+    @Setup
+    public void setup() {
+        notes = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED).setNoteCount(NOTE_COUNT).generateNotes();
+        dateFilter = new DateFilter(new YMDDate("2020-06-15"), DateFilterType.AFTER_INCLUSIVE);
+        dayOfMonthFilter = new DayOfMonthFilter(15, BooleanFilterType.IS);
+        dayOfWeekFilter = new DayOfWeekFilter(DayOfWeek.MONDAY, BooleanFilterType.IS);
+        monthFilter = new MonthFilter(6, BooleanFilterType.IS_NOT);
+        yearFilter = new YearFilter(2020, DateFilterType.ON);
+        tagFilter = new TagFilter(List.of(new Tag("work"), new Tag("meeting")), TagFilter.FilterType.ANY);
+        textFilter = new TextFilter("deadline");
+        caseSensitiveTextFilter = new TextFilter("deadline", true);
+        undatedFilter = new UndatedFilter();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int dateFilter() {
+        return countFiltered(dateFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int dayOfMonthFilter() {
+        return countFiltered(dayOfMonthFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int dayOfWeekFilter() {
+        return countFiltered(dayOfWeekFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int monthFilter() {
+        return countFiltered(monthFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int yearFilter() {
+        return countFiltered(yearFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int tagFilter() {
+        return countFiltered(tagFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int textFilter() {
+        return countFiltered(textFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int caseSensitiveTextFilter() {
+        return countFiltered(caseSensitiveTextFilter);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTE_COUNT)
+    public int undatedFilter() {
+        return countFiltered(undatedFilter);
+    }
+
+    private int countFiltered(Filter filter) {
+        int count = 0;
+        for (Note note : notes) {
+            if (filter.isFiltered(note)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
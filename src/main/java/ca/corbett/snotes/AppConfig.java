@@ -15,6 +15,7 @@ import ca.corbett.extras.properties.DecimalProperty;
 import ca.corbett.extras.properties.DirectoryProperty;
 import ca.corbett.extras.properties.EnumProperty;
 import ca.corbett.extras.properties.FontProperty;
+import ca.corbett.extras.properties.IntegerProperty;
 import ca.corbett.extras.properties.KeyStrokeProperty;
 import ca.corbett.extras.properties.LabelProperty;
 import ca.corbett.extras.properties.LookAndFeelProperty;
@@ -81,6 +82,20 @@ public class AppConfig extends AppProperties<SnotesExtension> {
      */
     public static final String SINGLE_INSTANCE_PROP = "UI.General.singleInstance";
 
+    /**
+     * Property name for the data directory. Exposed so that the command-line query mode
+     * can peek at it without loading the full application configuration.
+     */
+    public static final String DATA_DIR_PROP = "Persistence.Directory.dataDirectory";
+
+    /**
+     * Property name for the large note threshold, in KB. Exposed for the same reason as DATA_DIR_PROP:
+     * startup begins loading Notes before the full application configuration has been loaded.
+     */
+    public static final String LARGE_NOTE_THRESHOLD_PROP = "Persistence.Large notes.threshold";
+
+    private static final int DEFAULT_LARGE_NOTE_THRESHOLD_KB = 1024;
+
     /**
      * Extensions can use this prefix when defining their own keystroke properties,
      * so that they show up on the same properties dialog tab as the other ones.
@@ -124,6 +139,7 @@ public class AppConfig extends AppProperties<SnotesExtension> {
     private ColorProperty desktopGradientProp;
     private EnumProperty<CustomizableDesktopPane.LogoPlacement> desktopLogoPlacementProp;
     private DirectoryProperty dataDirProp;
+    private IntegerProperty largeNoteThresholdProp;
 
     private BooleanProperty overrideLafEditorProp;
     private EnumProperty<EditorTheme> editorThemeProp;
@@ -155,6 +171,35 @@ public class AppConfig extends AppProperties<SnotesExtension> {
         return AppProperties.peek(PROPS_FILE, propName);
     }
 
+    /**
+     * Returns the configured data directory without loading the full application configuration,
+     * or the default data directory if none has been configured yet.
+     */
+    public static File peekDataDirectory() {
+        String configured = peek(DATA_DIR_PROP);
+        if (configured != null && !configured.isBlank()) {
+            return new File(configured);
+        }
+        return getDefaultDataDirectory();
+    }
+
+    /**
+     * Returns the configured large note threshold, in bytes, without loading the full application configuration.
+     * See getLargeNoteThreshold().
+     */
+    public static long peekLargeNoteThreshold() {
+        String configured = peek(LARGE_NOTE_THRESHOLD_PROP);
+        try {
+            if (configured != null && !configured.isBlank()) {
+                return Integer.parseInt(configured.trim()) * 1024L;
+            }
+        }
+        catch (NumberFormatException ignored) {
+            // We'll go with the default; the full configuration load will deal with it.
+        }
+        return DEFAULT_LARGE_NOTE_THRESHOLD_KB * 1024L;
+    }
+
     /**
      * Overridden so we can set the initial enabled/disabled state our properties.
      */
@@ -266,6 +311,14 @@ public class AppConfig extends AppProperties<SnotesExtension> {
         return dataDirProp.getDirectory();
     }
 
+    /**
+     * Returns the size in bytes above which a note file is treated as a large note.
+     * See DataManager.setLargeNoteThreshold() for what that means.
+     */
+    public long getLargeNoteThreshold() {
+        return largeNoteThresholdProp.getValue() * 1024L;
+    }
+
     public EnhancedAction getAboutAction() {
         return aboutAction;
     }
@@ -585,12 +638,16 @@ public class AppConfig extends AppProperties<SnotesExtension> {
         return props;
     }
 
+    private static File getDefaultDataDirectory() {
+        return new File(Version.SETTINGS_DIR, "data");
+    }
+
     private List<AbstractProperty> createDataProperties() {
         List<AbstractProperty> props = new ArrayList<>();
 
         // The main data directory is configurable:
-        dataDirProp = new DirectoryProperty("Persistence.Directory.dataDirectory", "Data directory:", false,
-                                            new File(Version.SETTINGS_DIR, "data"));
+        dataDirProp = new DirectoryProperty(DATA_DIR_PROP, "Data directory:", false,
+                                            getDefaultDataDirectory());
         dataDirProp.setColumns(16);
         dataDirProp.setHelpText("<html>The parent directory where all notes, queries, and templates are stored." +
                                     "<br>Changing this property requires an application restart.</html>");
@@ -623,6 +680,14 @@ public class AppConfig extends AppProperties<SnotesExtension> {
                                           "<br>Not currently configurable.</html>");
         props.add(scratchSubDirProp);
 
+        // Very large notes (pasted logs and such) are loaded on demand and edited a page at a time:
+        largeNoteThresholdProp = new IntegerProperty(LARGE_NOTE_THRESHOLD_PROP, "Large note size (KB):",
+                                                     DEFAULT_LARGE_NOTE_THRESHOLD_KB, 64, 1024 * 1024, 64);
+        largeNoteThresholdProp.setHelpText("<html>Notes bigger than this are read from disk as needed," +
+                                               " and edited a page at a time." +
+                                               "<br>Takes effect the next time notes are loaded.</html>");
+        props.add(largeNoteThresholdProp);
+
         return props;
     }
 
@@ -0,0 +1,336 @@
+package ca.corbett.snotes;
+
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.TagList;
+import ca.corbett.snotes.model.filter.DateFilterType;
+import ca.corbett.snotes.model.filter.TagFilter;
+import ca.corbett.snotes.model.filter.TextFilter;
+import ca.corbett.snotes.model.filter.YearFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs a search from the command line and writes the matching Notes to stdout, without starting
+ * the user interface at all. Nothing in here touches AWT or Swing, so this works over ssh, in scripts,
+ * and while the application itself is running. For example:
+ * <pre>
+ *     Snotes --search "budget" --tag work --year 2024
+ *     Snotes --query "Xmas notes" --format jsonl
+ * </pre>
+ * <p>
+ *     A saved Query can be run by name with --query, and any of --search, --tag and --year can be given
+ *     on their own or added on top of a saved Query.
+ * </p>
+ * <p>
+ *     If Snotes is already running with its QueryServer, the query is sent there and answered from the
+ *     Notes it already has loaded, which is much quicker. Otherwise, or with --no-server or --data-dir,
+ *     the Notes are loaded straight from the data directory (see DataManager.loadForQueryNow()),
+ *     which is read but never written to. Saved Queries are only loaded if --query was given.
+ * </p>
+ * <p>
+ *     The exit code follows grep: 0 if anything matched, 1 if nothing did, and 2 if something went wrong.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class CommandLineQuery {
+
+    private static final Logger log = Logger.getLogger(CommandLineQuery.class.getName());
+
+    public static final int EXIT_MATCHED = 0;
+    public static final int EXIT_NO_MATCHES = 1;
+    public static final int EXIT_ERROR = 2;
+
+    /**
+     * Any of these on the command line means that we should run a query instead of starting the application.
+     */
+    private static final Set<String> TRIGGER_OPTIONS = Set.of("--query", "--search", "--tag", "--year", "--help");
+
+    /**
+     * The ways we can write out the matching Notes.
+     */
+    public enum Format {
+        /**
+         * Each Note's path, followed by its tag line and text, with a blank line after it.
+         */
+        TEXT,
+
+        /**
+         * One JSON object per line, with path, date, tags and text.
+         */
+        JSONL,
+
+        /**
+         * Just the path of each Note, one per line.
+         */
+        PATHS
+    }
+
+    private String queryName;
+    private String searchText;
+    private String tagText;
+    private Integer year;
+    private int limit = Integer.MAX_VALUE;
+    private Format format = Format.TEXT;
+    private File dataDir;
+    private boolean useServer = true;
+
+    private CommandLineQuery() {
+    }
+
+    /**
+     * Reports whether the given command line asks for a query rather than for the application.
+     */
+    public static boolean isRequested(String[] args) {
+        for (String arg : args) {
+            if (TRIGGER_OPTIONS.contains(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the given command line, runs the query it describes, and writes the results to the given stream.
+     * Problems are reported on the given error stream.
+     *
+     * @return The exit code: EXIT_MATCHED, EXIT_NO_MATCHES or EXIT_ERROR.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        CommandLineQuery commandLineQuery = new CommandLineQuery();
+        try {
+            if (!commandLineQuery.parse(args)) {
+                printUsage(out);
+                return EXIT_MATCHED;
+            }
+
+            // A running instance has everything loaded already, so ask it first:
+            if (commandLineQuery.useServer && commandLineQuery.dataDir == null) {
+                Integer exitCode = QueryClient.forward(QueryProtocol.getDefaultInfoFile(), args, out, err);
+                if (exitCode != null) {
+                    return exitCode;
+                }
+            }
+
+            File notesDir = commandLineQuery.dataDir != null ? commandLineQuery.dataDir : AppConfig.peekDataDirectory();
+            DataManager dataManager = new DataManager(notesDir);
+            try {
+                dataManager.loadForQueryNow(commandLineQuery.queryName != null);
+                return commandLineQuery.execute(dataManager, notesDir, out, err);
+            }
+            finally {
+                dataManager.shutdown();
+            }
+        }
+        catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Use --help to see the options.");
+            return EXIT_ERROR;
+        }
+        catch (IOException e) {
+            err.println("Unable to load notes: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * Parses the given command line and runs the query it describes against the given DataManager,
+     * which has already loaded its Notes and Queries. This is how QueryServer answers a request.
+     *
+     * @return The exit code: EXIT_MATCHED, EXIT_NO_MATCHES or EXIT_ERROR.
+     */
+    static int runAgainst(DataManager dataManager, File notesDir, String[] args, PrintStream out, PrintStream err) {
+        CommandLineQuery commandLineQuery = new CommandLineQuery();
+        try {
+            if (!commandLineQuery.parse(args)) {
+                printUsage(out);
+                return EXIT_MATCHED;
+            }
+            if (commandLineQuery.dataDir != null) {
+                throw new IllegalArgumentException("--data-dir can't be sent to a running instance.");
+            }
+            return commandLineQuery.execute(dataManager, notesDir, out, err);
+        }
+        catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Use --help to see the options.");
+            return EXIT_ERROR;
+        }
+        catch (IOException e) {
+            err.println("Unable to write results: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * Reads our settings from the given command line.
+     *
+     * @return false if the user just asked for help.
+     * @throws IllegalArgumentException If the command line doesn't make sense.
+     */
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help")) {
+                return false;
+            }
+            if (option.equals("--no-server")) {
+                useServer = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--query" -> queryName = value;
+                case "--search" -> searchText = value;
+                case "--tag" -> tagText = tagText == null ? value : tagText + " " + value;
+                case "--year" -> year = parseInt(option, value);
+                case "--limit" -> limit = parseInt(option, value);
+                case "--format" -> format = parseFormat(value);
+                case "--data-dir" -> dataDir = new File(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("--limit must be at least 1.");
+        }
+        return true;
+    }
+
+    private int execute(DataManager dataManager, File notesDir, PrintStream out, PrintStream err) throws IOException {
+        long startTime = System.nanoTime();
+        Query query = buildQuery(dataManager, err);
+        if (query == null) {
+            return EXIT_ERROR;
+        }
+        List<Note> results = query.execute(dataManager.getNotes(), limit);
+        writeResults(results, notesDir, out);
+        log.fine("Command-line query matched " + results.size() + " notes in "
+                     + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms");
+        return results.isEmpty() ? EXIT_NO_MATCHES : EXIT_MATCHED;
+    }
+
+    /**
+     * Starts from the filters of the named saved Query, if there is one, and adds a Filter for each
+     * search option given. The saved Query itself is left alone, since it may belong to the running application.
+     *
+     * @return The Query to run, or null if the named Query doesn't exist.
+     */
+    private Query buildQuery(DataManager dataManager, PrintStream err) {
+        Query query = new Query();
+        if (queryName != null) {
+            Query saved = dataManager.getQueries().stream()
+                                     .filter(q -> q.getName().equalsIgnoreCase(queryName))
+                                     .findFirst()
+                                     .orElse(null);
+            if (saved == null) {
+                err.println("No saved query named \"" + queryName + "\". Saved queries are:");
+                dataManager.getQueries().forEach(q -> err.println("  " + q.getName()));
+                return null;
+            }
+            query.setName(saved.getName());
+            saved.getFilters().forEach(query::addFilter);
+        }
+        if (searchText != null && !searchText.isBlank()) {
+            query.addFilter(new TextFilter(searchText));
+        }
+        if (tagText != null) {
+            List<Tag> tags = TagList.fromRawString(tagText).getTags();
+            if (!tags.isEmpty()) {
+                query.addFilter(new TagFilter(tags, TagFilter.FilterType.ALL));
+            }
+        }
+        if (year != null) {
+            query.addFilter(new YearFilter(year, DateFilterType.ON));
+        }
+        return query;
+    }
+
+    private void writeResults(List<Note> results, File notesDir, PrintStream out) throws IOException {
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        ObjectMapper mapper = format == Format.JSONL ? new ObjectMapper() : null;
+        for (Note note : results) {
+            String path = Note.getRelativePath(note, notesDir);
+            switch (format) {
+                case PATHS -> writer.println(path);
+                case TEXT -> {
+                    writer.println("== " + path);
+                    writer.println(note.getFullContent());
+                    writer.println();
+                }
+                case JSONL -> writer.println(mapper.writeValueAsString(toJson(mapper, note, path)));
+            }
+        }
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Unable to write results.");
+        }
+    }
+
+    private static ObjectNode toJson(ObjectMapper mapper, Note note, String path) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("path", path);
+        node.put("date", note.hasDate() ? note.getDate().toString() : null);
+        ArrayNode tags = node.putArray("tags");
+        for (Tag tag : note.getNonDateTags()) {
+            tags.add(tag.getTag());
+        }
+        node.put("text", note.getText());
+        return node;
+    }
+
+    private static int parseInt(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for " + option + ", but got: " + value);
+        }
+    }
+
+    private static Format parseFormat(String value) {
+        try {
+            return Format.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + value + " (expected text, jsonl or paths)");
+        }
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: Snotes [options]");
+        out.println("Searches your notes and writes the matches to stdout, without starting the application.");
+        out.println();
+        out.println("  --query <name>     Run the saved query with this name.");
+        out.println("  --search <text>    Only notes containing this text (not case-sensitive).");
+        out.println("  --tag <tags>       Only notes with all of these tags. Can be given more than once.");
+        out.println("  --year <year>      Only notes dated in this year.");
+        out.println("  --limit <n>        Only the n most recent matches.");
+        out.println("  --format <format>  text (the default), jsonl, or paths.");
+        out.println("  --data-dir <dir>   Search this data directory instead of the configured one.");
+        out.println("  --no-server        Always load the notes, even if Snotes is already running.");
+        out.println("  --help             Show this message.");
+        out.println();
+        out.println("Exit code is 0 if any notes matched, 1 if none did, or 2 on error.");
+    }
+}
@@ -3,6 +3,8 @@ package ca.corbett.snotes;
 import ca.corbett.extras.LookAndFeelManager;
 import ca.corbett.extras.SingleInstanceManager;
 import ca.corbett.snotes.extensions.SnotesExtensionManager;
+import ca.corbett.snotes.io.NotePreload;
+import ca.corbett.snotes.metrics.StartupTimeline;
 import ca.corbett.snotes.ui.MainWindow;
 import ca.corbett.updates.UpdateSources;
 
@@ -11,13 +13,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 /**
- * The entry point for the application. There are no command line parameters,
- * but you can specify a few system properties to achieve different things:
+ * The entry point for the application. Normally there are no command line parameters,
+ * but any of the search options described in CommandLineQuery (like --search or --query) will
+ * run a search from the command line instead of starting the application, and will
+ * never touch AWT or Swing. The --train-startup option runs through startup without showing anything,
+ * and then exits, so that a class data sharing archive can be written for quicker startups next time
+ * (see StartupTrainer). You can also specify a few system properties to achieve different things:
  * <ul>
  *     <li><b>java.util.logging.config.file</b> - if set, this is the full path
  *     and name of your custom logging.properties file. If not set, the default
@@ -44,6 +52,24 @@ public class Main {
     public static final int SINGLE_INSTANCE_PORT = 56624; // arbitrary random port choice
 
     public static void main(String[] args) {
+        // A training run goes through startup without showing anything, so that a class data sharing
+        // archive can be written when it exits. See StartupTrainer for details:
+        if (StartupTrainer.isRequested(args)) {
+            configureLogging();
+            Logger.getLogger("").setLevel(Level.WARNING);
+            System.exit(StartupTrainer.run(System.out, System.err));
+            return;
+        }
+
+        // A command-line search never starts the UI, and doesn't need a single instance lock:
+        if (CommandLineQuery.isRequested(args)) {
+            System.setProperty("java.awt.headless", "true");
+            configureLogging();
+            Logger.getLogger("").setLevel(Level.WARNING); // keep stderr quiet for scripts
+            System.exit(CommandLineQuery.run(args, System.out, System.err));
+            return;
+        }
+
         // Before we do anything else, set up logging:
         configureLogging();
 
@@ -66,28 +92,50 @@ public class Main {
                    Version.FULL_NAME + " starting up: installDir={0}, settingsDir={1}, extensionsDir={2}",
                    new Object[]{Version.INSTALL_DIR, Version.SETTINGS_DIR, Version.EXTENSIONS_DIR});
 
-        // Make sure our resources are present and loadable:
-        if (!Resources.loadAll()) {
-            logger.severe("Unable to load application resources - the jar was not packaged correctly.");
-            System.exit(1); // No point in proceeding if basic resources are missing
-            return; // to satisfy the compiler
-        }
+        // Each startup phase is timed, so we can see where startup time goes (see the Performance window):
+        StartupTimeline timeline = StartupTimeline.getInstance();
 
-        // Load all extra Look and Feels:
-        LookAndFeelManager.installExtraLafs();
+        // Reading our notes is by far the slowest part of startup, and nothing below depends on it,
+        // so get it going right away. The MainWindow's DataManager will pick up the results when it loads:
+        NotePreload notePreload = NotePreload.start(AppConfig.peekDataDirectory(), AppConfig.peekLargeNoteThreshold());
 
-        // Load all extensions:
+        // Our resources and extra Look and Feels don't depend on anything else, so load them in the background too:
+        CompletableFuture<Boolean> resourcesLoaded = CompletableFuture.supplyAsync(Main::loadResources, r -> {
+            Thread thread = new Thread(r, "Snotes-Startup");
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        // Meanwhile, find and load all extensions:
+        long phaseStartTime = System.nanoTime();
         SnotesExtensionManager extManager = SnotesExtensionManager.getInstance();
         extManager.loadAll();
+        timeline.phaseComplete("extensions", phaseStartTime);
+
+        // Extensions might use our resources when they activate, so we wait for them here.
+        // And there's no point in proceeding if basic resources are missing:
+        if (!awaitResources(resourcesLoaded)) {
+            logger.severe("Unable to load application resources - the jar was not packaged correctly.");
+            System.exit(1);
+            return; // to satisfy the compiler
+        }
+        phaseStartTime = System.nanoTime();
         extManager.activateAll();
+        extManager.registerFilters(); // before MainWindow loads any Queries that might use them
         logger.log(Level.INFO, "Loaded {0} extensions ({1} enabled).",
                    new Object[]{extManager.getLoadedExtensionCount(), extManager.getEnabledLoadedExtensions().size()});
+        timeline.phaseComplete("extensionActivation", phaseStartTime);
 
         // Load up our application configuration:
+        phaseStartTime = System.nanoTime();
         AppConfig.getInstance().load();
+        timeline.phaseComplete("config", phaseStartTime);
 
         // Get MainWindow ready but don't show it just yet:
+        phaseStartTime = System.nanoTime();
         final MainWindow mainWindow = MainWindow.getInstance();
+        mainWindow.getDataManager().setNotePreload(notePreload);
+        timeline.phaseComplete("mainWindow", phaseStartTime);
         SwingUtilities.invokeLater(() -> {
             LookAndFeelManager.switchLaf(AppConfig.getInstance().getLookAndFeelClassName());
             mainWindow.processStartArgs(Arrays.asList(args));
@@ -98,8 +146,48 @@ public class Main {
         parseUpdateSources();
 
         // Now show the main window. It has an async loader on startup that will show
-        // a progress dialog after the main window comes up:
-        SwingUtilities.invokeLater(() -> mainWindow.setVisible(true));
+        // a progress dialog after the main window comes up, and will log when we're ready to use:
+        SwingUtilities.invokeLater(() -> {
+            mainWindow.setVisible(true);
+            timeline.milestone("windowShown");
+        });
+    }
+
+    /**
+     * Invoked on a background thread at startup to load our resources and extra Look and Feels.
+     * Neither depends on anything else, so they can be loaded while extensions are being loaded.
+     *
+     * @return false if our resources are missing, which means the jar was not packaged correctly.
+     */
+    private static boolean loadResources() {
+        StartupTimeline timeline = StartupTimeline.getInstance();
+        long phaseStartTime = System.nanoTime();
+        if (!Resources.loadAll()) {
+            return false;
+        }
+        timeline.phaseComplete("resources", phaseStartTime);
+
+        phaseStartTime = System.nanoTime();
+        LookAndFeelManager.installExtraLafs();
+        timeline.phaseComplete("lookAndFeels", phaseStartTime);
+        return true;
+    }
+
+    /**
+     * Waits for loadResources() to finish on its background thread, and returns its result.
+     */
+    private static boolean awaitResources(CompletableFuture<Boolean> resourcesLoaded) {
+        long waitStartTime = System.nanoTime();
+        try {
+            return resourcesLoaded.join();
+        }
+        catch (CompletionException e) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, "Unable to load application resources.", e);
+            return false;
+        }
+        finally {
+            StartupTimeline.getInstance().phaseComplete("resourcesWait", waitStartTime);
+        }
     }
 
     /**
@@ -0,0 +1,106 @@
+package ca.corbett.snotes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Sends a command-line query to a running QueryServer, and copies its results to the given streams.
+ * CommandLineQuery uses this automatically. It can also be run on its own, which is handy for
+ * checking that the server is up, since it never falls back to loading the notes itself:
+ * <pre>
+ *     java -cp snotes-2.0.jar ca.corbett.snotes.QueryClient --search "budget" --format paths
+ * </pre>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class QueryClient {
+
+    /**
+     * How long we'll wait to connect. The server is on this machine, so if it doesn't answer
+     * almost immediately, it's not there, and we'd be better off loading the notes ourselves.
+     */
+    private static final int CONNECT_TIMEOUT_MS = 500;
+
+    private QueryClient() {
+    }
+
+    public static void main(String[] args) {
+        Integer exitCode = forward(QueryProtocol.getDefaultInfoFile(), args, System.out, System.err);
+        if (exitCode == null) {
+            System.err.println("Snotes does not seem to be running, or its query server is not enabled.");
+            System.exit(CommandLineQuery.EXIT_ERROR);
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Sends the given command-line arguments to the server advertised in the given info file,
+     * and copies whatever it writes to the given streams.
+     *
+     * @return The query's exit code, or null if there is no server to talk to. If the server goes away
+     * part way through, some output may already have been written, and EXIT_ERROR is returned.
+     */
+    public static Integer forward(File infoFile, String[] args, PrintStream out, PrintStream err) {
+        QueryProtocol.ServerInfo info = QueryProtocol.readInfoFile(infoFile);
+        if (info == null) {
+            return null;
+        }
+
+        Socket socket = new Socket();
+        try (socket) {
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), info.port()), CONNECT_TIMEOUT_MS);
+                QueryProtocol.writeRequest(new BufferedOutputStream(socket.getOutputStream()), info.token(), args);
+            }
+            catch (IOException ioe) {
+                return null; // a stale info file, probably left behind by a crash
+            }
+            return readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())), out, err);
+        }
+        catch (IOException ioe) {
+            err.println("Lost connection to Snotes: " + ioe.getMessage());
+            return CommandLineQuery.EXIT_ERROR;
+        }
+    }
+
+    private static Integer readResponse(DataInputStream in, PrintStream out, PrintStream err) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (true) {
+            byte frameType;
+            try {
+                frameType = in.readByte();
+            }
+            catch (EOFException eof) {
+                // The server hangs up without a word if it doesn't like our request:
+                throw new IOException("the query server closed the connection.");
+            }
+            if (frameType == QueryProtocol.FRAME_EXIT) {
+                out.flush();
+                err.flush();
+                return in.readInt();
+            }
+            PrintStream target = frameType == QueryProtocol.FRAME_ERR ? err : out;
+            int remaining = in.readInt();
+            if (remaining < 0 || (frameType != QueryProtocol.FRAME_OUT && frameType != QueryProtocol.FRAME_ERR)) {
+                throw new IOException("unexpected response from the query server.");
+            }
+            while (remaining > 0) {
+                int count = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new EOFException("the query server closed the connection.");
+                }
+                target.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ca.corbett.snotes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The wire format shared by QueryServer and QueryClient. Everything is big-endian, as written by
+ * DataOutputStream, over a single loopback connection per request:
+ * <pre>
+ *     request:  int MAGIC, UTF token, int argCount, UTF arg...
+ *     response: any number of frames, ending with exactly one EXIT frame:
+ *               byte OUT,  int length, bytes   (a chunk of stdout)
+ *               byte ERR,  int length, bytes   (a chunk of stderr)
+ *               byte EXIT, int exitCode
+ * </pre>
+ * The request arguments are exactly what would have been given to CommandLineQuery on the command line,
+ * so the server and the command line always agree on what a query means.
+ * <p>
+ *     The server picks a free port when it starts, and advertises it in an info file in the settings
+ *     directory, along with a random token. The file is only readable by its owner, and the server refuses
+ *     any request that doesn't present the token, so other users on the same machine can't read our notes.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+final class QueryProtocol {
+
+    static final int MAGIC = 0x534E5131; // "SNQ1"
+
+    static final byte FRAME_OUT = 1;
+    static final byte FRAME_ERR = 2;
+    static final byte FRAME_EXIT = 3;
+
+    /**
+     * We never need anywhere near this many arguments; it just stops a bad request from making us allocate.
+     */
+    static final int MAX_ARGS = 64;
+
+    static final String INFO_FILE_NAME = "query-server.properties";
+    private static final String PORT_PROP = "port";
+    private static final String TOKEN_PROP = "token";
+
+    private QueryProtocol() {
+    }
+
+    /**
+     * Where a running QueryServer advertises itself, unless told otherwise.
+     */
+    static File getDefaultInfoFile() {
+        return new File(Version.SETTINGS_DIR, INFO_FILE_NAME);
+    }
+
+    /**
+     * The port and token from a server info file.
+     */
+    record ServerInfo(int port, String token) {
+    }
+
+    static void writeRequest(OutputStream stream, String token, String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeUTF(token);
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a request, and returns its arguments if it presented the expected token.
+     *
+     * @throws IOException If the request is malformed, or the token is wrong.
+     */
+    static String[] readRequest(InputStream stream, String expectedToken) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a query request.");
+        }
+        byte[] token = in.readUTF().getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(token, expectedToken.getBytes(StandardCharsets.UTF_8))) {
+            throw new IOException("Query request has the wrong token.");
+        }
+        int argCount = in.readInt();
+        if (argCount < 0 || argCount > MAX_ARGS) {
+            throw new IOException("Query request has too many arguments: " + argCount);
+        }
+        List<String> args = new ArrayList<>(argCount);
+        for (int i = 0; i < argCount; i++) {
+            args.add(in.readUTF());
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * Writes the given server info file so that only its owner can read it, replacing any old one.
+     */
+    static void writeInfoFile(File infoFile, ServerInfo info) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(PORT_PROP, Integer.toString(info.port()));
+        props.setProperty(TOKEN_PROP, info.token());
+
+        Path target = infoFile.toPath();
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile(dir, "query-server", ".tmp",
+                                            PosixFilePermissions.asFileAttribute(
+                                                PosixFilePermissions.fromString("rw-------")));
+        }
+        catch (UnsupportedOperationException e) {
+            tempFile = Files.createTempFile(dir, "query-server", ".tmp"); // not a POSIX file system
+        }
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            props.store(out, "Snotes query server - deleted when Snotes exits");
+        }
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the given server info file.
+     *
+     * @return The server info, or null if there is no such file, or it doesn't make sense.
+     */
+    static ServerInfo readInfoFile(File infoFile) {
+        if (!infoFile.isFile()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(infoFile)) {
+            props.load(in);
+            String token = props.getProperty(TOKEN_PROP);
+            int port = Integer.parseInt(props.getProperty(PORT_PROP, ""));
+            return token == null ? null : new ServerInfo(port, token);
+        }
+        catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An OutputStream that wraps everything written to it in frames of the given type.
+     * Both of a response's frame streams share one connection, so they synchronize on it.
+     */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream connection;
+        private final byte frameType;
+
+        FrameOutputStream(DataOutputStream connection, byte frameType) {
+            this.connection = connection;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            synchronized (connection) {
+                connection.writeByte(frameType);
+                connection.writeInt(length);
+                connection.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (connection) {
+                connection.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package ca.corbett.snotes;
+
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.metrics.Counter;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.Timer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Answers command-line queries from the running application, so that scripts and editor integrations
+ * can search a corpus that is already loaded, instead of loading it all over again. CommandLineQuery
+ * tries this server first, and only loads the data directory itself if no server is running.
+ * <p>
+ *     The server only listens on the loopback interface, on whatever port is free, and advertises
+ *     that port and a random token in an owner-only info file. See QueryProtocol for the wire format.
+ *     Each request runs on a small pool of worker threads (never the EDT), against a snapshot of
+ *     the DataManager's Notes, and its results are streamed back as they are written.
+ * </p>
+ * <p>
+ *     The server runs while single instance mode is enabled, since there is only one running
+ *     instance to ask in that case. The single instance port itself belongs to SingleInstanceManager,
+ *     which only knows how to pass start arguments along, so we can't share it.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class QueryServer {
+
+    private static final Logger log = Logger.getLogger(QueryServer.class.getName());
+
+    private static final int WORKER_THREADS = 4;
+    private static final int BACKLOG = 50;
+
+    /**
+     * How long a client has to send its request once connected. Requests are tiny,
+     * so this only matters for clients that connect and then say nothing.
+     */
+    private static final int REQUEST_TIMEOUT_MS = 5000;
+
+    private static final Timer requestTimer = Metrics.getInstance().timer("server.request");
+    private static final Counter rejectedCount = Metrics.getInstance().counter("server.rejected");
+
+    private final DataManager dataManager;
+    private final File infoFile;
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+    private String token;
+
+    /**
+     * Creates a server for the given DataManager, which will advertise itself in the default info file.
+     */
+    public QueryServer(DataManager dataManager) {
+        this(dataManager, QueryProtocol.getDefaultInfoFile());
+    }
+
+    /**
+     * Creates a server for the given DataManager, which will advertise itself in the given info file.
+     */
+    public QueryServer(DataManager dataManager, File infoFile) {
+        this.dataManager = dataManager;
+        this.infoFile = infoFile;
+    }
+
+    /**
+     * Starts listening for requests. Does nothing if we're already running.
+     *
+     * @throws IOException If we can't open a socket, or can't write our info file.
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        token = HexFormat.of().formatHex(tokenBytes);
+
+        ServerSocket socket = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+        try {
+            QueryProtocol.writeInfoFile(infoFile, new QueryProtocol.ServerInfo(socket.getLocalPort(), token));
+        }
+        catch (IOException ioe) {
+            socket.close();
+            throw ioe;
+        }
+        serverSocket = socket;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+            Thread thread = new Thread(r, "Snotes-QueryServer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread acceptThread = new Thread(() -> acceptLoop(socket, workers), "Snotes-QueryServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("Query server listening on port " + socket.getLocalPort());
+    }
+
+    /**
+     * Stops listening, abandons any requests still in progress, and removes our info file.
+     * Does nothing if we aren't running.
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        }
+        catch (IOException ioe) {
+            log.log(Level.WARNING, "Problem closing query server socket.", ioe);
+        }
+        workers.shutdownNow();
+        serverSocket = null;
+        workers = null;
+
+        // Only remove the info file if it's still ours; another instance may have started since:
+        QueryProtocol.ServerInfo info = QueryProtocol.readInfoFile(infoFile);
+        if (info != null && info.token().equals(token) && !infoFile.delete()) {
+            log.warning("Unable to delete query server info file: " + infoFile.getAbsolutePath());
+        }
+        log.info("Query server stopped.");
+    }
+
+    public synchronized boolean isRunning() {
+        return serverSocket != null;
+    }
+
+    /**
+     * Returns the port we're listening on, or -1 if we aren't running.
+     */
+    public synchronized int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop(ServerSocket socket, ExecutorService workerPool) {
+        String expectedToken = token;
+        while (!socket.isClosed()) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            }
+            catch (IOException ioe) {
+                if (!socket.isClosed()) {
+                    log.log(Level.WARNING, "Query server failed to accept a connection.", ioe);
+                }
+                continue;
+            }
+            try {
+                workerPool.submit(() -> handle(connection, expectedToken));
+            }
+            catch (RejectedExecutionException e) {
+                closeQuietly(connection); // we're shutting down
+            }
+        }
+    }
+
+    private void handle(Socket connection, String expectedToken) {
+        long startTime = System.nanoTime();
+        try (connection) {
+            connection.setSoTimeout(REQUEST_TIMEOUT_MS);
+            String[] args;
+            try {
+                args = QueryProtocol.readRequest(new BufferedInputStream(connection.getInputStream()), expectedToken);
+            }
+            catch (IOException ioe) {
+                // Could be anything that happened to connect to our port. Just hang up:
+                rejectedCount.increment();
+                log.fine("Rejected query request: " + ioe.getMessage());
+                return;
+            }
+            connection.setSoTimeout(0);
+
+            DataOutputStream response = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            PrintStream out = new PrintStream(new BufferedOutputStream(
+                new QueryProtocol.FrameOutputStream(response, QueryProtocol.FRAME_OUT)), false, StandardCharsets.UTF_8);
+            PrintStream err = new PrintStream(new QueryProtocol.FrameOutputStream(response, QueryProtocol.FRAME_ERR),
+                                              true, StandardCharsets.UTF_8);
+            int exitCode = CommandLineQuery.runAgainst(dataManager, dataManager.getDataDirectory(), args, out, err);
+            out.flush();
+            err.flush();
+            synchronized (response) {
+                response.writeByte(QueryProtocol.FRAME_EXIT);
+                response.writeInt(exitCode);
+                response.flush();
+            }
+        }
+        catch (SocketException se) {
+            log.fine("Query client went away: " + se.getMessage()); // e.g. piped into head
+        }
+        catch (IOException ioe) {
+            log.log(Level.WARNING, "Query server failed to answer a request.", ioe);
+        }
+        finally {
+            requestTimer.recordSince(startTime);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+}
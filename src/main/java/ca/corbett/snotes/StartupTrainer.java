@@ -0,0 +1,196 @@
+package ca.corbett.snotes;
+
+import ca.corbett.extras.LookAndFeelManager;
+import ca.corbett.snotes.io.CorpusGenerator;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Template;
+import ca.corbett.snotes.ui.MainWindow;
+
+import javax.swing.SwingUtilities;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs through everything that a normal startup does, without showing anything, and then exits.
+ * The point is to be run once with -XX:ArchiveClassesAtExit, so that the JVM writes every class that
+ * startup needs (Swing, Jackson, swing-extras and our own) into a class data sharing archive:
+ * <pre>
+ *     java -XX:ArchiveClassesAtExit=$HOME/.Snotes/snotes.jsa -jar snotes-2.0.jar --train-startup
+ * </pre>
+ * Starting with -XX:SharedArchiveFile pointing at that archive then maps those classes straight
+ * into memory, instead of finding, reading and verifying each one of them again. The launcher script
+ * from the installer does this whenever the archive is there. It looks for snotes.jsa in the settings
+ * directory (Version.SETTINGS_DIR), which it passes along to us, so the two always agree. The archive only works with the exact
+ * jar files and JVM that wrote it, so it should be written again after an upgrade; if it is stale,
+ * the JVM quietly ignores it.
+ * <p>
+ *     Training never touches the real data directory. It generates a small synthetic corpus in a
+ *     temporary directory, loads it, runs its queries and templates, saves and packs a few notes,
+ *     answers a command-line query, and then builds (but doesn't show) the main window.
+ *     Extensions are not loaded, since they come from their own class loaders, which can't be archived.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class StartupTrainer {
+
+    public static final String OPTION = "--train-startup";
+
+    private static final long SEED = 20240101L;
+    private static final int NOTE_COUNT = 2000;
+
+    private StartupTrainer() {
+    }
+
+    /**
+     * Reports whether the given command line asks for a training run.
+     */
+    public static boolean isRequested(String[] args) {
+        return args != null && List.of(args).contains(OPTION);
+    }
+
+    /**
+     * Runs the training, reporting progress to the given streams.
+     *
+     * @return The process exit code: 0 if training completed, otherwise 1.
+     */
+    public static int run(PrintStream out, PrintStream err) {
+        File archiveFile = getArchiveFile();
+        if (archiveFile == null) {
+            out.println("Note: no class data sharing archive is being written. To write one, run with:");
+            out.println("  java -XX:ArchiveClassesAtExit=" + getDefaultArchiveFile() + " -jar <snotes jar> " + OPTION);
+        }
+        else if (!archiveFile.getAbsoluteFile().equals(getDefaultArchiveFile().getAbsoluteFile())) {
+            out.println("Note: the launcher looks for the archive at " + getDefaultArchiveFile()
+                            + ", not " + archiveFile);
+        }
+
+        long startTime = System.nanoTime();
+        Path corpusDir = null;
+        try {
+            corpusDir = Files.createTempDirectory("snotes-training");
+            exerciseData(corpusDir.toFile());
+            if (GraphicsEnvironment.isHeadless()) {
+                out.println("No display is available, so the user interface was not included in training.");
+            }
+            else {
+                exerciseUserInterface();
+            }
+        }
+        catch (IOException | InvocationTargetException | RuntimeException e) {
+            err.println("Startup training failed: " + e);
+            return 1;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Startup training was interrupted.");
+            return 1;
+        }
+        finally {
+            deleteQuietly(corpusDir);
+        }
+
+        out.println("Startup training complete in " + (System.nanoTime() - startTime) / 1_000_000 + "ms.");
+        return 0;
+    }
+
+    /**
+     * Where the installer's launcher script looks for the archive.
+     */
+    static File getDefaultArchiveFile() {
+        return new File(Version.SETTINGS_DIR, "snotes.jsa");
+    }
+
+    /**
+     * Goes through the data side of startup, and the everyday operations right after it,
+     * against a synthetic corpus in the given (empty) directory.
+     */
+    static void exerciseData(File corpusDir) throws IOException {
+        new CorpusGenerator(SEED).setNoteCount(NOTE_COUNT).generate(corpusDir);
+        DataManager dataManager = new DataManager(corpusDir);
+        try {
+            dataManager.loadAllNow();
+            List<Note> notes = dataManager.getNotes();
+            for (Query query : dataManager.getQueries()) {
+                query.execute(notes);
+            }
+            for (Template template : dataManager.getTemplates()) {
+                dataManager.gatherTemplateContext(template).join();
+            }
+
+            Note note = dataManager.newNote();
+            note.tag("snotes-startup-training");
+            note.setText("Written during startup training.");
+            dataManager.saveScratch(note);
+            dataManager.save(note);
+
+            List<Integer> years = dataManager.getUniqueYears();
+            if (years.size() > 1) {
+                dataManager.packYear(years.get(0));
+            }
+
+            PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+            CommandLineQuery.runAgainst(dataManager, corpusDir, new String[]{"--search", "e", "--format", "jsonl"},
+                                        nowhere, nowhere);
+        }
+        finally {
+            dataManager.shutdown();
+        }
+    }
+
+    /**
+     * Goes through the user interface side of startup, without showing anything: resources,
+     * Look and Feels, configuration, and the main window. Nothing is saved.
+     * <p>
+     *     The main window is deliberately not disposed. Closing it runs its cleanup, which saves its
+     *     size and position into the user's configuration, and shuts down its DataManager, which is
+     *     bound to the user's real data directory. The process exits as soon as training is done anyway.
+     * </p>
+     */
+    private static void exerciseUserInterface() throws InterruptedException, InvocationTargetException {
+        Resources.loadAll();
+        LookAndFeelManager.installExtraLafs();
+        AppConfig.getInstance().load();
+        SwingUtilities.invokeAndWait(() -> {
+            LookAndFeelManager.switchLaf(AppConfig.getInstance().getLookAndFeelClassName());
+            MainWindow.getInstance().pack(); // realizes the window and its components, without showing them
+        });
+    }
+
+    /**
+     * Returns the archive that the JVM will write when we exit, or null if it won't write one.
+     */
+    private static File getArchiveFile() {
+        String prefix = "-XX:ArchiveClassesAtExit=";
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                                .filter(arg -> arg.startsWith(prefix))
+                                .map(arg -> new File(arg.substring(prefix.length())))
+                                .reduce((first, second) -> second) // as with any JVM option, the last one wins
+                                .orElse(null);
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        catch (IOException ignored) {
+            // It's only a temp directory.
+        }
+    }
+}
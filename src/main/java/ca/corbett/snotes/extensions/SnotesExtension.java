@@ -2,6 +2,8 @@ package ca.corbett.snotes.extensions;
 
 import ca.corbett.extensions.AppExtension;
 import ca.corbett.extras.EnhancedAction;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.filter.FilterRegistration;
 import ca.corbett.snotes.ui.actions.ActionGroup;
 
 import java.util.List;
@@ -42,4 +44,25 @@ public abstract class SnotesExtension extends AppExtension {
     public List<EnhancedAction> getExtraActions(String actionGroupName) {
         return List.of();
     }
+
+    /**
+     * Extensions can supply their own Filter types, which can then be used in Queries just like
+     * the built-in ones: they are saved and loaded with the Query, and offered in the query builder.
+     * Filters can also give cost and selectivity hints, and an index, to help Queries run quickly.
+     * See FilterRegistration and Filter for details. Returning null or an empty list is fine.
+     */
+    public List<FilterRegistration<?>> getFilterRegistrations() {
+        return List.of();
+    }
+
+    /**
+     * Extensions that keep their own data about Notes (an index, say, or a cache) can supply a listener
+     * here, to be told whenever Notes are added, updated or removed. It is subscribed while the extension
+     * is enabled, and its first batch lists every Note that is loaded at that point, so it should start
+     * over from scratch whenever that happens. It is notified on a background thread, in batches.
+     * See DataManager.NoteChangeListener and NoteChange. Returning null is fine.
+     */
+    public DataManager.NoteChangeListener getNoteChangeListener() {
+        return null;
+    }
 }
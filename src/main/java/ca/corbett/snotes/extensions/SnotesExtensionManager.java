@@ -5,10 +5,16 @@ import ca.corbett.extras.EnhancedAction;
 import ca.corbett.extras.properties.KeyStrokeProperty;
 import ca.corbett.snotes.Version;
 import ca.corbett.snotes.extensions.builtin.TestExtension;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.filter.FilterRegistration;
+import ca.corbett.snotes.model.filter.FilterRegistry;
 import ca.corbett.snotes.ui.actions.ActionGroup;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -29,6 +35,8 @@ public class SnotesExtensionManager extends ExtensionManager<SnotesExtension> {
 
     private static final SnotesExtensionManager instance;
 
+    private final Map<SnotesExtension, DataManager.NoteChangeListener> noteChangeListeners = new IdentityHashMap<>();
+
     static {
         instance = new SnotesExtensionManager();
     }
@@ -114,6 +122,48 @@ public class SnotesExtensionManager extends ExtensionManager<SnotesExtension> {
         return actions;
     }
 
+    /**
+     * Registers every Filter type supplied by enabled extensions with the FilterRegistry,
+     * so that Queries can use them. This should be done after extensions are activated,
+     * and before any Queries are loaded. Registering the same Filter types again is harmless.
+     */
+    public void registerFilters() {
+        List<FilterRegistration<?>> registrations = new ArrayList<>();
+        for (SnotesExtension ext : getEnabledLoadedExtensions()) {
+            List<FilterRegistration<?>> extRegistrations = ext.getFilterRegistrations();
+            if (extRegistrations != null && !extRegistrations.isEmpty()) {
+                registrations.addAll(extRegistrations);
+            }
+        }
+        FilterRegistry.getInstance().registerAll(registrations);
+    }
+
+    /**
+     * Subscribes the NoteChangeListener of every enabled extension to the given DataManager, and unsubscribes
+     * those of any extensions that have been disabled since the last time. Safe to invoke repeatedly.
+     */
+    public synchronized void updateNoteChangeListeners(DataManager dataManager) {
+        List<SnotesExtension> enabledExtensions = getEnabledLoadedExtensions();
+        Iterator<Map.Entry<SnotesExtension, DataManager.NoteChangeListener>> iterator =
+            noteChangeListeners.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SnotesExtension, DataManager.NoteChangeListener> entry = iterator.next();
+            if (!enabledExtensions.contains(entry.getKey())) {
+                dataManager.removeNoteChangeListener(entry.getValue());
+                iterator.remove();
+            }
+        }
+        for (SnotesExtension ext : enabledExtensions) {
+            if (!noteChangeListeners.containsKey(ext)) {
+                DataManager.NoteChangeListener listener = ext.getNoteChangeListener();
+                if (listener != null) {
+                    dataManager.addNoteChangeListener(listener);
+                    noteChangeListeners.put(ext, listener);
+                }
+            }
+        }
+    }
+
     /**
      * If our version contains "SNAPSHOT", or if the undocumented system property
      * "snotes.enableTestExtension" is set to "true", we will install and
@@ -9,13 +9,20 @@ import ca.corbett.extras.properties.KeyStrokeProperty;
 import ca.corbett.extras.properties.LabelProperty;
 import ca.corbett.snotes.Version;
 import ca.corbett.snotes.extensions.SnotesExtension;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterRegistration;
 import ca.corbett.snotes.ui.MainWindow;
 import ca.corbett.snotes.ui.actions.ActionGroup;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.swing.JOptionPane;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Logger;
 
 /**
  * This is a test extension used for development and testing purposes.
@@ -32,6 +39,8 @@ import java.util.List;
  * @since Snotes 2.0
  */
 public class TestExtension extends SnotesExtension {
+    private static final Logger log = Logger.getLogger(TestExtension.class.getName());
+
     private final AppExtensionInfo extInfo;
 
     private static final String TASK_PANE_NAME = "Test1";
@@ -127,6 +136,73 @@ public class TestExtension extends SnotesExtension {
         return List.of();
     }
 
+    /**
+     * We supply a simple Filter type, to test that extension Filters can be used, saved and loaded.
+     */
+    @Override
+    public List<FilterRegistration<?>> getFilterRegistrations() {
+        return List.of(
+            new FilterRegistration<>("TestLengthFilter", LengthFilter.class, "Length (test)",
+                                     text -> new LengthFilter(parseLength(text)),
+                                     filter -> String.valueOf(filter.getMinimumLength()))
+                .setPrompt("At least:")
+                .setHelpText("Matches notes with at least this many characters of text.")
+        );
+    }
+
+    private static int parseLength(String text) {
+        try {
+            int length = Integer.parseInt(text);
+            if (length >= 0) {
+                return length;
+            }
+        }
+        catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Please enter a number of characters (e.g. 500).");
+    }
+
+    /**
+     * Filters out Notes that are shorter than a given number of characters.
+     */
+    public static class LengthFilter extends Filter {
+
+        private final int minimumLength;
+
+        @JsonCreator
+        public LengthFilter(@JsonProperty("minimumLength") int minimumLength) {
+            this.minimumLength = minimumLength;
+        }
+
+        public int getMinimumLength() {
+            return minimumLength;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Filter by length";
+        }
+
+        @Override
+        public boolean isFiltered(Note note) {
+            return note == null || note.getText() == null || note.getText().length() < minimumLength;
+        }
+
+        @Override
+        public String toString() {
+            return "At least " + minimumLength + " characters";
+        }
+    }
+
+    /**
+     * We log each batch of note changes, to test that extensions hear about them.
+     */
+    @Override
+    public DataManager.NoteChangeListener getNoteChangeListener() {
+        return changes -> log.info("Test extension: " + changes.size() + " note change(s), starting with "
+                                       + changes.get(0));
+    }
+
     /**
      * Invoked internally to attach a simple action to anything that might
      * require an action. This action just shows a message dialog with
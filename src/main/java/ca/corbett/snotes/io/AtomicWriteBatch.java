@@ -0,0 +1,218 @@
+package ca.corbett.snotes.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects a number of pending file writes and commits them as a group. This is used by
+ * DataManager.saveAll() so that saving many dirty objects at once is both crash-safe and fast.
+ * <p>
+ * A commit happens in three phases:
+ * </p>
+ * <ol>
+ *     <li>All content is written to temp files alongside the target files, in parallel,
+ *         and each temp file is forced to disk. If ANY of these writes fail, all temp files
+ *         are removed and nothing on disk is changed.</li>
+ *     <li>Each temp file is renamed over its target file.</li>
+ *     <li>Each affected directory is synced exactly once, to make the renames durable.</li>
+ * </ol>
+ * <p>
+ * Each entry can supply a callback to be run after its rename succeeds. This is where
+ * callers should update the model object (set its source file, mark it clean, etc.).
+ * Callbacks are run on the thread that invoked commit().
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class AtomicWriteBatch {
+
+    private static final Logger log = Logger.getLogger(AtomicWriteBatch.class.getName());
+
+    /**
+     * No point spinning up a pool of threads to write a single file.
+     */
+    private static final int PARALLEL_THRESHOLD = 2;
+
+    private final List<Entry> entries;
+
+    AtomicWriteBatch() {
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * Adds a pending write to this batch. Nothing is written until commit() is invoked.
+     *
+     * @param targetFile The file to be written. Its parent directory will be created if needed.
+     * @param content    The complete new content for the target file.
+     * @param onCommit   Optional callback to run once the target file has been replaced. Can be null.
+     */
+    void add(File targetFile, byte[] content, Runnable onCommit) {
+        if (targetFile == null) {
+            throw new IllegalArgumentException("targetFile cannot be null");
+        }
+        if (content == null) {
+            throw new IllegalArgumentException("content cannot be null");
+        }
+        entries.add(new Entry(targetFile, content, onCommit));
+    }
+
+    /**
+     * Returns the number of pending writes in this batch.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Commits all pending writes in this batch, as described in the class documentation.
+     * The batch is empty after this method returns, whether it succeeds or not.
+     *
+     * @throws IOException If any temp file could not be written (in which case nothing was changed on disk),
+     *                     or if any rename failed (in which case the other renames are still attempted,
+     *                     and the failed ones are reported here).
+     */
+    void commit() throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Entry> toCommit = new ArrayList<>(entries);
+        entries.clear();
+
+        // Make sure all target directories exist before we start writing:
+        Set<File> directories = new LinkedHashSet<>();
+        for (Entry entry : toCommit) {
+            File dir = entry.targetFile.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Failed to create directory: " + dir.getAbsolutePath());
+            }
+            directories.add(dir);
+        }
+
+        // Phase 1: write all temp files. This is all-or-nothing.
+        writeTempFiles(toCommit);
+
+        // Phase 2: rename each temp file into place:
+        IOException renameFailure = null;
+        for (Entry entry : toCommit) {
+            try {
+                SnotesIO.commitTempFile(entry.tempFile, entry.targetFile);
+            }
+            catch (IOException ioe) {
+                log.log(Level.SEVERE, "Failed to commit " + entry.targetFile.getAbsolutePath(), ioe);
+                if (renameFailure == null) {
+                    renameFailure = new IOException("Failed to commit one or more files, starting with: "
+                                                        + entry.targetFile.getAbsolutePath(), ioe);
+                }
+                else {
+                    renameFailure.addSuppressed(ioe);
+                }
+                continue;
+            }
+            if (entry.onCommit != null) {
+                entry.onCommit.run();
+            }
+        }
+
+        // Phase 3: one sync per directory, regardless of how many files we wrote there:
+        for (File dir : directories) {
+            SnotesIO.syncDirectory(dir);
+        }
+
+        if (renameFailure != null) {
+            throw renameFailure;
+        }
+    }
+
+    /**
+     * Writes all temp files, in parallel if there are enough of them to make it worthwhile.
+     * If any write fails, all temp files that were written are removed, and the first failure is thrown.
+     */
+    private void writeTempFiles(List<Entry> toCommit) throws IOException {
+        IOException failure = null;
+        if (toCommit.size() < PARALLEL_THRESHOLD) {
+            for (Entry entry : toCommit) {
+                try {
+                    entry.tempFile = SnotesIO.writeTempFile(entry.targetFile, entry.content);
+                }
+                catch (IOException ioe) {
+                    failure = ioe;
+                    break;
+                }
+            }
+        }
+        else {
+            int threadCount = Math.min(toCommit.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                List<Future<File>> futures = new ArrayList<>(toCommit.size());
+                for (Entry entry : toCommit) {
+                    futures.add(executor.submit(() -> SnotesIO.writeTempFile(entry.targetFile, entry.content)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        toCommit.get(i).tempFile = futures.get(i).get();
+                    }
+                    catch (ExecutionException ee) {
+                        IOException ioe = (ee.getCause() instanceof IOException)
+                            ? (IOException)ee.getCause()
+                            : new IOException("Unexpected error writing temp file.", ee.getCause());
+                        if (failure == null) {
+                            failure = ioe;
+                        }
+                        else {
+                            failure.addSuppressed(ioe);
+                        }
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        if (failure == null) {
+                            failure = new IOException("Interrupted while writing temp files.", ie);
+                        }
+                    }
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (failure != null) {
+            // Roll back: nothing has been renamed yet, so removing the temp files leaves the disk untouched.
+            for (Entry entry : toCommit) {
+                if (entry.tempFile != null) {
+                    Files.deleteIfExists(entry.tempFile.toPath());
+                }
+            }
+            throw failure;
+        }
+    }
+
+    private static class Entry {
+        private final File targetFile;
+        private final byte[] content;
+        private final Runnable onCommit;
+        private File tempFile;
+
+        Entry(File targetFile, byte[] content, Runnable onCommit) {
+            this.targetFile = targetFile;
+            this.content = content;
+            this.onCommit = onCommit;
+        }
+    }
+}
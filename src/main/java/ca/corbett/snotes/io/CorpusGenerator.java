@@ -0,0 +1,523 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.Template;
+import ca.corbett.snotes.model.YMDDate;
+import ca.corbett.snotes.model.filter.DateFilterType;
+import ca.corbett.snotes.model.filter.TagFilter;
+import ca.corbett.snotes.model.filter.TextFilter;
+import ca.corbett.snotes.model.filter.YearFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Generates synthetic, but realistic, Snotes data directories for scale testing and benchmarking.
+ * Everything is driven from a single seed, so the same seed and settings always produce exactly the same
+ * files, byte for byte. The generated directory uses the real layout: dated notes in yyyy/mm/dd directories,
+ * undated notes in the static directory, scratch notes in the scratch directory, and saved Queries and
+ * Templates in the metadata directory, all in the format that SnotesIO writes.
+ * <p>
+ * Tags are drawn from a vocabulary with a heavily skewed distribution: a few tags are on lots of notes,
+ * and most are on very few, which is what real collections look like. Body lengths follow a long-tailed
+ * distribution around a configurable median: most notes are a few lines long, and a few are much longer.
+ * Every generated note gets its own file. If two notes would be saved to the same place, the later one is
+ * given a different date and tags, so the number of notes on disk is always exactly what was asked for.
+ * </p>
+ * <p>
+ * This can be used from code (tests, benchmarks), or from the command line:
+ * </p>
+ * <pre>
+ *     java -cp snotes-2.0.jar ca.corbett.snotes.io.CorpusGenerator /path/to/empty/dir --notes 100000 --seed 42
+ * </pre>
+ * <p>
+ * Run it with no arguments to see all the options.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class CorpusGenerator {
+
+    private static final Logger log = Logger.getLogger(CorpusGenerator.class.getName());
+
+    public static final long DEFAULT_SEED = 20240101L;
+
+    /**
+     * The most common tags, in rough order of popularity. Vocabularies larger than this
+     * are padded out with numbered topic tags, which will be rarer than all of these.
+     */
+    private static final String[] BASE_TAGS = {
+        "work", "personal", "meeting", "todo", "idea", "journal", "project", "standup", "reading", "travel",
+        "health", "finance", "family", "recipe", "music", "garden", "car", "house", "books", "movies",
+        "java", "swing", "release", "bug", "review", "planning", "retro", "interview", "training", "conference"
+    };
+
+    private static final String[] WORDS = {
+        "the", "meeting", "budget", "release", "note", "today", "tomorrow", "discussed", "plan", "review",
+        "lunch", "call", "email", "deadline", "draft", "team", "customer", "feature", "search", "template",
+        "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "and", "then", "some"
+    };
+
+    /**
+     * How many times we'll re-roll a note whose save location is already taken,
+     * before giving up and adding a tag that we know is unique.
+     */
+    private static final int MAX_REROLLS = 20;
+
+    private final long seed;
+    private int noteCount;
+    private int firstYear;
+    private int lastYear;
+    private List<String> tagVocabulary;
+    private int maxTagsPerNote;
+    private double datedFraction;
+    private int medianLines;
+    private int maxLines;
+    private int scratchNoteCount;
+    private int queryCount;
+    private int templateCount;
+
+    /**
+     * Creates a CorpusGenerator with the given seed and default settings: 10,000 notes over the years
+     * 2015 to 2024, 90% of them dated, with up to 3 tags each from a vocabulary of 100 tags, and a median
+     * body length of 6 lines. There will also be 3 scratch notes, 10 saved Queries and 5 Templates.
+     */
+    public CorpusGenerator(long seed) {
+        this.seed = seed;
+        this.noteCount = 10_000;
+        this.firstYear = 2015;
+        this.lastYear = 2024;
+        this.tagVocabulary = defaultTagVocabulary(100);
+        this.maxTagsPerNote = 3;
+        this.datedFraction = 0.9;
+        this.medianLines = 6;
+        this.maxLines = 200;
+        this.scratchNoteCount = 3;
+        this.queryCount = 10;
+        this.templateCount = 5;
+    }
+
+    /**
+     * Returns a tag vocabulary of the given size: our common tags first, followed by as many
+     * numbered topic tags as needed. Since tag popularity drops off with position in the vocabulary,
+     * the topic tags will be the rare ones.
+     */
+    public static List<String> defaultTagVocabulary(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tag vocabulary size must be positive.");
+        }
+        List<String> vocabulary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            vocabulary.add(i < BASE_TAGS.length ? BASE_TAGS[i] : "topic" + (i - BASE_TAGS.length + 1));
+        }
+        return vocabulary;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getNoteCount() {
+        return noteCount;
+    }
+
+    /**
+     * Sets the number of regular (non-scratch) notes to generate.
+     */
+    public CorpusGenerator setNoteCount(int noteCount) {
+        if (noteCount < 0) {
+            throw new IllegalArgumentException("Note count cannot be negative.");
+        }
+        this.noteCount = noteCount;
+        return this;
+    }
+
+    /**
+     * Sets the range of years, inclusive, over which dated notes are spread.
+     */
+    public CorpusGenerator setYearSpan(int firstYear, int lastYear) {
+        if (firstYear < 1 || firstYear > 9999 || lastYear < firstYear || lastYear > 9999) {
+            throw new IllegalArgumentException("Invalid year span: " + firstYear + " to " + lastYear);
+        }
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        return this;
+    }
+
+    /**
+     * Sets the tags to draw from, most popular first. See defaultTagVocabulary() for an easy way to
+     * get a vocabulary of any size.
+     */
+    public CorpusGenerator setTagVocabulary(List<String> tagVocabulary) {
+        if (tagVocabulary == null || tagVocabulary.isEmpty()) {
+            throw new IllegalArgumentException("Tag vocabulary cannot be empty.");
+        }
+        this.tagVocabulary = List.copyOf(tagVocabulary);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of tags on each note (not counting the date). Each note gets
+     * somewhere between one and this many tags.
+     */
+    public CorpusGenerator setMaxTagsPerNote(int maxTagsPerNote) {
+        if (maxTagsPerNote < 1) {
+            throw new IllegalArgumentException("Each note must be allowed at least one tag.");
+        }
+        this.maxTagsPerNote = maxTagsPerNote;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of notes, from 0 to 1, that are dated. The rest go into the static directory.
+     */
+    public CorpusGenerator setDatedFraction(double datedFraction) {
+        if (datedFraction < 0 || datedFraction > 1) {
+            throw new IllegalArgumentException("Dated fraction must be between 0 and 1.");
+        }
+        this.datedFraction = datedFraction;
+        return this;
+    }
+
+    /**
+     * Sets the body length distribution: half of all notes will be shorter than medianLines,
+     * and none will be longer than maxLines.
+     */
+    public CorpusGenerator setBodyLines(int medianLines, int maxLines) {
+        if (medianLines < 1 || maxLines < medianLines) {
+            throw new IllegalArgumentException("Invalid body length: median " + medianLines + ", max " + maxLines);
+        }
+        this.medianLines = medianLines;
+        this.maxLines = maxLines;
+        return this;
+    }
+
+    public CorpusGenerator setScratchNoteCount(int scratchNoteCount) {
+        if (scratchNoteCount < 0) {
+            throw new IllegalArgumentException("Scratch note count cannot be negative.");
+        }
+        this.scratchNoteCount = scratchNoteCount;
+        return this;
+    }
+
+    public CorpusGenerator setQueryCount(int queryCount) {
+        if (queryCount < 0) {
+            throw new IllegalArgumentException("Query count cannot be negative.");
+        }
+        this.queryCount = queryCount;
+        return this;
+    }
+
+    public CorpusGenerator setTemplateCount(int templateCount) {
+        if (templateCount < 0) {
+            throw new IllegalArgumentException("Template count cannot be negative.");
+        }
+        this.templateCount = templateCount;
+        return this;
+    }
+
+    /**
+     * Generates just the regular notes, in memory, exactly as generate() would write them to disk.
+     * Nothing is written. The returned notes are marked clean and have no source file.
+     */
+    public List<Note> generateNotes() {
+        Random random = new Random(seed);
+        List<Note> notes = new ArrayList<>(noteCount);
+        Set<File> usedFiles = new HashSet<>();
+        File dataDir = new File(".");
+        for (int i = 0; i < noteCount; i++) {
+            notes.add(generateUniqueNote(random, dataDir, usedFiles, i));
+        }
+        return notes;
+    }
+
+    /**
+     * Writes a complete data directory into the given directory, which must either not exist yet,
+     * or be empty. We won't write into a directory that already has something in it, so that
+     * there's no way to accidentally mix generated notes into someone's real ones.
+     *
+     * @param dataDir The directory to generate into. Will be created if it doesn't exist.
+     * @throws IOException If the directory is not empty, or if anything can't be written.
+     */
+    public void generate(File dataDir) throws IOException {
+        if (dataDir == null) {
+            throw new IllegalArgumentException("dataDir cannot be null");
+        }
+        if (dataDir.exists()) {
+            String[] contents = dataDir.list();
+            if (contents == null) {
+                throw new IOException("Not a directory: " + dataDir.getAbsolutePath());
+            }
+            if (contents.length > 0) {
+                throw new IOException("Refusing to generate into a non-empty directory: " + dataDir.getAbsolutePath());
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        Random random = new Random(seed);
+        Set<File> usedFiles = new HashSet<>();
+        Set<File> createdDirs = new HashSet<>();
+        for (int i = 0; i < noteCount; i++) {
+            Note note = generateUniqueNote(random, dataDir, usedFiles, i);
+            writeFile(SnotesIO.computeFile(dataDir, note), SnotesIO.toBytes(note), createdDirs);
+        }
+
+        // Scratch notes are just notes in progress, so they're undated, and not yet in their final location:
+        File scratchDir = new File(dataDir, DataManager.SCRATCH_DIR);
+        for (int i = 0; i < scratchNoteCount; i++) {
+            Note note = new Note();
+            addTags(random, note);
+            note.setText(generateBody(random));
+            writeFile(new File(scratchDir, "scratch" + (i + 1) + ".txt"), SnotesIO.toBytes(note), createdDirs);
+        }
+
+        for (int i = 0; i < queryCount; i++) {
+            Query query = generateQuery(random, i);
+            writeFile(SnotesIO.computeFile(dataDir, query), SnotesIO.toBytes(query), createdDirs);
+        }
+
+        for (int i = 0; i < templateCount; i++) {
+            Template template = generateTemplate(random, i);
+            writeFile(SnotesIO.computeFile(dataDir, template), SnotesIO.toBytes(template), createdDirs);
+        }
+
+        // Make sure that all of our standard directories exist, even if nothing was generated into them:
+        for (String dir : List.of(DataManager.METADATA_DIR, DataManager.STATIC_DIR, DataManager.SCRATCH_DIR)) {
+            File subDir = new File(dataDir, dir);
+            if (!subDir.isDirectory() && !subDir.mkdirs()) {
+                throw new IOException("Failed to create directory: " + subDir.getAbsolutePath());
+            }
+        }
+
+        log.info("Generated " + noteCount + " notes, " + scratchNoteCount + " scratch notes, "
+                     + queryCount + " queries and " + templateCount + " templates in "
+                     + dataDir.getAbsolutePath() + " (" + (System.currentTimeMillis() - startTime) + "ms)");
+    }
+
+    /**
+     * Writes the given content straight to the given file, creating its directory first if we haven't already.
+     * Unlike a real save, this is not crash-safe: there's no temp file and no sync. That's fine for throwaway
+     * test data, and it's many times faster, which matters when we're writing a million files.
+     */
+    private static void writeFile(File file, byte[] content, Set<File> createdDirs) throws IOException {
+        File dir = file.getParentFile();
+        if (createdDirs.add(dir)) {
+            Files.createDirectories(dir.toPath());
+        }
+        Files.write(file.toPath(), content);
+    }
+
+    /**
+     * Generates a note whose save location isn't already in the given set, and adds its location to the set.
+     * A note that collides gets a new date (if it's dated) and new tags, but stays dated or undated, so that
+     * collisions don't skew the dated fraction. We only re-roll so many times, though. After that we fall back
+     * to adding a tag that's based on the note's index, which can't collide.
+     */
+    private Note generateUniqueNote(Random random, File dataDir, Set<File> usedFiles, int index) {
+        boolean isDated = random.nextDouble() < datedFraction;
+        Note note = new Note();
+        note.setText(generateBody(random));
+        for (int attempt = 0; attempt < MAX_REROLLS; attempt++) {
+            note.clearAllTags();
+            if (isDated) {
+                note.setDate(randomDate(random));
+            }
+            addTags(random, note);
+            if (usedFiles.add(SnotesIO.computeFile(dataDir, note))) {
+                note.markClean();
+                return note;
+            }
+        }
+        note.tag("note" + (index + 1));
+        note.markClean();
+        usedFiles.add(SnotesIO.computeFile(dataDir, note));
+        return note;
+    }
+
+    private YMDDate randomDate(Random random) {
+        LocalDate start = LocalDate.of(firstYear, 1, 1);
+        int days = (int)(LocalDate.of(lastYear, 12, 31).toEpochDay() - start.toEpochDay()) + 1;
+        return new YMDDate(start.plusDays(random.nextInt(days)).toString());
+    }
+
+    private void addTags(Random random, Note note) {
+        int tagCount = 1 + random.nextInt(maxTagsPerNote);
+        for (int i = 0; i < tagCount; i++) {
+            note.tag(randomTag(random));
+        }
+    }
+
+    /**
+     * Returns one tag from our vocabulary, favouring the ones near the front.
+     */
+    private String randomTag(Random random) {
+        double skewed = Math.pow(random.nextDouble(), 3); // most draws land near zero
+        return tagVocabulary.get((int)(skewed * tagVocabulary.size()));
+    }
+
+    /**
+     * Returns a note body whose line count follows an exponential distribution with our median,
+     * capped at our maximum. That gives lots of short notes and a long tail of bigger ones.
+     */
+    private String generateBody(Random random) {
+        double scale = medianLines / Math.log(2);
+        int lineCount = (int)Math.ceil(-Math.log(1 - random.nextDouble()) * scale);
+        lineCount = Math.max(1, Math.min(maxLines, lineCount));
+
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < lineCount; line++) {
+            int wordCount = 3 + random.nextInt(12);
+            for (int w = 0; w < wordCount; w++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(w == wordCount - 1 ? "" : " ");
+            }
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns a Query that looks like the ones people actually save: a tag or two,
+     * sometimes narrowed down by year or by some text.
+     */
+    private Query generateQuery(Random random, int index) {
+        Query query = new Query().setName("Generated query " + (index + 1));
+        query.setOrder(index);
+        List<Tag> tags = new ArrayList<>();
+        tags.add(new Tag(randomTag(random)));
+        if (random.nextBoolean()) {
+            Tag secondTag = new Tag(randomTag(random));
+            if (!tags.contains(secondTag)) {
+                tags.add(secondTag);
+            }
+        }
+        query.addFilter(new TagFilter(tags, random.nextBoolean() ? TagFilter.FilterType.ALL : TagFilter.FilterType.ANY));
+        if (random.nextInt(3) == 0) {
+            int year = firstYear + random.nextInt(lastYear - firstYear + 1);
+            query.addFilter(new YearFilter(year, DateFilterType.AFTER_INCLUSIVE));
+        }
+        if (random.nextInt(3) == 0) {
+            query.addFilter(new TextFilter(WORDS[random.nextInt(WORDS.length)]));
+        }
+        return query;
+    }
+
+    private Template generateTemplate(Random random, int index) {
+        Template template = new Template("Generated template " + (index + 1));
+        template.setOrder(index);
+        String firstTag = randomTag(random);
+        template.addTag(firstTag);
+        String secondTag = randomTag(random);
+        if (random.nextBoolean() && !secondTag.equals(firstTag)) {
+            template.addTag(secondTag);
+        }
+        Template.DateOption[] dateOptions = Template.DateOption.values();
+        template.setDateOption(dateOptions[random.nextInt(dateOptions.length)]);
+        Template.Context[] contexts = Template.Context.values();
+        template.setContext(contexts[random.nextInt(contexts.length)]);
+        return template;
+    }
+
+    /**
+     * Generates a data directory from the command line. See printUsage() for the options.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(1);
+            return;
+        }
+
+        File dataDir = null;
+        long seed = DEFAULT_SEED;
+        List<String> options = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (!args[i].startsWith("--")) {
+                    if (dataDir != null) {
+                        throw new IllegalArgumentException("Only one data directory can be given.");
+                    }
+                    dataDir = new File(args[i]);
+                }
+                else if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                else if (args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[++i]);
+                }
+                else {
+                    options.add(args[i]);
+                    options.add(args[++i]);
+                }
+            }
+            if (dataDir == null) {
+                throw new IllegalArgumentException("No data directory given.");
+            }
+
+            CorpusGenerator generator = new CorpusGenerator(seed);
+            for (int i = 0; i < options.size(); i += 2) {
+                generator.applyOption(options.get(i), options.get(i + 1));
+            }
+            generator.generate(dataDir);
+            System.out.println("Generated " + generator.noteCount + " notes into " + dataDir.getAbsolutePath()
+                                   + " (seed " + seed + ")");
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void applyOption(String option, String value) {
+        switch (option) {
+            case "--notes" -> setNoteCount(Integer.parseInt(value));
+            case "--years" -> {
+                String[] years = value.split("-");
+                if (years.length != 2) {
+                    throw new IllegalArgumentException("Years must be given as first-last, for example 2015-2024");
+                }
+                setYearSpan(Integer.parseInt(years[0].trim()), Integer.parseInt(years[1].trim()));
+            }
+            case "--tags" -> setTagVocabulary(defaultTagVocabulary(Integer.parseInt(value)));
+            case "--max-tags" -> setMaxTagsPerNote(Integer.parseInt(value));
+            case "--dated" -> setDatedFraction(Double.parseDouble(value));
+            case "--median-lines" -> setBodyLines(Integer.parseInt(value), Math.max(maxLines, Integer.parseInt(value)));
+            case "--max-lines" -> setBodyLines(Math.min(medianLines, Integer.parseInt(value)), Integer.parseInt(value));
+            case "--scratch" -> setScratchNoteCount(Integer.parseInt(value));
+            case "--queries" -> setQueryCount(Integer.parseInt(value));
+            case "--templates" -> setTemplateCount(Integer.parseInt(value));
+            default -> throw new IllegalArgumentException("Unknown option: " + option);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: CorpusGenerator <dataDir> [options]");
+        System.err.println("Writes a synthetic Snotes data directory. The directory must be empty or not exist.");
+        System.err.println("  --notes N          number of notes (default 10000)");
+        System.err.println("  --seed N           random seed (default " + DEFAULT_SEED + ")");
+        System.err.println("  --years A-B        year span for dated notes (default 2015-2024)");
+        System.err.println("  --tags N           tag vocabulary size (default 100)");
+        System.err.println("  --max-tags N       maximum tags per note (default 3)");
+        System.err.println("  --dated F          fraction of notes that are dated, 0 to 1 (default 0.9)");
+        System.err.println("  --median-lines N   median note length in lines (default 6)");
+        System.err.println("  --max-lines N      maximum note length in lines (default 200)");
+        System.err.println("  --scratch N        number of scratch notes (default 3)");
+        System.err.println("  --queries N        number of saved queries (default 10)");
+        System.err.println("  --templates N      number of templates (default 5)");
+    }
+}
@@ -4,6 +4,10 @@ import ca.corbett.extras.io.FileSystemUtil;
 import ca.corbett.extras.progress.MultiProgressDialog;
 import ca.corbett.extras.progress.SimpleProgressAdapter;
 import ca.corbett.snotes.AppConfig;
+import ca.corbett.snotes.metrics.Counter;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.SaveEvent;
+import ca.corbett.snotes.metrics.Timer;
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.model.Query;
 import ca.corbett.snotes.model.Template;
@@ -13,14 +17,27 @@ import javax.swing.SwingUtilities;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -43,6 +60,12 @@ public class DataManager {
      */
     public enum CollisionStrategy {OVERWRITE, APPEND, ABORT}
 
+    /**
+     * The file formats supported by exportNotes(). ZIP preserves our data directory layout
+     * (and can be imported again), and JSONL writes one JSON object per Note per line.
+     */
+    public enum ExportFormat {ZIP, JSONL}
+
     /**
      * Callers can implement this to be notified when loadAll() completes.
      */
@@ -68,17 +91,104 @@ public class DataManager {
         void onNoteDeleted(Note note);
     }
 
+    /**
+     * Callers can implement this to be told about every Note that is added, updated or removed,
+     * so that they can keep their own indexes or caches up to date. See NoteChange and addNoteChangeListener().
+     */
+    @FunctionalInterface
+    public interface NoteChangeListener {
+        /**
+         * The given Notes have changed. Invoked on a background thread (never the EDT), one batch at a time,
+         * in the order the changes were made. The first batch after subscribing lists every Note that was
+         * already loaded as ADDED. Listeners should be quick about it, since every other listener waits.
+         *
+         * @param changes The changes, at most one per Note. The list can't be modified.
+         */
+        void notesChanged(List<NoteChange> changes);
+    }
+
+    /**
+     * Callers can implement this to be notified when an asynchronous save completes.
+     * See saveAsync() and saveScratchAsync().
+     */
+    public interface SaveListener {
+        /**
+         * The given Note has been successfully written to disk. Invoked on the Swing EDT.
+         */
+        void saveComplete(Note note);
+
+        /**
+         * The given Note could not be written to disk. The Note has been marked dirty again,
+         * so that a later save will retry. Invoked on the Swing EDT.
+         */
+        void saveFailed(Note note, IOException ioe);
+    }
+
+    /**
+     * Callers can implement this to be notified when a bulk import completes. See importNotes().
+     */
+    @FunctionalInterface
+    public interface ImportListener {
+        /**
+         * The import is finished, whether it succeeded, failed, or was canceled. Invoked on the Swing EDT.
+         */
+        void importComplete(ImportReport report);
+    }
+
+    /**
+     * Callers can implement this to be notified when a bulk export completes. See exportNotes().
+     */
+    @FunctionalInterface
+    public interface ExportListener {
+        /**
+         * The export is finished, whether it succeeded, failed, or was canceled. Invoked on the Swing EDT.
+         */
+        void exportComplete(ExportReport report);
+    }
+
+    /**
+     * The longest we are willing to wait for queued background saves to finish,
+     * either before a synchronous save, or on shutdown.
+     */
+    private static final long SAVE_QUEUE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * The longest we are willing to wait for NoteChangeListeners to hear about everything, on shutdown.
+     */
+    private static final long NOTE_CHANGE_TIMEOUT_SECONDS = 5;
+
+    private static final Timer saveTimer = Metrics.getInstance().timer("save.note");
+    private static final Timer saveAllTimer = Metrics.getInstance().timer("save.all");
+    private static final Counter contextCacheHits = Metrics.getInstance().counter("cache.templateContext.hit");
+    private static final Counter contextCacheMisses = Metrics.getInstance().counter("cache.templateContext.miss");
+
+    /**
+     * Rough per-object sizes for estimateNoteMemory(). These are ballpark figures for a 64-bit JVM with
+     * compressed pointers: a Note with its TagList, source File and path, and one Tag with its String.
+     */
+    private static final long NOTE_OVERHEAD_BYTES = 320;
+    private static final long TAG_OVERHEAD_BYTES = 72;
+    private static final long STRING_OVERHEAD_BYTES = 40;
+
+    private final SaveQueue saveQueue;
+    private final Map<Note, ScratchJournal> scratchJournals;
+    private final Map<Note, Integer> largeNoteEditors; // how many editors have each large note's pages open
     private final List<NoteDeletionListener> noteDeletionListeners;
-    private final List<Note> notes;
+    private final NoteChangeBus noteChanges;
+    private final NoteRegistry notes;
     private final List<Query> queries;
     private final List<Template> templates;
-    private final List<Note> scratchNotes;
+    private final NoteRegistry scratchNotes;
     private final AtomicInteger loadProgress;
+    private final TemplateContextCache templateContextCache;
+    private final ExecutorService contextExecutor;
 
     private final File dataDir;
     private final File metadataDir;
     private final File staticDir;
     private final File scratchDir;
+    private volatile long largeNoteThreshold;
+    private volatile NotePreload notePreload;
 
     /**
      * Creates a new DataManager with empty caches and a data directory
@@ -86,24 +196,96 @@ public class DataManager {
      */
     public DataManager() {
         this(AppConfig.getInstance().getDataDirectory());
+        setLargeNoteThreshold(AppConfig.getInstance().getLargeNoteThreshold());
+        registerGauges();
     }
 
     /**
-     * Package-private constructor for unit tests. Allows a custom data directory to be specified
-     * directly, bypassing AppConfig entirely so that the full application need not be initialized.
+     * Creates a new DataManager for the given data directory, bypassing AppConfig entirely so that
+     * the full application need not be initialized. This is for unit tests and command-line tools.
+     * No metrics gauges are registered for a DataManager created this way.
      */
-    DataManager(File dataDir) {
+    public DataManager(File dataDir) {
         this.noteDeletionListeners = new CopyOnWriteArrayList<>();
-        this.notes = new CopyOnWriteArrayList<>();
+        this.noteChanges = new NoteChangeBus();
+        this.notes = new NoteRegistry();
         this.queries = new CopyOnWriteArrayList<>();
         this.templates = new CopyOnWriteArrayList<>();
-        this.scratchNotes = new CopyOnWriteArrayList<>();
+        this.scratchNotes = new NoteRegistry();
         loadProgress = new AtomicInteger(0);
+        this.saveQueue = new SaveQueue();
+        this.scratchJournals = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.largeNoteEditors = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.templateContextCache = new TemplateContextCache();
+        this.contextExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Snotes-TemplateContext");
+            thread.setDaemon(true); // nothing to flush; never hold up JVM exit.
+            return thread;
+        });
         this.dataDir = dataDir;
         // These directories may not exist, but that's okay... loadAll() will deal with it:
         this.metadataDir = new File(dataDir, METADATA_DIR);
         this.staticDir = new File(dataDir, STATIC_DIR);
         this.scratchDir = new File(dataDir, SCRATCH_DIR);
+        this.largeNoteThreshold = SnotesIO.NO_LARGE_NOTES;
+    }
+
+    /**
+     * Sets the size, in bytes, above which a Note file is treated as a large note: only its tags are
+     * read when it is loaded, and its text stays on disk until something needs it. Large notes are edited
+     * a page at a time, and saving one only rewrites the pages that changed. See LargeNoteBody.
+     * This applies to Notes loaded from now on. Scratch notes are never treated as large.
+     *
+     * @param thresholdBytes The threshold in bytes. Zero or less means that no Note is treated as large.
+     */
+    public void setLargeNoteThreshold(long thresholdBytes) {
+        this.largeNoteThreshold = thresholdBytes <= 0 ? SnotesIO.NO_LARGE_NOTES : thresholdBytes;
+    }
+
+    /**
+     * Hands us Notes that have been loading since before we existed, for the next loadAll() to use instead of
+     * reading every Note all over again. They are only used if they are being loaded from our data directory
+     * with our large note threshold; otherwise they are ignored, and we load the Notes ourselves as usual.
+     *
+     * @param preload The preload to use, or null for none.
+     */
+    public void setNotePreload(NotePreload preload) {
+        this.notePreload = preload;
+    }
+
+    /**
+     * Returns the text of the given Note, if it is a large Note whose text is being read from disk
+     * a page at a time. Editors should work with the pages rather than the whole text in that case.
+     *
+     * @param note Any Note.
+     * @return The Note's LargeNoteBody, or null if this is a regular Note, with its text in memory.
+     */
+    public LargeNoteBody getLargeNoteBody(Note note) {
+        return note.getTextSource() instanceof LargeNoteBody body ? body : null;
+    }
+
+    /**
+     * Behaves like getLargeNoteBody(), and also records that an editor is now working with the returned
+     * pages. While it is, the Note's text stays on disk: packYear() refuses to pack its year, since that
+     * would pull the text into memory and leave the editor writing into pages that nothing reads any more.
+     * Every body opened this way must be released with closeLargeNoteBody().
+     *
+     * @param note Any Note.
+     * @return The Note's LargeNoteBody, or null if this is a regular Note (in which case nothing is recorded).
+     */
+    public LargeNoteBody openLargeNoteBody(Note note) {
+        LargeNoteBody body = getLargeNoteBody(note);
+        if (body != null) {
+            largeNoteEditors.merge(note, 1, Integer::sum);
+        }
+        return body;
+    }
+
+    /**
+     * Records that an editor is done with the pages it opened with openLargeNoteBody().
+     */
+    public void closeLargeNoteBody(Note note) {
+        largeNoteEditors.computeIfPresent(note, (key, count) -> count > 1 ? count - 1 : null);
     }
 
     /**
@@ -136,7 +318,7 @@ public class DataManager {
      */
     public boolean hasCollision(Note note) {
         File savePath = SnotesIO.computeFile(dataDir, note);
-        return savePath.exists()
+        return existsOnDisk(savePath)
             && (note.getSourceFile() == null || !savePath.equals(note.getSourceFile()));
     }
 
@@ -173,42 +355,52 @@ public class DataManager {
      * @param note The Note object to save.
      */
     public void save(Note note, CollisionStrategy collisionStrategy) throws IOException {
-        // If the given note is not in our cache, something is wrong (it was deleted?)
-        if (!notes.contains(note) && !scratchNotes.contains(note)) {
-            throw new IOException("Request to save a Note that is not in cache: " + note);
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        try {
+            event.filesWritten = saveNow(note, collisionStrategy) ? 1 : 0;
+            event.succeeded = true;
         }
+        finally {
+            saveTimer.recordSince(startTime);
+            event.operation = SaveEvent.SAVE;
+            event.commit();
+        }
+    }
+
+    /**
+     * Does the actual work of save(Note, CollisionStrategy), and returns whether anything was written.
+     */
+    private boolean saveNow(Note note, CollisionStrategy collisionStrategy) throws IOException {
+        // Any background saves must land first, so they don't clobber this one:
+        flushPendingSaves();
 
-        File savePath = SnotesIO.computeFile(dataDir, note);
         // Capture the old source file BEFORE saveNote() updates it, so we can clean it up afterwards
         // regardless of which code path we take below:
         File oldSourceFile = note.getSourceFile();
-
-        if (hasCollision(note)) {
-            if (savePath.exists()) {
-                handleNoteCollision(note, savePath, collisionStrategy);
-            }
-
-            // At this point, there's either no existing file to worry about, or the collision
-            // has been dealt with above. Either way, we can proceed with the save.
-
-            // Ensure the target directory exists before attempting to write:
-            File targetDir = savePath.getParentFile();
-            if (targetDir != null && !targetDir.exists() && !targetDir.mkdirs()) {
-                throw new IOException("Failed to create directory for note: " + targetDir.getAbsolutePath());
-            }
-
-            SnotesIO.saveNote(note, savePath); // updates the Note's source file to the new location + marks it clean.
+        File savePath = prepareNoteSave(note, collisionStrategy);
+        if (SnotesIO.isUnchanged(note, savePath)) {
+            note.markClean(); // it was touched, but not actually changed. Nothing to write.
+            log.fine("Note is unchanged: " + Note.getRelativePath(note, dataDir));
+            return false;
         }
-        else {
-            // Either the Note's source file is already at the computed save path (in-place overwrite),
-            // or savePath doesn't exist yet (first-time save with no collision). Save to the computed path.
-            SnotesIO.saveNote(note, savePath);
+
+        // Ensure the target directory exists before attempting to write:
+        File targetDir = savePath.getParentFile();
+        if (targetDir != null && !targetDir.exists() && !targetDir.mkdirs()) {
+            throw new IOException("Failed to create directory for note: " + targetDir.getAbsolutePath());
         }
 
+        SnotesIO.saveNote(note, savePath); // updates the Note's source file to the new location + marks it clean.
+        notes.reindex(note);
+        scratchNotes.reindex(note);
+        templateContextCache.invalidate(note);
+
         // Clean up the old source file if it differs from where we just saved.
-        // This covers both scratch note promotion (no collision path above) and note relocation
-        // (collision path above). Without this step outside the collision block, a scratch file
-        // would survive on disk any time the first save has no collision.
+        // This covers both scratch note promotion (no collision) and note relocation
+        // (collision). Without this step, a scratch file would survive on disk any time
+        // the first save has no collision.
         if (oldSourceFile != null && oldSourceFile.exists() && !oldSourceFile.equals(savePath)) {
             if (!oldSourceFile.delete()) {
                 // This is not fatal, but it is wonky... warn but proceed:
@@ -219,9 +411,136 @@ public class DataManager {
         // If this was a scratch note, move it from the scratch list to the main notes list:
         if (scratchNotes.remove(note)) {
             notes.add(note); // the note is now "real" and will show up in Query results.
+            scratchJournals.remove(note);
+            deleteScratchJournal(oldSourceFile);
         }
+        noteChanges.noteChanged(note);
 
         log.info("Saved note: " + Note.getRelativePath(note, dataDir));
+        return true;
+    }
+
+    /**
+     * Behaves like save(Note, CollisionStrategy), except that the actual disk write happens later,
+     * on a background thread. Everything else (computing the save location, dealing with collisions,
+     * promoting scratch notes) happens immediately on the calling thread, so when this method returns,
+     * the Note already has its new source file and is marked clean, and the in-memory caches are up to date.
+     * <p>
+     * Repeated saves of the same Note are coalesced if the earlier one hasn't been written yet,
+     * and writes always land in the order they were requested. The given listener (if any) is
+     * notified on the Swing EDT once the write completes or fails. If it fails, the Note
+     * is marked dirty again. Large notes are spliced on the background thread instead of being
+     * snapshotted (see LargeNoteBody), so their saves aren't coalesced, but they still land in order.
+     * </p>
+     *
+     * @param note              The Note object to save.
+     * @param collisionStrategy What to do if the Note's new location is already taken.
+     * @param listener          An optional SaveListener to be notified when the write is done. Can be null.
+     * @throws IOException If the save could not be queued (for example, a collision with strategy ABORT).
+     */
+    public void saveAsync(Note note, CollisionStrategy collisionStrategy, SaveListener listener) throws IOException {
+        File oldSourceFile = note.getSourceFile();
+        File savePath = prepareNoteSave(note, collisionStrategy);
+        LargeNoteBody body = getLargeNoteBody(note);
+        if (body != null) {
+            // Snapshotting a large note would mean reading all of it into memory, so it is spliced instead:
+            submitLargeNoteSave(note, body, savePath, listener);
+            return;
+        }
+        File fileToDelete = (oldSourceFile != null && !oldSourceFile.equals(savePath)) ? oldSourceFile : null;
+
+        // Snapshot the content now, so the caller is free to keep editing the Note:
+        byte[] content = SnotesIO.toBytes(note);
+        String hash = SnotesIO.contentHash(content);
+        if (fileToDelete == null && SnotesIO.isUnchanged(note, savePath, hash)) {
+            note.markClean(); // it was touched, but not actually changed. Nothing to write.
+            log.fine("Note is unchanged: " + Note.getRelativePath(note, dataDir));
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.saveComplete(note));
+            }
+            return;
+        }
+        note.setSourceFile(savePath);
+        note.setSavedContentHash(hash);
+        note.markClean();
+        notes.reindex(note);
+        scratchNotes.reindex(note);
+        templateContextCache.invalidate(note);
+        saveQueue.submit(note, savePath, content, fileToDelete, listener);
+
+        // If this was a scratch note, move it from the scratch list to the main notes list:
+        if (scratchNotes.remove(note)) {
+            notes.add(note); // the note is now "real" and will show up in Query results.
+            scratchJournals.remove(note);
+            if (oldSourceFile != null) {
+                // The scratch file is only removed if the write above succeeds. Its journal goes with it:
+                saveQueue.submitTask(note, "Remove scratch journal", () -> {
+                    if (!oldSourceFile.exists()) {
+                        deleteScratchJournal(oldSourceFile);
+                    }
+                }, null);
+            }
+        }
+        noteChanges.noteChanged(note); // as far as our listeners are concerned, it's saved
+
+        log.fine("Queued save for note: " + Note.getRelativePath(note, dataDir));
+    }
+
+    /**
+     * Does the bookkeeping for a save of the given large Note right away, just as saveAsync() does for any
+     * other Note, and queues up the write itself. The write splices the Note's file (see LargeNoteBody),
+     * which for a note of several megabytes is still far too slow to do on the EDT. If the write fails,
+     * the Note is marked dirty again.
+     *
+     * @param savePath The Note's new location, from prepareNoteSave().
+     * @param listener An optional SaveListener to be notified (on the EDT) when the write is done. Can be null.
+     * @return true if a write was queued, false if the Note was unchanged.
+     * @throws IOException If the write could not be queued.
+     */
+    private boolean submitLargeNoteSave(Note note, LargeNoteBody body, File savePath, SaveListener listener)
+        throws IOException {
+        File oldSourceFile = note.getSourceFile();
+        String tagLine = note.getPersistenceTagLine();
+        if (body.isUnchanged(tagLine, savePath)) {
+            note.markClean(); // it was touched, but not actually changed. Nothing to write.
+            log.fine("Large note is unchanged: " + Note.getRelativePath(note, dataDir));
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.saveComplete(note));
+            }
+            return false;
+        }
+        note.setSourceFile(savePath);
+        note.markClean();
+        notes.reindex(note);
+        templateContextCache.invalidate(note);
+        saveQueue.submitTask(note, "Large note save: " + savePath.getName(), () -> {
+            try {
+                File targetDir = savePath.getParentFile();
+                if (targetDir != null && !targetDir.exists() && !targetDir.mkdirs()) {
+                    throw new IOException("Failed to create directory for note: " + targetDir.getAbsolutePath());
+                }
+                body.writeTo(savePath, tagLine);
+            }
+            catch (IOException ioe) {
+                SwingUtilities.invokeLater(() -> {
+                    note.markDirty(); // so the next save (or saveAll) will try again
+                    if (listener != null) {
+                        listener.saveFailed(note, ioe);
+                    }
+                });
+                throw ioe;
+            }
+            if (oldSourceFile != null && oldSourceFile.exists() && !oldSourceFile.equals(savePath)
+                && !oldSourceFile.delete()) {
+                log.warning("Failed to delete old source file for note: " + oldSourceFile.getAbsolutePath());
+            }
+            log.info("Saved large note (background): " + savePath.getName());
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.saveComplete(note));
+            }
+        }, null);
+        noteChanges.noteChanged(note);
+        return true;
     }
 
     /**
@@ -245,16 +564,222 @@ public class DataManager {
             throw new IOException("Scratch note has no source file: " + note);
         }
 
+        flushPendingSaves();
         SnotesIO.saveNote(note, note.getSourceFile()); // save in-place in the scratch directory
+        compactScratchJournal(note);
+        deleteScratchJournal(note.getSourceFile());
         log.info("Saved scratch note: " + note.getSourceFile().getName());
     }
+
+    /**
+     * Behaves like saveScratch(), except that the actual disk write happens later, on a background thread.
+     * This is intended for explicit saves from the editor, which should never block the UI. The Note is marked
+     * clean immediately, and the given listener (if any) is notified on the Swing EDT once the write
+     * completes or fails. If it fails, the Note is marked dirty again. The Note's scratch journal
+     * (if any) is removed once the write succeeds, since the scratch file is now up to date.
+     *
+     * @param note     Any scratch Note. Must not be null. If this Note is not a scratch note, this method does nothing.
+     * @param listener An optional SaveListener to be notified when the write is done. Can be null.
+     * @throws IOException If the save could not be queued.
+     */
+    public void saveScratchAsync(Note note, SaveListener listener) throws IOException {
+        if (!scratchNotes.contains(note)) {
+            log.warning("saveScratchAsync() invoked on a non-scratch Note: " + note.getSourceFile());
+            return;
+        }
+        if (note.getSourceFile() == null) {
+            throw new IOException("Scratch note has no source file: " + note);
+        }
+
+        byte[] content = SnotesIO.toBytes(note);
+        String hash = SnotesIO.contentHash(content);
+        File scratchFile = note.getSourceFile();
+        File journalFile = ScratchJournal.journalFileFor(scratchFile);
+        if (SnotesIO.isUnchanged(note, scratchFile, hash)) {
+            // The scratch file is already up to date, so its journal is redundant. Nothing to write:
+            note.markClean();
+            saveQueue.submitTask(note, "Remove scratch journal", () -> deleteScratchJournal(scratchFile), null);
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.saveComplete(note));
+            }
+        }
+        else {
+            note.setSavedContentHash(hash);
+            note.markClean();
+            saveQueue.submit(note, scratchFile, content, journalFile, listener);
+        }
+        compactScratchJournal(note);
+    }
+
+    /**
+     * Opens an append-only journal for the given scratch Note, with the given editor state as its starting point.
+     * The caller records each subsequent edit in the returned journal, and periodically invokes
+     * flushScratchJournal() to get those edits onto disk. This is far cheaper than rewriting the whole
+     * scratch file on every auto-save, and if the application crashes, the journal is replayed
+     * on the next startup. See ScratchJournal for details.
+     *
+     * @param note The scratch Note being edited.
+     * @param date The current raw value of the editor's date field.
+     * @param tags The current raw value of the editor's tag field.
+     * @param text The current text in the editor.
+     * @return A new ScratchJournal, or null if the given Note is not a scratch note.
+     */
+    public ScratchJournal openScratchJournal(Note note, String date, String tags, String text) {
+        if (!scratchNotes.contains(note) || note.getSourceFile() == null) {
+            log.warning("openScratchJournal() invoked on a non-scratch Note: " + note.getSourceFile());
+            return null;
+        }
+        ScratchJournal journal = new ScratchJournal(ScratchJournal.journalFileFor(note.getSourceFile()),
+                                                    date, tags, text);
+        scratchJournals.put(note, journal);
+        return journal;
+    }
+
+    /**
+     * Queues up all edits recorded in the given Note's scratch journal to be appended to disk,
+     * in order with any queued background saves. Does nothing if there are no recorded edits,
+     * or if there is no open journal for the given Note. The current editor state is only needed
+     * if a previous journal write failed, in which case the journal is restarted from that state.
+     * This should be invoked on the EDT, as that is where edits are recorded.
+     *
+     * @param note The scratch Note being edited.
+     * @param date The current raw value of the editor's date field.
+     * @param tags The current raw value of the editor's tag field.
+     * @param text Supplies the current text in the editor.
+     * @throws IOException If the journal write could not be queued.
+     */
+    public void flushScratchJournal(Note note, String date, String tags, Supplier<String> text) throws IOException {
+        ScratchJournal journal = scratchJournals.get(note);
+        if (journal == null || !journal.hasPendingEdits()) {
+            return;
+        }
+        boolean startNewJournal = journal.isStartingNewJournal();
+        List<String> records = journal.drainRecords(date, tags, text);
+        journal.markStarted();
+        saveQueue.submitTask(note, "Scratch journal write: " + journal.getJournalFile().getName(),
+                             () -> journal.write(records, startNewJournal),
+                             journal::markFailed);
+    }
+
+    /**
+     * Returns the number of background saves (and related tasks, like scratch journal updates)
+     * that have been queued and haven't finished yet.
+     */
+    public int getPendingSaveCount() {
+        return saveQueue.getQueuedCount();
+    }
+
+    /**
+     * Returns a rough estimate of the heap used by our loaded Notes, in bytes: the Note objects,
+     * their tags, and their text. The text of large notes is not counted, since it stays on disk.
+     * This visits every Note, so it is not something to call from hot code.
+     */
+    public long estimateNoteMemory() {
+        long total = 0;
+        for (NoteRegistry registry : List.of(notes, scratchNotes)) {
+            for (Note note : registry) {
+                total += NOTE_OVERHEAD_BYTES + note.getTags().size() * TAG_OVERHEAD_BYTES;
+                if (note.getTextSource() == null) {
+                    // Compact strings are one byte per character, unless there's anything outside Latin-1:
+                    total += STRING_OVERHEAD_BYTES + note.getText().length();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Publishes our corpus size, index sizes and save queue depth as gauges in the Metrics registry,
+     * for the Performance window and for Flight Recorder. Only the application's own DataManager does this.
+     */
+    private void registerGauges() {
+        Metrics metrics = Metrics.getInstance();
+        metrics.gauge("corpus.notes", notes::size);
+        metrics.gauge("corpus.scratchNotes", scratchNotes::size);
+        metrics.gauge("corpus.queries", queries::size);
+        metrics.gauge("corpus.templates", templates::size);
+        metrics.gauge("index.notesByPath", notes::getPathIndexSize);
+        metrics.gauge("index.templateContexts", templateContextCache::size);
+        metrics.gauge("save.queue.pending", this::getPendingSaveCount);
+    }
+
+    /**
+     * Blocks until all queued background saves have been written to disk (or have failed).
+     * Synchronous saves do this automatically, so callers normally don't need to.
+     * Note that SaveListeners for those saves are notified on the EDT, so if this is
+     * invoked on the EDT, they will only be notified after the caller returns.
+     *
+     * @return true if everything was flushed, false if we gave up waiting.
+     */
+    public boolean flushPendingSaves() {
+        return saveQueue.flush(SAVE_QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Flushes any queued background saves to disk and stops the background save thread.
+     * This should be invoked once, on application shutdown. After this, the asynchronous save
+     * methods will throw an IOException, though synchronous saves will still work.
+     *
+     * @return true if all queued saves were written, false if we gave up waiting.
+     */
+    public boolean shutdown() {
+        log.info("DataManager shutting down; flushing queued saves.");
+        contextExecutor.shutdownNow();
+        boolean allSaved = saveQueue.shutdown(SAVE_QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        noteChanges.shutdown(NOTE_CHANGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return allSaved;
+    }
     
+    /**
+     * Gathers the context Notes for the given Template: the most recent Notes that carry any of the
+     * Template's tags, as many as the Template's context setting asks for. The work is done on a
+     * background thread, so that executing a Template never has to wait for a scan of the whole
+     * note collection. Results are cached per Template, and the cache is only invalidated when
+     * a Note that carries one of the Template's tags (or is already in its context) changes,
+     * so repeated executions of the same Template are usually answered immediately.
+     * <p>
+     * The returned future is already complete if the Template has no context, or if its context
+     * is cached. Otherwise, it completes on the background thread, so callers that want to update
+     * the UI with the result must marshall back to the EDT themselves.
+     * </p>
+     *
+     * @param template The Template whose context we want. Must not be null.
+     * @return A future List of context Notes, sorted by date with the most recent last. May be empty.
+     */
+    public CompletableFuture<List<Note>> gatherTemplateContext(Template template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Cannot gather context for a null Template.");
+        }
+        if (!TemplateContextCache.hasContext(template)) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        List<Note> cached = templateContextCache.get(template);
+        if (cached != null) {
+            contextCacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        contextCacheMisses.increment();
+        return CompletableFuture.supplyAsync(() -> {
+            long generation = templateContextCache.getGeneration();
+            List<Note> context = TemplateContextCache.compute(template, notes.snapshot());
+            templateContextCache.put(template, generation, context);
+            return context;
+        }, contextExecutor);
+    }
+
+    /**
+     * Returns the data directory that we load from and save to.
+     */
+    public File getDataDirectory() {
+        return dataDir;
+    }
+
     /**
      * Returns a defensive copy of the list of Notes currently loaded in memory.
      * Modifying this list will not affect the DataManager's internal state.
      */
     public List<Note> getNotes() {
-        return new ArrayList<>(notes);
+        return notes.snapshot();
     }
 
     /**
@@ -262,7 +787,7 @@ public class DataManager {
      * Modifying this list will not affect the DataManager's internal state.
      */
     public List<Note> getScratchNotes() {
-        return new ArrayList<>(scratchNotes);
+        return scratchNotes.snapshot();
     }
 
     /**
@@ -359,15 +884,35 @@ public class DataManager {
 
     /**
      * Deletes the given Note's source file (if it had one) and removes it from our internal cache.
+     * If the Note lives in a packed year, that year is unpacked first, so that the packed copy
+     * doesn't bring the Note back on the next load.
      *
      * @param note Any Note instance.
+     * @throws IOException If the Note's year can't be unpacked. Nothing is deleted in that case,
+     *                     and the Note stays in our cache.
      */
-    public void delete(Note note) {
+    public void delete(Note note) throws IOException {
         if (note == null) {
             throw new IllegalArgumentException("Cannot delete null Note.");
         }
+
+        // Do this before anything else, so a failure leaves the Note exactly as it was:
+        unpackYearOf(note.getSourceFile());
+
+        // Make sure a queued background save doesn't bring the file back after we delete it:
+        saveQueue.discard(note);
+        flushPendingSaves();
+
         boolean wasRealNote = notes.remove(note);
         boolean wasScratchNote = scratchNotes.remove(note);
+        templateContextCache.invalidate(note);
+        if (wasRealNote) {
+            noteChanges.noteRemoved(note);
+        }
+        scratchJournals.remove(note);
+        if (wasScratchNote && note.getSourceFile() != null) {
+            deleteScratchJournal(note.getSourceFile());
+        }
         if (note.getSourceFile() != null) {
             if (!note.getSourceFile().delete()) {
                 // This is not fatal, but it is wonky... warn but proceed:
@@ -543,42 +1088,176 @@ public class DataManager {
     /**
      * Saves all Notes, Queries, and Templates to the given data directory, if they are marked as
      * needing to be saved.
+     * <p>
+     * All dirty objects are group-committed: their new content is written out to temp files in
+     * parallel, then each temp file is renamed over its target, and then each affected directory
+     * is synced once. If any temp file fails to write, nothing is changed on disk and everything
+     * stays dirty. Notes that would collide with an existing file are skipped (they stay dirty),
+     * and are reported in the thrown IOException after everything else has been saved.
+     * </p>
+     * <p>
+     * Large notes are the exception: they are written on the background save thread, as with saveAsync(),
+     * so that splicing megabytes of text doesn't hold up the caller. If one of those writes fails,
+     * the failure is logged and the note is marked dirty again.
+     * </p>
      *
      * @throws IOException If any save fails.
      */
     public void saveAll() throws IOException {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        try {
+            event.filesWritten = saveAllNow();
+            event.succeeded = true;
+        }
+        finally {
+            saveAllTimer.recordSince(startTime);
+            event.operation = SaveEvent.SAVE_ALL;
+            event.commit();
+        }
+    }
+
+    /**
+     * Does the actual work of saveAll(), and returns the number of files written.
+     */
+    private int saveAllNow() throws IOException {
+        flushPendingSaves(); // let any queued background saves land first
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+        Set<File> batchTargets = new HashSet<>();
+        List<String> problems = new ArrayList<>();
+
         // Save all scratch notes in-place (this list should be quite small):
         for (Note scratchNote : scratchNotes) {
             if (scratchNote.isDirty()) {
-                saveScratch(scratchNote);
+                File targetFile = scratchNote.getSourceFile();
+                if (targetFile == null) {
+                    problems.add("Scratch note has no source file: " + scratchNote);
+                    continue;
+                }
+                byte[] content = SnotesIO.toBytes(scratchNote);
+                String hash = SnotesIO.contentHash(content);
+                Runnable onCommit = () -> {
+                    scratchNote.setSavedContentHash(hash);
+                    scratchNote.markClean();
+                    compactScratchJournal(scratchNote);
+                    deleteScratchJournal(targetFile);
+                    log.info("Saved scratch note: " + targetFile.getName());
+                };
+                if (SnotesIO.isUnchanged(scratchNote, targetFile, hash)) {
+                    onCommit.run(); // the file is already up to date
+                    continue;
+                }
+                batchTargets.add(targetFile.getAbsoluteFile());
+                batch.add(targetFile, content, onCommit);
             }
         }
 
-        // Go through all notes and save the dirty ones.
-        // The assumption here is that only a small number of notes will be dirty at any given time.
-        // So, this is done on whatever thread invokes this method.
-        // We may want to consider moving this to a worker thread in future.
-        // The advantage of this approach is that IOExceptions can be surfaced to the caller immediately.
-        // The drawback is that if ANY note fails to save, all subsequent notes remain dirty.
+        // Go through all notes and stage the dirty ones.
+        // The assumption here is that only a small number of notes will be dirty at any given time,
+        // but after a bulk edit there may be many, which is where the group commit pays off.
+        List<Note> largeNotes = new ArrayList<>();
         for (Note note : notes) {
+            if (note.isDirty() && SnotesIO.isLargeNote(note)) {
+                largeNotes.add(note); // these are spliced rather than rewritten; see below
+                continue;
+            }
             if (note.isDirty()) {
-                save(note);
+                File savePath = SnotesIO.computeFile(dataDir, note).getAbsoluteFile();
+                File oldSourceFile = note.getSourceFile();
+                byte[] content = SnotesIO.toBytes(note);
+                String hash = SnotesIO.contentHash(content);
+                if (SnotesIO.isUnchanged(note, savePath, hash)) {
+                    note.markClean(); // touched, but not actually changed. Nothing to write.
+                    continue;
+                }
+                try {
+                    unpackYearOf(oldSourceFile);
+                    unpackYearOf(savePath);
+                }
+                catch (IOException ioe) {
+                    problems.add("Unable to unpack notes for " + savePath.getAbsolutePath() + ": " + ioe.getMessage());
+                    continue;
+                }
+
+                // Two dirty notes in this batch may also want the same file, so check that too:
+                if (hasCollision(note) || !batchTargets.add(savePath)) {
+                    problems.add("Note filename collision detected at " + savePath.getAbsolutePath()
+                                     + " for note: " + note);
+                    continue;
+                }
+                batch.add(savePath, content, () -> {
+                    note.setSourceFile(savePath);
+                    note.setSavedContentHash(hash);
+                    note.markClean();
+                    notes.reindex(note);
+                    templateContextCache.invalidate(note);
+                    noteChanges.noteChanged(note);
+                    if (oldSourceFile != null && oldSourceFile.exists() && !oldSourceFile.equals(savePath)) {
+                        if (!oldSourceFile.delete()) {
+                            log.warning("Failed to delete old source file for note: "
+                                            + oldSourceFile.getAbsolutePath());
+                        }
+                    }
+                    log.info("Saved note: " + Note.getRelativePath(note, dataDir));
+                });
             }
         }
 
-        // Save all dirty Query instances:
+        // Stage all dirty Query instances:
         for (Query query : queries) {
             if (query.isDirty()) {
-                saveQuery(query);
+                File targetFile = SnotesIO.computeFile(dataDir, query);
+                batchTargets.add(targetFile.getAbsoluteFile());
+                batch.add(targetFile, SnotesIO.toBytes(query), () -> {
+                    deleteIfRelocated(query.getSourceFile(), targetFile);
+                    query.setSourceFile(targetFile);
+                    query.markClean();
+                });
             }
         }
 
-        // Save all dirty Template instances:
+        // Stage all dirty Template instances:
         for (Template template : templates) {
             if (template.isDirty()) {
-                saveTemplate(template);
+                File targetFile = SnotesIO.computeFile(dataDir, template);
+                batchTargets.add(targetFile.getAbsoluteFile());
+                batch.add(targetFile, SnotesIO.toBytes(template), () -> {
+                    deleteIfRelocated(template.getSourceFile(), targetFile);
+                    template.setSourceFile(targetFile);
+                    template.markClean();
+                });
             }
         }
+
+        int filesWritten = batch.size();
+        if (!batch.isEmpty()) {
+            log.fine("saveAll: committing " + batch.size() + " file(s).");
+            batch.commit();
+
+            // A renamed Query or Template may have changed our filename tiebreaker:
+            applyQueryOrdering();
+            applyTemplateOrdering();
+        }
+
+        // Large notes can't be staged in the batch without reading all of their text into memory,
+        // so they are spliced one at a time instead, on the background save thread like saveAsync():
+        for (Note note : largeNotes) {
+            try {
+                if (submitLargeNoteSave(note, getLargeNoteBody(note),
+                                        prepareNoteSave(note, CollisionStrategy.ABORT), null)) {
+                    filesWritten++;
+                }
+            }
+            catch (IOException ioe) {
+                problems.add("Unable to save large note " + note.getSourceFile() + ": " + ioe.getMessage());
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IOException("Some items could not be saved: " + String.join("; ", problems));
+        }
+        return filesWritten;
     }
 
     /**
@@ -605,6 +1284,66 @@ public class DataManager {
      * @throws IOException If something is wrong with the given dataDir.
      */
     public void loadAll(LoadListener listener) throws IOException {
+        List<LoaderThread<?>> loaderThreads = prepareLoad(listener);
+
+        // We'll configure the progress dialogs with a half-second delay so they don't show for quick loads:
+        String[] titles = {"Loading notes...", "Loading scratch notes...", "Loading queries...", "Loading templates..."};
+        for (int i = 0; i < loaderThreads.size(); i++) {
+            MultiProgressDialog dialog = new MultiProgressDialog(MainWindow.getInstance(), titles[i]);
+            dialog.setInitialShowDelayMS(500);
+            dialog.runWorker(loaderThreads.get(i), true);
+        }
+    }
+
+    /**
+     * Loads all Notes, Queries, and Templates from our directory, exactly as loadAll() does, except that
+     * everything is loaded right here on the calling thread, with no progress dialogs. This is for places
+     * where there is no UI to show progress in (benchmarks and command-line tools, for example).
+     * Everything has been loaded by the time this method returns.
+     *
+     * @throws IOException If something is wrong with the given dataDir.
+     */
+    public void loadAllNow() throws IOException {
+        for (LoaderThread<?> loaderThread : prepareLoad(null)) {
+            loaderThread.run();
+        }
+    }
+
+    /**
+     * Loads just the Notes (including packed Notes) from our directory, on the calling thread, and optionally
+     * the Queries as well. Unlike loadAllNow(), this never writes anything: no directories are created, and the
+     * scratch directory is left alone. This makes it safe to use while the application is also running, which
+     * is what the command-line query mode needs. Scratch Notes and Templates are not loaded.
+     *
+     * @param includeQueries Whether to load the saved Queries too. Skipping them saves a little startup time.
+     * @throws IOException If our data directory doesn't exist.
+     */
+    public void loadForQueryNow(boolean includeQueries) throws IOException {
+        if (dataDir == null || !dataDir.isDirectory()) {
+            throw new IOException("Data directory does not exist: " + (dataDir == null ? null : dataDir.getAbsolutePath()));
+        }
+        // Our countdown only covers the loaders that will actually run:
+        boolean loadQueries = includeQueries && metadataDir.isDirectory();
+        loadProgress.set(loadQueries ? 2 : 1);
+        LoaderThread<Note> noteThread = createNoteLoader(dataDir, largeNoteThreshold);
+        noteThread.addProgressListener(new ThreadListener<>(noteThread, null, this::setNotes));
+        noteThread.run();
+
+        if (loadQueries) {
+            LoaderThread<Query> queryThread = new LoaderThread<>("Queries", metadataDir, "query", false,
+                                                                 SnotesIO::loadQuery);
+            queryThread.addProgressListener(new ThreadListener<>(queryThread, null, this::setQueries));
+            queryThread.run();
+        }
+    }
+
+    /**
+     * Makes sure that our directories exist and that the scratch directory is tidy, and then returns
+     * (but does not start) the worker threads that will load Notes, scratch Notes, Queries and Templates,
+     * in that order. Each one stores its own results when it finishes, and the given listener
+     * is notified on the EDT once they all have.
+     */
+    private List<LoaderThread<?>> prepareLoad(LoadListener listener) throws IOException {
         if (dataDir == null) {
             throw new IOException("Data directory is null.");
         }
@@ -645,6 +1384,8 @@ public class DataManager {
         }
 
         // Do a quick pre-check of the scratch directory, and delete any completely empty files (length==0).
+        // Journals are checked first, because a brand-new scratch note may exist only in its journal.
+        prepareScratchJournals();
         List<File> scratchFiles = FileSystemUtil.findFiles(scratchDir, false, "txt");
         for (File scratchFile : scratchFiles) {
             if (scratchFile.length() == 0) {
@@ -662,9 +1403,29 @@ public class DataManager {
         loadProgress.set(4);
 
         // Our loader threads will load all Notes, scratch Notes, Queries, and Templates in the data directory:
-        noteThread = new LoaderThread<>("Notes", dataDir, "txt", true, SnotesIO::loadNote);
-        addSkipDirectories(noteThread); // Don't waste time scanning directories we know won't contain Notes.
-        noteThread.addProgressListener(new ThreadListener<>(noteThread, listener, this::setNotes));
+        noteThread = createNoteLoader(dataDir, largeNoteThreshold);
+        NotePreload preload = notePreload;
+        notePreload = null; // it's only good for one load
+        if (preload != null && preload.isFor(dataDir, largeNoteThreshold)) {
+            // The preload includes packed Notes, so we don't want setNotes() to add them again.
+            // But if the preload failed, our loader scanned for loose Notes itself, and we do:
+            LoaderThread<Note> preloadThread = noteThread;
+            noteThread.usePreloaded(preload.getNotes());
+            noteThread.addProgressListener(new ThreadListener<>(noteThread, listener, loadedNotes -> {
+                if (preloadThread.wasPreloaded()) {
+                    replaceNotes(loadedNotes);
+                }
+                else {
+                    setNotes(loadedNotes);
+                }
+            }));
+        }
+        else {
+            if (preload != null) {
+                log.info("Ignoring preloaded Notes, which were loaded with different settings.");
+            }
+            noteThread.addProgressListener(new ThreadListener<>(noteThread, listener, this::setNotes));
+        }
         scratchThread = new LoaderThread<>("Scratch notes", scratchDir, "txt", false, SnotesIO::loadNote);
         scratchThread.addProgressListener(new ThreadListener<>(scratchThread, listener, this::setScratchNotes));
         queryThread = new LoaderThread<>("Queries", metadataDir, "query", false, SnotesIO::loadQuery);
@@ -672,19 +1433,253 @@ public class DataManager {
         templateThread = new LoaderThread<>("Templates", metadataDir, "template", false, SnotesIO::loadTemplate);
         templateThread.addProgressListener(new ThreadListener<>(templateThread, listener, this::setTemplates));
 
-        // We'll configure the progress dialogs with a half-second delay so they don't show for quick loads:
-        MultiProgressDialog dialog1 = new MultiProgressDialog(MainWindow.getInstance(), "Loading notes...");
-        dialog1.setInitialShowDelayMS(500);
-        dialog1.runWorker(noteThread, true);
-        MultiProgressDialog dialog2 = new MultiProgressDialog(MainWindow.getInstance(), "Loading scratch notes...");
-        dialog2.setInitialShowDelayMS(500);
-        dialog2.runWorker(scratchThread, true);
-        MultiProgressDialog dialog3 = new MultiProgressDialog(MainWindow.getInstance(), "Loading queries...");
-        dialog3.setInitialShowDelayMS(500);
-        dialog3.runWorker(queryThread, true);
-        MultiProgressDialog dialog4 = new MultiProgressDialog(MainWindow.getInstance(), "Loading templates...");
-        dialog4.setInitialShowDelayMS(500);
-        dialog4.runWorker(templateThread, true);
+        return List.of(noteThread, scratchThread, queryThread, templateThread);
+    }
+
+    /**
+     * Bulk-imports all Notes found in the given directory (recursively) or zip archive into our data directory,
+     * on a worker thread with a progress dialog. This is much faster than creating and saving Notes one at a time;
+     * see NoteImporter for how it works. Imported Notes that collide with an existing Note (or with each other)
+     * are handled according to the given strategy, where ABORT means that just that Note is skipped.
+     * <p>
+     * Our in-memory caches are updated in one go once everything has been written. The given listener
+     * (if any) is then notified on the Swing EDT with a report of what happened.
+     * </p>
+     *
+     * @param source            The directory or zip file to import from. Must not be within our data directory.
+     * @param collisionStrategy What to do with imported Notes whose save location is already taken.
+     * @param listener          Optional. Notified on the EDT when the import is complete. Can be null.
+     * @throws IOException If the given source can't be imported from.
+     */
+    public void importNotes(File source, CollisionStrategy collisionStrategy, ImportListener listener)
+        throws IOException {
+        NoteImporter importer = createImporter(source, collisionStrategy);
+        importer.addProgressListener(new SimpleProgressAdapter() {
+            @Override
+            public boolean progressError(String errorSource, String errorDescription) {
+                finishImport(importer, listener);
+                return false;
+            }
+
+            @Override
+            public void progressComplete() {
+                finishImport(importer, listener);
+            }
+
+            @Override
+            public void progressCanceled() {
+                finishImport(importer, listener);
+            }
+        });
+        MultiProgressDialog dialog = new MultiProgressDialog(MainWindow.getInstance(), "Importing notes...");
+        dialog.setInitialShowDelayMS(500);
+        dialog.runWorker(importer, true);
+    }
+
+    /**
+     * Performs a bulk import synchronously, on the calling thread. This is for unit tests.
+     */
+    ImportReport importNotes(File source, CollisionStrategy collisionStrategy) throws IOException {
+        NoteImporter importer = createImporter(source, collisionStrategy);
+        importer.run();
+        applyImport(importer);
+        return importer.getReport();
+    }
+
+    private NoteImporter createImporter(File source, CollisionStrategy collisionStrategy) throws IOException {
+        if (!NoteImporter.isImportable(source)) {
+            throw new IOException("Import source must be a directory or a zip file: " + source);
+        }
+        if (source.getAbsoluteFile().toPath().normalize().startsWith(dataDir.getAbsoluteFile().toPath().normalize())) {
+            throw new IOException("Cannot import from within the data directory: " + source.getAbsolutePath());
+        }
+        flushPendingSaves(); // so that collision checks see what's really on disk
+        return new NoteImporter(source, dataDir, collisionStrategy, notes);
+    }
+
+    private void finishImport(NoteImporter importer, ImportListener listener) {
+        applyImport(importer);
+        if (listener != null) {
+            // We're on the worker thread! Marshall this back to the EDT before notifying:
+            SwingUtilities.invokeLater(() -> listener.importComplete(importer.getReport()));
+        }
+    }
+
+    /**
+     * Applies the results of a finished import to our in-memory caches, all at once.
+     */
+    private void applyImport(NoteImporter importer) {
+        List<Note> replacedNotes = importer.getReplacedNotes();
+        for (Note replaced : replacedNotes) {
+            notes.remove(replaced);
+            templateContextCache.invalidate(replaced);
+            noteChanges.noteRemoved(replaced);
+        }
+        List<Note> newNotes = importer.getNewNotes();
+        notes.addAll(newNotes);
+        newNotes.forEach(templateContextCache::invalidate);
+        newNotes.forEach(noteChanges::noteChanged);
+        if (!replacedNotes.isEmpty()) {
+            // Close any open WriterFrames for the Notes we replaced. Listeners expect to hear about this on the EDT:
+            SwingUtilities.invokeLater(() -> replacedNotes.forEach(this::fireNoteDeletedEvent));
+        }
+    }
+
+    /**
+     * Exports the given Notes to a single zip or JSONL file, on a worker thread with a progress dialog.
+     * Pass getNotes() to export everything, or the results of a Query to export a subset. Note content is
+     * streamed from disk, so this is safe to use on very large collections; see NoteExporter for details.
+     * The export can be canceled from the progress dialog, in which case no file is written.
+     *
+     * @param notesToExport The Notes to export, in the order they should be written.
+     * @param target        The file to write. Will be replaced if it already exists.
+     * @param format        The export format.
+     * @param listener      Optional. Notified on the EDT when the export is complete. Can be null.
+     * @throws IOException If the given target can't be written to.
+     */
+    public void exportNotes(List<Note> notesToExport, File target, ExportFormat format, ExportListener listener)
+        throws IOException {
+        NoteExporter exporter = createExporter(notesToExport, target, format);
+        exporter.addProgressListener(new SimpleProgressAdapter() {
+            @Override
+            public boolean progressError(String errorSource, String errorDescription) {
+                finishExport(exporter, listener);
+                return false;
+            }
+
+            @Override
+            public void progressComplete() {
+                finishExport(exporter, listener);
+            }
+
+            @Override
+            public void progressCanceled() {
+                finishExport(exporter, listener);
+            }
+        });
+        MultiProgressDialog dialog = new MultiProgressDialog(MainWindow.getInstance(), "Exporting notes...");
+        dialog.setInitialShowDelayMS(500);
+        dialog.runWorker(exporter, true);
+    }
+
+    /**
+     * Performs a bulk export synchronously, on the calling thread. This is for unit tests.
+     */
+    ExportReport exportNotes(List<Note> notesToExport, File target, ExportFormat format) throws IOException {
+        NoteExporter exporter = createExporter(notesToExport, target, format);
+        exporter.run();
+        return exporter.getReport();
+    }
+
+    private NoteExporter createExporter(List<Note> notesToExport, File target, ExportFormat format)
+        throws IOException {
+        if (notesToExport == null || target == null || format == null) {
+            throw new IllegalArgumentException("Notes, target and format are required for export.");
+        }
+        if (target.isDirectory()) {
+            throw new IOException("Export target is a directory: " + target.getAbsolutePath());
+        }
+        if (target.getAbsoluteFile().toPath().normalize().startsWith(dataDir.getAbsoluteFile().toPath().normalize())) {
+            throw new IOException("Cannot export to within the data directory: " + target.getAbsolutePath());
+        }
+        flushPendingSaves(); // so that what we stream from disk is current
+        return new NoteExporter(notesToExport, dataDir, target, format);
+    }
+
+    private void finishExport(NoteExporter exporter, ExportListener listener) {
+        if (listener != null) {
+            // We're on the worker thread! Marshall this back to the EDT before notifying:
+            SwingUtilities.invokeLater(() -> listener.exportComplete(exporter.getReport()));
+        }
+    }
+
+    /**
+     * Packs every note in the given year into a single compressed, indexed pack file in our data directory,
+     * and removes the loose files. Packed notes stay loaded, and are read from the pack from then on;
+     * saving or deleting any note in that year unpacks the whole year again automatically.
+     * Only past years can be packed, since the current year is still being written to, and neither can a year
+     * with a large note that is open in an editor (see openLargeNoteBody()). See NotePack for details.
+     *
+     * @param year The year to pack. Must be before the current year.
+     * @return The number of notes in the pack.
+     * @throws IOException If the year can't be packed. Nothing is removed in that case.
+     */
+    public int packYear(int year) throws IOException {
+        if (year >= LocalDate.now().getYear()) {
+            throw new IOException("Only past years can be packed: " + year);
+        }
+        for (Note note : notes) {
+            if (largeNoteEditors.containsKey(note) && note.hasDate() && note.getDate().getYear() == year) {
+                throw new IOException("A large note from " + year + " is open for editing. Close it first: "
+                                          + Note.getRelativePath(note, dataDir));
+            }
+        }
+        flushPendingSaves(); // every loose file must be on disk before we sweep them up
+
+        // Large notes read their text from their loose file on demand, and that file is about to go away:
+        for (Note note : notes) {
+            if (SnotesIO.isLargeNote(note) && note.hasDate() && note.getDate().getYear() == year) {
+                SnotesIO.materializeLargeNote(note);
+            }
+        }
+        return NotePack.pack(dataDir, year);
+    }
+
+    /**
+     * Unpacks the given year back into loose note files, if it's packed. Does nothing otherwise.
+     *
+     * @param year The year to unpack.
+     * @return The number of notes that were unpacked.
+     * @throws IOException If the year can't be unpacked. The pack is kept in that case.
+     */
+    public int unpackYear(int year) throws IOException {
+        File packFile = NotePack.fileFor(dataDir, year);
+        return packFile.isFile() ? NotePack.unpack(packFile) : 0;
+    }
+
+    /**
+     * Returns every year that has been packed, in ascending order.
+     */
+    public List<Integer> getPackedYears() {
+        return NotePack.findPackedYears(dataDir);
+    }
+
+    /**
+     * Reports whether the given Note currently lives in a pack file rather than in a file of its own.
+     */
+    public boolean isPacked(Note note) {
+        return note != null
+            && note.getSourceFile() != null
+            && !note.getSourceFile().exists()
+            && NotePack.findPack(dataDir, note.getSourceFile()) != null;
+    }
+
+    /**
+     * Subscribes the given listener to hear about every Note that is added, updated or removed from now on.
+     * Its first batch lists every Note that is already loaded, so it can be subscribed at any time.
+     * Scratch notes are not included until they are saved as real Notes. See NoteChange for details.
+     * Unlike our other listeners, this one is notified on a background thread, in batches.
+     */
+    public void addNoteChangeListener(NoteChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("NoteChangeListener cannot be null.");
+        }
+        noteChanges.subscribe(listener);
+    }
+
+    public void removeNoteChangeListener(NoteChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("NoteChangeListener cannot be null.");
+        }
+        noteChanges.unsubscribe(listener);
+    }
+
+    /**
+     * Blocks until every Note change so far has been delivered to our NoteChangeListeners.
+     * Normally they are collected for a moment first, so that they arrive in batches. This is for unit tests.
+     */
+    boolean flushNoteChanges() {
+        return noteChanges.flush(NOTE_CHANGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     }
 
     public void addNoteDeletionListener(NoteDeletionListener listener) {
@@ -717,13 +1712,24 @@ public class DataManager {
         return note.getSourceFile().getAbsolutePath().startsWith(scratchDir.getAbsolutePath());
     }
 
+    /**
+     * Returns a LoaderThread that will load the loose Note files (that is, everything but packed Notes)
+     * in the given data directory, skipping the directories that we know won't contain Notes.
+     */
+    static LoaderThread<Note> createNoteLoader(File dataDir, long largeNoteThreshold) {
+        LoaderThread<Note> loaderThread = new LoaderThread<>("Notes", dataDir, "txt", true,
+                                                             file -> SnotesIO.loadNote(file, largeNoteThreshold));
+        addSkipDirectories(loaderThread);
+        return loaderThread;
+    }
+
     /**
      * Invoked internally to add certain known directories to be skipped when scanning for Note objects.
      * This will be made configurable in a future ticket. Extensions will also be able to contribute
      * to this list. Note that these exclusions only apply to the Note loader thread, since the
      * other threads only search known subdirectories under the main data directory.
      */
-    private void addSkipDirectories(LoaderThread<Note> loaderThread) {
+    private static void addSkipDirectories(LoaderThread<Note> loaderThread) {
         loaderThread.addDirectoryToSkip(METADATA_DIR); // There are no Notes in the metadata directory.
         loaderThread.addDirectoryToSkip(".hg"); // Don't scan the top-level Mercurial directory.
         loaderThread.addDirectoryToSkip("images"); // There are no Notes in the images directory.
@@ -731,8 +1737,83 @@ public class DataManager {
     }
 
     private void setNotes(List<Note> notes) {
+        List<Note> allNotes = new ArrayList<>(notes);
+        allNotes.addAll(loadPackedNotes(dataDir, notes));
+        replaceNotes(allNotes);
+    }
+
+    /**
+     * Replaces all of our Notes with the given ones, which must already include any packed Notes.
+     */
+    private void replaceNotes(List<Note> allNotes) {
         this.notes.clear();
-        this.notes.addAll(notes);
+        this.notes.addAll(allNotes);
+        templateContextCache.clear();
+        noteChanges.notesReplaced(allNotes);
+    }
+
+    /**
+     * Invoked after the loose note files have been loaded, to load everything in our pack files.
+     * Each pack is read in one sequential pass, which is much cheaper than opening each file.
+     * A packed note that also exists as a loose file is ignored; the loose one is newer.
+     */
+    static List<Note> loadPackedNotes(File dataDir, List<Note> looseNotes) {
+        Set<Path> loosePaths = new HashSet<>();
+        for (Note note : looseNotes) {
+            if (note.getSourceFile() != null) {
+                loosePaths.add(note.getSourceFile().toPath().toAbsolutePath().normalize());
+            }
+        }
+        List<Note> packedNotes = new ArrayList<>();
+        for (int year : NotePack.findPackedYears(dataDir)) {
+            File packFile = NotePack.fileFor(dataDir, year);
+            try {
+                for (Note note : NotePack.loadAll(packFile)) {
+                    if (!loosePaths.contains(note.getSourceFile().toPath().toAbsolutePath().normalize())) {
+                        packedNotes.add(note);
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                log.log(Level.SEVERE, "Unable to load packed notes from " + packFile.getAbsolutePath(), ioe);
+            }
+        }
+        if (!packedNotes.isEmpty()) {
+            log.info("Loaded " + packedNotes.size() + " packed notes.");
+        }
+        return packedNotes;
+    }
+
+    /**
+     * Reports whether the given note file exists, either as a plain file or inside a pack.
+     */
+    private boolean existsOnDisk(File noteFile) {
+        if (noteFile.exists()) {
+            return true;
+        }
+        File packFile = NotePack.findPack(dataDir, noteFile);
+        if (packFile == null) {
+            return false;
+        }
+        try {
+            return NotePack.contains(packFile, noteFile);
+        }
+        catch (IOException ioe) {
+            log.log(Level.WARNING, "Unable to read pack file: " + packFile.getAbsolutePath(), ioe);
+            return notes.findByPath(noteFile) != null;
+        }
+    }
+
+    /**
+     * If the given note file is in a packed year, unpacks that whole year back into plain files,
+     * so that the note can be written or deleted. Does nothing otherwise.
+     */
+    private void unpackYearOf(File noteFile) throws IOException {
+        File packFile = NotePack.findPack(dataDir, noteFile);
+        if (packFile != null) {
+            log.info("Unpacking " + packFile.getName() + " to edit " + noteFile.getName());
+            NotePack.unpack(packFile);
+        }
     }
 
     void setQueries(List<Query> queries) {
@@ -750,6 +1831,84 @@ public class DataManager {
     private void setScratchNotes(List<Note> scratchNotes) {
         this.scratchNotes.clear();
         this.scratchNotes.addAll(scratchNotes);
+        for (Note scratchNote : scratchNotes) {
+            recoverFromJournal(scratchNote);
+        }
+    }
+
+    /**
+     * Invoked before the scratch directory is loaded, to tidy up any scratch journals left behind
+     * by a previous session. Journals whose scratch file no longer exists are deleted. If a scratch
+     * file is empty (the application died before it was ever written), but its journal can be replayed,
+     * the recovered state is written to the scratch file so that it will be loaded normally.
+     */
+    void prepareScratchJournals() {
+        for (File journalFile : FileSystemUtil.findFiles(scratchDir, false, ScratchJournal.EXTENSION)) {
+            File scratchFile = ScratchJournal.scratchFileFor(journalFile);
+            if (!scratchFile.exists()) {
+                log.info("Removing orphaned scratch journal: " + journalFile.getName());
+                deleteScratchJournal(scratchFile);
+                continue;
+            }
+            if (scratchFile.length() == 0) {
+                ScratchJournal.RecoveredState state = ScratchJournal.replay(journalFile);
+                if (state != null) {
+                    Note note = new Note();
+                    state.applyTo(note);
+                    try {
+                        SnotesIO.saveNote(note, scratchFile);
+                    }
+                    catch (IOException ioe) {
+                        log.log(Level.SEVERE, "Failed to recover scratch note: " + scratchFile.getAbsolutePath(), ioe);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * If the given scratch Note has a journal on disk, replays it and applies the result to the Note.
+     * The journal is left in place, and the Note is left dirty, so nothing is lost if we crash again
+     * before the recovered Note is saved.
+     *
+     * @return true if anything was recovered.
+     */
+    boolean recoverFromJournal(Note scratchNote) {
+        if (scratchNote.getSourceFile() == null) {
+            return false;
+        }
+        ScratchJournal.RecoveredState state =
+            ScratchJournal.replay(ScratchJournal.journalFileFor(scratchNote.getSourceFile()));
+        if (state == null) {
+            return false;
+        }
+        state.applyTo(scratchNote);
+        log.info("Recovered unsaved edits to scratch note from journal: " + scratchNote.getSourceFile().getName());
+        return true;
+    }
+
+    /**
+     * Invoked after the given scratch Note has been fully written out. Any edits in its open journal
+     * (if it has one) are reflected in that write, so the next journal starts over from here.
+     */
+    private void compactScratchJournal(Note note) {
+        ScratchJournal journal = scratchJournals.get(note);
+        if (journal != null) {
+            journal.markCompacted(ScratchJournal.dateOf(note), ScratchJournal.tagsOf(note), note.getText());
+        }
+    }
+
+    /**
+     * Deletes the journal for the given scratch file, if there is one.
+     */
+    private void deleteScratchJournal(File scratchFile) {
+        if (scratchFile == null) {
+            return;
+        }
+        File journalFile = ScratchJournal.journalFileFor(scratchFile);
+        if (journalFile.exists() && !journalFile.delete()) {
+            log.warning("Failed to delete scratch journal: " + journalFile.getAbsolutePath());
+        }
     }
 
     /**
@@ -810,6 +1969,37 @@ public class DataManager {
         }
     }
 
+    /**
+     * Does the in-memory part of saving a Note: makes sure it's one of ours, computes where it
+     * should be saved, and deals with any collision at that location according to the given strategy.
+     * Nothing is written for the given Note here.
+     *
+     * @return The File to which the given Note should be saved.
+     * @throws IOException If the Note is not in our cache, or if the collision strategy says to abort.
+     */
+    private File prepareNoteSave(Note note, CollisionStrategy collisionStrategy) throws IOException {
+        // If the given note is not in our cache, something is wrong (it was deleted?)
+        if (!notes.contains(note) && !scratchNotes.contains(note)) {
+            throw new IOException("Request to save a Note that is not in cache: " + note);
+        }
+
+        // Editing a packed note (or saving a new one into a packed year) unpacks that year first,
+        // so that everything below only has to deal with plain files. A save that wouldn't change
+        // anything doesn't count as an edit:
+        File savePath = SnotesIO.computeFile(dataDir, note);
+        if (!SnotesIO.isUnchanged(note, savePath)) {
+            unpackYearOf(note.getSourceFile());
+            unpackYearOf(savePath);
+        }
+        if (hasCollision(note) && savePath.exists()) {
+            handleNoteCollision(note, savePath, collisionStrategy);
+        }
+
+        // At this point, there's either no existing file to worry about, or the collision
+        // has been dealt with above. Either way, we can proceed with the save.
+        return savePath;
+    }
+
     /**
      * Invoked internally to handle a Note collision according to the given strategy.
      * This method does not save the given Note! We just deal with the conflicting Note.
@@ -820,13 +2010,7 @@ public class DataManager {
      * @throws IOException if strategy is ABORT, or if an error occurs while handling the collision.
      */
     private void handleNoteCollision(Note note, File savePath, CollisionStrategy strategy) throws IOException {
-        Note existingNote = null;
-        for (Note toCheck : notes) {
-            if (toCheck.getSourceFile() != null && toCheck.getSourceFile().equals(savePath)) {
-                existingNote = toCheck;
-                break;
-            }
-        }
+        Note existingNote = notes.findByPath(savePath);
 
         switch (strategy) {
             case OVERWRITE:
@@ -836,7 +2020,6 @@ public class DataManager {
                                     + " with note from " + sourcePath);
                     delete(existingNote); // this will remove it from our cache and delete the file from disk.
                     fireNoteDeletedEvent(existingNote); // close any open WriterFrame for this guy
-                    break; // we found the one we were looking for, so we can stop searching.
                 }
                 break;
             case APPEND:
@@ -844,19 +2027,7 @@ public class DataManager {
                     String sourcePath = note.getSourceFile() != null ? note.getSourceFile().getAbsolutePath() : "null";
                     log.warning("Appending to existing note file at " + savePath.getAbsolutePath()
                                     + " with note from " + sourcePath);
-                    String existingText = existingNote.getText();
-                    if (!existingText.isBlank()) {
-                        // We want exactly one blank line between old content and new content:
-                        if (existingText.endsWith("\n\n")) {
-                            note.setText(existingText + note.getText());
-                        }
-                        else if (existingText.endsWith("\n")) {
-                            note.setText(existingText + "\n" + note.getText());
-                        }
-                        else {
-                            note.setText(existingText + "\n\n" + note.getText());
-                        }
-                    }
+                    note.setText(appendNoteText(existingNote.getText(), note.getText()));
 
                     // We'll treat it as a deletion of the existing one, just to get it out of our cache:
                     delete(existingNote);
@@ -871,6 +2042,40 @@ public class DataManager {
         }
     }
 
+    /**
+     * Returns the result of appending newText to existingText, for the APPEND collision strategy.
+     * We want exactly one blank line between the old content and the new content.
+     * If the existing text is blank, the new text is returned as-is.
+     */
+    static String appendNoteText(String existingText, String newText) {
+        if (existingText == null || existingText.isBlank()) {
+            return newText;
+        }
+        if (existingText.endsWith("\n\n")) {
+            return existingText + newText;
+        }
+        else if (existingText.endsWith("\n")) {
+            return existingText + "\n" + newText;
+        }
+        return existingText + "\n\n" + newText;
+    }
+
+    /**
+     * Invoked after a Query or Template has been saved to a new location (because it was renamed),
+     * to remove the file it used to live in. Does nothing if the old file is the same as the new one.
+     */
+    private void deleteIfRelocated(File oldFile, File newFile) {
+        if (oldFile == null || !oldFile.exists()
+            || oldFile.getAbsoluteFile().equals(newFile.getAbsoluteFile())) {
+            return;
+        }
+        log.warning("Removing old file after rename: " + oldFile.getAbsolutePath());
+        if (!oldFile.delete()) {
+            // This is not fatal, but it is wonky... warn but proceed:
+            log.warning("Failed to delete old file: " + oldFile.getAbsolutePath());
+        }
+    }
+
     private void fireNoteDeletedEvent(Note note) {
         for (NoteDeletionListener listener : new ArrayList<>(noteDeletionListeners)) {
             listener.onNoteDeleted(note);
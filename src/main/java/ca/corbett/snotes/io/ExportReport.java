@@ -0,0 +1,126 @@
+package ca.corbett.snotes.io;
+
+import java.io.File;
+
+/**
+ * Summarizes the outcome of a bulk export. See DataManager.exportNotes().
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class ExportReport {
+
+    private final File target;
+    private final DataManager.ExportFormat format;
+    private int requestedCount;
+    private int exportedCount;
+    private long bytesWritten;
+    private boolean wasCanceled;
+    private String error;
+    private long elapsedMillis;
+
+    ExportReport(File target, DataManager.ExportFormat format) {
+        this.target = target;
+        this.format = format;
+    }
+
+    /**
+     * Returns the file that was (or would have been) written.
+     */
+    public File getTarget() {
+        return target;
+    }
+
+    public DataManager.ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the number of Notes that we were asked to export.
+     */
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+
+    /**
+     * Returns the number of Notes that were actually written to the export file.
+     */
+    public int getExportedCount() {
+        return exportedCount;
+    }
+
+    /**
+     * Returns the size of the export file, in bytes.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Reports whether the user canceled the export. Nothing is left on disk if the export is canceled.
+     */
+    public boolean wasCanceled() {
+        return wasCanceled;
+    }
+
+    /**
+     * Reports whether the export failed. Nothing is left on disk if the export fails.
+     */
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /**
+     * Returns a description of what went wrong, or null if nothing did.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns a short, human-readable summary of this report, suitable for showing to the user.
+     */
+    public String getSummary() {
+        if (wasCanceled) {
+            return "Export to " + target.getName() + " was canceled.";
+        }
+        if (error != null) {
+            return "Export to " + target.getName() + " failed: " + error;
+        }
+        return "Exported " + exportedCount + " notes to " + target.getName()
+            + " (" + bytesWritten + " bytes) in " + elapsedMillis + "ms.";
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    void setRequestedCount(int requestedCount) {
+        this.requestedCount = requestedCount;
+    }
+
+    void incrementExported() {
+        exportedCount++;
+    }
+
+    void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    void setCanceled(boolean wasCanceled) {
+        this.wasCanceled = wasCanceled;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
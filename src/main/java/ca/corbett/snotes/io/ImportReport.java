@@ -0,0 +1,164 @@
+package ca.corbett.snotes.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summarizes the outcome of a bulk import. See DataManager.importNotes().
+ * Every note found in the import source is counted exactly once, as either imported (a brand-new note),
+ * overwritten (replaced an existing note), appended (merged into an existing note), skipped
+ * (a collision, with CollisionStrategy.ABORT), or failed (could not be read, parsed, or written).
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class ImportReport {
+
+    private final String sourceName;
+    private final List<String> problems;
+    private int foundCount;
+    private int importedCount;
+    private int overwrittenCount;
+    private int appendedCount;
+    private int skippedCount;
+    private int failedCount;
+    private boolean wasCanceled;
+    private long elapsedMillis;
+
+    ImportReport(String sourceName) {
+        this.sourceName = sourceName;
+        this.problems = new ArrayList<>();
+    }
+
+    /**
+     * Returns the name of the directory or archive that was imported.
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    /**
+     * Returns the number of candidate note files found in the import source.
+     */
+    public int getFoundCount() {
+        return foundCount;
+    }
+
+    /**
+     * Returns the number of brand-new notes that were written.
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * Returns the number of existing notes that were replaced by an imported note.
+     */
+    public int getOverwrittenCount() {
+        return overwrittenCount;
+    }
+
+    /**
+     * Returns the number of imported notes that were appended to an existing note.
+     */
+    public int getAppendedCount() {
+        return appendedCount;
+    }
+
+    /**
+     * Returns the number of imported notes that were not written because of a collision.
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Returns the number of imported notes that could not be read, parsed, or written.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Reports whether the user canceled the import. Nothing is written if the import is canceled.
+     */
+    public boolean wasCanceled() {
+        return wasCanceled;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns a description of each note that was skipped or failed.
+     */
+    public List<String> getProblems() {
+        return new ArrayList<>(problems);
+    }
+
+    /**
+     * Returns a short, human-readable summary of this report, suitable for showing to the user.
+     */
+    public String getSummary() {
+        if (wasCanceled) {
+            return "Import of " + sourceName + " was canceled. No notes were imported.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Imported from ").append(sourceName).append(" in ").append(elapsedMillis).append("ms:\n");
+        sb.append("  Notes found: ").append(foundCount).append("\n");
+        sb.append("  New notes: ").append(importedCount).append("\n");
+        if (overwrittenCount > 0) {
+            sb.append("  Overwritten: ").append(overwrittenCount).append("\n");
+        }
+        if (appendedCount > 0) {
+            sb.append("  Appended: ").append(appendedCount).append("\n");
+        }
+        if (skippedCount > 0) {
+            sb.append("  Skipped (collision): ").append(skippedCount).append("\n");
+        }
+        if (failedCount > 0) {
+            sb.append("  Failed: ").append(failedCount).append(" (see log for details)\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    void setFoundCount(int foundCount) {
+        this.foundCount = foundCount;
+    }
+
+    void incrementImported() {
+        importedCount++;
+    }
+
+    void incrementOverwritten() {
+        overwrittenCount++;
+    }
+
+    void incrementAppended() {
+        appendedCount++;
+    }
+
+    void recordSkipped(String problem) {
+        skippedCount++;
+        problems.add(problem);
+    }
+
+    void recordFailed(String problem) {
+        failedCount++;
+        problems.add(problem);
+    }
+
+    void setCanceled(boolean wasCanceled) {
+        this.wasCanceled = wasCanceled;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -0,0 +1,376 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.metrics.Counter;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.model.Note;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The text of a very large Note, left on disk and read a page at a time. Notes over the configured
+ * size threshold (usually pasted logs or transcripts, several megabytes each) are given one of these
+ * as their Note.TextSource when they are loaded, so that loading them costs next to nothing.
+ * <p>
+ * <b>Pages:</b> the body of the note file (everything after the tag line and the blank line that
+ * follows it) is divided into pages of roughly PAGE_SIZE bytes. Pages always end on a line break,
+ * so they can be decoded independently. Finding the page boundaries only requires reading the few
+ * bytes after each boundary, not the whole file. WriterFrame edits one page at a time, and hands
+ * each edited page back via setPage().
+ * </p>
+ * <p>
+ * <b>Saving:</b> a save never serializes the whole text. The new file is written as the new tag
+ * line, then each page in turn: edited pages from memory, and untouched pages copied straight across
+ * from the old file with FileChannel.transferTo(), which leaves the copying to the operating system.
+ * The result is committed with the same temp-file-and-rename as every other write, so it is just as
+ * crash-safe. Page boundaries are carried across to the new file, so an open editor stays in sync.
+ * Saves normally happen on DataManager's background save thread, and the editor can keep working
+ * while one is in progress.
+ * </p>
+ * <p>
+ * Anything that needs the whole text (a text search, for example) can still call getText(),
+ * which reads and caches it. The cache is softly referenced, so the memory can be reclaimed.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class LargeNoteBody implements Note.TextSource {
+
+    /**
+     * The approximate size in bytes of each page. A page runs on to the end of the line
+     * on which this size is reached, so pages can be a little bigger than this.
+     */
+    public static final int PAGE_SIZE = 256 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private static final Counter textCacheHits = Metrics.getInstance().counter("cache.largeNoteText.hit");
+    private static final Counter textCacheMisses = Metrics.getInstance().counter("cache.largeNoteText.miss");
+
+    private final List<long[]> pageRanges; // start (inclusive) and end (exclusive) byte offset of each page
+    private final Map<Integer, String> editedPages;
+    private final Object writeLock = new Object(); // one writeTo() at a time, without blocking readers
+    private File file;
+    private String savedTagLine;
+    private SoftReference<String> cachedText;
+
+    private LargeNoteBody(File file, String tagLine, List<long[]> pageRanges) {
+        this.file = file;
+        this.savedTagLine = tagLine;
+        this.pageRanges = pageRanges;
+        this.editedPages = new TreeMap<>();
+        this.cachedText = new SoftReference<>(null);
+    }
+
+    /**
+     * Opens the body of the given note file, which is in the format written by SnotesIO.saveNote().
+     * The tag line is read, and the page boundaries are found, but the text itself is not read.
+     */
+    static LargeNoteBody open(File file) throws IOException {
+        return open(file, PAGE_SIZE);
+    }
+
+    /**
+     * Opens the body of the given note file, using the given page size. Split out for unit tests,
+     * which would rather not write megabytes of text to get a few pages.
+     */
+    static LargeNoteBody open(File file, int pageSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long size = channel.size();
+            long tagLineEnd = findLineEnd(channel, 0, buffer);
+            String tagLine = stripLineEnd(readString(channel, 0, tagLineEnd));
+
+            // Same as SnotesIO.parseNote(): the conventional blank line after the tags isn't part of the text:
+            long bodyStart = tagLineEnd;
+            long secondLineEnd = findLineEnd(channel, tagLineEnd, buffer);
+            if (secondLineEnd > tagLineEnd && isBlank(channel, tagLineEnd, secondLineEnd, buffer)) {
+                bodyStart = secondLineEnd;
+            }
+
+            List<long[]> ranges = new ArrayList<>();
+            long pageStart = bodyStart;
+            while (pageStart < size) {
+                long pageEnd = pageStart + pageSize >= size
+                    ? size
+                    : findLineEnd(channel, pageStart + pageSize - 1, buffer);
+                ranges.add(new long[]{pageStart, pageEnd});
+                pageStart = pageEnd;
+            }
+            return new LargeNoteBody(file, tagLine, ranges);
+        }
+    }
+
+    /**
+     * Returns the tag line, as it currently is on disk.
+     */
+    public synchronized String getSavedTagLine() {
+        return savedTagLine;
+    }
+
+    /**
+     * Returns the number of pages. An empty body has no pages at all.
+     */
+    public synchronized int getPageCount() {
+        return pageRanges.size();
+    }
+
+    /**
+     * Returns roughly how many characters of text this body holds, without reading anything from disk:
+     * the on-disk size of each unedited page, plus the length of each edited one. Multibyte characters
+     * and "\r\n" line ends make this a slight overestimate. This is cheap enough to call for every
+     * Note in a big result set, unlike getText().
+     */
+    public synchronized long getLengthEstimate() {
+        long length = 0;
+        for (int page = 0; page < pageRanges.size(); page++) {
+            String edited = editedPages.get(page);
+            length += edited != null ? edited.length() : pageRanges.get(page)[1] - pageRanges.get(page)[0];
+        }
+        return length;
+    }
+
+    /**
+     * Returns the text of the given page, including any edits made to it via setPage().
+     * Line breaks are always returned as "\n", regardless of what is on disk.
+     *
+     * @param page The zero-based page index.
+     * @throws IOException If the page can't be read.
+     */
+    public synchronized String readPage(int page) throws IOException {
+        String edited = editedPages.get(page);
+        if (edited != null) {
+            return edited;
+        }
+        long[] range = pageRanges.get(page);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return normalizeLineEnds(readString(channel, range[0], range[1]));
+        }
+    }
+
+    /**
+     * Replaces the text of the given page. Nothing is written until the Note is saved.
+     * Line breaks should be "\n", as returned by readPage(). Note that this does not mark
+     * the owning Note dirty - that is up to the caller.
+     *
+     * @param page The zero-based page index.
+     * @param text The new text of that page.
+     */
+    public synchronized void setPage(int page, String text) {
+        if (page < 0 || page >= pageRanges.size()) {
+            throw new IndexOutOfBoundsException("No such page: " + page);
+        }
+        editedPages.put(page, text == null ? "" : text);
+        cachedText = new SoftReference<>(null);
+    }
+
+    /**
+     * Reports whether any page has been edited since the last save.
+     */
+    public synchronized boolean isModified() {
+        return !editedPages.isEmpty();
+    }
+
+    /**
+     * Returns the full text, with any edits applied, formatted exactly as SnotesIO.parseNote() would
+     * have formatted it had the whole file been read: every line ends with the system line separator.
+     */
+    @Override
+    public synchronized String getText() {
+        String text = cachedText.get();
+        if (text != null) {
+            textCacheHits.increment();
+            return text;
+        }
+        textCacheMisses.increment();
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (int page = 0; page < pageRanges.size(); page++) {
+                sb.append(readPage(page));
+            }
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read note text from " + file.getAbsolutePath(), ioe);
+        }
+        if (!sb.isEmpty() && sb.charAt(sb.length() - 1) != '\n') {
+            sb.append('\n');
+        }
+        text = sb.toString().replace("\n", System.lineSeparator());
+        cachedText = new SoftReference<>(text);
+        return text;
+    }
+
+    /**
+     * Reports whether writing the given tag line and our current text to the given file would leave
+     * it exactly as it is: no pages have been edited, the tag line is the same, and the file is ours.
+     */
+    synchronized boolean isUnchanged(String tagLine, File targetFile) {
+        return editedPages.isEmpty()
+            && tagLine.equals(savedTagLine)
+            && file.getAbsoluteFile().equals(targetFile.getAbsoluteFile())
+            && targetFile.exists();
+    }
+
+    /**
+     * Writes the given tag line and our current text to the given file, crash-safely. Untouched pages
+     * are copied from our current file without being decoded. Afterwards, the given file is our file,
+     * and there are no outstanding edits, other than any that were made while the write was in progress.
+     * The target's parent directory must exist.
+     * <p>
+     *     This runs on the background save thread, and copying megabytes takes a while, so our lock
+     *     is only held to take a snapshot beforehand and to switch over to the new file afterwards.
+     *     An editor can go on reading and editing pages in the meantime.
+     * </p>
+     */
+    void writeTo(File targetFile, String tagLine) throws IOException {
+        synchronized (writeLock) {
+            File sourceFile;
+            List<long[]> ranges;
+            Map<Integer, String> edits;
+            synchronized (this) {
+                sourceFile = file;
+                ranges = new ArrayList<>(pageRanges);
+                edits = new TreeMap<>(editedPages);
+            }
+
+            List<long[]> newRanges = new ArrayList<>(ranges.size());
+            byte[] header = (tagLine + System.lineSeparator() + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8);
+            File tempFile;
+            try (FileChannel source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+                tempFile = SnotesIO.writeTempFile(targetFile, target -> {
+                    writeFully(target, ByteBuffer.wrap(header));
+                    long position = header.length;
+                    for (int page = 0; page < ranges.size(); page++) {
+                        long[] range = ranges.get(page);
+                        long length;
+                        String edited = edits.get(page);
+                        if (edited != null) {
+                            byte[] content = toPageBytes(edited, page == ranges.size() - 1);
+                            writeFully(target, ByteBuffer.wrap(content));
+                            length = content.length;
+                        }
+                        else {
+                            length = range[1] - range[0];
+                            long copied = 0;
+                            while (copied < length) {
+                                long count = source.transferTo(range[0] + copied, length - copied, target);
+                                if (count <= 0) {
+                                    throw new IOException("Unexpected end of file in " + sourceFile.getAbsolutePath());
+                                }
+                                copied += count;
+                            }
+                        }
+                        newRanges.add(new long[]{position, position + length});
+                        position += length;
+                    }
+                });
+            }
+
+            // Nobody may read a page between the rename and the switch to the new page ranges:
+            synchronized (this) {
+                SnotesIO.commitTempFile(tempFile, targetFile);
+
+                // The page numbering stays the same, even if an edit has made a page much bigger or smaller,
+                // so that an editor showing one of our pages doesn't suddenly find itself on a different one:
+                pageRanges.clear();
+                pageRanges.addAll(newRanges);
+
+                // Edits made while we were writing weren't written, so they're still outstanding:
+                editedPages.entrySet().removeIf(entry -> entry.getValue() == edits.get(entry.getKey()));
+                file = targetFile;
+                savedTagLine = tagLine;
+            }
+            SnotesIO.syncDirectory(targetFile.getParentFile());
+        }
+    }
+
+    /**
+     * Encodes an edited page for writing. Every page but the last has to end with a line break,
+     * or its last line would be joined onto the first line of the next page.
+     */
+    private static byte[] toPageBytes(String text, boolean isLastPage) {
+        if (!isLastPage && !text.isEmpty() && !text.endsWith("\n")) {
+            text = text + "\n";
+        }
+        return text.replace("\n", System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset just past the first '\n' at or after the given offset, or the end of the file.
+     */
+    private static long findLineEnd(FileChannel channel, long from, ByteBuffer buffer) throws IOException {
+        long position = from;
+        while (true) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            if (count <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Reports whether the given range holds nothing but whitespace, in the String.trim() sense.
+     */
+    private static boolean isBlank(FileChannel channel, long start, long end, ByteBuffer buffer) throws IOException {
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), end - position));
+            int count = channel.read(buffer, position);
+            if (count <= 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                byte b = buffer.get(i);
+                if (b < 0 || b > ' ') { // negative is any byte of a multibyte UTF-8 character
+                    return false;
+                }
+            }
+            position += count;
+        }
+        return true;
+    }
+
+    private static String readString(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)(end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String stripLineEnd(String line) {
+        return line.endsWith("\n") ? line.substring(0, line.length() - 1).replace("\r", "") : line;
+    }
+
+    private static String normalizeLineEnds(String text) {
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+}
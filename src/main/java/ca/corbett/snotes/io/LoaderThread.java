@@ -2,11 +2,18 @@ package ca.corbett.snotes.io;
 
 import ca.corbett.extras.io.FileSystemUtil;
 import ca.corbett.extras.progress.SimpleProgressWorker;
+import ca.corbett.snotes.metrics.FileLoadEvent;
+import ca.corbett.snotes.metrics.LoadPhaseEvent;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.Timer;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,8 +42,13 @@ class LoaderThread<T> extends SimpleProgressWorker {
     private final String searchExtension;
     private final FileLoader<T> loadFunction;
     private final boolean isRecursive;
+    private final Timer walkTimer;
+    private final Timer parseTimer;
+    private final Timer totalTimer;
+    private CompletableFuture<List<T>> preloadedResults;
     private boolean wasCanceled;
     private boolean hadErrors;
+    private boolean wasPreloaded;
 
     /**
      * Creates a LoaderThread that will scan the given directory for T files.
@@ -57,6 +69,13 @@ class LoaderThread<T> extends SimpleProgressWorker {
         this.loadFunction = loadFunction;
         this.directoriesToSkip = new ArrayList<>();
         this.searchResults = new ArrayList<>();
+
+        // For example, "load.scratch_notes.parse":
+        String metricPrefix = "load." + searchType.toLowerCase().replace(' ', '_') + ".";
+        Metrics metrics = Metrics.getInstance();
+        this.walkTimer = metrics.timer(metricPrefix + LoadPhaseEvent.WALK);
+        this.parseTimer = metrics.timer(metricPrefix + "parse");
+        this.totalTimer = metrics.timer(metricPrefix + LoadPhaseEvent.TOTAL);
     }
 
     /**
@@ -72,6 +91,28 @@ class LoaderThread<T> extends SimpleProgressWorker {
         return this;
     }
 
+    /**
+     * Tells this LoaderThread to wait for results that are already being loaded elsewhere (see NotePreload),
+     * instead of scanning its directory. Progress is reported as a single step, so that a progress dialog
+     * still appears if the wait turns out to be a long one. If the preload fails, we scan our directory
+     * after all.
+     *
+     * @param results The results to wait for.
+     * @return This LoaderThread, for chaining.
+     */
+    public LoaderThread<T> usePreloaded(CompletableFuture<List<T>> results) {
+        this.preloadedResults = results;
+        return this;
+    }
+
+    /**
+     * Returns true if our results were taken from a preload (see usePreloaded()), or false if
+     * we scanned our directory for them, either because there was no preload or because it failed.
+     */
+    public boolean wasPreloaded() {
+        return wasPreloaded;
+    }
+
     /**
      * Returns true if the search was canceled partway through by the user.
      * The searchResults will be incomplete in this case.
@@ -105,6 +146,11 @@ class LoaderThread<T> extends SimpleProgressWorker {
         searchResults.clear();
         wasCanceled = false;
         hadErrors = false;
+        wasPreloaded = false;
+
+        if (preloadedResults != null && adoptPreloadedResults()) {
+            return;
+        }
 
         // Sanity check our settings:
         if (directory == null || !directory.exists() || !directory.isDirectory()) {
@@ -129,8 +175,14 @@ class LoaderThread<T> extends SimpleProgressWorker {
         // If we don't do this, the progress bar does not appear during our initial findFiles() call,
         // leaving the user wondering if anything is happening.
         fireProgressBegins(1);
+        long startTime = System.nanoTime();
+        LoadPhaseEvent totalEvent = newPhaseEvent(LoadPhaseEvent.TOTAL);
         try {
+            LoadPhaseEvent walkEvent = newPhaseEvent(LoadPhaseEvent.WALK);
             List<File> fileList = FileSystemUtil.findFiles(directory, isRecursive, searchExtension);
+            walkTimer.recordSince(startTime);
+            walkEvent.fileCount = fileList.size();
+            walkEvent.commit();
 
             // Now we can set the actual progress bounds:
             fireProgressBegins(fileList.size());
@@ -144,8 +196,12 @@ class LoaderThread<T> extends SimpleProgressWorker {
                     continue;
                 }
 
+                FileLoadEvent fileEvent = new FileLoadEvent();
+                fileEvent.begin();
+                long parseStartTime = System.nanoTime();
                 try {
                     searchResults.add(loadFunction.load(file));
+                    fileEvent.succeeded = true;
                 }
                 catch (IOException ioe) {
                     // Log the error and keep going. One bad file shouldn't stop the whole operation.
@@ -153,6 +209,14 @@ class LoaderThread<T> extends SimpleProgressWorker {
                             searchType + " LoaderThread: Problem loading object: " + file.getAbsolutePath(), ioe);
                     hadErrors = true;
                 }
+                finally {
+                    parseTimer.recordSince(parseStartTime);
+                    if (fileEvent.shouldCommit()) {
+                        fileEvent.objectType = searchType;
+                        fileEvent.path = file.getAbsolutePath();
+                        fileEvent.commit();
+                    }
+                }
 
                 // Update progress and check for user cancellation:
                 if (!fireProgressUpdate(i, file.getAbsolutePath())) {
@@ -168,12 +232,48 @@ class LoaderThread<T> extends SimpleProgressWorker {
                 fireProgressCanceled();
             }
             else {
-                log.info(searchType + " LoaderThread found " + searchResults.size() + " results.");
+                long elapsed = totalTimer.recordSince(startTime);
+                totalEvent.fileCount = searchResults.size();
+                totalEvent.commit();
+                log.info(searchType + " LoaderThread found " + searchResults.size() + " results in "
+                             + Metrics.formatMillis(elapsed) + ".");
                 fireProgressComplete();
             }
         }
     }
 
+    /**
+     * Waits for our preloaded results and takes them as our own. The loading itself was timed
+     * where it happened, so all we log here is how long we had to wait for it.
+     *
+     * @return True if we adopted the preloaded results, or false if the preload failed, in which
+     *         case nothing has been reported as complete, and the caller should scan our directory instead.
+     */
+    private boolean adoptPreloadedResults() {
+        fireProgressBegins(1);
+        long startTime = System.nanoTime();
+        try {
+            searchResults.addAll(preloadedResults.join());
+        }
+        catch (CancellationException | CompletionException e) {
+            log.log(Level.SEVERE, searchType + " LoaderThread: preloading failed, scanning instead.", e);
+            return false;
+        }
+        wasPreloaded = true;
+        log.info(searchType + " LoaderThread adopted " + searchResults.size() + " preloaded results after waiting "
+                     + Metrics.formatMillis(System.nanoTime() - startTime) + ".");
+        fireProgressComplete();
+        return true;
+    }
+
+    private LoadPhaseEvent newPhaseEvent(String phase) {
+        LoadPhaseEvent event = new LoadPhaseEvent();
+        event.objectType = searchType;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
     /**
      * Invoked internally to determine if the given file is in any of our "skip" directories.
      */
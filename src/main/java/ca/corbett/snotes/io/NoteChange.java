@@ -0,0 +1,112 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Describes what happened to a single Note, as delivered to a DataManager.NoteChangeListener.
+ * Besides the Note itself, each change carries the Note's source file and tags from before and after
+ * the change, as they were when the change happened. The Note may well have been edited again since,
+ * but these values stay exactly as they were, which is what an index needs in order to move the Note
+ * from where it was to where it is now.
+ * <p>
+ *     For an ADDED Note, there is no "before": the old file is null, and the old tags are empty.
+ *     Likewise, a REMOVED Note has no "after". Only real Notes are covered; scratch notes are ADDED
+ *     when they are first saved as a real Note, and never before.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class NoteChange {
+
+    public enum Kind {
+        /**
+         * The Note is new to the DataManager: it was loaded, imported, or saved for the first time.
+         */
+        ADDED,
+
+        /**
+         * The Note was saved. Its file, tags and text may all have changed. A Note that is saved
+         * with a new date or new tags usually moves to a new file, so this also covers renames.
+         */
+        UPDATED,
+
+        /**
+         * The Note is gone: it was deleted, replaced by an import, or dropped by a reload.
+         */
+        REMOVED
+    }
+
+    private final Kind kind;
+    private final Note note;
+    private final File oldFile;
+    private final File newFile;
+    private final List<Tag> oldTags;
+    private final List<Tag> newTags;
+
+    NoteChange(Kind kind, Note note, File oldFile, List<Tag> oldTags, File newFile, List<Tag> newTags) {
+        this.kind = kind;
+        this.note = note;
+        this.oldFile = oldFile;
+        this.oldTags = oldTags == null ? List.of() : oldTags;
+        this.newFile = newFile;
+        this.newTags = newTags == null ? List.of() : newTags;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the Note that changed. For a REMOVED Note, this is informational only;
+     * the Note is no longer managed, and should not be saved.
+     */
+    public Note getNote() {
+        return note;
+    }
+
+    /**
+     * Returns the Note's source file before the change, or null if it was just ADDED.
+     */
+    public File getOldFile() {
+        return oldFile;
+    }
+
+    /**
+     * Returns the Note's source file after the change, or null if it was REMOVED.
+     */
+    public File getNewFile() {
+        return newFile;
+    }
+
+    /**
+     * Returns the Note's tags before the change. Empty if it was just ADDED.
+     */
+    public List<Tag> getOldTags() {
+        return oldTags;
+    }
+
+    /**
+     * Returns the Note's tags after the change. Empty if it was REMOVED.
+     */
+    public List<Tag> getNewTags() {
+        return newTags;
+    }
+
+    /**
+     * Reports whether the Note moved to a different file with this change.
+     * Always true for ADDED and REMOVED Notes.
+     */
+    public boolean isMoved() {
+        return oldFile == null || newFile == null || !oldFile.equals(newFile);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + (newFile != null ? newFile : oldFile);
+    }
+}
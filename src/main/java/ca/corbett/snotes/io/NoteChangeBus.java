@@ -0,0 +1,313 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.metrics.Histogram;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.Timer;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tells DataManager.NoteChangeListeners about Notes being added, updated and removed, in batches,
+ * on a background thread. DataManager reports each change here as it happens, on whatever thread
+ * it happens on, and we take care of the rest.
+ * <p>
+ * <b>Batching:</b> changes are collected for a short while (BATCH_DELAY_MS) before they are delivered,
+ * and several changes to the same Note within a batch are combined into one: a Note that is saved three
+ * times is UPDATED once, from where it was before the first save to where it is after the last one,
+ * and a Note that is added and then removed again doesn't show up at all. A full reload of the Notes
+ * arrives as a single batch.
+ * </p>
+ * <p>
+ * <b>Ordering:</b> batches are delivered by a single thread (never the EDT), one listener after the other,
+ * in the order the changes were made. Within a batch, Notes are in the order they first changed.
+ * So a listener always sees a Note's changes in order, and never sees two batches at once.
+ * </p>
+ * <p>
+ * <b>Before and after:</b> we remember the source file and tags that each Note had when we last reported
+ * it, and report those as its "before" values the next time it changes. This is how an UPDATED Note can
+ * carry its old tags, even though the Note object itself was edited in place long before it was saved.
+ * </p>
+ * <p>
+ * <b>Subscribing:</b> a new listener first gets one batch with every Note that is currently loaded as
+ * ADDED (in no particular order), followed by everything that changes after that. So a listener can
+ * subscribe at any time, and build its derived data from that first batch.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class NoteChangeBus {
+
+    private static final Logger log = Logger.getLogger(NoteChangeBus.class.getName());
+
+    /**
+     * How long we collect changes for before delivering them.
+     */
+    static final long BATCH_DELAY_MS = 50;
+
+    private static final Timer dispatchTimer = Metrics.getInstance().timer("events.notes.dispatch");
+    private static final Histogram batchSizes = Metrics.getInstance().histogram("events.notes.batch");
+
+    /**
+     * What we last reported about a Note.
+     */
+    private record State(File file, List<Tag> tags) {
+    }
+
+    /**
+     * A Note that has changed since the last batch was delivered: how it was then, and how it is now.
+     * A null state means that the Note wasn't (or isn't) one of ours.
+     */
+    private static final class Pending {
+        private final Note note;
+        private final State before;
+        private State after;
+
+        private Pending(Note note, State before) {
+            this.note = note;
+            this.before = before;
+        }
+    }
+
+    private final long batchDelayMs;
+    private final ScheduledExecutorService executor;
+    private final Map<Note, State> known;
+    private final Map<Note, Pending> pendingByNote;
+    private final List<Pending> pending;
+    private final List<DataManager.NoteChangeListener> listeners;
+    private boolean isDeliveryScheduled;
+    private boolean isShutdown;
+
+    NoteChangeBus() {
+        this(BATCH_DELAY_MS);
+    }
+
+    /**
+     * Creates a bus that collects changes for the given time before delivering them. This is for unit tests.
+     */
+    NoteChangeBus(long batchDelayMs) {
+        this.batchDelayMs = batchDelayMs;
+        // Note doesn't override equals(), so these are by identity either way. IdentityHashMap is just cheaper:
+        this.known = new IdentityHashMap<>();
+        this.pendingByNote = new IdentityHashMap<>();
+        this.pending = new ArrayList<>();
+        this.listeners = new ArrayList<>();
+        // No thread is started until there is something to deliver:
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Snotes-NoteEvents");
+            thread.setDaemon(true); // listeners only keep derived data; never hold up JVM exit.
+            return thread;
+        });
+    }
+
+    /**
+     * The given Note was added, or saved. We work out which from whether we already knew about it.
+     */
+    synchronized void noteChanged(Note note) {
+        record(note, stateOf(note));
+    }
+
+    /**
+     * The given Note is no longer one of ours. Does nothing if it never was.
+     */
+    synchronized void noteRemoved(Note note) {
+        record(note, null);
+    }
+
+    /**
+     * Every Note we knew about has been replaced by the given ones. Notes that appear in both
+     * are reported as UPDATED; the rest are either ADDED or REMOVED.
+     */
+    synchronized void notesReplaced(Collection<Note> notes) {
+        Set<Note> incoming = Collections.newSetFromMap(new IdentityHashMap<>());
+        incoming.addAll(notes);
+        for (Note note : new ArrayList<>(known.keySet())) {
+            if (!incoming.contains(note)) {
+                record(note, null);
+            }
+        }
+        for (Note note : notes) {
+            record(note, stateOf(note));
+        }
+    }
+
+    /**
+     * Subscribes the given listener. Its first batch lists every Note that we currently know about.
+     */
+    void subscribe(DataManager.NoteChangeListener listener) {
+        try {
+            // Everything that was reported before this listener arrived is covered by its first batch,
+            // so anything still pending is delivered to the others first:
+            executor.execute(() -> {
+                List<NoteChange> batch;
+                List<NoteChange> initialBatch = new ArrayList<>();
+                List<DataManager.NoteChangeListener> others;
+                synchronized (this) {
+                    batch = drain();
+                    others = new ArrayList<>(listeners);
+                    for (Map.Entry<Note, State> entry : known.entrySet()) {
+                        initialBatch.add(toChange(entry.getKey(), null, entry.getValue()));
+                    }
+                    listeners.add(listener);
+                }
+                deliver(batch, others);
+                deliver(initialBatch, List.of(listener));
+            });
+        }
+        catch (RejectedExecutionException e) {
+            log.warning("Ignoring note change subscription after shutdown.");
+        }
+    }
+
+    /**
+     * Unsubscribes the given listener. A batch that is already being delivered may still reach it.
+     */
+    synchronized void unsubscribe(DataManager.NoteChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Delivers anything that is pending right away, and waits until every change reported so far
+     * has been delivered to every listener.
+     *
+     * @return true if everything was delivered, false if we gave up waiting.
+     */
+    boolean flush(long timeout, TimeUnit unit) {
+        try {
+            executor.submit(this::deliverPending).get(timeout, unit);
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            return true; // we've been shut down, which flushed everything
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException | TimeoutException e) {
+            log.log(Level.WARNING, "Gave up waiting for note changes to be delivered.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Delivers anything that is pending, and stops our delivery thread.
+     * Changes reported after this are not delivered to anyone.
+     *
+     * @return true if everything was delivered, false if we gave up waiting.
+     */
+    boolean shutdown(long timeout, TimeUnit unit) {
+        synchronized (this) {
+            if (isShutdown) {
+                return true;
+            }
+            isShutdown = true;
+        }
+        executor.execute(this::deliverPending);
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout, unit);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Remembers the given Note's new state, and queues up the change for our listeners, if we have any.
+     * Must be invoked with our lock held.
+     */
+    private void record(Note note, State after) {
+        State before = (after == null) ? known.remove(note) : known.put(note, after);
+        if (listeners.isEmpty() || isShutdown) {
+            return; // a listener that subscribes later gets the current state instead
+        }
+        Pending change = pendingByNote.get(note);
+        if (change == null) {
+            change = new Pending(note, before);
+            pendingByNote.put(note, change);
+            pending.add(change);
+        }
+        change.after = after;
+        if (!isDeliveryScheduled) {
+            isDeliveryScheduled = true;
+            executor.schedule(this::deliverPending, batchDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deliverPending() {
+        List<NoteChange> batch;
+        List<DataManager.NoteChangeListener> recipients;
+        synchronized (this) {
+            batch = drain();
+            recipients = new ArrayList<>(listeners);
+        }
+        deliver(batch, recipients);
+    }
+
+    /**
+     * Takes everything that is pending, and combines it into one batch. Must be invoked with our lock held.
+     */
+    private List<NoteChange> drain() {
+        isDeliveryScheduled = false;
+        List<NoteChange> batch = new ArrayList<>(pending.size());
+        for (Pending change : pending) {
+            if (change.before != null || change.after != null) { // otherwise, it came and went
+                batch.add(toChange(change.note, change.before, change.after));
+            }
+        }
+        pending.clear();
+        pendingByNote.clear();
+        return batch;
+    }
+
+    private static void deliver(List<NoteChange> batch, List<DataManager.NoteChangeListener> recipients) {
+        if (batch.isEmpty() || recipients.isEmpty()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        List<NoteChange> changes = Collections.unmodifiableList(batch);
+        for (DataManager.NoteChangeListener listener : recipients) {
+            try {
+                listener.notesChanged(changes);
+            }
+            catch (RuntimeException e) {
+                // One broken listener (an extension, say) mustn't keep the others from hearing about it:
+                log.log(Level.WARNING, "Note change listener failed: " + listener, e);
+            }
+        }
+        batchSizes.record(batch.size());
+        dispatchTimer.recordSince(startTime);
+    }
+
+    private static NoteChange toChange(Note note, State before, State after) {
+        NoteChange.Kind kind = (before == null) ? NoteChange.Kind.ADDED
+            : (after == null) ? NoteChange.Kind.REMOVED
+            : NoteChange.Kind.UPDATED;
+        return new NoteChange(kind, note,
+                              before == null ? null : before.file(), before == null ? null : before.tags(),
+                              after == null ? null : after.file(), after == null ? null : after.tags());
+    }
+
+    private static State stateOf(Note note) {
+        return new State(note.getSourceFile(), Collections.unmodifiableList(note.getTags()));
+    }
+}
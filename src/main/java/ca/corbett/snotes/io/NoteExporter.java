@@ -0,0 +1,364 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.extras.progress.SimpleProgressWorker;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A worker thread that exports a list of Notes to a single file, in one of two formats:
+ * <ul>
+ *     <li><b>ZIP:</b> each Note's file is stored under its path relative to the data directory,
+ *     so the yyyy/mm/dd layout (and the static directory) is preserved. The archive can be
+ *     imported again with DataManager.importNotes().</li>
+ *     <li><b>JSONL:</b> one JSON object per line, with "path", "date" (null for undated notes),
+ *     "tags" (not including the date) and "text" fields.</li>
+ * </ul>
+ * <p>
+ * <b>Memory:</b> Note content is streamed straight from each Note's file on disk through a small
+ * fixed-size buffer (for JSONL, the text is escaped on the fly as it streams through), so an export
+ * never needs more than one buffer's worth of note content in memory at a time, no matter how big
+ * the corpus is. Only Notes that have unsaved changes (or whose file has gone missing) are
+ * serialized from memory instead, so that the export reflects what the user actually sees.
+ * </p>
+ * <p>
+ * The export is written to a temp file alongside the target, which is renamed into place only once
+ * it is complete. If the user cancels, or something goes wrong, the temp file is removed, and any
+ * existing file at the target location is left untouched.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class NoteExporter extends SimpleProgressWorker {
+
+    private static final Logger log = Logger.getLogger(NoteExporter.class.getName());
+
+    private final List<Note> notes;
+    private final File dataDir;
+    private final File target;
+    private final DataManager.ExportFormat format;
+    private final ExportReport report;
+
+    /**
+     * Creates a NoteExporter. Nothing happens until run() is invoked.
+     *
+     * @param notes   The Notes to export, in the order they should appear in the export file.
+     * @param dataDir Our data directory, which exported paths are relative to.
+     * @param target  The file to write. Will be replaced if it exists.
+     * @param format  The export format.
+     */
+    NoteExporter(List<Note> notes, File dataDir, File target, DataManager.ExportFormat format) {
+        this.notes = new ArrayList<>(notes);
+        this.dataDir = dataDir;
+        this.target = target;
+        this.format = format;
+        this.report = new ExportReport(target, format);
+        report.setRequestedCount(notes.size());
+    }
+
+    /**
+     * Returns the results of the export. Only meaningful after run() has completed.
+     */
+    ExportReport getReport() {
+        return report;
+    }
+
+    @Override
+    public void run() {
+        log.info("Exporting " + notes.size() + " notes to " + target.getAbsolutePath());
+        long startTime = System.currentTimeMillis();
+        fireProgressBegins(notes.size());
+
+        File tempFile = null;
+        try {
+            File targetDir = target.getAbsoluteFile().getParentFile();
+            if (!targetDir.exists() && !targetDir.mkdirs()) {
+                throw new IOException("Failed to create directory: " + targetDir.getAbsolutePath());
+            }
+            tempFile = File.createTempFile("." + target.getName() + ".", "." + SnotesIO.TEMP_EXTENSION, targetDir);
+
+            boolean completed;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                completed = (format == DataManager.ExportFormat.ZIP) ? writeZip(out) : writeJsonLines(out);
+            }
+
+            if (!completed) {
+                report.setCanceled(true);
+                log.warning("Export to " + target.getAbsolutePath() + " was canceled by the user.");
+                fireProgressCanceled();
+                return;
+            }
+
+            report.setBytesWritten(tempFile.length());
+            SnotesIO.commitTempFile(tempFile, target);
+            tempFile = null;
+        }
+        catch (IOException ioe) {
+            log.log(Level.SEVERE, "Export failed: " + target.getAbsolutePath(), ioe);
+            report.setError(ioe.getMessage());
+            fireProgressError("Export", ioe.getMessage());
+            return;
+        }
+        finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                log.warning("Unable to remove temp file: " + tempFile.getAbsolutePath());
+            }
+            report.setElapsedMillis(System.currentTimeMillis() - startTime);
+        }
+
+        log.info(report.getSummary());
+        fireProgressComplete();
+    }
+
+    /**
+     * Writes each Note as an entry in a zip archive.
+     *
+     * @return false if the user canceled.
+     */
+    private boolean writeZip(OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            String entryName = getExportPath(note);
+            ZipEntry entry = new ZipEntry(entryName);
+            File sourceFile = getStreamableSource(note);
+            if (sourceFile != null) {
+                entry.setTime(sourceFile.lastModified());
+            }
+            try {
+                zip.putNextEntry(entry);
+            }
+            catch (ZipException ze) {
+                // Two Notes claiming the same path. Shouldn't happen, but don't lose the whole export over it:
+                log.warning("Skipping duplicate export entry " + entryName + ": " + ze.getMessage());
+                continue;
+            }
+            if (sourceFile != null) {
+                Files.copy(sourceFile.toPath(), zip); // streams through a fixed buffer
+            }
+            else {
+                zip.write(SnotesIO.toBytes(note));
+            }
+            zip.closeEntry();
+            report.incrementExported();
+
+            if (!fireProgressUpdate(i, entryName)) {
+                return false;
+            }
+        }
+        zip.finish();
+        return true;
+    }
+
+    /**
+     * Writes each Note as a single line of JSON.
+     *
+     * @return false if the user canceled.
+     */
+    private boolean writeJsonLines(OutputStream out) throws IOException {
+        JsonFactory jsonFactory = new JsonFactory();
+        jsonFactory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n")); // one record per line
+            for (int i = 0; i < notes.size(); i++) {
+                Note note = notes.get(i);
+                String path = getExportPath(note);
+                generator.writeStartObject();
+                generator.writeStringField("path", path);
+                if (note.hasDate()) {
+                    generator.writeStringField("date", note.getDate().toString());
+                }
+                else {
+                    generator.writeNullField("date");
+                }
+                generator.writeArrayFieldStart("tags");
+                for (Tag tag : note.getNonDateTags()) {
+                    generator.writeString(tag.getTag());
+                }
+                generator.writeEndArray();
+                generator.writeFieldName("text");
+                File sourceFile = getStreamableSource(note);
+                if (sourceFile != null) {
+                    try (Reader body = openNoteBody(sourceFile)) {
+                        generator.writeString(body, -1); // escapes as it streams
+                    }
+                }
+                else {
+                    generator.writeString(note.getText());
+                }
+                generator.writeEndObject();
+                report.incrementExported();
+
+                if (!fireProgressUpdate(i, path)) {
+                    return false;
+                }
+            }
+            if (!notes.isEmpty()) {
+                generator.writeRaw('\n'); // the pretty printer only writes separators between records
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the path that the given Note should be exported under, relative to the data directory,
+     * always using forward slashes.
+     */
+    private String getExportPath(Note note) {
+        Path dataDirPath = dataDir.toPath().toAbsolutePath().normalize();
+        Path notePath = null;
+        if (note.getSourceFile() != null && !note.isDirty()) {
+            notePath = note.getSourceFile().toPath().toAbsolutePath().normalize();
+        }
+        if (notePath == null || !notePath.startsWith(dataDirPath)) {
+            // Never saved, or has unsaved changes that may move it. Use where it would be saved to:
+            notePath = SnotesIO.computeFile(dataDir, note).toPath().toAbsolutePath().normalize();
+        }
+        return dataDirPath.relativize(notePath).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Returns the file that we can stream the given Note's content from, or null if we have
+     * to use the in-memory copy instead (the Note has unsaved changes, or its file is gone).
+     */
+    private static File getStreamableSource(Note note) {
+        File sourceFile = note.getSourceFile();
+        if (note.isDirty() || sourceFile == null || !sourceFile.isFile()) {
+            return null;
+        }
+        return sourceFile;
+    }
+
+    /**
+     * Opens a Reader over the body of the given note file: everything after the tag line,
+     * and after the blank line that conventionally follows it. The text that comes out is exactly
+     * what SnotesIO.parseNote() would produce for the same file, but we only ever hold a buffer's
+     * worth of it in memory, so this works for arbitrarily large notes.
+     */
+    static Reader openNoteBody(File noteFile) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(noteFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            reader.readLine(); // the tag line
+
+            // Skip the second line if it's blank, the same way parseNote() does.
+            // We only need to look ahead as far as the first non-whitespace character to decide:
+            StringBuilder lookahead = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    lookahead.setLength(0); // that was the blank line; drop it
+                    break;
+                }
+                lookahead.append((char)c);
+                if (c > ' ') {
+                    break; // not blank; the body starts with this line
+                }
+            }
+            return new NoteBodyReader(lookahead.toString(), reader);
+        }
+        catch (IOException ioe) {
+            reader.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Returns the given prefix followed by the contents of the given delegate, with line endings
+     * normalized to "\n" and a trailing newline on the last line, to match SnotesIO.parseNote().
+     */
+    private static class NoteBodyReader extends Reader {
+        private static final int NONE = -2;
+
+        private final String prefix;
+        private final Reader delegate;
+        private int prefixPosition;
+        private int pushedBack = NONE;
+        private int lastChar = NONE;
+        private boolean finished;
+
+        NoteBodyReader(String prefix, Reader delegate) {
+            this.prefix = prefix;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (finished) {
+                return -1;
+            }
+            int c = nextRaw();
+            if (c == '\r') {
+                int next = nextRaw();
+                if (next != '\n') {
+                    pushedBack = next; // a lone CR still ends the line
+                }
+                c = '\n';
+            }
+            if (c == -1) {
+                finished = true;
+                if (lastChar != NONE && lastChar != '\n') {
+                    lastChar = '\n';
+                    return '\n';
+                }
+                return -1;
+            }
+            lastChar = c;
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < length) {
+                int c = read();
+                if (c == -1) {
+                    break;
+                }
+                buffer[offset + count++] = (char)c;
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        private int nextRaw() throws IOException {
+            if (pushedBack != NONE) {
+                int c = pushedBack;
+                pushedBack = NONE;
+                return c;
+            }
+            if (prefixPosition < prefix.length()) {
+                return prefix.charAt(prefixPosition++);
+            }
+            return delegate.read();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.extras.io.FileSystemUtil;
+import ca.corbett.extras.progress.SimpleProgressWorker;
+import ca.corbett.snotes.model.Note;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A worker thread that bulk-imports Notes from an external directory or zip archive into our data directory.
+ * This is much faster than creating Notes one at a time, because every phase is done in bulk:
+ * <ol>
+ *     <li><b>Parse:</b> all note files in the source are read and parsed in parallel.</li>
+ *     <li><b>Plan:</b> each Note's save location is computed, and collisions (with existing Notes, with
+ *     files already on disk, or with other Notes in the same import) are resolved in one pass, according
+ *     to the chosen CollisionStrategy. ABORT means the colliding Note is skipped, not that the
+ *     whole import is aborted.</li>
+ *     <li><b>Write:</b> everything is written as a single AtomicWriteBatch (parallel temp file writes,
+ *     then renames, then one sync per directory).</li>
+ * </ol>
+ * <p>
+ * This worker does not touch the DataManager's in-memory caches. Once it's done, DataManager
+ * applies the results (new Notes, replaced Notes) to its caches in one go. If the user cancels
+ * during the parse phase, nothing is written.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class NoteImporter extends SimpleProgressWorker {
+
+    private static final Logger log = Logger.getLogger(NoteImporter.class.getName());
+
+    private static final String NOTE_EXTENSION = "txt";
+    private static final String ARCHIVE_EXTENSION = ".zip";
+
+    private enum Outcome {IMPORTED, OVERWRITTEN, APPENDED}
+
+    private final File source;
+    private final File dataDir;
+    private final DataManager.CollisionStrategy collisionStrategy;
+    private final NoteRegistry existingNotes;
+    private final ImportReport report;
+    private final List<Note> newNotes;
+    private final List<Note> replacedNotes;
+
+    /**
+     * Creates a NoteImporter. Nothing happens until run() is invoked.
+     *
+     * @param source            A directory (searched recursively for note files) or a zip archive.
+     * @param dataDir           Our data directory, which is where the imported Notes will go.
+     * @param collisionStrategy What to do with imported Notes whose save location is already taken.
+     * @param existingNotes     The Notes that are currently loaded, for collision checks. Not modified.
+     */
+    NoteImporter(File source, File dataDir, DataManager.CollisionStrategy collisionStrategy,
+                 NoteRegistry existingNotes) {
+        this.source = source;
+        this.dataDir = dataDir;
+        this.collisionStrategy = collisionStrategy;
+        this.existingNotes = existingNotes;
+        this.report = new ImportReport(source.getName());
+        this.newNotes = new ArrayList<>();
+        this.replacedNotes = new ArrayList<>();
+    }
+
+    /**
+     * Reports whether the given file looks like something we can import from.
+     */
+    static boolean isImportable(File file) {
+        return file != null && (file.isDirectory() || (file.isFile() && isArchive(file)));
+    }
+
+    /**
+     * Returns the results of the import. Only meaningful after run() has completed.
+     */
+    ImportReport getReport() {
+        return report;
+    }
+
+    /**
+     * Returns every Note that was written by this import, each with its new source file.
+     * These should all be added to the DataManager's cache.
+     */
+    List<Note> getNewNotes() {
+        return new ArrayList<>(newNotes);
+    }
+
+    /**
+     * Returns every existing Note whose file was replaced by this import (either overwritten,
+     * or merged into a new Note by appending). These should be removed from the DataManager's cache.
+     */
+    List<Note> getReplacedNotes() {
+        return new ArrayList<>(replacedNotes);
+    }
+
+    @Override
+    public void run() {
+        log.info("Bulk import started from " + source.getAbsolutePath());
+        long startTime = System.currentTimeMillis();
+        fireProgressBegins(1); // dummy value until we know how many files there are; see LoaderThread
+
+        try {
+            List<ImportItem> items = findItems();
+            report.setFoundCount(items.size());
+            fireProgressBegins(items.size() + 1); // one extra step for the write phase
+
+            try (ArchiveHandle archive = ArchiveHandle.open(source)) {
+                List<Note> parsed = parseAll(items, archive);
+                if (parsed == null) {
+                    report.setCanceled(true);
+                    log.warning("Bulk import was canceled by the user. Nothing was written.");
+                    fireProgressCanceled();
+                    return;
+                }
+
+                Map<File, PlannedWrite> plan = planWrites(parsed);
+                fireProgressUpdate(items.size(), "Writing " + plan.size() + " notes...");
+                writeAll(plan);
+            }
+        }
+        catch (IOException ioe) {
+            log.log(Level.SEVERE, "Bulk import failed: " + source.getAbsolutePath(), ioe);
+            report.recordFailed("Import failed: " + ioe.getMessage());
+            report.setElapsedMillis(System.currentTimeMillis() - startTime);
+            fireProgressError("Import", ioe.getMessage());
+            return;
+        }
+
+        report.setElapsedMillis(System.currentTimeMillis() - startTime);
+        log.info(report.getSummary());
+        fireProgressComplete();
+    }
+
+    /**
+     * Lists every candidate note file in our source, in a stable order.
+     */
+    private List<ImportItem> findItems() throws IOException {
+        List<ImportItem> items = new ArrayList<>();
+        if (source.isDirectory()) {
+            List<File> files = FileSystemUtil.findFiles(source, true, NOTE_EXTENSION);
+            files.sort(null);
+            for (File file : files) {
+                items.add(new ImportItem(file.getAbsolutePath(), file, null));
+            }
+        }
+        else if (isArchive(source)) {
+            try (ZipFile zipFile = new ZipFile(source, StandardCharsets.UTF_8)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).endsWith("." + NOTE_EXTENSION)) {
+                        items.add(new ImportItem(source.getName() + "!" + entry.getName(), null, entry.getName()));
+                    }
+                }
+            }
+            items.sort((a, b) -> a.name.compareTo(b.name));
+        }
+        else {
+            throw new IOException("Import source must be a directory or a zip file: " + source.getAbsolutePath());
+        }
+        return items;
+    }
+
+    /**
+     * Reads and parses every item in parallel. Items that fail are recorded in our report and left out.
+     * The returned list is in the same order as the given items, minus any failures.
+     *
+     * @return The parsed Notes, or null if the user canceled.
+     */
+    private List<Note> parseAll(List<ImportItem> items, ArchiveHandle archive) {
+        List<Note> parsed = new ArrayList<>(items.size());
+        if (items.isEmpty()) {
+            return parsed;
+        }
+        int threadCount = Math.min(items.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Note>> futures = new ArrayList<>(items.size());
+            for (ImportItem item : items) {
+                futures.add(executor.submit(() -> parse(item, archive)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                ImportItem item = items.get(i);
+                try {
+                    parsed.add(futures.get(i).get());
+                }
+                catch (ExecutionException ee) {
+                    log.log(Level.WARNING, "Unable to import " + item.name, ee.getCause());
+                    report.recordFailed("Unable to read " + item.name + ": " + ee.getCause().getMessage());
+                }
+                catch (InterruptedException | CancellationException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+
+                if (!fireProgressUpdate(i, item.name)) {
+                    return null;
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return parsed;
+    }
+
+    private static Note parse(ImportItem item, ArchiveHandle archive) throws IOException {
+        List<String> lines;
+        if (item.file != null) {
+            lines = FileSystemUtil.readFileLines(item.file);
+        }
+        else {
+            lines = archive.readLines(item.entryName);
+        }
+        return SnotesIO.parseNote(lines, item.name);
+    }
+
+    /**
+     * Works out where each parsed Note will go, and resolves all collisions according to our strategy.
+     * This is a single sequential pass, so the outcome doesn't depend on parse timing: when two imported
+     * Notes want the same file, the one that comes later in the source wins (OVERWRITE) or goes after
+     * the earlier one (APPEND).
+     */
+    private Map<File, PlannedWrite> planWrites(List<Note> parsed) {
+        Map<File, PlannedWrite> plan = new LinkedHashMap<>();
+        for (Note note : parsed) {
+            File target = SnotesIO.computeFile(dataDir, note).getAbsoluteFile();
+            PlannedWrite planned = plan.get(target);
+            Note existing = (planned == null) ? existingNotes.findByPath(target) : null;
+            boolean isCollision = planned != null || existing != null || target.exists();
+            if (!isCollision) {
+                plan.put(target, new PlannedWrite(note, null, Outcome.IMPORTED));
+                continue;
+            }
+
+            switch (collisionStrategy) {
+                case ABORT:
+                    report.recordSkipped("Note filename collision detected at " + target.getAbsolutePath());
+                    break;
+
+                case OVERWRITE:
+                    if (planned != null) {
+                        // An earlier note in this same import is replaced. It never makes it to disk:
+                        planned.note = note;
+                        planned.outcomes.add(Outcome.OVERWRITTEN);
+                    }
+                    else {
+                        plan.put(target, new PlannedWrite(note, existing, Outcome.OVERWRITTEN));
+                    }
+                    break;
+
+                case APPEND:
+                    if (planned != null) {
+                        planned.note.setText(DataManager.appendNoteText(planned.note.getText(), note.getText()));
+                        planned.outcomes.add(Outcome.APPENDED);
+                        break;
+                    }
+                    String existingText;
+                    if (existing != null) {
+                        existingText = existing.getText();
+                    }
+                    else {
+                        // There's a file on disk that we don't know about. Read it so we don't lose it:
+                        try {
+                            existingText = SnotesIO.loadNote(target).getText();
+                        }
+                        catch (IOException ioe) {
+                            report.recordFailed("Unable to append to " + target.getAbsolutePath()
+                                                    + ": " + ioe.getMessage());
+                            break;
+                        }
+                    }
+                    // The existing Note is replaced by a merged copy, just like an interactive APPEND save:
+                    note.setText(DataManager.appendNoteText(existingText, note.getText()));
+                    plan.put(target, new PlannedWrite(note, existing, Outcome.APPENDED));
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown collision strategy: " + collisionStrategy);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Writes every planned Note as one group commit, and tallies up the results.
+     */
+    private void writeAll(Map<File, PlannedWrite> plan) {
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+        for (Map.Entry<File, PlannedWrite> entry : plan.entrySet()) {
+            File target = entry.getKey();
+            PlannedWrite planned = entry.getValue();
+            byte[] content = SnotesIO.toBytes(planned.note);
+            batch.add(target, content, () -> {
+                planned.isWritten = true;
+                planned.note.setSourceFile(target);
+                planned.note.setSavedContentHash(SnotesIO.contentHash(content));
+                planned.note.markClean();
+            });
+        }
+
+        try {
+            batch.commit();
+        }
+        catch (IOException ioe) {
+            // Either nothing was written, or some renames failed. The isWritten flags tell us which:
+            log.log(Level.SEVERE, "Bulk import could not write all notes.", ioe);
+        }
+
+        for (Map.Entry<File, PlannedWrite> entry : plan.entrySet()) {
+            PlannedWrite planned = entry.getValue();
+            if (!planned.isWritten) {
+                for (Outcome ignored : planned.outcomes) {
+                    report.recordFailed("Unable to write " + entry.getKey().getAbsolutePath());
+                }
+                continue;
+            }
+            newNotes.add(planned.note);
+            if (planned.replaces != null) {
+                replacedNotes.add(planned.replaces);
+            }
+            for (Outcome outcome : planned.outcomes) {
+                switch (outcome) {
+                    case IMPORTED:
+                        report.incrementImported();
+                        break;
+                    case OVERWRITTEN:
+                        report.incrementOverwritten();
+                        break;
+                    case APPENDED:
+                        report.incrementAppended();
+                        break;
+                }
+            }
+        }
+    }
+
+    private static boolean isArchive(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(ARCHIVE_EXTENSION);
+    }
+
+    /**
+     * A single note file to import: either a plain file, or an entry in our zip archive.
+     */
+    private static class ImportItem {
+        private final String name;
+        private final File file;
+        private final String entryName;
+
+        ImportItem(String name, File file, String entryName) {
+            this.name = name;
+            this.file = file;
+            this.entryName = entryName;
+        }
+    }
+
+    /**
+     * A Note that we intend to write, along with the existing Note (if any) that it replaces,
+     * and the outcome of every imported Note that ended up being folded into it.
+     */
+    private static class PlannedWrite {
+        private final Note replaces;
+        private final List<Outcome> outcomes;
+        private Note note;
+        private boolean isWritten;
+
+        PlannedWrite(Note note, Note replaces, Outcome outcome) {
+            this.note = note;
+            this.replaces = replaces;
+            this.outcomes = new ArrayList<>();
+            this.outcomes.add(outcome);
+        }
+    }
+
+    /**
+     * Keeps our zip archive (if we're importing from one) open for the duration of the parse phase.
+     * ZipFile is safe to read from several threads at once.
+     */
+    private static class ArchiveHandle implements AutoCloseable {
+        private final ZipFile zipFile;
+
+        private ArchiveHandle(ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+
+        static ArchiveHandle open(File source) throws IOException {
+            return new ArchiveHandle(isArchive(source) ? new ZipFile(source, StandardCharsets.UTF_8) : null);
+        }
+
+        List<String> readLines(String entryName) throws IOException {
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("Archive entry has disappeared: " + entryName);
+            }
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (zipFile != null) {
+                zipFile.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.extras.io.FileSystemUtil;
+import ca.corbett.snotes.model.Note;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs all the note files for one year into a single compressed, indexed file, and reads
+ * them back out again. A data directory with many years of notes holds tens of thousands of tiny
+ * files, which is slow to scan and to back up. Once a year is over, its notes rarely change,
+ * so the whole yyyy directory can be replaced by one yyyy.pack file alongside it.
+ * <p>
+ * <b>Format:</b> a pack is a plain zip archive. Each entry is one note file, byte for byte, stored
+ * under its path relative to the data directory (for example "2012/03/04/work.txt"). The zip
+ * central directory doubles as our index, so any single note can be read without scanning the rest.
+ * </p>
+ * <p>
+ * <b>Paths:</b> packed Notes keep the same source file they had before packing, even though that file
+ * no longer exists on disk. findPack() maps such a path back to the pack that holds it, which is how
+ * SnotesIO.loadNote() and DataManager read packed notes transparently.
+ * </p>
+ * <p>
+ * <b>Crash safety:</b> the pack is written to a temp file and renamed into place before any loose files
+ * are removed, and unpacking writes all the loose files before the pack is removed. If we die part way,
+ * the same note can briefly exist both loose and packed. Loose files always win in that case,
+ * both here and when loading, so nothing is lost and nothing comes back from the dead.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+final class NotePack {
+
+    private static final Logger log = Logger.getLogger(NotePack.class.getName());
+
+    static final String EXTENSION = "pack";
+
+    private static final Pattern YEAR_PATTERN = Pattern.compile("\\d{4}");
+
+    private NotePack() {
+    }
+
+    /**
+     * Returns the pack file for the given year. It may or may not exist.
+     */
+    static File fileFor(File dataDir, int year) {
+        return new File(dataDir, String.format("%04d", year) + "." + EXTENSION);
+    }
+
+    /**
+     * Returns every year that currently has a pack file in the given data directory, in ascending order.
+     */
+    static List<Integer> findPackedYears(File dataDir) {
+        List<Integer> years = new ArrayList<>();
+        File[] packFiles = dataDir.listFiles((dir, name) -> name.endsWith("." + EXTENSION));
+        if (packFiles == null) {
+            return years;
+        }
+        for (File packFile : packFiles) {
+            String baseName = packFile.getName().substring(0, packFile.getName().length() - EXTENSION.length() - 1);
+            if (packFile.isFile() && YEAR_PATTERN.matcher(baseName).matches()) {
+                years.add(Integer.parseInt(baseName));
+            }
+        }
+        years.sort(null);
+        return years;
+    }
+
+    /**
+     * Returns the pack file that would hold the given note file, or null if the given file is not
+     * in a packed year. Only the file's path is examined; this doesn't check the pack's contents.
+     */
+    static File findPack(File noteFile) {
+        if (noteFile == null) {
+            return null;
+        }
+        File dir = noteFile.getAbsoluteFile().getParentFile();
+        while (dir != null && dir.getParentFile() != null) {
+            if (YEAR_PATTERN.matcher(dir.getName()).matches()) {
+                File packFile = new File(dir.getParentFile(), dir.getName() + "." + EXTENSION);
+                if (packFile.isFile()) {
+                    return packFile;
+                }
+            }
+            dir = dir.getParentFile();
+        }
+        return null;
+    }
+
+    /**
+     * Like findPack(File), but only considers packs in the given data directory, for a note file
+     * in a yyyy directory directly beneath it. This is what DataManager uses.
+     */
+    static File findPack(File dataDir, File noteFile) {
+        if (noteFile == null) {
+            return null;
+        }
+        Path dataDirPath = dataDir.toPath().toAbsolutePath().normalize();
+        Path notePath = noteFile.toPath().toAbsolutePath().normalize();
+        if (!notePath.startsWith(dataDirPath) || notePath.getNameCount() <= dataDirPath.getNameCount() + 1) {
+            return null;
+        }
+        String topLevelName = notePath.getName(dataDirPath.getNameCount()).toString();
+        if (!YEAR_PATTERN.matcher(topLevelName).matches()) {
+            return null;
+        }
+        File packFile = new File(dataDir, topLevelName + "." + EXTENSION);
+        return packFile.isFile() ? packFile : null;
+    }
+
+    /**
+     * Reports whether the given pack holds an entry for the given note file.
+     */
+    static boolean contains(File packFile, File noteFile) throws IOException {
+        try (ZipFile zip = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            return zip.getEntry(entryName(packFile.getParentFile(), noteFile)) != null;
+        }
+    }
+
+    /**
+     * Loads a single Note out of the given pack. The returned Note's source file is the given file.
+     *
+     * @throws IOException If the pack can't be read, or has no such note.
+     */
+    static Note loadNote(File packFile, File noteFile) throws IOException {
+        try (ZipFile zip = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            String entryName = entryName(packFile.getParentFile(), noteFile);
+            ZipEntry entry = zip.getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("Pack " + packFile.getName() + " has no note " + entryName);
+            }
+            return readNote(zip, entry, noteFile);
+        }
+    }
+
+    /**
+     * Loads every Note in the given pack, in one sequential pass. Each Note's source file is
+     * the (virtual) location that it was packed from.
+     */
+    static List<Note> loadAll(File packFile) throws IOException {
+        File dataDir = packFile.getAbsoluteFile().getParentFile();
+        List<Note> notes = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                notes.add(readNote(zip, entry, resolveEntry(dataDir, packFile, entry.getName())));
+            }
+        }
+        return notes;
+    }
+
+    /**
+     * Packs every note file under the given year's directory into that year's pack file, and then
+     * removes the loose files (and any directories left empty). If the year already has a pack,
+     * the loose files are merged into it, replacing any packed copies. Non-note files are left alone.
+     *
+     * @return The number of notes in the resulting pack.
+     * @throws IOException If the pack could not be written. Nothing is removed in that case.
+     */
+    static int pack(File dataDir, int year) throws IOException {
+        File yearDir = new File(dataDir, String.format("%04d", year));
+        File packFile = fileFor(dataDir, year);
+        List<File> looseFiles = yearDir.isDirectory()
+            ? FileSystemUtil.findFiles(yearDir, true, "txt")
+            : new ArrayList<>();
+        Map<String, File> looseByEntry = new TreeMap<>(); // sorted, so packs are laid out in date order
+        for (File looseFile : looseFiles) {
+            looseByEntry.put(entryName(dataDir, looseFile), looseFile);
+        }
+        if (looseByEntry.isEmpty()) {
+            return packFile.isFile() ? countEntries(packFile) : 0;
+        }
+
+        File tempFile = File.createTempFile("." + packFile.getName() + ".", "." + SnotesIO.TEMP_EXTENSION, dataDir);
+        int count = 0;
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile);
+                 ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(fileOut),
+                                                           StandardCharsets.UTF_8)) {
+                zip.setLevel(9); // packs are written once and read many times
+                if (packFile.isFile()) {
+                    count += copyExistingEntries(packFile, looseByEntry, zip);
+                }
+                for (Map.Entry<String, File> loose : looseByEntry.entrySet()) {
+                    ZipEntry entry = new ZipEntry(loose.getKey());
+                    entry.setTime(loose.getValue().lastModified());
+                    zip.putNextEntry(entry);
+                    Files.copy(loose.getValue().toPath(), zip);
+                    zip.closeEntry();
+                    count++;
+                }
+                zip.finish();
+                zip.flush();
+                fileOut.getFD().sync(); // the pack must be durable before we remove anything
+            }
+            SnotesIO.commitTempFile(tempFile, packFile);
+            SnotesIO.syncDirectory(dataDir);
+        }
+        finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        // Now it's safe to remove the loose copies:
+        for (File looseFile : looseByEntry.values()) {
+            if (!looseFile.delete()) {
+                log.warning("Unable to remove packed note file: " + looseFile.getAbsolutePath());
+            }
+        }
+        removeEmptyDirectories(yearDir);
+        log.info("Packed " + count + " notes into " + packFile.getName());
+        return count;
+    }
+
+    /**
+     * Writes every note in the given pack back out as a loose file, and then removes the pack.
+     * Notes that already exist as loose files are not overwritten, since those are newer.
+     *
+     * @return The number of notes that were written out.
+     * @throws IOException If the notes could not be written. The pack is kept in that case.
+     */
+    static int unpack(File packFile) throws IOException {
+        File dataDir = packFile.getAbsoluteFile().getParentFile();
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+        try (ZipFile zip = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                File target = resolveEntry(dataDir, packFile, entry.getName());
+                if (target.exists()) {
+                    continue; // a loose copy always wins
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    batch.add(target, in.readAllBytes(), null);
+                }
+            }
+        }
+
+        int count = batch.size();
+        batch.commit();
+        Files.delete(packFile.toPath());
+        SnotesIO.syncDirectory(dataDir);
+        log.info("Unpacked " + count + " notes from " + packFile.getName());
+        return count;
+    }
+
+    private static int copyExistingEntries(File packFile, Map<String, File> replacements, ZipOutputStream zip)
+        throws IOException {
+        int count = 0;
+        try (ZipFile existing = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = existing.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || replacements.containsKey(entry.getName())) {
+                    continue;
+                }
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                zip.putNextEntry(copy);
+                try (InputStream in = existing.getInputStream(entry)) {
+                    in.transferTo(zip);
+                }
+                zip.closeEntry();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countEntries(File packFile) throws IOException {
+        try (ZipFile zip = new ZipFile(packFile, StandardCharsets.UTF_8)) {
+            return zip.size();
+        }
+    }
+
+    private static Note readNote(ZipFile zip, ZipEntry entry, File sourceFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        Note note = SnotesIO.parseNote(lines, sourceFile.getAbsolutePath());
+        note.setSourceFile(sourceFile);
+        note.setSavedContentHash(SnotesIO.contentHash(SnotesIO.toBytes(note)));
+        note.markClean();
+        return note;
+    }
+
+    /**
+     * Returns the entry name for the given note file: its path relative to the data directory,
+     * always with forward slashes.
+     */
+    private static String entryName(File dataDir, File noteFile) {
+        Path dataDirPath = dataDir.toPath().toAbsolutePath().normalize();
+        Path notePath = noteFile.toPath().toAbsolutePath().normalize();
+        return dataDirPath.relativize(notePath).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Maps an entry name back to a file in the data directory, refusing anything that
+     * would land outside of the pack's own year directory.
+     */
+    private static File resolveEntry(File dataDir, File packFile, String entryName) throws IOException {
+        String year = packFile.getName().substring(0, packFile.getName().length() - EXTENSION.length() - 1);
+        Path yearPath = dataDir.toPath().toAbsolutePath().normalize().resolve(year);
+        Path target = yearPath.getParent().resolve(entryName).normalize();
+        if (!target.startsWith(yearPath)) {
+            throw new IOException("Pack " + packFile.getName() + " has an entry outside of its year: " + entryName);
+        }
+        return target.toFile();
+    }
+
+    /**
+     * Removes the given directory and everything below it, but only where there is nothing left to remove.
+     */
+    private static void removeEmptyDirectories(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                removeEmptyDirectories(child);
+            }
+        }
+        String[] remaining = dir.list();
+        if (remaining != null && remaining.length == 0 && !dir.delete()) {
+            log.fine("Unable to remove empty directory: " + dir.getAbsolutePath());
+        }
+    }
+}
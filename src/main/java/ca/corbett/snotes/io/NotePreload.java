@@ -0,0 +1,102 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.metrics.StartupTimeline;
+import ca.corbett.snotes.model.Note;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads every Note in a data directory (packed Notes included) on a background thread, so that reading
+ * the Notes, which is by far the slowest part of startup, can overlap with everything else that startup
+ * has to do. Main starts one of these before it does anything else, and hands it to the DataManager,
+ * whose first loadAll() then waits for these results instead of reading every Note all over again.
+ * <p>
+ *     A preload never writes anything. If the data directory doesn't exist yet, which is normal on
+ *     the very first run, there is nothing to preload, and start() returns null.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class NotePreload {
+
+    private static final Logger log = Logger.getLogger(NotePreload.class.getName());
+
+    private final File dataDir;
+    private final long largeNoteThreshold;
+    private final CompletableFuture<List<Note>> notes;
+
+    private NotePreload(File dataDir, long largeNoteThreshold) {
+        this.dataDir = dataDir;
+        this.largeNoteThreshold = largeNoteThreshold;
+        this.notes = new CompletableFuture<>();
+    }
+
+    /**
+     * Starts loading all Notes in the given data directory on a background thread.
+     *
+     * @param dataDir            The data directory to load from.
+     * @param largeNoteThreshold The large note threshold to load with. See DataManager.setLargeNoteThreshold().
+     * @return The running preload, or null if the given directory doesn't exist.
+     */
+    public static NotePreload start(File dataDir, long largeNoteThreshold) {
+        if (dataDir == null || !dataDir.isDirectory()) {
+            return null;
+        }
+        NotePreload preload = new NotePreload(dataDir, largeNoteThreshold);
+        Thread thread = new Thread(preload::load, "Snotes-Preload");
+        thread.setDaemon(true); // read-only, so there is nothing to finish if the JVM exits.
+        thread.start();
+        return preload;
+    }
+
+    /**
+     * Returns a preload of the given data directory that has already failed with the given cause.
+     * This is for unit tests.
+     */
+    static NotePreload failed(File dataDir, long largeNoteThreshold, Throwable cause) {
+        NotePreload preload = new NotePreload(dataDir, largeNoteThreshold);
+        preload.notes.completeExceptionally(cause);
+        return preload;
+    }
+
+    /**
+     * Reports whether this preload is loading the given data directory, with the given large note threshold.
+     */
+    boolean isFor(File dataDir, long largeNoteThreshold) {
+        return dataDir != null
+            && this.dataDir.getAbsoluteFile().equals(dataDir.getAbsoluteFile())
+            && this.largeNoteThreshold == largeNoteThreshold;
+    }
+
+    /**
+     * Returns our results, which are complete once the returned future is.
+     */
+    CompletableFuture<List<Note>> getNotes() {
+        return notes;
+    }
+
+    private void load() {
+        long startTime = System.nanoTime();
+        try {
+            LoaderThread<Note> loaderThread = DataManager.createNoteLoader(dataDir, largeNoteThreshold);
+            loaderThread.run();
+            List<Note> allNotes = loaderThread.getSearchResults();
+            allNotes.addAll(DataManager.loadPackedNotes(dataDir, allNotes));
+            if (loaderThread.hadErrors()) {
+                log.warning("Some Notes could not be preloaded. Results may be incomplete.");
+            }
+            StartupTimeline.getInstance().phaseComplete("notePreload", startTime);
+            notes.complete(allNotes);
+        }
+        catch (Throwable t) {
+            // Anything at all, even an Error, must complete the future, or loadAll() would wait forever:
+            log.log(Level.SEVERE, "Preloading notes failed: " + t.getMessage(), t);
+            notes.completeExceptionally(t);
+        }
+    }
+}
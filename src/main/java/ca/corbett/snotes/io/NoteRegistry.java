@@ -0,0 +1,222 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory collection of Notes, indexed both by identity and by source file path.
+ * This replaces the plain lists that DataManager used to keep, where every contains() check,
+ * every collision lookup, and every add (copy-on-write!) cost O(n) in the size of the corpus.
+ * <ul>
+ *     <li><b>Lookups</b> by Note identity (contains) and by source path (findByPath) are O(1).</li>
+ *     <li><b>Adds and removes</b> touch only the Note in question - nothing is copied.</li>
+ *     <li><b>Iteration</b> is in insertion order, and is safe while other threads add or remove Notes.
+ *     Like the concurrent collections it is built on, iteration is weakly consistent: it never throws
+ *     ConcurrentModificationException, but it may or may not reflect changes made while it is in progress.
+ *     Use snapshot() if you need a stable copy.</li>
+ * </ul>
+ * <p>
+ * <b>Paths:</b> Notes are indexed by their absolute, normalized source path. We deliberately don't use
+ * File.getCanonicalPath() here, since that goes to disk (to resolve symlinks) on every lookup.
+ * Because a Note's source file can change when it is saved, whoever changes it must invoke
+ * reindex() afterwards. As a safety net, findByPath() never returns a Note whose current
+ * source file no longer matches the requested path.
+ * </p>
+ * <p>
+ * Reads are lock-free. Writes are synchronized, so that the two indexes always agree with each other.
+ * Note does not override equals() or hashCode(), so the identity index really is by identity.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class NoteRegistry implements Iterable<Note> {
+
+    private final AtomicLong nextSequence;
+    private final Map<Note, Entry> entriesByNote;
+    private final ConcurrentSkipListMap<Long, Note> notesInOrder;
+    private final Map<Path, Note> notesByPath;
+
+    NoteRegistry() {
+        this.nextSequence = new AtomicLong();
+        this.entriesByNote = new ConcurrentHashMap<>();
+        this.notesInOrder = new ConcurrentSkipListMap<>();
+        this.notesByPath = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds the given Note to this registry, if it isn't already here.
+     *
+     * @return true if the Note was added, false if it was already present.
+     */
+    synchronized boolean add(Note note) {
+        if (note == null) {
+            throw new IllegalArgumentException("Cannot register a null Note.");
+        }
+        if (entriesByNote.containsKey(note)) {
+            return false;
+        }
+        Entry entry = new Entry(nextSequence.getAndIncrement(), pathKey(note.getSourceFile()));
+        entriesByNote.put(note, entry);
+        notesInOrder.put(entry.sequence, note);
+        if (entry.path != null) {
+            notesByPath.put(entry.path, note);
+        }
+        return true;
+    }
+
+    /**
+     * Adds all of the given Notes, in order. Notes that are already present are skipped.
+     */
+    synchronized void addAll(Collection<Note> notes) {
+        for (Note note : notes) {
+            add(note);
+        }
+    }
+
+    /**
+     * Removes the given Note from this registry.
+     *
+     * @return true if the Note was present and has been removed.
+     */
+    synchronized boolean remove(Note note) {
+        if (note == null) {
+            return false;
+        }
+        Entry entry = entriesByNote.remove(note);
+        if (entry == null) {
+            return false;
+        }
+        notesInOrder.remove(entry.sequence);
+        if (entry.path != null) {
+            notesByPath.remove(entry.path, note); // only if it still maps to this Note
+        }
+        return true;
+    }
+
+    /**
+     * Removes everything from this registry.
+     */
+    synchronized void clear() {
+        entriesByNote.clear();
+        notesInOrder.clear();
+        notesByPath.clear();
+    }
+
+    /**
+     * Updates the path index for the given Note, after its source file has changed.
+     * Does nothing if the Note is not in this registry.
+     */
+    synchronized void reindex(Note note) {
+        Entry entry = entriesByNote.get(note);
+        if (entry == null) {
+            return;
+        }
+        Path newPath = pathKey(note.getSourceFile());
+        if (entry.path != null) {
+            notesByPath.remove(entry.path, note);
+        }
+        entry.path = newPath;
+        if (newPath != null) {
+            notesByPath.put(newPath, note);
+        }
+    }
+
+    /**
+     * Reports whether the given Note instance is in this registry. O(1).
+     */
+    boolean contains(Note note) {
+        return note != null && entriesByNote.containsKey(note);
+    }
+
+    /**
+     * Returns the Note in this registry whose source file is the given file, or null if there isn't one. O(1).
+     */
+    Note findByPath(File file) {
+        Path key = pathKey(file);
+        if (key == null) {
+            return null;
+        }
+        Note note = notesByPath.get(key);
+        if (note == null || !key.equals(pathKey(note.getSourceFile()))) {
+            return null; // someone moved this Note without telling us
+        }
+        return note;
+    }
+
+    int size() {
+        return entriesByNote.size();
+    }
+
+    /**
+     * Returns the number of entries in our by-path index. This should match size(), except for Notes
+     * that have no source file yet. It's reported separately so that any drift between the two shows up.
+     */
+    int getPathIndexSize() {
+        return notesByPath.size();
+    }
+
+    boolean isEmpty() {
+        return entriesByNote.isEmpty();
+    }
+
+    /**
+     * Returns a new List containing every Note in this registry, in insertion order.
+     */
+    List<Note> snapshot() {
+        return new ArrayList<>(notesInOrder.values());
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the Notes in this registry, in insertion order.
+     * The iterator does not support remove().
+     */
+    @Override
+    public Iterator<Note> iterator() {
+        Iterator<Note> delegate = notesInOrder.values().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Note next() {
+                return delegate.next();
+            }
+        };
+    }
+
+    /**
+     * Returns the key that we index the given file under, or null if the file is null.
+     */
+    private static Path pathKey(File file) {
+        if (file == null) {
+            return null;
+        }
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Bookkeeping for a single registered Note. The path is only modified under the registry's lock.
+     */
+    private static class Entry {
+        private final long sequence;
+        private volatile Path path;
+
+        Entry(long sequence, Path path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A write-behind queue for Note saves. DataManager does all of the in-memory bookkeeping for a save
+ * (computing the save path, handling collisions, promoting scratch notes) on the calling thread,
+ * and then hands the serialized content off to this queue to actually be written to disk.
+ * <p>
+ * <b>Ordering:</b> all writes are performed by a single background thread, in the order they
+ * were submitted. This means that writes to any given file always land in submission order.
+ * </p>
+ * <p>
+ * <b>Coalescing:</b> if a Note is submitted again while an earlier write for that same Note to
+ * that same file is still waiting in the queue, the earlier write is simply updated with the newer content,
+ * instead of writing the file twice. Listeners from both submissions are notified when that write completes.
+ * </p>
+ * <p>
+ * <b>Notification:</b> SaveListeners are always notified on the Swing EDT.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class SaveQueue {
+
+    private static final Logger log = Logger.getLogger(SaveQueue.class.getName());
+
+    private final ExecutorService executor;
+    private final Map<Note, PendingWrite> pendingByNote;
+    private final AtomicInteger queuedCount;
+    private boolean isShutdown;
+
+    SaveQueue() {
+        this.pendingByNote = new IdentityHashMap<>();
+        this.queuedCount = new AtomicInteger(0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Snotes-SaveQueue");
+            thread.setDaemon(true); // never hold up JVM exit; DataManager.shutdown() flushes us explicitly.
+            return thread;
+        });
+        this.isShutdown = false;
+    }
+
+    /**
+     * Queues up a write of the given content to the given target file, on behalf of the given Note.
+     *
+     * @param note         The Note being saved. Used for coalescing and for notification.
+     * @param targetFile   The file to write. Parent directories are created as needed.
+     * @param content      The serialized Note content.
+     * @param fileToDelete An optional file to delete once the write succeeds (the Note's previous home). Can be null.
+     * @param listener     An optional listener to notify (on the EDT) when the write completes. Can be null.
+     * @throws IOException If this queue has already been shut down.
+     */
+    synchronized void submit(Note note, File targetFile, byte[] content, File fileToDelete,
+                             DataManager.SaveListener listener) throws IOException {
+        if (isShutdown) {
+            throw new IOException("Save queue has been shut down; cannot save " + targetFile.getAbsolutePath());
+        }
+
+        // If there's already a write queued for this Note to this same file, just update it in place:
+        PendingWrite pending = pendingByNote.get(note);
+        if (pending != null && pending.targetFile.equals(targetFile)) {
+            pending.content = content;
+            if (pending.fileToDelete == null) {
+                pending.fileToDelete = fileToDelete;
+            }
+            if (listener != null) {
+                pending.listeners.add(listener);
+            }
+            log.fine("Coalesced queued save for " + targetFile.getAbsolutePath());
+            return;
+        }
+
+        PendingWrite write = new PendingWrite(note, targetFile, content, fileToDelete);
+        if (listener != null) {
+            write.listeners.add(listener);
+        }
+        pendingByNote.put(note, write);
+        queuedCount.incrementAndGet();
+        executor.submit(write);
+    }
+
+    /**
+     * Some arbitrary piece of IO to be done on the background save thread. See submitTask().
+     */
+    @FunctionalInterface
+    interface IOTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Queues up an arbitrary IO task on behalf of the given Note, to be run on the background save thread
+     * in order with all other queued writes. Failures are logged, and passed to the given failure handler, if any.
+     * This is used for work that must be ordered relative to Note writes, like scratch journal updates.
+     * <p>
+     * The task acts as a barrier for coalescing: a later save of the same Note will never be folded into
+     * a write that was queued before this task, since that would reorder the two.
+     * </p>
+     *
+     * @param note           The Note that this task relates to.
+     * @param description    A short description of the task, for logging.
+     * @param task           The work to do.
+     * @param failureHandler Optional. Invoked on the background thread if the task throws. Can be null.
+     * @throws IOException If this queue has already been shut down.
+     */
+    synchronized void submitTask(Note note, String description, IOTask task, Runnable failureHandler)
+        throws IOException {
+        if (isShutdown) {
+            throw new IOException("Save queue has been shut down; cannot run task: " + description);
+        }
+        pendingByNote.remove(note); // the earlier write (if any) stays queued, but is closed to coalescing
+        queuedCount.incrementAndGet();
+        executor.submit(() -> {
+            try {
+                task.run();
+            }
+            catch (IOException ioe) {
+                log.log(Level.SEVERE, "Background task failed: " + description, ioe);
+                if (failureHandler != null) {
+                    failureHandler.run();
+                }
+            }
+            finally {
+                queuedCount.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Discards any queued (not yet started) write for the given Note. Listeners for the discarded
+     * write are not notified. This is used when a Note is deleted, so that a queued write doesn't
+     * resurrect its file after the fact. A write that is already in progress is not affected;
+     * use flush() if you need to wait for it.
+     */
+    synchronized void discard(Note note) {
+        PendingWrite pending = pendingByNote.remove(note);
+        if (pending != null) {
+            pending.isDiscarded = true;
+            log.fine("Discarded queued save for " + pending.targetFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reports whether there are any writes that have been submitted but not yet started.
+     */
+    synchronized boolean hasPendingWrites() {
+        return !pendingByNote.isEmpty();
+    }
+
+    /**
+     * Returns the number of writes and tasks that have been queued and haven't finished yet,
+     * including one that may be in progress right now. Coalesced saves only count once.
+     */
+    int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Blocks until every write that was submitted before this call has completed (successfully or not).
+     * Listeners for those writes will have been queued up on the EDT by the time this returns,
+     * though if this is invoked from the EDT, they will of course not run until after it returns.
+     *
+     * @param timeout How long to wait, at most.
+     * @param unit    The unit for the timeout value.
+     * @return true if the queue was flushed, false if we timed out or were interrupted.
+     */
+    boolean flush(long timeout, TimeUnit unit) {
+        Future<?> marker;
+        synchronized (this) {
+            if (isShutdown) {
+                return true; // shutdown() already drained us
+            }
+            marker = executor.submit(() -> { });
+        }
+        try {
+            marker.get(timeout, unit);
+            return true;
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException | TimeoutException e) {
+            log.log(Level.WARNING, "Save queue did not flush cleanly.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting new writes, waits up to the given timeout for all queued writes to complete,
+     * and then stops the background thread.
+     *
+     * @return true if all queued writes completed within the timeout, false otherwise.
+     */
+    boolean shutdown(long timeout, TimeUnit unit) {
+        synchronized (this) {
+            if (isShutdown) {
+                return true;
+            }
+            isShutdown = true;
+            executor.shutdown();
+        }
+        try {
+            boolean terminated = executor.awaitTermination(timeout, unit);
+            if (!terminated) {
+                log.severe("Save queue did not finish writing within " + timeout + " " + unit
+                               + ". Some changes may not have been saved.");
+            }
+            return terminated;
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A single queued write. Fields are guarded by the enclosing SaveQueue's monitor until the
+     * write starts, after which only the background thread touches them.
+     */
+    private class PendingWrite implements Runnable {
+        private final Note note;
+        private final File targetFile;
+        private final List<DataManager.SaveListener> listeners;
+        private byte[] content;
+        private File fileToDelete;
+        private boolean isDiscarded;
+
+        PendingWrite(Note note, File targetFile, byte[] content, File fileToDelete) {
+            this.note = note;
+            this.targetFile = targetFile;
+            this.content = content;
+            this.fileToDelete = fileToDelete;
+            this.listeners = new ArrayList<>();
+        }
+
+        @Override
+        public void run() {
+            try {
+                write();
+            }
+            finally {
+                queuedCount.decrementAndGet();
+            }
+        }
+
+        private void write() {
+            // Once we start, no more coalescing into this write:
+            byte[] contentToWrite;
+            File oldFile;
+            List<DataManager.SaveListener> listenersToNotify;
+            synchronized (SaveQueue.this) {
+                if (isDiscarded) {
+                    return;
+                }
+                if (pendingByNote.get(note) == this) {
+                    pendingByNote.remove(note);
+                }
+                contentToWrite = content;
+                oldFile = fileToDelete;
+                listenersToNotify = new ArrayList<>(listeners);
+            }
+
+            IOException failure = null;
+            try {
+                File parentDir = targetFile.getParentFile();
+                if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                    throw new IOException("Failed to create directories for target file: "
+                                              + targetFile.getAbsolutePath());
+                }
+                SnotesIO.writeAtomically(targetFile, contentToWrite);
+
+                // Only now that the new file is safely on disk do we remove the old one:
+                if (oldFile != null && oldFile.exists() && !oldFile.equals(targetFile)) {
+                    if (!oldFile.delete()) {
+                        // This is not fatal, but it is wonky... warn but proceed:
+                        log.warning("Failed to delete old source file for note: " + oldFile.getAbsolutePath());
+                    }
+                }
+                log.info("Saved note (background): " + targetFile.getName());
+            }
+            catch (IOException ioe) {
+                log.log(Level.SEVERE, "Background save failed: " + targetFile.getAbsolutePath(), ioe);
+                failure = ioe;
+            }
+
+            final IOException result = failure;
+            SwingUtilities.invokeLater(() -> {
+                if (result != null) {
+                    note.markDirty(); // so the next save (or saveAll) will try again
+                    note.setSavedContentHash(null); // and so that it won't be skipped as unchanged
+                }
+                for (DataManager.SaveListener listener : listenersToNotify) {
+                    if (result == null) {
+                        listener.saveComplete(note);
+                    }
+                    else {
+                        listener.saveFailed(note, result);
+                    }
+                }
+            });
+        }
+    }
+}
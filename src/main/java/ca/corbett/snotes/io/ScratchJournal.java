@@ -0,0 +1,381 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.TagList;
+import ca.corbett.snotes.model.YMDDate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal of edits to a single scratch Note. Rather than rewriting the entire
+ * scratch file on every auto-save tick, the WriterFrame records each change to its document
+ * as a small delta (an insert or a removal at some offset), and every so often those deltas
+ * are appended to a journal file that lives alongside the scratch file. If the application
+ * crashes, the journal can be replayed on the next startup to recover the exact editor state.
+ * <p>
+ * The journal is "compacted" whenever the scratch note is explicitly saved: the full note is
+ * written out to the scratch file as usual, and the journal is discarded. The next batch of
+ * deltas will start a fresh journal, beginning with a snapshot of the state that was just saved.
+ * </p>
+ * <p>
+ * <b>Journal format:</b> the journal is a plain text file with one record per line. All text
+ * payloads are Base64-encoded, so that no record ever spans more than one line. Every record
+ * is terminated by a newline, so a torn final record (from a crash mid-write) can be recognized
+ * and is simply ignored on replay.
+ * </p>
+ * <ul>
+ *     <li>{@code S <date> <tags> <text>} - a full snapshot. Every journal starts with exactly one of these.</li>
+ *     <li>{@code H <date> <tags>} - the date and/or tag fields were changed.</li>
+ *     <li>{@code I <offset> <text>} - text was inserted at the given offset.</li>
+ *     <li>{@code R <offset> <length>} - the given number of characters were removed at the given offset.</li>
+ * </ul>
+ * <p>
+ * Instances are created by DataManager.openScratchJournal(). The record methods are cheap,
+ * in-memory operations intended to be invoked directly from a DocumentListener on the EDT.
+ * Nothing is written to disk until DataManager.flushScratchJournal() is invoked.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class ScratchJournal {
+
+    private static final Logger log = Logger.getLogger(ScratchJournal.class.getName());
+
+    /**
+     * Journal files are named after their scratch file, with this extension appended.
+     * The scratch loader only looks for "txt" files, so it won't trip over these.
+     */
+    public static final String EXTENSION = "journal";
+
+    private static final String SNAPSHOT = "S";
+    private static final String HEADER = "H";
+    private static final String INSERT = "I";
+    private static final String REMOVE = "R";
+
+    private final File journalFile;
+    private final List<String> pendingRecords;
+    private boolean isStarted;
+    private volatile boolean needsRestart;
+    private String baseDate;
+    private String baseTags;
+    private String baseText;
+
+    ScratchJournal(File journalFile, String date, String tags, String text) {
+        this.journalFile = journalFile;
+        this.pendingRecords = new ArrayList<>();
+        setBase(date, tags, text);
+    }
+
+    /**
+     * Returns the journal file that this instance appends to. It may not exist yet.
+     */
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Records that the given text was inserted into the document at the given offset.
+     */
+    public void recordInsert(int offset, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        pendingRecords.add(INSERT + " " + offset + " " + encode(text));
+    }
+
+    /**
+     * Records that the given number of characters were removed from the document at the given offset.
+     */
+    public void recordRemove(int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        pendingRecords.add(REMOVE + " " + offset + " " + length);
+    }
+
+    /**
+     * Records the current raw values of the date and tag fields.
+     */
+    public void recordHeader(String date, String tags) {
+        pendingRecords.add(HEADER + " " + encode(date) + " " + encode(tags));
+    }
+
+    /**
+     * Reports whether there are recorded edits that have not yet been handed off to be written.
+     */
+    public boolean hasPendingEdits() {
+        return !pendingRecords.isEmpty();
+    }
+
+    /**
+     * Returns all recorded edits as journal lines, and clears them. If this journal has not been
+     * started since it was created or last compacted, the lines begin with a snapshot of the base state,
+     * and the caller must truncate the journal file before writing them (see isStartingNewJournal()).
+     * <p>
+     * If a previous write failed, the journal on disk can't be trusted, and the edits in the failed
+     * batch are gone. In that case, we start over with a snapshot of the current editor state instead,
+     * which is why the caller has to supply it. The text supplier is only invoked in that case.
+     * </p>
+     */
+    List<String> drainRecords(String currentDate, String currentTags, Supplier<String> currentText) {
+        List<String> records = new ArrayList<>(pendingRecords.size() + 1);
+        if (needsRestart) {
+            records.add(snapshotRecord(currentDate, currentTags, currentText.get()));
+            pendingRecords.clear(); // already reflected in the current state
+            return records;
+        }
+        if (!isStarted) {
+            records.add(snapshotRecord(baseDate, baseTags, baseText));
+        }
+        records.addAll(pendingRecords);
+        pendingRecords.clear();
+        return records;
+    }
+
+    /**
+     * Reports whether the next batch of records should start a new journal file (i.e. begins with a snapshot).
+     */
+    boolean isStartingNewJournal() {
+        return !isStarted || needsRestart;
+    }
+
+    /**
+     * Invoked after a batch from drainRecords() has been handed off for writing.
+     */
+    void markStarted() {
+        isStarted = true;
+        needsRestart = false;
+    }
+
+    /**
+     * Invoked (from any thread) if a write to the journal file failed. We can no longer trust the
+     * journal on disk, so the next batch will start over with a fresh snapshot of the current state.
+     */
+    void markFailed() {
+        needsRestart = true;
+    }
+
+    /**
+     * Invoked when the scratch Note has been fully saved. Any pending edits are dropped (they are
+     * reflected in the given state), and the next batch will start a new journal from the given state.
+     */
+    void markCompacted(String date, String tags, String text) {
+        pendingRecords.clear();
+        isStarted = false;
+        needsRestart = false;
+        setBase(date, tags, text);
+    }
+
+    /**
+     * Appends the given records to our journal file and forces them to disk. If we are starting a new
+     * journal, the file is replaced atomically instead, so that the previous journal remains valid
+     * until the new one (with its snapshot) is completely written.
+     * This is invoked on the background save thread.
+     */
+    void write(List<String> records, boolean startNewJournal) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        if (startNewJournal) {
+            SnotesIO.writeAtomically(journalFile, content);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static String snapshotRecord(String date, String tags, String text) {
+        return SNAPSHOT + " " + encode(date) + " " + encode(tags) + " " + encode(text);
+    }
+
+    private void setBase(String date, String tags, String text) {
+        this.baseDate = (date == null) ? "" : date;
+        this.baseTags = (tags == null) ? "" : tags;
+        this.baseText = (text == null) ? "" : text;
+    }
+
+    /**
+     * Returns the journal file that goes with the given scratch file.
+     */
+    static File journalFileFor(File scratchFile) {
+        return new File(scratchFile.getParentFile(), scratchFile.getName() + "." + EXTENSION);
+    }
+
+    /**
+     * Returns the scratch file that goes with the given journal file.
+     */
+    static File scratchFileFor(File journalFile) {
+        String name = journalFile.getName();
+        return new File(journalFile.getParentFile(), name.substring(0, name.length() - EXTENSION.length() - 1));
+    }
+
+    /**
+     * Returns the raw date field value that a journal snapshot should record for the given Note.
+     */
+    static String dateOf(Note note) {
+        return note.hasDate() ? note.getDate().toString() : "";
+    }
+
+    /**
+     * Returns the raw tag field value that a journal snapshot should record for the given Note.
+     */
+    static String tagsOf(Note note) {
+        return TagList.fromTagList(note.getTags()).getNonDateTagsAsCommaSeparatedString();
+    }
+
+    /**
+     * Reads and replays the given journal file, returning the editor state that it describes.
+     * Replay stops at the first record that is invalid, which normally means a torn write at
+     * the very end of the file - everything before that point is still recovered.
+     *
+     * @param journalFile Any journal file.
+     * @return The recovered state, or null if the file does not exist or does not start with a valid snapshot.
+     */
+    static RecoveredState replay(File journalFile) {
+        if (journalFile == null || !journalFile.isFile()) {
+            return null;
+        }
+
+        String content;
+        try {
+            content = Files.readString(journalFile.toPath(), StandardCharsets.UTF_8);
+        }
+        catch (IOException ioe) {
+            log.warning("Unable to read scratch journal " + journalFile.getAbsolutePath() + ": " + ioe.getMessage());
+            return null;
+        }
+
+        // Every record we write ends with a newline. Anything after the last one is a torn write,
+        // which might even parse (a truncated Base64 payload can still be valid), so we drop it:
+        int end = content.lastIndexOf('\n');
+        if (end < 0) {
+            return null;
+        }
+        String[] lines = content.substring(0, end).split("\n", -1);
+
+        String date = null;
+        String tags = null;
+        StringBuilder text = null;
+        int replayed = 0;
+        for (String line : lines) {
+            String[] fields = line.split(" ", -1);
+            try {
+                if (text == null) {
+                    // The first record must be a snapshot, or we have nothing to apply edits to:
+                    if (fields.length != 4 || !SNAPSHOT.equals(fields[0])) {
+                        log.warning("Scratch journal does not start with a snapshot: " + journalFile.getAbsolutePath());
+                        return null;
+                    }
+                    date = decode(fields[1]);
+                    tags = decode(fields[2]);
+                    text = new StringBuilder(decode(fields[3]));
+                }
+                else if (fields.length == 3 && HEADER.equals(fields[0])) {
+                    date = decode(fields[1]);
+                    tags = decode(fields[2]);
+                }
+                else if (fields.length == 3 && INSERT.equals(fields[0])) {
+                    int offset = Integer.parseInt(fields[1]);
+                    if (offset < 0 || offset > text.length()) {
+                        throw new IllegalArgumentException("insert offset out of range: " + offset);
+                    }
+                    text.insert(offset, decode(fields[2]));
+                }
+                else if (fields.length == 3 && REMOVE.equals(fields[0])) {
+                    int offset = Integer.parseInt(fields[1]);
+                    int length = Integer.parseInt(fields[2]);
+                    if (offset < 0 || length < 0 || offset + length > text.length()) {
+                        throw new IllegalArgumentException("remove range out of bounds: " + offset + "+" + length);
+                    }
+                    text.delete(offset, offset + length);
+                }
+                else {
+                    throw new IllegalArgumentException("unrecognized record");
+                }
+                replayed++;
+            }
+            catch (IllegalArgumentException iae) { // includes NumberFormatException and Base64 errors
+                log.warning("Stopping scratch journal replay at record " + (replayed + 1) + " of "
+                                + journalFile.getAbsolutePath() + ": " + iae.getMessage());
+                break;
+            }
+        }
+
+        if (text == null) {
+            return null; // empty file
+        }
+        return new RecoveredState(date, tags, text.toString());
+    }
+
+    private static String encode(String s) {
+        return Base64.getEncoder().encodeToString((s == null ? "" : s).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String s) {
+        return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The editor state recovered from a journal: the raw date and tag field values, and the full text.
+     */
+    static class RecoveredState {
+        private final String date;
+        private final String tags;
+        private final String text;
+
+        RecoveredState(String date, String tags, String text) {
+            this.date = date;
+            this.tags = tags;
+            this.text = text;
+        }
+
+        String getDate() {
+            return date;
+        }
+
+        String getTags() {
+            return tags;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /**
+         * Applies this recovered state to the given Note, the same way that WriterFrame applies
+         * its date and tag fields on save. The Note will be marked dirty.
+         */
+        void applyTo(Note note) {
+            note.clearAllTags();
+            note.setDate(YMDDate.isValidYMD(date) ? new YMDDate(date) : null);
+            for (Tag tag : TagList.fromRawString(tags).getTags()) {
+                note.tag(tag);
+            }
+            note.setText(text);
+            note.markDirty();
+        }
+    }
+}
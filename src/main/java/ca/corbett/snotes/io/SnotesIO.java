@@ -7,15 +7,30 @@ import ca.corbett.snotes.model.Tag;
 import ca.corbett.snotes.model.Template;
 import ca.corbett.snotes.model.YMDDate;
 import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterRegistration;
+import ca.corbett.snotes.model.filter.FilterRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -33,6 +48,27 @@ class SnotesIO {
 
     private static final Logger log = Logger.getLogger(SnotesIO.class.getName());
 
+    /**
+     * All writes go to a temp file with this extension first, and are then renamed over the target.
+     * None of our loaders look for this extension, so a temp file left behind by a crash is harmless.
+     */
+    static final String TEMP_EXTENSION = "tmp";
+
+    /**
+     * Passed to loadNote() to say that no Note is ever too large to read into memory.
+     */
+    static final long NO_LARGE_NOTES = Long.MAX_VALUE;
+
+    private static final AtomicLong tempFileCounter = new AtomicLong(0);
+
+    /**
+     * Writes the content of a temp file directly to its channel. See writeTempFile().
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
     /**
      * Attempts to load a Query and its Filters from the given file,
      * which should be in the same format as produced by saveQuery().
@@ -49,7 +85,7 @@ class SnotesIO {
             throw new IOException("Source file is not a readable file: " + sourceFile.getAbsolutePath());
         }
 
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = createQueryMapper();
         JsonNode rootNode = mapper.readTree(sourceFile);
         if (rootNode == null || rootNode.isNull() || rootNode.isMissingNode() || !rootNode.isObject()) {
             // This can happen with empty/blank files, JSON arrays, bare scalars, or other non-object content:
@@ -95,6 +131,7 @@ class SnotesIO {
      * the old file! It's up to the caller to manage the file move.
      * <p>
      * If the save succeeds, the Query's sourceFile is updated to the given targetFile, and the Query is marked clean.
+     * As with Notes, the file is written to a temp file and then renamed into place.
      * </p>
      *
      * @param targetFile Any writable file. If the file already exists, it will be overwritten.
@@ -111,17 +148,6 @@ class SnotesIO {
             throw new IOException("Target file is not a writable file: " + targetFile.getAbsolutePath());
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode rootNode = mapper.createObjectNode();
-        rootNode.put("name", query.getName());
-        rootNode.put("order", query.getOrder());
-
-        ArrayNode filtersArray = mapper.createArrayNode();
-        for (Filter filter : query.getFilters()) {
-            filtersArray.add(mapper.valueToTree(filter));
-        }
-        rootNode.set("filters", filtersArray);
-
         // The targetFile's path may not exist:
         File parentDir = targetFile.getParentFile();
         if (!parentDir.exists()) {
@@ -130,13 +156,49 @@ class SnotesIO {
             }
         }
 
-        mapper.writerWithDefaultPrettyPrinter().writeValue(targetFile, rootNode);
+        writeAtomically(targetFile, toBytes(query));
 
         // If we make it here, the Query is clean, and has a new source file:
         query.setSourceFile(targetFile);
         query.markClean();
     }
 
+    /**
+     * Serializes the given Query to pretty-printed JSON, in the format expected by loadQuery().
+     * The Query itself is not modified.
+     */
+    static byte[] toBytes(Query query) throws IOException {
+        ObjectMapper mapper = createQueryMapper();
+        ObjectNode rootNode = mapper.createObjectNode();
+        rootNode.put("name", query.getName());
+        rootNode.put("order", query.getOrder());
+
+        ArrayNode filtersArray = mapper.createArrayNode();
+        for (Filter filter : query.getFilters()) {
+            if (!FilterRegistry.getInstance().isKnown(filter.getClass())) {
+                // Jackson would happily make up a type name for it, which we'd then fail to load:
+                throw new IOException("Filter type is not registered: " + filter.getClass().getName());
+            }
+            filtersArray.add(mapper.valueToTree(filter));
+        }
+        rootNode.set("filters", filtersArray);
+
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(rootNode);
+    }
+
+    /**
+     * Creates a mapper that knows about every Filter type: the built-in ones listed on Filter itself,
+     * and any that have been registered with FilterRegistry since. A Query that uses a Filter type
+     * that isn't registered fails to load, rather than losing that Filter.
+     */
+    private static ObjectMapper createQueryMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        for (FilterRegistration<?> registration : FilterRegistry.getInstance().getRegistrations()) {
+            mapper.registerSubtypes(new NamedType(registration.getFilterClass(), registration.getTypeName()));
+        }
+        return mapper;
+    }
+
     /**
      * Attempts to persist the given Template in pretty-printed JSON form to disk.
      * The name of the file is auto-computed  from the Template's name. This means
@@ -145,6 +207,7 @@ class SnotesIO {
      * manage the file move.
      * <p>
      * If the save succeeds, the Template's sourceFile is updated to the given targetFile, and it is marked clean.
+     * The target file is replaced atomically, so a failed save leaves any previous version intact.
      * </p>
      *
      * @param targetFile Any writable file. Must not be null.
@@ -161,18 +224,6 @@ class SnotesIO {
             throw new IOException("Target file is not a writable file: " + targetFile.getAbsolutePath());
         }
 
-        // We use Jackson to build up the JSON and write it out:
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode rootNode = mapper.createObjectNode();
-        rootNode.put("name", template.getName());
-        rootNode.put("dateOption", template.getDateOption().name());
-        rootNode.put("context", template.getContext().name());
-        rootNode.put("order", template.getOrder());
-        ArrayNode tagsArray = rootNode.putArray("tags");
-        for (Tag tag : template.getTagList()) {
-            tagsArray.add(tag.getTag()); // get raw tag without the '#' prefix for cleaner JSON
-        }
-
         // The targetFile's path may not exist:
         File parentDir = targetFile.getParentFile();
         if (parentDir != null && !parentDir.exists()) {
@@ -181,13 +232,33 @@ class SnotesIO {
             }
         }
 
-        mapper.writerWithDefaultPrettyPrinter().writeValue(targetFile, rootNode);
+        writeAtomically(targetFile, toBytes(template));
 
         // If we make it here, the Template is clean, and it has a new source file:
         template.setSourceFile(targetFile);
         template.markClean();
     }
 
+    /**
+     * Serializes the given Template to pretty-printed JSON, in the format expected by loadTemplate().
+     * The Template itself is not modified.
+     */
+    static byte[] toBytes(Template template) throws IOException {
+        // We use Jackson to build up the JSON:
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode rootNode = mapper.createObjectNode();
+        rootNode.put("name", template.getName());
+        rootNode.put("dateOption", template.getDateOption().name());
+        rootNode.put("context", template.getContext().name());
+        rootNode.put("order", template.getOrder());
+        ArrayNode tagsArray = rootNode.putArray("tags");
+        for (Tag tag : template.getTagList()) {
+            tagsArray.add(tag.getTag()); // get raw tag without the '#' prefix for cleaner JSON
+        }
+
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(rootNode);
+    }
+
     /**
      * Attempts to load a Template from the given file, which should be in the same format as saved by saveTemplate().
      *
@@ -288,19 +359,102 @@ class SnotesIO {
 
     /**
      * Attempts to load a Note from the given file, and will throw an IOException
-     * if something goes wrong.
+     * if something goes wrong. If the given file is in a year that has been packed
+     * (see NotePack), it is read from the pack instead.
      *
-     * @param file The file to load the Note from. Must be a readable file that exists on disk.
+     * @param file The file to load the Note from. Must be a readable file that exists on disk, or in a pack.
      * @return A Note object representing the content of the given file.
      * @throws IOException If anything at all goes wrong with the load.
      */
     static Note loadNote(File file) throws IOException {
+        return loadNote(file, NO_LARGE_NOTES);
+    }
+
+    /**
+     * Attempts to load a Note from the given file, as loadNote(File) does, except that if the file
+     * is bigger than the given threshold, only its tag line is read. The Note's text is then left on
+     * disk, and read on demand via a LargeNoteBody. Packed notes are always read in full.
+     *
+     * @param file                The file to load the Note from.
+     * @param largeNoteThreshold  Files bigger than this many bytes are loaded lazily. Use NO_LARGE_NOTES
+     *                            to always read the whole file.
+     * @return A Note object representing the content of the given file.
+     * @throws IOException If anything at all goes wrong with the load.
+     */
+    static Note loadNote(File file, long largeNoteThreshold) throws IOException {
+        if (file != null && !file.exists()) {
+            File packFile = NotePack.findPack(file);
+            if (packFile != null) {
+                return NotePack.loadNote(packFile, file);
+            }
+        }
         if (file == null || !file.exists() || !file.isFile() || !file.canRead()) {
             throw new IOException("File does not exist or is not a readable file.");
         }
-        Note note = new Note();
+        if (file.length() > largeNoteThreshold) {
+            return loadLargeNote(file);
+        }
+        Note note = parseNote(FileSystemUtil.readFileLines(file), file.getAbsolutePath());
         note.setSourceFile(file);
-        List<String> lines = FileSystemUtil.readFileLines(file);
+        note.setSavedContentHash(contentHash(toBytes(note)));
+        note.markClean();
+        return note;
+    }
+
+    /**
+     * Loads just the tags of the given note file, and leaves its text on disk behind a LargeNoteBody.
+     * The Note has no saved content hash, since computing one would mean reading the whole file.
+     * LargeNoteBody keeps track of whether a save would change anything instead.
+     */
+    private static Note loadLargeNote(File file) throws IOException {
+        LargeNoteBody body = LargeNoteBody.open(file);
+        Note note = parseNote(List.of(body.getSavedTagLine()), file.getAbsolutePath());
+        note.setTextSource(body);
+        note.setSourceFile(file);
+        note.markClean();
+        log.fine("Loaded large note lazily (" + body.getPageCount() + " pages): " + file.getAbsolutePath());
+        return note;
+    }
+
+    /**
+     * Reports whether the given Note is a large Note whose text is still being read from disk on demand.
+     * Such Notes are saved by splicing their file rather than by serializing them; see LargeNoteBody.
+     */
+    static boolean isLargeNote(Note note) {
+        return note.getTextSource() instanceof LargeNoteBody;
+    }
+
+    /**
+     * Reads the whole text of the given large Note into memory, so that it no longer depends on its
+     * file. Nothing is written, and a Note that was clean stays clean. Does nothing for regular Notes.
+     */
+    static void materializeLargeNote(Note note) {
+        if (!(note.getTextSource() instanceof LargeNoteBody body)) {
+            return;
+        }
+        boolean wasDirty = note.isDirty();
+        boolean matchesDisk = !body.isModified() && body.getSavedTagLine().equals(note.getPersistenceTagLine());
+        note.setText(body.getText());
+        if (matchesDisk) {
+            note.setSavedContentHash(contentHash(toBytes(note)));
+        }
+        if (!wasDirty) {
+            note.markClean();
+        }
+    }
+
+    /**
+     * Parses a Note from the given lines, which are in the format written by saveNote().
+     * The returned Note has no source file, and is marked clean. This is split out from loadNote()
+     * so that Notes can also be read from places other than a plain file (an archive, for example).
+     *
+     * @param lines      The lines of the note file.
+     * @param sourceName A description of where these lines came from, for logging and error messages.
+     * @return A Note object representing the given content.
+     * @throws IOException If the content can't be parsed.
+     */
+    static Note parseNote(List<String> lines, String sourceName) throws IOException {
+        Note note = new Note();
         if (lines.isEmpty()) {
             throw new IOException("File is empty.");
         }
@@ -310,7 +464,7 @@ class SnotesIO {
         if (!tagLine.contains("#")) {
             // This used to be considered a fatal error, but eh...
             // let's just log it as a warning. It's fine.
-            log.warning("Note " + file.getAbsolutePath() + " has no tags.");
+            log.warning("Note " + sourceName + " has no tags.");
         }
 
         else {
@@ -326,13 +480,13 @@ class SnotesIO {
                 for (int i = tagIndex; i < tags.length; i++) {
                     if (YMDDate.isValidYMD(tags[i])) {
                         // This makes no sense and is certainly an error:
-                        throw new IOException("Multiple date tags found in Note " + file.getAbsolutePath());
+                        throw new IOException("Multiple date tags found in Note " + sourceName);
                     }
                     note.tag(tags[i]);
                 }
             }
             else {
-                log.warning("Note " + file.getAbsolutePath() + " has no parsable tags.");
+                log.warning("Note " + sourceName + " has no parsable tags.");
             }
         }
 
@@ -362,6 +516,7 @@ class SnotesIO {
      * If the save succeeds, the Note's sourceFile is updated with this file. If the given targetFile
      * does not match the Note's existing sourceFile, this method does NOT handle cleaning up
      * the old file! It's up to the caller to handle the move.
+     * The write itself is crash-safe - see writeAtomically().
      *
      * @param note The Note to save. Must not be null.
      * @param targetFile The save destination. Must not be null.
@@ -383,6 +538,81 @@ class SnotesIO {
             }
         }
 
+        // Large notes only rewrite what they have to, and never pull their whole text into memory:
+        if (note.getTextSource() instanceof LargeNoteBody body) {
+            if (body.isUnchanged(note.getPersistenceTagLine(), targetFile)) {
+                log.fine("Large note is unchanged; skipping write: " + targetFile.getAbsolutePath());
+            }
+            else {
+                body.writeTo(targetFile, note.getPersistenceTagLine());
+                note.setSourceFile(targetFile);
+            }
+            note.markClean();
+            return;
+        }
+
+        // Don't touch the file at all if it already holds exactly what we would write.
+        // Rewriting it would only bump its modification time, and make sync clients re-upload it:
+        byte[] content = toBytes(note);
+        String hash = contentHash(content);
+        if (isUnchanged(note, targetFile, hash)) {
+            log.fine("Note is unchanged; skipping write: " + targetFile.getAbsolutePath());
+            note.markClean();
+            return;
+        }
+
+        // Write it:
+        writeAtomically(targetFile, content);
+
+        // If we make it this far, the Note is clean, and has a new sourceFile:
+        note.setSourceFile(targetFile);
+        note.setSavedContentHash(hash);
+        note.markClean();
+    }
+
+    /**
+     * Returns a hash of the given serialized content, suitable for Note.setSavedContentHash().
+     */
+    static String contentHash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform is required to support SHA-256, so this can't really happen:
+            throw new IllegalStateException("SHA-256 is not available", nsae);
+        }
+    }
+
+    /**
+     * Reports whether saving the given Note to the given file would write exactly what the file
+     * already holds: that is, the file is the Note's own source file, it still exists (either on its
+     * own or in a pack), and the Note's serialized content hashes the same as when it was last
+     * loaded or saved. If so, there's no need to write anything.
+     *
+     * @param note       The Note about to be saved.
+     * @param targetFile Where it is about to be saved to.
+     * @param hash       The contentHash() of what would be written.
+     */
+    static boolean isUnchanged(Note note, File targetFile, String hash) {
+        File sourceFile = note.getSourceFile();
+        return hash.equals(note.getSavedContentHash())
+            && sourceFile != null
+            && sourceFile.getAbsoluteFile().equals(targetFile.getAbsoluteFile())
+            && (targetFile.exists() || NotePack.findPack(targetFile) != null);
+    }
+
+    /**
+     * Convenience overload of isUnchanged() that serializes the given Note to work out its hash.
+     */
+    static boolean isUnchanged(Note note, File targetFile) {
+        return note.getSavedContentHash() != null && isUnchanged(note, targetFile, contentHash(toBytes(note)));
+    }
+
+    /**
+     * Serializes the given Note into the on-disk format expected by loadNote(): the tag line,
+     * followed by a blank line, followed by the Note's text. The Note itself is not modified.
+     */
+    static byte[] toBytes(Note note) {
         List<String> lines = new ArrayList<>();
         lines.add(note.getPersistenceTagLine());
         lines.add(""); // blank line between tags and text is conventional.
@@ -391,12 +621,123 @@ class SnotesIO {
         // This might be none at all if line-wrapping is enabled in the editor, but that's fine.
         lines.add(note.getText());
 
-        // Write it:
-        FileSystemUtil.writeLinesToFile(lines, targetFile);
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.lineSeparator());
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
 
-        // If we make it this far, the Note is clean, and has a new sourceFile:
-        note.setSourceFile(targetFile);
-        note.markClean();
+    /**
+     * Writes the given content to the given target file in a crash-safe way. The content is first
+     * written to a temp file in the same directory and forced to disk, and then that temp file
+     * is atomically renamed over the target. Finally, the directory itself is synced so that
+     * the rename is durable. At no point will the target file be observed in a partially-written state:
+     * after a crash, it will contain either the old content or the new content.
+     * The parent directory of the target file must already exist.
+     *
+     * @param targetFile The file to write. If it exists, it will be replaced.
+     * @param content    The complete new content for the file.
+     * @throws IOException If the write fails. The target file is left untouched in this case.
+     */
+    static void writeAtomically(File targetFile, byte[] content) throws IOException {
+        File tempFile = writeTempFile(targetFile, content);
+        commitTempFile(tempFile, targetFile);
+        syncDirectory(targetFile.getParentFile());
+    }
+
+    /**
+     * Writes the given content to a new, uniquely-named temp file alongside the given target file,
+     * and forces it to disk. The target file itself is not touched. Use commitTempFile() to
+     * move the returned temp file into place. If the write fails, the temp file is cleaned up.
+     *
+     * @param targetFile The file that will eventually be replaced by the temp file.
+     * @param content    The complete new content for the target file.
+     * @return The temp file that was written.
+     * @throws IOException If the temp file could not be written.
+     */
+    static File writeTempFile(File targetFile, byte[] content) throws IOException {
+        return writeTempFile(targetFile, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Behaves like writeTempFile(File, byte[]), except that the content is written by the given
+     * ContentWriter. This lets big content be streamed (or copied from another file) rather than
+     * assembled in memory first.
+     *
+     * @param targetFile The file that will eventually be replaced by the temp file.
+     * @param writer     Writes the complete new content for the target file to the temp file's channel.
+     * @return The temp file that was written.
+     * @throws IOException If the temp file could not be written.
+     */
+    static File writeTempFile(File targetFile, ContentWriter writer) throws IOException {
+        // Leading dot keeps it hidden, trailing extension keeps it away from our loaders:
+        File tempFile = new File(targetFile.getParentFile(), "." + targetFile.getName()
+            + "." + Long.toHexString(System.nanoTime()) + tempFileCounter.incrementAndGet()
+            + "." + TEMP_EXTENSION);
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                                                    StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.WRITE)) {
+            writer.write(channel);
+            channel.force(true);
+        }
+        catch (IOException ioe) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw ioe;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Renames the given temp file over the given target file, atomically if the underlying
+     * file system supports it. If the rename fails, the temp file is cleaned up.
+     * This does not sync the parent directory - use syncDirectory() for that.
+     *
+     * @param tempFile   A temp file, as returned by writeTempFile().
+     * @param targetFile The file to replace.
+     * @throws IOException If the rename fails. The target file is left untouched in this case.
+     */
+    static void commitTempFile(File tempFile, File targetFile) throws IOException {
+        try {
+            try {
+                Files.move(tempFile.toPath(), targetFile.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException amnse) {
+                // Rare, since the temp file is always in the same directory, but some file systems
+                // just don't support it. A plain replace is the best we can do in that case:
+                log.fine("Atomic move not supported for " + targetFile.getAbsolutePath());
+                Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException ioe) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw ioe;
+        }
+    }
+
+    /**
+     * Forces any pending changes to the given directory's entries (creates, renames, deletes) to disk.
+     * This is best-effort: some platforms (notably Windows) don't allow opening a directory
+     * for syncing, in which case we quietly do nothing.
+     *
+     * @param directory The directory to sync. Nothing happens if this is null or is not a directory.
+     */
+    static void syncDirectory(File directory) {
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException ioe) {
+            log.log(Level.FINE, "Unable to sync directory: " + directory.getAbsolutePath(), ioe);
+        }
     }
 
     /**
@@ -0,0 +1,156 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.Template;
+import ca.corbett.snotes.model.filter.TagFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the context Notes for each Template, so that executing the same Template over and over
+ * (which is what templates are for) doesn't rescan the whole note collection every time.
+ * <p>
+ * <b>Invalidation:</b> an entry is only thrown away when a Note that could affect it changes.
+ * That is, a Note that carries one of the Template's tags (so it may now belong in the context),
+ * or a Note that is in the cached context (so it may have lost the tag, or changed content).
+ * Changes to any other Note leave the entry alone. A full reload of the notes clears everything.
+ * An entry is also ignored if the Template's tags or context setting have been edited since
+ * it was computed.
+ * </p>
+ * <p>
+ * Contexts are computed on a worker thread, so a change may land while one is in progress.
+ * To avoid caching a stale result, every invalidation bumps a generation counter, and a result
+ * is only cached if no invalidation happened while it was being computed.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+class TemplateContextCache {
+
+    private final Map<Template, Entry> entries;
+    private long generation;
+
+    TemplateContextCache() {
+        // Templates don't override equals(), so this is by identity. Weak, so reloaded Templates don't leak:
+        this.entries = new WeakHashMap<>();
+    }
+
+    /**
+     * Reports whether the given Template wants any context at all.
+     */
+    static boolean hasContext(Template template) {
+        return template.getContext() != null
+            && template.getContext() != Template.Context.NONE
+            && !template.getTagList().isEmpty();
+    }
+
+    /**
+     * Runs the context Query for the given Template against the given Notes: anything carrying
+     * at least one of the Template's tags, limited to the most recent few as per its context setting.
+     */
+    static List<Note> compute(Template template, List<Note> notes) {
+        if (!hasContext(template)) {
+            return new ArrayList<>();
+        }
+        Query contextQuery = new Query();
+        contextQuery.addFilter(new TagFilter(template.getTagList(), TagFilter.FilterType.ANY));
+        return contextQuery.execute(notes, template.getContext().getLimit());
+    }
+
+    /**
+     * Returns a copy of the cached context for the given Template, or null if we don't have one
+     * that is still valid for the Template's current settings.
+     */
+    synchronized List<Note> get(Template template) {
+        Entry entry = entries.get(template);
+        if (entry == null || !entry.isFor(template)) {
+            return null;
+        }
+        return new ArrayList<>(entry.results);
+    }
+
+    /**
+     * Returns the current generation. Capture this before computing a context, and pass it to put().
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the given context for the given Template, unless something was invalidated since
+     * the given generation was captured, in which case the result may be stale and is discarded.
+     *
+     * @return true if the result was cached.
+     */
+    synchronized boolean put(Template template, long startGeneration, List<Note> results) {
+        if (startGeneration != generation) {
+            return false;
+        }
+        entries.put(template, new Entry(template, results));
+        return true;
+    }
+
+    /**
+     * The given Note has been saved, added or removed. Any entries that it could affect are dropped.
+     */
+    synchronized void invalidate(Note note) {
+        generation++;
+        entries.values().removeIf(entry -> entry.isAffectedBy(note));
+    }
+
+    /**
+     * Drops everything. For when the whole note collection has been replaced.
+     */
+    synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached context, along with the Template settings it was computed for.
+     */
+    private static class Entry {
+        private final Set<Tag> tags;
+        private final Template.Context context;
+        private final List<Note> results;
+        private final Set<Note> resultSet;
+
+        Entry(Template template, List<Note> results) {
+            this.tags = new HashSet<>(template.getTagList());
+            this.context = template.getContext();
+            this.results = new ArrayList<>(results);
+            this.resultSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.resultSet.addAll(results);
+        }
+
+        boolean isFor(Template template) {
+            return context == template.getContext() && tags.equals(new HashSet<>(template.getTagList()));
+        }
+
+        boolean isAffectedBy(Note note) {
+            if (resultSet.contains(note)) {
+                return true;
+            }
+            for (Tag tag : tags) {
+                if (note.hasTag(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ca.corbett.snotes.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of something that happened, like cache hits or canceled queries.
+ * Counters are safe to update from any thread, and cheap enough to update from hot code.
+ * Get one from Metrics.counter().
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder count;
+
+    Counter(String name) {
+        this.name = name;
+        this.count = new LongAdder();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,35 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Reading and parsing a single file while loading. There can be a very large number of these,
+ * so by default only the slow ones (1ms or more) are recorded. Lower the threshold in your
+ * recording settings to see them all.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.FileLoad")
+@Label("File Load")
+@Category({"Snotes", "Load"})
+@Description("Reading and parsing one file")
+@Threshold("1 ms")
+@StackTrace(false)
+public class FileLoadEvent extends Event {
+
+    @Label("Object Type")
+    public String objectType;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,37 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One phase of loading one type of object (Notes, scratch Notes, Queries or Templates) from disk:
+ * either the directory walk that finds the files, or the whole load from start to finish.
+ * The time spent parsing individual files is recorded by FileLoadEvent.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.LoadPhase")
+@Label("Load Phase")
+@Category({"Snotes", "Load"})
+@Description("The directory walk, or the total, for loading one type of object")
+@StackTrace(false)
+public class LoadPhaseEvent extends Event {
+
+    public static final String WALK = "walk";
+    public static final String TOTAL = "total";
+
+    @Label("Object Type")
+    public String objectType;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("File Count")
+    @Description("The number of files found by the walk, or loaded in total")
+    public int fileCount;
+}
@@ -0,0 +1,51 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted periodically during a Flight Recorder recording, once for each metric in the Metrics registry.
+ * Values are totals for the whole session so far. For Counters and gauges, only the count is filled in,
+ * and for a gauge it holds the current value.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.MetricSummary")
+@Label("Metric Summary")
+@Category({"Snotes", "Metrics"})
+@Description("A summary of one Snotes metric, for the session so far")
+@Period("10 s")
+@StackTrace(false)
+public class MetricSummaryEvent extends Event {
+
+    @Label("Name")
+    String name;
+
+    @Label("Unit")
+    @Description("The unit of the values below, if they have one. Timers are in nanoseconds.")
+    String unit;
+
+    @Label("Count")
+    long count;
+
+    @Label("Mean")
+    double mean;
+
+    @Label("50th Percentile")
+    long p50;
+
+    @Label("95th Percentile")
+    long p95;
+
+    @Label("99th Percentile")
+    long p99;
+
+    @Label("Maximum")
+    long max;
+}
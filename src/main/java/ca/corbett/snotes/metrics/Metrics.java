@@ -0,0 +1,227 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The application-wide registry of Counters, Timers and Histograms. Metrics are created on first use
+ * and live for the rest of the session. Asking for the same name twice returns the same instance,
+ * so hot code should look its metrics up once and keep them in a static field:
+ * <pre>
+ *     private static final Timer executeTimer = Metrics.getInstance().timer("query.execute");
+ * </pre>
+ * <p>
+ * Names are dotted and lower case, starting with the area they belong to: load, query, save, viewer, and so on.
+ * Gauges are the exception to "always recording": they are read on demand, from a supplier registered with gauge().
+ * Recording into a metric never blocks, and never allocates, so they are always on.
+ * </p>
+ * <p>
+ * While a Java Flight Recorder recording is running, a summary of every Timer and Histogram is emitted
+ * as a periodic MetricSummaryEvent, alongside the individual events from each instrumented operation.
+ * See the other events in this package, which all show up under "Snotes" in JDK Mission Control.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class Metrics {
+
+    private static final Logger log = Logger.getLogger(Metrics.class.getName());
+
+    private static final Metrics instance = new Metrics();
+
+    private final ConcurrentMap<String, Counter> counters;
+    private final ConcurrentMap<String, Timer> timers;
+    private final ConcurrentMap<String, Histogram> histograms;
+    private final ConcurrentMap<String, LongSupplier> gauges;
+
+    private Metrics() {
+        counters = new ConcurrentHashMap<>();
+        timers = new ConcurrentHashMap<>();
+        histograms = new ConcurrentHashMap<>();
+        gauges = new ConcurrentHashMap<>();
+        try {
+            // Registering a periodic event starts up Flight Recorder, which is a noticeable cost at startup,
+            // and a waste if nobody ever records. So we wait until someone starts it before registering:
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recorderInitialized(FlightRecorder recorder) {
+                    FlightRecorder.addPeriodicEvent(MetricSummaryEvent.class, Metrics.this::emitSummaryEvents);
+                }
+            });
+        }
+        catch (RuntimeException | LinkageError e) {
+            // We can live without the periodic summaries, for example on a runtime without the jdk.jfr module:
+            log.log(Level.WARNING, "Unable to register metric summary events with Flight Recorder.", e);
+        }
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the Counter with the given name, creating it if needed.
+     */
+    public Counter counter(String name) {
+        return getOrCreate(counters, name, Counter::new);
+    }
+
+    /**
+     * Returns the Timer with the given name, creating it if needed.
+     */
+    public Timer timer(String name) {
+        return getOrCreate(timers, name, Timer::new);
+    }
+
+    /**
+     * Returns the Histogram with the given name, creating it if needed.
+     */
+    public Histogram histogram(String name) {
+        return getOrCreate(histograms, name, Histogram::new);
+    }
+
+    /**
+     * Registers a gauge: a value that isn't recorded, but is read on demand, like the number of Notes
+     * currently loaded. The given supplier is invoked whenever someone asks for the value, possibly from
+     * any thread, so it should be cheap and thread-safe. Registering a gauge with a name that is already
+     * in use replaces the old one.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Metric name cannot be null or blank.");
+        }
+        if (supplier == null) {
+            throw new IllegalArgumentException("Gauge supplier cannot be null.");
+        }
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Returns the current value of the named gauge, or -1 if there is no such gauge.
+     */
+    public long getGaugeValue(String name) {
+        LongSupplier supplier = gauges.get(name);
+        if (supplier == null) {
+            return -1;
+        }
+        try {
+            return supplier.getAsLong();
+        }
+        catch (RuntimeException e) {
+            log.log(Level.FINE, "Gauge " + name + " failed to report.", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the names of all registered gauges, sorted.
+     */
+    public List<String> getGaugeNames() {
+        return sorted(gauges.keySet(), name -> name);
+    }
+
+    /**
+     * Returns all of our Counters, sorted by name.
+     */
+    public List<Counter> getCounters() {
+        return sorted(counters.values(), Counter::getName);
+    }
+
+    /**
+     * Returns all of our Timers, sorted by name.
+     */
+    public List<Timer> getTimers() {
+        return sorted(timers.values(), Timer::getName);
+    }
+
+    /**
+     * Returns all of our Histograms, sorted by name. This does not include the Histograms behind our Timers.
+     */
+    public List<Histogram> getHistograms() {
+        return sorted(histograms.values(), Histogram::getName);
+    }
+
+    /**
+     * Zeroes every metric. The metrics themselves stay registered, so anything holding on
+     * to one will carry on recording into it. Intended for tests and for the diagnostics UI.
+     */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        timers.values().forEach(Timer::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+
+    private static <T> T getOrCreate(ConcurrentMap<String, T> map, String name, Function<String, T> factory) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Metric name cannot be null or blank.");
+        }
+        T metric = map.get(name); // the common case, and cheaper than computeIfAbsent
+        return metric != null ? metric : map.computeIfAbsent(name, factory);
+    }
+
+    private static <T> List<T> sorted(Iterable<T> values, Function<T, String> nameFunction) {
+        List<T> list = new ArrayList<>();
+        values.forEach(list::add);
+        list.sort(Comparator.comparing(nameFunction));
+        return list;
+    }
+
+    /**
+     * Invoked by Flight Recorder once per period while a recording is running.
+     */
+    private void emitSummaryEvents() {
+        for (Timer timer : getTimers()) {
+            MetricSummaryEvent event = new MetricSummaryEvent();
+            event.name = timer.getName();
+            event.unit = "ns";
+            fill(event, timer.getHistogram());
+            event.commit();
+        }
+        for (Histogram histogram : getHistograms()) {
+            MetricSummaryEvent event = new MetricSummaryEvent();
+            event.name = histogram.getName();
+            fill(event, histogram);
+            event.commit();
+        }
+        for (Counter counter : getCounters()) {
+            MetricSummaryEvent event = new MetricSummaryEvent();
+            event.name = counter.getName();
+            event.count = counter.get();
+            event.commit();
+        }
+        for (String gaugeName : getGaugeNames()) {
+            MetricSummaryEvent event = new MetricSummaryEvent();
+            event.name = gaugeName;
+            event.count = getGaugeValue(gaugeName);
+            event.commit();
+        }
+    }
+
+    private static void fill(MetricSummaryEvent event, Histogram histogram) {
+        event.count = histogram.getCount();
+        event.mean = histogram.getMean();
+        event.p50 = histogram.getPercentile(50);
+        event.p95 = histogram.getPercentile(95);
+        event.p99 = histogram.getPercentile(99);
+        event.max = histogram.getMax();
+    }
+
+    /**
+     * A convenience for log lines: formats the given nanosecond duration as milliseconds.
+     */
+    public static String formatMillis(long nanos) {
+        return String.format("%.1fms", nanos / (double)TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
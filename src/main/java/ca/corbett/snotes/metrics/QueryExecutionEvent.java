@@ -0,0 +1,36 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One execution of a Query, from the first Filter to the sorted and limited results.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.QueryExecution")
+@Label("Query Execution")
+@Category({"Snotes", "Query"})
+@Description("Filtering, sorting and limiting a list of Notes")
+@StackTrace(false)
+public class QueryExecutionEvent extends Event {
+
+    @Label("Query Name")
+    public String queryName;
+
+    @Label("Filter Count")
+    public int filterCount;
+
+    @Label("Input Size")
+    @Description("The number of Notes that were searched")
+    public int inputSize;
+
+    @Label("Output Size")
+    @Description("The number of Notes returned, after the limit was applied")
+    public int outputSize;
+}
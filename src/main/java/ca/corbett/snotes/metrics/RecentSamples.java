@@ -0,0 +1,57 @@
+package ca.corbett.snotes.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent few values recorded into a Timer, so that we can report on what's happening
+ * now, and not just on the whole session. A fixed ring buffer: recording is an atomic increment and
+ * an atomic store, and the oldest value is simply overwritten.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+final class RecentSamples {
+
+    static final int CAPACITY = 256;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded;
+
+    RecentSamples() {
+        this.samples = new AtomicLongArray(CAPACITY);
+        this.recorded = new AtomicLong();
+    }
+
+    void record(long value) {
+        long index = recorded.getAndIncrement();
+        samples.set((int)(index % CAPACITY), value);
+    }
+
+    /**
+     * Returns the given percentile (0 to 100) of the recent values, or 0 if there are none.
+     * This sorts a copy of the buffer, so it is meant for occasional reporting, not for hot code.
+     */
+    long getPercentile(double percentile) {
+        int count = (int)Math.min(recorded.get(), CAPACITY);
+        if (count == 0) {
+            return 0;
+        }
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = samples.get(i);
+        }
+        Arrays.sort(values);
+        int rank = (int)Math.ceil(count * percentile / 100.0);
+        return values[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    int size() {
+        return (int)Math.min(recorded.get(), CAPACITY);
+    }
+
+    void reset() {
+        recorded.set(0);
+    }
+}
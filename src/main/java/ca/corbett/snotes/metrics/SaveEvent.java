@@ -0,0 +1,35 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A synchronous save through DataManager: either a single Note, or everything that's dirty.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.Save")
+@Label("Save")
+@Category({"Snotes", "Save"})
+@Description("Saving one Note, or saving everything that's dirty")
+@StackTrace(false)
+public class SaveEvent extends Event {
+
+    public static final String SAVE = "save";
+    public static final String SAVE_ALL = "saveAll";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Files Written")
+    @Description("The number of files actually written. Unchanged content is not rewritten.")
+    public int filesWritten;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
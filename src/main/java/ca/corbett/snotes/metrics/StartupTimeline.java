@@ -0,0 +1,113 @@
+package ca.corbett.snotes.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Records how long each phase of application startup took, and when it happened relative to JVM start.
+ * Each phase is also recorded into a "startup.*" Timer in the Metrics registry. Phases can finish
+ * on any thread, since some of them run concurrently; each Phase remembers which thread it ran on.
+ * <pre>
+ *     long startTime = System.nanoTime();
+ *     Resources.loadAll();
+ *     StartupTimeline.getInstance().phaseComplete("resources", startTime);
+ * </pre>
+ * Once the application is actually usable (the main window is up, and the Notes are loaded),
+ * markUsable() logs how long that took, along with every phase so far.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class StartupTimeline {
+
+    private static final Logger log = Logger.getLogger(StartupTimeline.class.getName());
+
+    private static final StartupTimeline instance = new StartupTimeline();
+
+    /**
+     * One completed startup phase. Offsets are in milliseconds since the JVM started.
+     */
+    public record Phase(String name, String threadName, long startOffsetMillis, long durationMillis) {
+        public long getEndOffsetMillis() {
+            return startOffsetMillis + durationMillis;
+        }
+    }
+
+    private final List<Phase> phases;
+    private final long jvmStartMillis;
+    private volatile long usableOffsetMillis;
+
+    private StartupTimeline() {
+        this.phases = new CopyOnWriteArrayList<>();
+        this.jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        this.usableOffsetMillis = -1;
+    }
+
+    public static StartupTimeline getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records that the named phase, which started at the given System.nanoTime(), has just finished.
+     */
+    public void phaseComplete(String name, long startNanos) {
+        long durationNanos = Metrics.getInstance().timer("startup." + name).recordSince(startNanos);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        long startOffsetMillis = System.currentTimeMillis() - durationMillis - jvmStartMillis;
+        phases.add(new Phase(name, Thread.currentThread().getName(), startOffsetMillis, durationMillis));
+        log.fine("Startup phase " + name + " took " + durationMillis + "ms");
+    }
+
+    /**
+     * Records a moment of interest during startup, like the main window appearing, as a phase that takes no time.
+     */
+    public void milestone(String name) {
+        long offsetMillis = getUptimeMillis();
+        phases.add(new Phase(name, Thread.currentThread().getName(), offsetMillis, 0));
+        log.fine("Startup milestone " + name + " reached at " + offsetMillis + "ms");
+    }
+
+    /**
+     * Records that the application is now usable, and logs how long it took to get here, along with
+     * a breakdown of every phase so far. Only the first call counts; later calls do nothing.
+     */
+    public synchronized void markUsable() {
+        if (usableOffsetMillis >= 0) {
+            return;
+        }
+        milestone("usable");
+        usableOffsetMillis = getUptimeMillis();
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : phases) {
+            sb.append(sb.isEmpty() ? "" : ", ").append(phase.name()).append(" ").append(phase.durationMillis())
+              .append("ms@").append(phase.startOffsetMillis()).append(" [").append(phase.threadName()).append("]");
+        }
+        log.info("Usable " + usableOffsetMillis + "ms after JVM start. Startup phases: " + sb);
+    }
+
+    /**
+     * Returns how many milliseconds after JVM start the application became usable,
+     * or -1 if it hasn't yet. See markUsable().
+     */
+    public long getUsableOffsetMillis() {
+        return usableOffsetMillis;
+    }
+
+    /**
+     * Returns every phase recorded so far, in the order they finished.
+     */
+    public List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    /**
+     * Returns the number of milliseconds since the JVM started.
+     */
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+}
@@ -0,0 +1,94 @@
+package ca.corbett.snotes.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long something takes, as a Histogram of nanoseconds. The usual pattern is:
+ * <pre>
+ *     long startTime = System.nanoTime();
+ *     doTheWork();
+ *     timer.recordSince(startTime);
+ * </pre>
+ * Get one from Metrics.timer().
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class Timer {
+
+    private final Histogram nanos;
+    private final RecentSamples recent;
+
+    Timer(String name) {
+        this.nanos = new Histogram(name);
+        this.recent = new RecentSamples();
+    }
+
+    public String getName() {
+        return nanos.getName();
+    }
+
+    public void record(long durationNanos) {
+        nanos.record(durationNanos);
+        recent.record(durationNanos);
+    }
+
+    /**
+     * Records the time elapsed since the given System.nanoTime() value, and returns it in nanoseconds.
+     */
+    public long recordSince(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        record(elapsed);
+        return elapsed;
+    }
+
+    public long getCount() {
+        return nanos.getCount();
+    }
+
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(nanos.getSum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTime(TimeUnit unit) {
+        return unit.convert(nanos.getMax(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the given percentile of recorded durations, in the given unit. See Histogram.getPercentile().
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(nanos.getPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the given percentile of only the most recent durations (up to the last 256), in the given unit.
+     * Unlike getPercentile(), this is exact, and it reflects what's happening now rather than
+     * over the whole session. It's a little more expensive, so it's meant for occasional reporting.
+     */
+    public long getRecentPercentile(double percentile, TimeUnit unit) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        return unit.convert(recent.getPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns how many durations getRecentPercentile() is based on.
+     */
+    public int getRecentCount() {
+        return recent.size();
+    }
+
+    /**
+     * Returns the underlying Histogram, whose values are in nanoseconds.
+     */
+    public Histogram getHistogram() {
+        return nanos;
+    }
+
+    void reset() {
+        nanos.reset();
+        recent.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package ca.corbett.snotes.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Giving a note viewer a new list of Notes to show. This happens on the Swing EDT,
+ * so anything slow here is time that the UI is frozen.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@Name("ca.corbett.snotes.ViewerUpdate")
+@Label("Viewer Update")
+@Category({"Snotes", "UI"})
+@Description("Replacing the list of Notes shown in a viewer")
+@StackTrace(false)
+public class ViewerUpdateEvent extends Event {
+
+    @Label("Viewer")
+    public String viewer;
+
+    @Label("Note Count")
+    public int noteCount;
+}
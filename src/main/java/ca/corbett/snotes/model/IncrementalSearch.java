@@ -0,0 +1,120 @@
+package ca.corbett.snotes.model;
+
+import ca.corbett.snotes.model.filter.TagFilter;
+import ca.corbett.snotes.model.filter.TextFilter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Supports search-as-you-type by remembering the results of the previous search, and narrowing
+ * those down instead of rescanning every Note whenever it's safe to do so.
+ * <p>
+ * A search here is a case-insensitive text search plus an optional list of tags that must all be
+ * present, which is exactly what the simple search in SearchDialog offers. If the new search text
+ * contains the previous search text (for example "meet" becoming "meeting"), and the new tag list
+ * includes every previous tag, then anything that matches the new search must also have matched the
+ * previous one. In that case, we only need to look at the previous results, which is usually a tiny
+ * fraction of the whole collection. Anything else (such as backspacing) means a full rescan.
+ * </p>
+ * <p>
+ * The remembered results are only as current as the Notes they were drawn from, so callers should
+ * call reset() if the underlying Notes may have changed since the previous search.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class IncrementalSearch {
+
+    private String previousText;
+    private Set<Tag> previousTags;
+    private List<Note> previousResults;
+    private boolean wasNarrowed;
+
+    /**
+     * Builds the Query for the given search text and tags, exactly as a search with those
+     * inputs would execute it. Blank text means no text filter, and an empty tag list means
+     * no tag filter.
+     */
+    public static Query buildQuery(String text, List<Tag> tags) {
+        Query query = new Query();
+        if (text != null && !text.isBlank()) {
+            query.addFilter(new TextFilter(text));
+        }
+        if (tags != null && !tags.isEmpty()) {
+            query.addFilter(new TagFilter(tags, TagFilter.FilterType.ALL));
+        }
+        return query;
+    }
+
+    /**
+     * Searches for Notes that contain the given text (case-insensitive) and all of the given tags.
+     * The previous results are searched instead of the given Notes if the new search is a narrowing
+     * of the previous one. If both text and tags are empty, there is nothing to search for, and
+     * the results will be empty.
+     * <p>
+     * If the given monitor cancels the search, a CancellationException is thrown, and the
+     * previous results are kept as they were.
+     * </p>
+     *
+     * @param allNotes The full list of Notes to search, if we have to rescan.
+     * @param text     The text to search for. Can be blank.
+     * @param tags     The tags that results must have. Can be empty.
+     * @param monitor  Notified of progress, and given the chance to cancel. Can be null.
+     * @return All matching Notes, sorted by date with the most recent last. Never null.
+     */
+    public synchronized List<Note> search(List<Note> allNotes, String text, List<Tag> tags,
+                                          Query.ExecutionMonitor monitor) {
+        String normalizedText = text == null ? "" : text.toLowerCase(Locale.ROOT);
+        Set<Tag> tagSet = tags == null ? new HashSet<>() : new HashSet<>(tags);
+        if (normalizedText.isBlank() && tagSet.isEmpty()) {
+            reset();
+            return new ArrayList<>();
+        }
+
+        boolean canNarrow = isNarrowing(normalizedText, tagSet);
+        List<Note> candidates = canNarrow ? previousResults : allNotes;
+        List<Note> results = buildQuery(text, new ArrayList<>(tagSet)).execute(candidates, Integer.MAX_VALUE, monitor);
+
+        previousText = normalizedText;
+        previousTags = tagSet;
+        previousResults = results;
+        wasNarrowed = canNarrow;
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Reports whether the most recent call to search() was able to narrow the previous
+     * results rather than rescanning everything.
+     */
+    public synchronized boolean wasNarrowed() {
+        return wasNarrowed;
+    }
+
+    /**
+     * Forgets the previous results, so that the next search will rescan everything.
+     */
+    public synchronized void reset() {
+        previousText = null;
+        previousTags = null;
+        previousResults = null;
+        wasNarrowed = false;
+    }
+
+    /**
+     * A new search narrows the previous one if its text contains the previous text,
+     * and it requires at least all the same tags. Blank previous text means that there
+     * was no text filter, so any new text is a narrowing of it.
+     */
+    private boolean isNarrowing(String normalizedText, Set<Tag> tagSet) {
+        if (previousResults == null) {
+            return false;
+        }
+        boolean textNarrows = previousText.isBlank() || normalizedText.contains(previousText);
+        return textNarrows && tagSet.containsAll(previousTags);
+    }
+}
@@ -14,12 +14,28 @@ import java.util.logging.Logger;
  */
 public final class Note {
 
+    /**
+     * Supplies the text of a Note whose text is not held in memory. The persistence layer uses this
+     * for very large Notes, whose text is left on disk until something actually asks for it.
+     * See setTextSource().
+     */
+    @FunctionalInterface
+    public interface TextSource {
+        /**
+         * Returns the full text, exactly as getText() would. May be slow, since it might involve
+         * reading the whole thing from disk. Failures are thrown as an UncheckedIOException.
+         */
+        String getText();
+    }
+
     private static final Logger log = Logger.getLogger(Note.class.getName());
 
     private final TagList tagList;
     private String text;
+    private TextSource textSource;
     private File sourceFile;
     private boolean isDirty;
+    private String savedContentHash;
 
     /**
      * Creates an empty, untagged Note.
@@ -38,6 +54,9 @@ public final class Note {
      * @param src The File from which this Note was loaded, if applicable.
      */
     public void setSourceFile(File src) {
+        if (src == null || !src.equals(sourceFile)) {
+            savedContentHash = null; // that hash was for a different file
+        }
         sourceFile = src;
         isDirty = true;
     }
@@ -91,6 +110,7 @@ public final class Note {
      */
     public Note setText(String newText) {
         text = newText == null ? "" : newText;
+        textSource = null;
         isDirty = true;
         return this;
     }
@@ -104,6 +124,7 @@ public final class Note {
      * @return This Note, for chaining.
      */
     public Note append(String newText) {
+        materializeText();
         text += newText;
         isDirty = true;
         return this;
@@ -115,6 +136,7 @@ public final class Note {
      * @return This Note, for chaining.
      */
     public Note newline() {
+        materializeText();
         text += System.lineSeparator();
         isDirty = true;
         return this;
@@ -126,7 +148,8 @@ public final class Note {
      * @return True if any text exists here.
      */
     public boolean hasText() {
-        return text != null && !text.isBlank();
+        String currentText = getText();
+        return currentText != null && !currentText.isBlank();
     }
 
     /**
@@ -137,7 +160,39 @@ public final class Note {
      * @return The text of this Note.
      */
     public String getText() {
-        return text;
+        return textSource == null ? text : textSource.getText();
+    }
+
+    /**
+     * Hands responsibility for this Note's text over to the given TextSource, which getText() will
+     * defer to from now on. Any subsequent setText() replaces the TextSource, and append() or newline()
+     * pull the full text into memory first. This is intended for the persistence layer, so it does not
+     * mark the Note dirty.
+     *
+     * @param source The new TextSource for this Note's text, or null to go back to an empty in-memory text.
+     * @return This Note, for chaining.
+     */
+    public Note setTextSource(TextSource source) {
+        textSource = source;
+        text = "";
+        return this;
+    }
+
+    /**
+     * Returns the TextSource that currently supplies this Note's text, or null if the text is held in memory.
+     */
+    public TextSource getTextSource() {
+        return textSource;
+    }
+
+    /**
+     * If our text currently comes from a TextSource, pulls it into memory so it can be modified there.
+     */
+    private void materializeText() {
+        if (textSource != null) {
+            text = textSource.getText();
+            textSource = null;
+        }
     }
 
     /**
@@ -286,6 +341,34 @@ public final class Note {
         isDirty = false;
     }
 
+    /**
+     * Marks this Note as dirty, indicating that it has changes that are not yet persisted to disk.
+     * Normally this happens automatically when the Note is modified, but DataManager also uses this
+     * to flag a Note whose deferred save has failed, so that it will be picked up again by the next save.
+     */
+    public void markDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * Returns a hash of this Note's serialized content as it was last loaded from, or saved to,
+     * its source file, or null if that isn't known. This is set by the persistence layer,
+     * which uses it to avoid rewriting a file whose content would not change. Unlike isDirty(),
+     * this is unaffected by setters that leave the Note's content the same as it was.
+     */
+    public String getSavedContentHash() {
+        return savedContentHash;
+    }
+
+    /**
+     * Records a hash of this Note's serialized content as it is in its source file on disk.
+     * This is intended for the persistence layer; see getSavedContentHash().
+     * Changing the Note's source file clears this.
+     */
+    public void setSavedContentHash(String savedContentHash) {
+        this.savedContentHash = savedContentHash;
+    }
+
     /**
      * A comparison between Notes will focus on the date of each Note. If a Note
      * is dated, its date will be used for comparison. Otherwise, the last modified
@@ -1,10 +1,21 @@
 package ca.corbett.snotes.model;
 
+import ca.corbett.snotes.metrics.Counter;
+import ca.corbett.snotes.metrics.Histogram;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.QueryExecutionEvent;
+import ca.corbett.snotes.metrics.Timer;
 import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterIndex;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 /**
  * A Query is a collection of zero or more Filter instances that can be applied
@@ -14,14 +25,45 @@ import java.util.List;
  * is currently no way to "or" filters together, or to have more complex logic like
  * "filter A and (filter B or filter C)".
  * </p>
+ * <p>
+ * Since the order of "and"ed Filters doesn't matter to the results, each execution is free to evaluate
+ * them in whatever order is cheapest, based on the cost and selectivity hints of each Filter, and to
+ * skip Notes that a Filter index has already ruled out. See planFilterOrder() and FilterIndex.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  */
 public class Query {
 
+    /**
+     * Callers that execute a Query on a worker thread can supply one of these to be told how far
+     * along the execution is, and to cancel it part way through.
+     */
+    public interface ExecutionMonitor {
+        /**
+         * Invoked periodically while Notes are being filtered.
+         *
+         * @param notesScanned How many Notes have been checked against our filters so far.
+         * @param totalNotes   How many Notes there are to check in total.
+         * @return true to keep going, or false to cancel the execution.
+         */
+        boolean progress(int notesScanned, int totalNotes);
+    }
+
     public static final String DEFAULT_NAME = "Unnamed Query";
     public static final int NAME_LENGTH_LIMIT = 25;
 
+    /**
+     * How many Notes we filter between calls to an ExecutionMonitor.
+     */
+    public static final int MONITOR_INTERVAL = 250;
+
+    private static final Timer executeTimer = Metrics.getInstance().timer("query.execute");
+    private static final Histogram inputSizes = Metrics.getInstance().histogram("query.input");
+    private static final Histogram outputSizes = Metrics.getInstance().histogram("query.output");
+    private static final Counter canceledCount = Metrics.getInstance().counter("query.canceled");
+    private static final Counter indexUsedCount = Metrics.getInstance().counter("query.indexUsed");
+
     private String name;
     private final List<Filter> filters;
     private File sourceFile;
@@ -110,7 +152,11 @@ public class Query {
     }
 
     /**
-     * Adds a Filter to this Query. Filters are applied in the order they are added.
+     * Adds a Filter to this Query. Filters are kept, saved, and shown in the order they are added,
+     * but when the Query is executed, they are evaluated cheapest and most selective first, going by
+     * each Filter's cost and selectivity hints. The order they were added in only decides between
+     * Filters that rank the same, which includes Filters that leave both hints at their defaults.
+     * The order can't change the results, since a Note has to pass every Filter either way.
      * Note that there is no code here to check that the given Filters make sense
      * and don't conflict with one another. For example, you could add a DateFilter
      * of "before 2010" and another DateFilter of "after 2015" to the same Query.
@@ -170,6 +216,110 @@ public class Query {
      * @throws IllegalArgumentException if limit is negative.
      */
     public List<Note> execute(List<Note> notes, int limit) {
+        return executeInternal(notes, limit, null, null);
+    }
+
+    /**
+     * Executes this Query exactly as {@link #execute(List, int)} would, but reports progress to the given
+     * ExecutionMonitor every MONITOR_INTERVAL Notes (and once more when filtering is done). If the monitor
+     * returns false, the execution is abandoned and a CancellationException is thrown.
+     * This is intended for running a Query on a worker thread, where the user may want to cancel it.
+     *
+     * @param notes   The list of Notes to filter. This list is not modified by this method.
+     * @param limit   The maximum number of results to return, taking the most recent. Must be greater than or equal
+     *                to 0. Pass {@link Integer#MAX_VALUE} for no upper limit.
+     * @param monitor Notified of progress, and given the chance to cancel. Can be null.
+     * @return A new list of Notes that passed through all the filters in this Query. May be empty, but never null.
+     * @throws IllegalArgumentException if limit is negative.
+     * @throws CancellationException    if the monitor canceled the execution.
+     */
+    public List<Note> execute(List<Note> notes, int limit, ExecutionMonitor monitor) {
+        return executeInternal(notes, limit, null, monitor);
+    }
+
+    /**
+     * Executes this Query exactly as {@link #execute(List, int)} would, but with instrumentation enabled.
+     * The returned QueryProfile contains the query results, along with per-Filter evaluation counts,
+     * rejection counts and timings, the access path used, and the time spent sorting.
+     * This is slightly slower than a regular execute() because of the timing overhead,
+     * so it should only be used for diagnostic purposes.
+     *
+     * @param notes The list of Notes to filter. This list is not modified by this method.
+     * @param limit The maximum number of results to return, taking the most recent. Must be greater than or equal to 0.
+     *              Pass {@link Integer#MAX_VALUE} for no upper limit.
+     * @return A QueryProfile describing this execution. Never null.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    public QueryProfile profile(List<Note> notes, int limit) {
+        return profile(notes, limit, null);
+    }
+
+    /**
+     * Profiles this Query exactly as {@link #profile(List, int)} would, but reports progress to the given
+     * ExecutionMonitor, as {@link #execute(List, int, ExecutionMonitor)} does. This is intended for
+     * profiling a Query on a worker thread, where the user may want to cancel it.
+     *
+     * @param notes   The list of Notes to filter. This list is not modified by this method.
+     * @param limit   The maximum number of results to return, taking the most recent. Must be greater than or equal
+     *                to 0. Pass {@link Integer#MAX_VALUE} for no upper limit.
+     * @param monitor Notified of progress, and given the chance to cancel. Can be null.
+     * @return A QueryProfile describing this execution. Never null.
+     * @throws IllegalArgumentException if limit is negative.
+     * @throws CancellationException    if the monitor canceled the execution.
+     */
+    public QueryProfile profile(List<Note> notes, int limit, ExecutionMonitor monitor) {
+        QueryProfile profile = new QueryProfile(this);
+        long startTime = System.nanoTime();
+        profile.setResults(executeInternal(notes, limit, profile, monitor));
+        profile.setTotalNanos(System.nanoTime() - startTime);
+        return profile;
+    }
+
+    /**
+     * Shorthand for profile(notes, Integer.MAX_VALUE).
+     */
+    public QueryProfile profile(List<Note> notes) {
+        return profile(notes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Executes this Query, and records the execution in our metrics and as a Flight Recorder event.
+     * That's cheap enough to always do, since it's per execution and not per Note. See filterAndSort().
+     */
+    private List<Note> executeInternal(List<Note> notes, int limit, QueryProfile profile,
+                                       ExecutionMonitor monitor) {
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        List<Note> results;
+        try {
+            results = filterAndSort(notes, limit, profile, monitor);
+        }
+        catch (CancellationException e) {
+            canceledCount.increment();
+            throw e;
+        }
+        executeTimer.recordSince(startTime);
+        int inputSize = notes == null ? 0 : notes.size();
+        inputSizes.record(inputSize);
+        outputSizes.record(results.size());
+        if (event.shouldCommit()) {
+            event.queryName = name;
+            event.filterCount = filters.size();
+            event.inputSize = inputSize;
+            event.outputSize = results.size();
+            event.commit();
+        }
+        return results;
+    }
+
+    /**
+     * Does the actual work of executing this Query. If a QueryProfile is supplied, it will be
+     * populated with execution statistics as we go. If null, no per-Filter instrumentation is done.
+     * If an ExecutionMonitor is supplied, it is checked periodically, and may cancel the execution.
+     */
+    private List<Note> filterAndSort(List<Note> notes, int limit, QueryProfile profile,
+                                     ExecutionMonitor monitor) {
         if (limit < 0) {
             throw new IllegalArgumentException("limit must be >= 0");
         }
@@ -180,11 +330,32 @@ public class Query {
             return new ArrayList<>();
         }
         List<Note> filteredNotes = new ArrayList<>();
+        long filterStartTime = (profile == null) ? 0 : System.nanoTime();
+        List<Filter> plannedFilters = planFilterOrder();
+        Set<Note> candidates = findCandidates(profile);
+        if (profile != null) {
+            profile.setEvaluationOrder(plannedFilters);
+        }
+        int notesScanned = 0;
         for (Note note : notes) {
+            if (monitor != null && notesScanned > 0 && notesScanned % MONITOR_INTERVAL == 0) {
+                checkProgress(monitor, notesScanned, notes.size());
+            }
+            notesScanned++;
+            if (candidates != null && !candidates.contains(note)) {
+                continue; // A Filter index has already ruled this one out
+            }
             boolean isFiltered = false;
-            for (Filter filter : filters) {
-                if (filter.isFiltered(note)) {
-                    isFiltered = true;
+            for (int i = 0; i < plannedFilters.size(); i++) {
+                if (profile == null) {
+                    isFiltered = plannedFilters.get(i).isFiltered(note);
+                }
+                else {
+                    long start = System.nanoTime();
+                    isFiltered = plannedFilters.get(i).isFiltered(note);
+                    profile.getFilterStats(i).record(isFiltered, System.nanoTime() - start);
+                }
+                if (isFiltered) {
                     break; // No need to check other filters if one already filters this note
                 }
             }
@@ -192,12 +363,27 @@ public class Query {
                 filteredNotes.add(note);
             }
         }
+        if (monitor != null) {
+            checkProgress(monitor, notesScanned, notes.size());
+        }
+
+        long sortStartTime = 0;
+        if (profile != null) {
+            sortStartTime = System.nanoTime();
+            profile.setFilterNanos(sortStartTime - filterStartTime);
+            profile.setInputCount(notes.size());
+            profile.setMatchCount(filteredNotes.size());
+        }
 
         // Sort the list by date. For Notes that are dated, we'll use that date. For Notes that are
         // undated, we'll use the sourceFile's lastModified time. Undated Notes that have no
         // source file will be treated as having a date of 0 (the epoch), so they will be sorted before all dated Notes.
         filteredNotes.sort(Note::compareTo);
 
+        if (profile != null) {
+            profile.setSortNanos(System.nanoTime() - sortStartTime);
+        }
+
         if (filteredNotes.size() > limit) {
             // Return a defensive copy of the tail so callers receive a new, independent list
             return new ArrayList<>(filteredNotes.subList(filteredNotes.size() - limit, filteredNotes.size()));
@@ -206,6 +392,76 @@ public class Query {
         return filteredNotes;
     }
 
+    /**
+     * Returns our Filters in the order they should be evaluated. Since all Filters are "and"ed together,
+     * the order doesn't change the results, only how much work it takes to get them: a Note is done as
+     * soon as any Filter rejects it, so we want the Filters that reject the most Notes for the least
+     * effort to go first. Each Filter is ranked by its cost hint divided by the fraction of Notes it
+     * is expected to reject, lowest first. Filters with the same rank keep the order they were added in.
+     */
+    private List<Filter> planFilterOrder() {
+        List<Filter> planned = new ArrayList<>(filters);
+        planned.sort(Comparator.comparingDouble(Query::rank));
+        return planned;
+    }
+
+    private static double rank(Filter filter) {
+        double cost = filter.getCostHint();
+        double selectivity = filter.getSelectivityHint();
+        if (!(cost >= 0)) { // also catches NaN
+            cost = Filter.DEFAULT_COST;
+        }
+        if (!(selectivity >= 0 && selectivity <= 1)) {
+            selectivity = Filter.DEFAULT_SELECTIVITY;
+        }
+        return selectivity >= 1 ? Double.MAX_VALUE : cost / (1 - selectivity);
+    }
+
+    /**
+     * Asks each of our Filters that has an index for its candidate Notes, and returns the Notes that
+     * are candidates for all of them, or null if none of our Filters could narrow things down.
+     * Every candidate still goes through all of our Filters, so an index can only save us work;
+     * it can't change the results.
+     */
+    private Set<Note> findCandidates(QueryProfile profile) {
+        List<Set<Note>> candidateSets = new ArrayList<>();
+        List<String> indexedFilters = new ArrayList<>();
+        for (Filter filter : filters) {
+            FilterIndex index = filter.getIndex();
+            Set<Note> matches = index == null ? null : index.findMatches();
+            if (matches != null) {
+                candidateSets.add(matches);
+                indexedFilters.add(filter.getDescription());
+            }
+        }
+        if (candidateSets.isEmpty()) {
+            return null;
+        }
+
+        // Start from the smallest set, so there's as little as possible to intersect:
+        candidateSets.sort(Comparator.comparingInt(Set::size));
+        Set<Note> candidates = candidateSets.get(0);
+        if (candidateSets.size() > 1) {
+            candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidates.addAll(candidateSets.get(0));
+            for (int i = 1; i < candidateSets.size() && !candidates.isEmpty(); i++) {
+                candidates.retainAll(candidateSets.get(i));
+            }
+        }
+        indexUsedCount.increment();
+        if (profile != null) {
+            profile.setAccessPath(QueryProfile.ACCESS_PATH_INDEX + " (" + String.join(", ", indexedFilters)
+                                      + "): " + candidates.size() + " candidates");
+        }
+        return candidates;
+    }
+
+    private static void checkProgress(ExecutionMonitor monitor, int notesScanned, int totalNotes) {
+        if (!monitor.progress(notesScanned, totalNotes)) {
+            throw new CancellationException("Query execution was canceled.");
+        }
+    }
+
     /**
      * Returns the sort order for this Query. Lower values sort first. Defaults to 0.
      */
@@ -0,0 +1,283 @@
+package ca.corbett.snotes.model;
+
+import ca.corbett.snotes.model.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Captures the results of an instrumented Query execution, as returned by {@link Query#profile(List, int)}.
+ * In addition to the actual query results, this class records how many Notes each Filter
+ * in the chain was asked to evaluate, how many of those it rejected, and how long it spent doing so.
+ * This is useful for figuring out which Filter in a slow Query is costing us the most,
+ * and whether its cost and selectivity hints are steering the Query into a sensible evaluation order.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class QueryProfile {
+
+    /**
+     * Every Note was checked against the Filters. This is what happens unless a Filter offers an index.
+     */
+    public static final String ACCESS_PATH_FULL_SCAN = "Full scan";
+
+    /**
+     * One or more Filter indexes narrowed down the Notes that were checked against the Filters.
+     * The access path starts with this, followed by the Filters whose indexes were used,
+     * and the number of candidate Notes they came up with.
+     */
+    public static final String ACCESS_PATH_INDEX = "Index";
+
+    private final String queryName;
+    private final List<FilterStats> filterStats;
+    private final List<Note> results;
+    private String accessPath;
+    private int inputCount;
+    private int matchCount;
+    private long filterNanos;
+    private long sortNanos;
+    private long totalNanos;
+
+    QueryProfile(Query query) {
+        this.queryName = query.getName();
+        this.filterStats = new ArrayList<>(query.size());
+        for (Filter filter : query.getFilters()) {
+            filterStats.add(new FilterStats(filter));
+        }
+        this.results = new ArrayList<>();
+        this.accessPath = ACCESS_PATH_FULL_SCAN;
+    }
+
+    /**
+     * Returns the name of the Query that was profiled.
+     */
+    public String getQueryName() {
+        return queryName;
+    }
+
+    /**
+     * Returns a description of how the Query located candidate Notes.
+     * See ACCESS_PATH_FULL_SCAN and ACCESS_PATH_INDEX.
+     */
+    public String getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * Returns the per-Filter statistics, in the same order that the Filters were applied.
+     * This is the order that Query planned, which is not necessarily the order they were added in.
+     */
+    public List<FilterStats> getFilterStats() {
+        return new ArrayList<>(filterStats);
+    }
+
+    /**
+     * Returns the actual query results, exactly as Query.execute() would have returned them.
+     */
+    public List<Note> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Returns the number of Notes that were presented to the Query.
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Returns the number of Notes that passed all Filters, before any result limit was applied.
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * Returns the number of Notes actually returned, after the result limit was applied.
+     */
+    public int getReturnedCount() {
+        return results.size();
+    }
+
+    /**
+     * Returns the total time spent in the filtering phase, in nanoseconds. This includes
+     * the time spent in each Filter plus the overhead of the scan itself.
+     */
+    public long getFilterNanos() {
+        return filterNanos;
+    }
+
+    /**
+     * Returns the time spent sorting the matched Notes, in nanoseconds.
+     */
+    public long getSortNanos() {
+        return sortNanos;
+    }
+
+    /**
+     * Returns the total execution time of the Query, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Generates a plain-text, multi-line report of this profile, suitable for display
+     * in a monospaced text area or for dumping to the log.
+     */
+    public String toReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Query: ").append(queryName).append(System.lineSeparator());
+        sb.append("Access path: ").append(accessPath).append(System.lineSeparator());
+        sb.append(String.format("Notes scanned: %d, matched: %d, returned: %d%n",
+                                inputCount, matchCount, getReturnedCount()));
+        sb.append(System.lineSeparator());
+        if (filterStats.isEmpty()) {
+            sb.append("(no filters - all notes pass)").append(System.lineSeparator());
+        }
+        else {
+            sb.append(String.format("%-3s %10s %10s %8s %12s  %s%n",
+                                    "#", "Evaluated", "Rejected", "Reject%", "Time (ms)", "Filter"));
+            for (int i = 0; i < filterStats.size(); i++) {
+                FilterStats stats = filterStats.get(i);
+                sb.append(String.format("%-3d %10d %10d %7.1f%% %12.3f  %s%n",
+                                        i + 1,
+                                        stats.getEvaluatedCount(),
+                                        stats.getRejectedCount(),
+                                        stats.getRejectionRate() * 100.0,
+                                        toMillis(stats.getNanos()),
+                                        stats.getDescription()));
+            }
+        }
+        sb.append(System.lineSeparator());
+        sb.append(String.format("Filter time: %.3f ms%n", toMillis(filterNanos)));
+        sb.append(String.format("Sort time:   %.3f ms%n", toMillis(sortNanos)));
+        sb.append(String.format("Total time:  %.3f ms%n", toMillis(totalNanos)));
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toReport();
+    }
+
+    /**
+     * Returns the FilterStats for the Filter at the given index. Used by Query during execution.
+     */
+    FilterStats getFilterStats(int index) {
+        return filterStats.get(index);
+    }
+
+    /**
+     * Puts our per-Filter statistics into the order the Filters will actually be applied in.
+     * Must be called before anything is recorded. Used by Query during execution.
+     */
+    void setEvaluationOrder(List<Filter> plannedFilters) {
+        List<FilterStats> planned = new ArrayList<>(plannedFilters.size());
+        for (Filter filter : plannedFilters) {
+            for (FilterStats stats : filterStats) {
+                if (stats.getFilter() == filter && !planned.contains(stats)) {
+                    planned.add(stats);
+                    break;
+                }
+            }
+        }
+        filterStats.clear();
+        filterStats.addAll(planned);
+    }
+
+    void setAccessPath(String accessPath) {
+        this.accessPath = accessPath;
+    }
+
+    void setInputCount(int inputCount) {
+        this.inputCount = inputCount;
+    }
+
+    void setMatchCount(int matchCount) {
+        this.matchCount = matchCount;
+    }
+
+    void setFilterNanos(long filterNanos) {
+        this.filterNanos = filterNanos;
+    }
+
+    void setSortNanos(long sortNanos) {
+        this.sortNanos = sortNanos;
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    void setResults(List<Note> results) {
+        this.results.clear();
+        this.results.addAll(results);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Execution statistics for a single Filter within a profiled Query.
+     * Because all Filters are "and"ed together, and evaluation short-circuits on the first rejection,
+     * a Filter is only evaluated for Notes that made it past every Filter before it in the chain.
+     */
+    public static class FilterStats {
+        private final Filter filter;
+        private int evaluatedCount;
+        private int rejectedCount;
+        private long nanos;
+
+        FilterStats(Filter filter) {
+            this.filter = filter;
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+
+        public String getDescription() {
+            return filter.getDescription();
+        }
+
+        /**
+         * Returns the number of Notes that this Filter was asked to evaluate.
+         */
+        public int getEvaluatedCount() {
+            return evaluatedCount;
+        }
+
+        /**
+         * Returns the number of Notes that this Filter rejected.
+         */
+        public int getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Returns the fraction of evaluated Notes that this Filter rejected, from 0.0 to 1.0.
+         * Returns 0 if this Filter evaluated nothing.
+         */
+        public double getRejectionRate() {
+            return evaluatedCount == 0 ? 0.0 : (double)rejectedCount / evaluatedCount;
+        }
+
+        /**
+         * Returns the cumulative time spent inside this Filter, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        void record(boolean rejected, long elapsedNanos) {
+            evaluatedCount++;
+            if (rejected) {
+                rejectedCount++;
+            }
+            nanos += elapsedNanos;
+        }
+    }
+}
@@ -223,6 +223,13 @@ public class YMDDate implements Comparable<YMDDate> {
      * Reports whether the given String conforms to yyyy-MM-dd format.
      */
     public static boolean isValidYMD(String candidate) {
+        // This is called for every tag of every Note we load, and most tags aren't dates.
+        // Rule out anything that isn't shaped like one before paying for a failed parse:
+        if (candidate == null || candidate.length() < 10
+            || candidate.charAt(candidate.length() - 3) != '-'
+            || candidate.charAt(candidate.length() - 6) != '-') {
+            return false;
+        }
         try {
             LocalDate.parse(candidate, FORMATTER);
             return true;
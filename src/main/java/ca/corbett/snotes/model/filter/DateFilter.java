@@ -47,6 +47,11 @@ public class DateFilter extends Filter {
         return "Filter by specific calendar date";
     }
 
+    @Override
+    public double getSelectivityHint() {
+        return filterType == DateFilterType.ON ? 0.01 : DEFAULT_SELECTIVITY;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         if (note == null || !note.hasDate() || note.getDate() == null) {
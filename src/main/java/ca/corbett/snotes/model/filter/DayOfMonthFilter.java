@@ -52,6 +52,11 @@ public class DayOfMonthFilter extends Filter {
         return "Filter by day of month in any month/year";
     }
 
+    @Override
+    public double getSelectivityHint() {
+        return filterType == BooleanFilterType.IS ? 1.0 / 31 : 1.0 - 1.0 / 31;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         if (note == null || !note.hasDate() || note.getDate() == null) {
@@ -48,6 +48,11 @@ public class DayOfWeekFilter extends Filter {
         return "Filter by day of week";
     }
 
+    @Override
+    public double getSelectivityHint() {
+        return filterType == BooleanFilterType.IS ? 1.0 / 7 : 1.0 - 1.0 / 7;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         if (note == null || !note.hasDate() || note.getDate() == null) {
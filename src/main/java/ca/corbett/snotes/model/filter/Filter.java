@@ -8,6 +8,16 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 /**
  * An abstract base class for all filters. Each filter has a human-readable description,
  * and a simple method to determine if a candidate Note should be filtered or not.
+ * <p>
+ *     Filters can also give Query some hints about how best to run them: how expensive they are
+ *     to evaluate, what fraction of Notes they are expected to let through, and, optionally, an
+ *     index that can find candidate Notes without looking at every Note. Query uses these to decide
+ *     which Filters to evaluate first, and whether it can avoid a full scan. The hints never change
+ *     the results of a Query, only how quickly it gets them.
+ * </p>
+ * <p>
+ *     The built-in Filter types are listed below. Extensions can add their own with FilterRegistry.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  */
@@ -24,6 +34,16 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 })
 public abstract class Filter {
 
+    /**
+     * The cost hint of a typical Filter, which only looks at a Note's date or tags.
+     */
+    public static final double DEFAULT_COST = 1.0;
+
+    /**
+     * The selectivity hint of a Filter that has no idea what fraction of Notes it lets through.
+     */
+    public static final double DEFAULT_SELECTIVITY = 0.5;
+
     /**
      * Returns a brief, human-presentable description of this filter.
      */
@@ -35,4 +55,33 @@ public abstract class Filter {
      * Return false if the given Note should be included in the results.
      */
     public abstract boolean isFiltered(Note note);
+
+    /**
+     * Returns a rough estimate of how expensive this Filter is to evaluate for a single Note,
+     * relative to DEFAULT_COST. For example, a Filter that has to search through the text of
+     * every Note should return something much higher than one that only checks its date.
+     * Only the relative values matter. The default is DEFAULT_COST.
+     */
+    @JsonIgnore
+    public double getCostHint() {
+        return DEFAULT_COST;
+    }
+
+    /**
+     * Returns a rough estimate of the fraction of Notes that this Filter lets through,
+     * from 0.0 (it rejects everything) to 1.0 (it rejects nothing). The default is DEFAULT_SELECTIVITY.
+     */
+    @JsonIgnore
+    public double getSelectivityHint() {
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Returns an index that can find the Notes that might pass this Filter without evaluating it
+     * against every Note, or null if there is no such index. The default is null.
+     */
+    @JsonIgnore
+    public FilterIndex getIndex() {
+        return null;
+    }
 }
@@ -0,0 +1,30 @@
+package ca.corbett.snotes.model.filter;
+
+import ca.corbett.snotes.model.Note;
+
+import java.util.Set;
+
+/**
+ * Finds the Notes that might pass a Filter, without having to evaluate the Filter against every Note.
+ * A Filter that keeps (or has access to) some kind of lookup structure can return one of these
+ * from getIndex(), and Query will then only evaluate its Filters against the candidates.
+ * <p>
+ *     An index is allowed to be generous: it may return Notes that the Filter goes on to reject,
+ *     since every candidate is still checked with isFiltered(). But it must never leave out a Note
+ *     that the Filter would have let through. If the index can't answer right now (for example,
+ *     because it is still being built), it should return null, and Query falls back to a full scan.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+@FunctionalInterface
+public interface FilterIndex {
+
+    /**
+     * Returns every Note that might pass the Filter, or null if the index can't say.
+     * Notes are compared by identity, so the returned Notes must be the same instances
+     * that the Query is executed against.
+     */
+    Set<Note> findMatches();
+}
@@ -0,0 +1,130 @@
+package ca.corbett.snotes.model.filter;
+
+import java.util.function.Function;
+
+/**
+ * Describes a Filter type that comes from outside the application, typically from a SnotesExtension.
+ * Registering one of these with FilterRegistry lets Queries that use the Filter be saved and loaded,
+ * and lets the user pick the Filter in the query builder, just like the built-in ones.
+ * <p>
+ *     The query builder shows a Filter as a label, and a single line of text for its value.
+ *     The parser turns that text into a Filter, and should throw an IllegalArgumentException
+ *     with a user-presentable message if the text isn't valid. The formatter does the opposite,
+ *     so that an existing Filter can be edited. For example:
+ * </p>
+ * <pre>
+ *     new FilterRegistration&lt;&gt;("WordCountFilter", WordCountFilter.class, "Word count",
+ *                              text -&gt; new WordCountFilter(Integer.parseInt(text)),
+ *                              filter -&gt; String.valueOf(filter.getMinimumWords()))
+ *         .setPrompt("At least:")
+ *         .setHelpText("Matches all notes with at least this many words.");
+ * </pre>
+ * <p>
+ *     The Filter class itself must be serializable with Jackson, exactly like the built-in Filters.
+ *     The type name is what gets written to the "type" property of saved Queries, so it must
+ *     never change once Queries have been saved with it.
+ * </p>
+ *
+ * @param <T> The Filter subclass being registered.
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class FilterRegistration<T extends Filter> {
+
+    private final String typeName;
+    private final Class<T> filterClass;
+    private final String label;
+    private final Function<String, T> parser;
+    private final Function<T, String> formatter;
+    private String prompt;
+    private String helpText;
+
+    /**
+     * Describes a new Filter type.
+     *
+     * @param typeName    The name to persist this Filter type under. Must be unique.
+     * @param filterClass The Filter subclass.
+     * @param label       A short name for this Filter type, to show in the query builder.
+     * @param parser      Creates a Filter from the user's input, or throws IllegalArgumentException.
+     * @param formatter   Converts a Filter back into the text that would create it.
+     */
+    public FilterRegistration(String typeName, Class<T> filterClass, String label,
+                              Function<String, T> parser, Function<T, String> formatter) {
+        if (typeName == null || typeName.isBlank()) {
+            throw new IllegalArgumentException("typeName cannot be blank");
+        }
+        if (filterClass == null || parser == null || formatter == null) {
+            throw new IllegalArgumentException("filterClass, parser and formatter are required");
+        }
+        this.typeName = typeName;
+        this.filterClass = filterClass;
+        this.label = (label == null || label.isBlank()) ? typeName : label;
+        this.parser = parser;
+        this.formatter = formatter;
+        this.prompt = "Value:";
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public Class<T> getFilterClass() {
+        return filterClass;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    /**
+     * Sets the prompt shown next to the value field in the query builder. Defaults to "Value:".
+     */
+    public FilterRegistration<T> setPrompt(String prompt) {
+        this.prompt = prompt;
+        return this;
+    }
+
+    public String getHelpText() {
+        return helpText;
+    }
+
+    /**
+     * Sets the help text shown for this Filter type in the query builder. Defaults to none.
+     */
+    public FilterRegistration<T> setHelpText(String helpText) {
+        this.helpText = helpText;
+        return this;
+    }
+
+    /**
+     * Creates a Filter from the given user input.
+     *
+     * @param value The text entered by the user. Null is treated as empty.
+     * @return A new Filter. Never null.
+     * @throws IllegalArgumentException If the given value isn't valid for this Filter type.
+     */
+    public T parse(String value) {
+        T filter = parser.apply(value == null ? "" : value.trim());
+        if (filter == null) {
+            throw new IllegalArgumentException("Not a valid value for this filter.");
+        }
+        return filter;
+    }
+
+    /**
+     * Converts the given Filter, which must be of our filter class, back into user input.
+     */
+    public String format(Filter filter) {
+        String text = formatter.apply(filterClass.cast(filter));
+        return text == null ? "" : text;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,123 @@
+package ca.corbett.snotes.model.filter;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the Filter types that were added from outside the application, alongside the
+ * built-in ones listed on Filter itself. SnotesIO consults this registry when saving and loading
+ * Queries, and the query builder offers every registered type to the user.
+ * <p>
+ *     Extensions register their Filters with SnotesExtension.getFilterRegistrations(), and
+ *     SnotesExtensionManager passes them along to us. Registrations last for the rest of the session,
+ *     even if the extension is later disabled, since Queries that use its Filters may still be loaded
+ *     and will still need to be saved under the right type name. A saved Query that uses a Filter
+ *     type that isn't registered can't be loaded, and is left alone on disk until it is.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class FilterRegistry {
+
+    private static final Logger log = Logger.getLogger(FilterRegistry.class.getName());
+
+    private static final FilterRegistry instance = new FilterRegistry();
+
+    private final Set<String> builtInTypeNames;
+    private final Set<Class<?>> builtInClasses;
+    private final Map<String, FilterRegistration<?>> registrations;
+
+    private FilterRegistry() {
+        JsonSubTypes.Type[] builtInTypes = Filter.class.getAnnotation(JsonSubTypes.class).value();
+        builtInTypeNames = Arrays.stream(builtInTypes)
+                                 .map(JsonSubTypes.Type::name)
+                                 .collect(Collectors.toUnmodifiableSet());
+        builtInClasses = Arrays.stream(builtInTypes)
+                               .map(JsonSubTypes.Type::value)
+                               .collect(Collectors.toUnmodifiableSet());
+        registrations = new LinkedHashMap<>();
+    }
+
+    public static FilterRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers the given Filter type. Registering the same type again replaces the earlier
+     * registration, which lets an extension that is reloaded update its labels and parsers.
+     *
+     * @throws IllegalArgumentException If the type name belongs to a built-in Filter or to a different
+     *                                  Filter class, or if the Filter class is already registered
+     *                                  under a different name.
+     */
+    public synchronized void register(FilterRegistration<?> registration) {
+        String typeName = registration.getTypeName();
+        if (builtInTypeNames.contains(typeName) || builtInClasses.contains(registration.getFilterClass())) {
+            throw new IllegalArgumentException("Filter type is built in: " + typeName);
+        }
+        for (FilterRegistration<?> existing : registrations.values()) {
+            boolean sameName = existing.getTypeName().equals(typeName);
+            boolean sameClass = existing.getFilterClass().equals(registration.getFilterClass());
+            if (sameName != sameClass) {
+                throw new IllegalArgumentException("Filter type " + typeName + " ("
+                                                       + registration.getFilterClass().getName()
+                                                       + ") conflicts with " + existing.getTypeName() + " ("
+                                                       + existing.getFilterClass().getName() + ")");
+            }
+        }
+        if (registrations.put(typeName, registration) == null) {
+            log.fine("Registered filter type " + typeName);
+        }
+    }
+
+    /**
+     * Registers each of the given Filter types. Any that conflict with an existing type are
+     * logged and skipped, so that one badly behaved extension can't keep the others from registering.
+     */
+    public void registerAll(List<FilterRegistration<?>> registrationList) {
+        for (FilterRegistration<?> registration : registrationList) {
+            try {
+                register(registration);
+            }
+            catch (IllegalArgumentException e) {
+                log.warning("Ignoring filter registration: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns every registered Filter type, in the order they were registered.
+     */
+    public synchronized List<FilterRegistration<?>> getRegistrations() {
+        return new ArrayList<>(registrations.values());
+    }
+
+    /**
+     * Reports whether the given Filter class is either built in or registered,
+     * which is to say, whether a Query that uses it can be saved and loaded again.
+     */
+    public synchronized boolean isKnown(Class<? extends Filter> filterClass) {
+        return builtInClasses.contains(filterClass) || findRegistration(filterClass) != null;
+    }
+
+    /**
+     * Returns the registration for the given Filter class, or null if it isn't registered.
+     */
+    public synchronized FilterRegistration<?> findRegistration(Class<? extends Filter> filterClass) {
+        for (FilterRegistration<?> registration : registrations.values()) {
+            if (registration.getFilterClass().equals(filterClass)) {
+                return registration;
+            }
+        }
+        return null;
+    }
+}
@@ -50,6 +50,11 @@ public class MonthFilter extends Filter {
         return "Filter by month in any year";
     }
 
+    @Override
+    public double getSelectivityHint() {
+        return filterType == BooleanFilterType.IS ? 1.0 / 12 : 1.0 - 1.0 / 12;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         if (note == null || !note.hasDate() || note.getDate() == null) {
@@ -49,6 +49,20 @@ public class TextFilter extends Filter {
         return "Filter by text content";
     }
 
+    /**
+     * Searching through a Note's text is far more expensive than checking its date or tags,
+     * so we'd rather be evaluated last, against whatever the other Filters let through.
+     */
+    @Override
+    public double getCostHint() {
+        return contains.isEmpty() ? DEFAULT_COST : 20.0;
+    }
+
+    @Override
+    public double getSelectivityHint() {
+        return contains.isEmpty() ? 1.0 : DEFAULT_SELECTIVITY;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         // If the filter text is empty, this filter is a documented no-op.
@@ -51,6 +51,11 @@ public class YearFilter extends Filter {
         return "Filter by year";
     }
 
+    @Override
+    public double getSelectivityHint() {
+        return filterType == DateFilterType.ON ? 0.1 : DEFAULT_SELECTIVITY;
+    }
+
     @Override
     public boolean isFiltered(Note note) {
         if (note == null || !note.hasDate() || note.getDate() == null) {
@@ -10,10 +10,12 @@ import ca.corbett.extras.logging.LogConsole;
 import ca.corbett.extras.properties.KeyStrokeProperty;
 import ca.corbett.snotes.AppConfig;
 import ca.corbett.snotes.Main;
+import ca.corbett.snotes.QueryServer;
 import ca.corbett.snotes.Resources;
 import ca.corbett.snotes.Version;
 import ca.corbett.snotes.extensions.SnotesExtensionManager;
 import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.metrics.StartupTimeline;
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.ui.actions.UIReloadAction;
 import ca.corbett.updates.UpdateManager;
@@ -30,6 +32,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.beans.PropertyVetoException;
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -58,9 +61,11 @@ public class MainWindow extends JFrame implements UIReloadable {
     private final BlurLayerUI blurLayer;
     private final KeyStrokeManager keyStrokeManager;
     private final DataManager dataManager;
+    private final QueryServer queryServer;
     private volatile UpdateManager updateManager;
     private boolean cleanupComplete;
     private boolean initialLoad;
+    private long initialLoadStartTime;
     private int internalFrameAddPosition;
 
     private CustomizableDesktopPane desktopPane;
@@ -76,6 +81,7 @@ public class MainWindow extends JFrame implements UIReloadable {
         messageUtil = new MessageUtil(this, logger);
         dataManager = new DataManager();
         dataManager.addNoteDeletionListener(this::noteDeleted);
+        queryServer = new QueryServer(dataManager);
         keyStrokeManager = new KeyStrokeManager(this);
         actionPanelManager = new ActionPanelManager();
         blurLayer = new BlurLayerUI();
@@ -113,6 +119,7 @@ public class MainWindow extends JFrame implements UIReloadable {
             // Tell our DataManager to load everything (background thread), and then trigger a UI reload when finished:
             try {
                 initialLoad = true;
+                initialLoadStartTime = System.nanoTime();
                 blurLayer.setBlurred(true);
                 dataManager.loadAll(e -> reloadUI());
             }
@@ -241,6 +248,13 @@ public class MainWindow extends JFrame implements UIReloadable {
             }
         }
 
+        queryServer.stop();
+
+        // Closing those frames may have queued up some saves, so make sure they all land before we go:
+        if (!dataManager.shutdown()) {
+            logger.severe("Timed out waiting for queued saves to complete. Some changes may be lost.");
+        }
+
         // Always save window state, even if "remember state" is disabled:
         AppConfig.getInstance().setWindowProps(getExtendedState(), getWidth(), getHeight(), getX(), getY());
 
@@ -263,10 +277,17 @@ public class MainWindow extends JFrame implements UIReloadable {
         // remind the user to either explicitly save these files or explicitly discard them:
         if (initialLoad) {
             initialLoad = false; // only do this once
+            StartupTimeline.getInstance().phaseComplete("initialLoad", initialLoadStartTime);
+            StartupTimeline.getInstance().markUsable(); // the window is up, and everything is loaded
             for (Note scratchNote : dataManager.getScratchNotes()) {
                 WriterFrame writerFrame = new WriterFrame(scratchNote);
                 addInternalFrame(writerFrame);
             }
+
+            // Now that everything is loaded, command-line queries can be answered from memory:
+            if (isSingleInstanceModeEnabled) {
+                startQueryServer();
+            }
         }
 
         // Single instance mode may have changed, so check that:
@@ -289,6 +310,10 @@ public class MainWindow extends JFrame implements UIReloadable {
             actionPanel.getColorOptions().useSystemDefaults();
         }
 
+        // Extensions may have been enabled or disabled since, and they might bring new Filter types:
+        SnotesExtensionManager.getInstance().registerFilters();
+        SnotesExtensionManager.getInstance().updateNoteChangeListeners(dataManager);
+
         // The actions in our ActionManager may need refreshing:
         actionPanelManager.reload();
 
@@ -330,12 +355,30 @@ public class MainWindow extends JFrame implements UIReloadable {
                                       "Unable to enable single instance mode.");
                 isSingleInstanceModeEnabled = false; // revert our cached value
             }
+            else {
+                startQueryServer();
+            }
         }
 
         // Otherwise, if single instance mode is now disabled, release the lock if we have it:
         else {
             logger.info("Disabling single instance mode.");
             SingleInstanceManager.getInstance().release();
+            queryServer.stop();
+        }
+    }
+
+    /**
+     * The query server answers command-line queries from our already-loaded notes. It only runs
+     * in single instance mode, so that there's never more than one of them. If it can't start,
+     * command-line queries just load the notes themselves, so this is not worth bothering the user about.
+     */
+    private void startQueryServer() {
+        try {
+            queryServer.start();
+        }
+        catch (IOException ioe) {
+            logger.log(Level.WARNING, "Unable to start the query server.", ioe);
         }
     }
 
@@ -2,29 +2,59 @@ package ca.corbett.snotes.ui;
 
 import ca.corbett.extras.ScrollUtil;
 import ca.corbett.snotes.AppConfig;
+import ca.corbett.snotes.io.LargeNoteBody;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.Timer;
+import ca.corbett.snotes.metrics.ViewerUpdateEvent;
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.ui.actions.UIReloadAction;
 
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyleContext;
+import javax.swing.text.StyledDocument;
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Insets;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
- * Wraps a JTextPane in a JScrollPane, and provides a read-only view of a List of Note instances.
+ * Provides a scrollable, read-only view of a List of Note instances.
+ * <p>
+ * <b>Virtualized rendering:</b> building a styled document for every Note up front gets very slow
+ * (and very memory hungry) once a result set runs into the thousands of Notes, so we don't do that.
+ * Instead, each Note gets its own small read-only JTextPane, but only the Notes in or near the
+ * visible part of the viewer are actually materialized. For everything else, we keep an estimated
+ * height, worked out from the line and character counts of the Note and the current font metrics,
+ * which is enough to size the scroll bar properly. As the user scrolls, Notes that come into range
+ * are materialized and measured (replacing their estimate), and Notes that go out of range are
+ * released again. Corrections to the estimates are applied without moving whatever the user is
+ * currently looking at.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since Snotes 2.0
@@ -46,10 +76,35 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
 
     private static final Logger log = Logger.getLogger(MultiNoteViewer.class.getName());
 
+    private static final Timer setNotesTimer = Metrics.getInstance().timer("viewer.setNotes");
+
+    /**
+     * How far above and below the viewport we materialize Notes, as a multiple of the viewport height.
+     * This gives us a bit of a buffer so that normal scrolling doesn't show Notes popping into view.
+     */
+    private static final int OVERSCAN_FACTOR = 1;
+
+    /**
+     * Heights below the viewport are only estimates until we get there, so scrolling to the
+     * bottom may take a few passes of measure-and-adjust before it settles.
+     */
+    private static final int MAX_SCROLL_PASSES = 5;
+
     private final List<NoteSelectedListener> listeners;
-    private final List<Integer> positionOffsets;
-    private final JTextPane textPane;
     private final List<Note> notes;
+    private final StyleContext styleContext;
+    private final NoteColumn noteColumn;
+    private final JScrollPane scrollPane;
+    private final Map<Integer, JTextPane> materializedPanes;
+
+    private int[] lineCounts = new int[0];
+    private int[] charCounts = new int[0];
+    private int[] heights = new int[0];
+    private boolean[] isMeasured = new boolean[0];
+    private int[] tops = new int[]{0};
+    private JTextPane placeholderPane;
+    private int layoutWidth;
+    private boolean isUpdating;
 
     /**
      * Creates a new MultiNoteViewer for the given List of Notes.
@@ -58,12 +113,13 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
     public MultiNoteViewer(List<Note> notes) {
         this.listeners = new CopyOnWriteArrayList<>();
         this.notes = new ArrayList<>();
-        this.positionOffsets = new ArrayList<>();
-        this.textPane = new JTextPane();
-        this.textPane.setEditable(false);
-        textPane.addMouseListener(new TextFieldMouseListener());
+        this.styleContext = new StyleContext();
+        this.materializedPanes = new HashMap<>();
+        this.noteColumn = new NoteColumn();
+        this.scrollPane = ScrollUtil.buildScrollPane(noteColumn);
+        scrollPane.getViewport().addChangeListener(e -> updateMaterializedNotes());
         setLayout(new BorderLayout());
-        add(ScrollUtil.buildScrollPane(textPane), BorderLayout.CENTER);
+        add(scrollPane, BorderLayout.CENTER);
         setStyles();
         setNotes(notes);
         UIReloadAction.getInstance().registerReloadable(this);
@@ -74,6 +130,7 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
      */
     public void dispose() {
         UIReloadAction.getInstance().unregisterReloadable(this);
+        releaseAllPanes();
     }
 
     /**
@@ -81,16 +138,7 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
      * MultiNoteViewer is fully initialized and visible (otherwise nothing happens).
      */
     public void scrollToTop() {
-        SwingUtilities.invokeLater(() -> {
-            textPane.setCaretPosition(0);
-            try {
-                Rectangle rect = textPane.modelToView2D(0).getBounds();
-                textPane.scrollRectToVisible(rect);
-            }
-            catch (BadLocationException e) {
-                // ignore - 0 is always valid
-            }
-        });
+        SwingUtilities.invokeLater(() -> scrollPane.getViewport().setViewPosition(new Point(0, 0)));
     }
 
     /**
@@ -99,14 +147,13 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
      */
     public void scrollToBottom() {
         SwingUtilities.invokeLater(() -> {
-            int length = textPane.getDocument().getLength();
-            textPane.setCaretPosition(length);
-            try {
-                Rectangle rect = textPane.modelToView2D(length).getBounds();
-                textPane.scrollRectToVisible(rect);
-            }
-            catch (BadLocationException e) {
-                // ignore - length is always valid
+            JViewport viewport = scrollPane.getViewport();
+            for (int pass = 0; pass < MAX_SCROLL_PASSES; pass++) {
+                int bottom = Math.max(0, getTotalHeight() - viewport.getExtentSize().height);
+                if (pass > 0 && viewport.getViewPosition().y == bottom) {
+                    break;
+                }
+                viewport.setViewPosition(new Point(0, bottom)); // our change listener measures what we land on
             }
         });
     }
@@ -116,29 +163,59 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
      * If the given list is empty or null, the MultiNoteViewer will be cleared and show "(no content)".
      */
     public void setNotes(List<Note> notes) {
-        this.textPane.setText("");
+        ViewerUpdateEvent event = new ViewerUpdateEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        releaseAllPanes();
         this.notes.clear();
-        this.positionOffsets.clear();
         if (notes != null) {
             this.notes.addAll(notes);
         }
 
+        int count = this.notes.size();
+        lineCounts = new int[count];
+        charCounts = new int[count];
+        heights = new int[count];
+        isMeasured = new boolean[count];
+        tops = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            LargeNoteBody largeBody = getLargeNoteBody(this.notes.get(i));
+            if (largeBody != null) {
+                // Reading a large note's text here would undo its lazy loading. We don't know its
+                // line count without reading it, so we go by its size alone. The estimate is
+                // corrected if the Note is ever materialized and measured:
+                lineCounts[i] = 1;
+                charCounts[i] = (int)Math.min(Integer.MAX_VALUE, largeBody.getLengthEstimate());
+                continue;
+            }
+            String text = getNoteText(this.notes.get(i));
+            int lines = 1;
+            for (int c = 0; c < text.length(); c++) {
+                if (text.charAt(c) == '\n') {
+                    lines++;
+                }
+            }
+            lineCounts[i] = lines;
+            charCounts[i] = text.length();
+        }
+
         if (this.notes.isEmpty()) {
-            textPane.setText("(no content)");
-            return;
+            placeholderPane = buildTextPane();
+            placeholderPane.setText("(no content)");
+            noteColumn.add(placeholderPane);
         }
 
-        Document doc = textPane.getDocument();
-        for (Note note : this.notes) {
-            positionOffsets.add(doc.getLength());
-            try {
-                doc.insertString(doc.getLength(), note.getHumanTagLine() + "\n", textPane.getStyle("tag"));
-                doc.insertString(doc.getLength(), note.getText() + "\n\n", textPane.getStyle("note"));
-            }
-            catch (BadLocationException ble) {
-                // Should never happen, but let's not ignore it:
-                log.warning("MultiNoteViewer: unexpected BadLocationException: " + ble.getMessage());
-            }
+        estimateAllHeights();
+        scrollPane.getViewport().setViewPosition(new Point(0, 0));
+        updateMaterializedNotes();
+        noteColumn.revalidate();
+        noteColumn.repaint();
+
+        setNotesTimer.recordSince(startTime);
+        if (event.shouldCommit()) {
+            event.viewer = getClass().getSimpleName();
+            event.noteCount = count;
+            event.commit();
         }
     }
 
@@ -156,9 +233,23 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
         listeners.remove(listener);
     }
 
+    /**
+     * Restyles our content in place. Every materialized Note pane resolves its text attributes
+     * through the shared tag and note Style objects, so updating those is all it takes: nothing
+     * gets cleared or re-inserted, no matter how much text we're showing.
+     */
     @Override
     public void reloadUI() {
         setStyles();
+
+        // Font changes invalidate our heights, but the documents only pick up the style change
+        // a little later in the event queue, so we have to wait for that before we re-measure:
+        SwingUtilities.invokeLater(() -> {
+            estimateAllHeights();
+            updateMaterializedNotes();
+            noteColumn.revalidate();
+            noteColumn.repaint();
+        });
     }
 
     private void fireNoteSelectionEvent(Note note) {
@@ -170,14 +261,24 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
     /**
      * Sets or updates the text styles for tag and note contents.
      * Can be invoked whenever the UI is reloaded, to ensure that the styles are up-to-date with the current theme.
+     * The styles live in a StyleContext that is shared by every materialized Note pane, and are
+     * updated in place, so that any documents that use them will restyle themselves.
      */
     private void setStyles() {
-        textPane.setBackground(AppConfig.getInstance().getEditorBgColor());
+        Color bgColor = AppConfig.getInstance().getEditorBgColor();
+        noteColumn.setBackground(bgColor);
+        scrollPane.getViewport().setBackground(bgColor);
+        for (JTextPane pane : materializedPanes.values()) {
+            pane.setBackground(bgColor);
+        }
+        if (placeholderPane != null) {
+            placeholderPane.setBackground(bgColor);
+        }
 
-        Style defaultStyle = StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE);
-        Style tagStyle = textPane.getStyle("tag");
+        Style defaultStyle = styleContext.getStyle(StyleContext.DEFAULT_STYLE);
+        Style tagStyle = styleContext.getStyle("tag");
         if (tagStyle == null) {
-            tagStyle = textPane.addStyle("tag", defaultStyle);
+            tagStyle = styleContext.addStyle("tag", defaultStyle);
         }
         Font tagFont = AppConfig.getInstance().getTagFont();
         StyleConstants.setFontFamily(tagStyle, tagFont.getFamily());
@@ -186,9 +287,9 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
         StyleConstants.setItalic(tagStyle, tagFont.isItalic());
         StyleConstants.setForeground(tagStyle, AppConfig.getInstance().getTagFontColor());
 
-        Style noteStyle = textPane.getStyle("note");
+        Style noteStyle = styleContext.getStyle("note");
         if (noteStyle == null) {
-            noteStyle = textPane.addStyle("note", defaultStyle);
+            noteStyle = styleContext.addStyle("note", defaultStyle);
         }
         Font noteFont = AppConfig.getInstance().getNoteFont();
         StyleConstants.setFontFamily(noteStyle, noteFont.getFamily());
@@ -196,43 +297,288 @@ public class MultiNoteViewer extends JPanel implements UIReloadable {
         StyleConstants.setBold(noteStyle, noteFont.isBold());
         StyleConstants.setItalic(noteStyle, noteFont.isItalic());
         StyleConstants.setForeground(noteStyle, AppConfig.getInstance().getNoteFontColor());
+    }
 
-        // Re-insert all content to force the styles to be applied to everything that's already there.
-        // We can only get away with this because this is a read-only viewer, so we don't have to
-        // worry that the user may have changed our content since we originally inserted it.
-        int pos = textPane.getCaretPosition();
-        textPane.setText("");
-        Document doc = textPane.getDocument();
-        for (Note note : notes) {
-            try {
-                doc.insertString(doc.getLength(), note.getHumanTagLine() + "\n", textPane.getStyle("tag"));
-                doc.insertString(doc.getLength(), note.getText() + "\n\n", textPane.getStyle("note"));
+    /**
+     * Works out which Notes are in (or near) the viewport, materializes and measures any of those
+     * that aren't already, releases the ones that have gone out of range, and lays out whatever
+     * is left. Invoked whenever the viewport scrolls or changes size.
+     */
+    private void updateMaterializedNotes() {
+        if (isUpdating) {
+            return; // our own adjustments to the viewport land us back here
+        }
+        JViewport viewport = scrollPane.getViewport();
+        int width = viewport.getExtentSize().width;
+        if (width <= 0) {
+            return; // not showing yet; we'll get another change event when we are
+        }
+
+        boolean needsRecheck = false;
+        isUpdating = true;
+        try {
+            Rectangle viewRect = viewport.getViewRect();
+
+            // Remember which Note is at the top of the viewport, and how far into it we are, so that
+            // corrections to the heights of the Notes above it don't make the content jump around:
+            int anchorIndex = indexAt(viewRect.y);
+            int anchorOffset = notes.isEmpty() ? 0 : viewRect.y - tops[anchorIndex];
+
+            boolean heightsChanged = false;
+            if (width != layoutWidth) {
+                layoutWidth = width;
+                estimateAllHeights(); // wrapping has changed; measured heights are stale
+                heightsChanged = true;
+            }
+
+            if (placeholderPane != null) {
+                placeholderPane.setBounds(0, 0, width, measure(placeholderPane, width));
             }
-            catch (BadLocationException ble) {
-                // Should never happen, but let's not ignore it:
-                log.warning("MultiNoteViewer: unexpected BadLocationException: " + ble.getMessage());
+
+            if (!notes.isEmpty()) {
+                int overscan = viewRect.height * OVERSCAN_FACTOR;
+                int first = indexAt(viewRect.y - overscan);
+                int last = indexAt(viewRect.y + viewRect.height + overscan);
+
+                Iterator<Map.Entry<Integer, JTextPane>> iterator = materializedPanes.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Integer, JTextPane> entry = iterator.next();
+                    if (entry.getKey() < first || entry.getKey() > last) {
+                        noteColumn.remove(entry.getValue());
+                        iterator.remove();
+                    }
+                }
+
+                for (int i = first; i <= last; i++) {
+                    JTextPane pane = materializedPanes.get(i);
+                    if (pane == null) {
+                        pane = buildNotePane(notes.get(i));
+                        materializedPanes.put(i, pane);
+                        noteColumn.add(pane);
+                    }
+                    if (!isMeasured[i]) {
+                        int height = measure(pane, width);
+                        isMeasured[i] = true;
+                        if (height != heights[i]) {
+                            heights[i] = height;
+                            heightsChanged = true;
+                        }
+                    }
+                }
+
+                if (heightsChanged) {
+                    computeTops();
+                }
+                for (Map.Entry<Integer, JTextPane> entry : materializedPanes.entrySet()) {
+                    int i = entry.getKey();
+                    entry.getValue().setBounds(0, tops[i], width, heights[i]);
+                }
             }
+
+            if (heightsChanged || placeholderPane != null) {
+                // Update the view size right away rather than waiting for revalidation,
+                // so that the position we're about to set isn't clamped against the old size:
+                viewport.setViewSize(new Dimension(width, getTotalHeight()));
+                if (!notes.isEmpty()) {
+                    int maxY = Math.max(0, getTotalHeight() - viewRect.height);
+                    int anchoredY = Math.min(maxY, Math.max(0, tops[anchorIndex] + anchorOffset));
+                    if (anchoredY != viewRect.y) {
+                        viewport.setViewPosition(new Point(0, anchoredY));
+                        needsRecheck = true; // we may have moved somewhere that isn't materialized yet
+                    }
+                }
+            }
+            noteColumn.repaint();
+        }
+        finally {
+            isUpdating = false;
+        }
+
+        if (needsRecheck) {
+            updateMaterializedNotes();
         }
-        textPane.setCaretPosition(pos);
     }
 
     /**
-     * When the user clicks anywhere in the text of a given Note, we'll figure out exactly
-     * which Note in the list was clicked, and then show its details in the detailPanel.
-     * The user will have the ability to pop a WriterFrame for that Note.
+     * Replaces every height with an estimate based on the current fonts and layout width.
+     * Materialized panes will be measured again the next time they're laid out.
      */
-    private class TextFieldMouseListener extends MouseAdapter {
+    private void estimateAllHeights() {
+        FontMetrics tagMetrics = getFontMetrics(AppConfig.getInstance().getTagFont());
+        FontMetrics noteMetrics = getFontMetrics(AppConfig.getInstance().getNoteFont());
+        Insets insets = buildTextPane().getInsets();
+        int verticalInsets = insets.top + insets.bottom;
+        int textWidth = Math.max(1, layoutWidth - insets.left - insets.right);
+        int charsPerLine = Math.max(1, textWidth / Math.max(1, noteMetrics.charWidth('n')));
+
+        for (int i = 0; i < heights.length; i++) {
+            // Not exact, as we don't know where word wrapping will fall, but close enough to size the scroll bar:
+            int wrappedLines = lineCounts[i] + (layoutWidth > 0 ? charCounts[i] / charsPerLine : 0);
+            heights[i] = verticalInsets + tagMetrics.getHeight() + wrappedLines * noteMetrics.getHeight();
+            isMeasured[i] = false;
+        }
+        computeTops();
+    }
+
+    private void computeTops() {
+        tops[0] = 0;
+        for (int i = 0; i < heights.length; i++) {
+            tops[i + 1] = tops[i] + heights[i];
+        }
+    }
+
+    private int getTotalHeight() {
+        if (placeholderPane != null) {
+            return placeholderPane.getHeight();
+        }
+        return tops[tops.length - 1];
+    }
+
+    /**
+     * Returns the index of the Note at the given y position, clamped to the first or last Note.
+     */
+    private int indexAt(int y) {
+        int low = 0;
+        int high = notes.size() - 1;
+        if (high < 0) {
+            return 0;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (tops[mid] <= y) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int measure(JTextPane pane, int width) {
+        pane.setSize(width, Short.MAX_VALUE); // so that the preferred height accounts for word wrapping
+        return pane.getPreferredSize().height;
+    }
+
+    private void releaseAllPanes() {
+        materializedPanes.clear();
+        placeholderPane = null;
+        noteColumn.removeAll();
+    }
+
+    private JTextPane buildTextPane() {
+        JTextPane pane = new JTextPane(new DefaultStyledDocument(styleContext));
+        pane.setEditable(false);
+        pane.setBackground(AppConfig.getInstance().getEditorBgColor());
+        if (pane.getCaret() instanceof DefaultCaret) {
+            // Otherwise, the caret would try to scroll itself into view as content is inserted:
+            ((DefaultCaret)pane.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+        }
+        return pane;
+    }
+
+    /**
+     * Builds a read-only pane for the given Note. Rather than baking the tag and note styles into
+     * the text itself, we set them as the logical styles of the paragraphs they apply to, so that
+     * the text resolves its attributes through the shared Style objects. That way, a later change
+     * to those Styles shows up here without us having to touch the document content at all.
+     */
+    private JTextPane buildNotePane(Note note) {
+        JTextPane pane = buildTextPane();
+        StyledDocument doc = pane.getStyledDocument();
+        String tagLine = note.getHumanTagLine() + "\n";
+        try {
+            doc.insertString(0, tagLine + getNoteText(note), null);
+        }
+        catch (BadLocationException ble) {
+            // Should never happen, but let's not ignore it:
+            log.warning("MultiNoteViewer: unexpected BadLocationException: " + ble.getMessage());
+        }
+        doc.setLogicalStyle(0, styleContext.getStyle("tag"));
+        SimpleAttributeSet noteParagraphs = new SimpleAttributeSet();
+        noteParagraphs.setResolveParent(styleContext.getStyle("note"));
+        doc.setParagraphAttributes(tagLine.length(), doc.getLength() - tagLine.length(), noteParagraphs, true);
+        pane.addMouseListener(new NoteMouseListener(note));
+        return pane;
+    }
+
+    /**
+     * Returns the text that we show for the given Note, below its tag line. The trailing newline,
+     * together with the one that the document adds implicitly, gives us the same spacing between
+     * Notes that we had back when everything went into one big document.
+     */
+    private static String getNoteText(Note note) {
+        return note.getText() + "\n";
+    }
+
+    /**
+     * Returns the given Note's LargeNoteBody, or null if it's a regular Note with its text in memory.
+     */
+    private static LargeNoteBody getLargeNoteBody(Note note) {
+        return note.getTextSource() instanceof LargeNoteBody body ? body : null;
+    }
+
+    /**
+     * The scrollable view inside our scroll pane. It's as tall as all of our Notes put together
+     * (estimated or measured), but only ever contains the panes for the materialized ones,
+     * which we position ourselves.
+     */
+    private class NoteColumn extends JPanel implements Scrollable {
+
+        NoteColumn() {
+            super(null);
+            setOpaque(true);
+        }
+
         @Override
-        public void mouseClicked(MouseEvent e) {
-            int clickPosition = textPane.viewToModel2D(e.getPoint());
-            for (int i = positionOffsets.size() - 1; i >= 0; i--) {
-                int offset = positionOffsets.get(i);
-                if (clickPosition >= offset) {
-                    // This is the note that was selected:
-                    fireNoteSelectionEvent(notes.get(i));
-                    return;
-                }
+        public Dimension getPreferredSize() {
+            return new Dimension(layoutWidth, getTotalHeight());
+        }
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return getFontMetrics(AppConfig.getInstance().getNoteFont()).getHeight();
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            if (orientation == SwingConstants.VERTICAL) {
+                return Math.max(1, visibleRect.height - getScrollableUnitIncrement(visibleRect, orientation, direction));
             }
+            return visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return true; // we wrap text rather than scrolling horizontally
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            // Fill the viewport with our background color if we're shorter than it:
+            return getParent() instanceof JViewport && getParent().getHeight() > getTotalHeight();
+        }
+    }
+
+    /**
+     * When the user clicks anywhere in the text of a given Note, we let our listeners know
+     * which Note it was. Each materialized pane gets its own listener, so there's nothing to look up.
+     */
+    private class NoteMouseListener extends MouseAdapter {
+        private final Note note;
+
+        NoteMouseListener(Note note) {
+            this.note = note;
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            fireNoteSelectionEvent(note);
         }
     }
 }
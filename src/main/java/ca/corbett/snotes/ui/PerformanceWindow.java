@@ -0,0 +1,221 @@
+package ca.corbett.snotes.ui;
+
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.metrics.Counter;
+import ca.corbett.snotes.metrics.Metrics;
+import ca.corbett.snotes.metrics.StartupTimeline;
+import ca.corbett.snotes.metrics.Timer;
+
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A read-only window that shows what Snotes is doing under the hood: how long each phase of startup
+ * took, how big the loaded corpus and its indexes are, how long queries, loads and saves have been
+ * taking, how well our caches are doing, and how many saves are waiting to be written.
+ * <p>
+ *     Everything shown here comes from the Metrics registry and the StartupTimeline, which are
+ *     updated all the time whether or not this window is open. The window itself only does any work
+ *     while it is showing: every couple of seconds, it gathers a fresh report on a background thread,
+ *     and then hands the finished text to the EDT. Once it's hidden, the refresh timer is stopped.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class PerformanceWindow extends JFrame {
+
+    private static final Logger log = Logger.getLogger(PerformanceWindow.class.getName());
+
+    private static final int REFRESH_INTERVAL_MS = 2000;
+    private static final String CACHE_PREFIX = "cache.";
+    private static final String HIT_SUFFIX = ".hit";
+    private static final String MISS_SUFFIX = ".miss";
+    private static final String STARTUP_PREFIX = "startup.";
+
+    private static PerformanceWindow instance;
+
+    private final JTextArea reportArea;
+    private final javax.swing.Timer refreshTimer;
+    private final ExecutorService reportExecutor;
+    private final AtomicBoolean refreshInProgress;
+
+    private PerformanceWindow() {
+        super("Snotes - Performance");
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setSize(640, 720);
+        setMinimumSize(new Dimension(400, 300));
+        reportArea = new JTextArea();
+        reportArea.setEditable(false);
+        reportArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        setLayout(new BorderLayout());
+        add(new JScrollPane(reportArea), BorderLayout.CENTER);
+
+        refreshInProgress = new AtomicBoolean(false);
+        reportExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Snotes-Performance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                refresh();
+                refreshTimer.start();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    public static PerformanceWindow getInstance() {
+        if (instance == null) {
+            instance = new PerformanceWindow();
+            instance.setLocationRelativeTo(MainWindow.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Gathers a new report on our background thread and shows it when it's ready.
+     * If the previous report is somehow still being gathered, we just skip this refresh.
+     */
+    private void refresh() {
+        if (!refreshInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        DataManager dataManager = MainWindow.getInstance().getDataManager();
+        reportExecutor.submit(() -> {
+            try {
+                String report = buildReport(dataManager);
+                SwingUtilities.invokeLater(() -> showReport(report));
+            }
+            catch (RuntimeException e) {
+                log.log(Level.WARNING, "Unable to gather performance report.", e);
+            }
+            finally {
+                refreshInProgress.set(false);
+            }
+        });
+    }
+
+    private void showReport(String report) {
+        // Hang on to the user's scroll position, if they've scrolled down to look at something:
+        int caretPosition = Math.min(reportArea.getCaretPosition(), report.length());
+        reportArea.setText(report);
+        reportArea.setCaretPosition(caretPosition);
+    }
+
+    private static String buildReport(DataManager dataManager) {
+        Metrics metrics = Metrics.getInstance();
+        StringBuilder sb = new StringBuilder();
+
+        StartupTimeline timeline = StartupTimeline.getInstance();
+        sb.append("Startup (ms since JVM start)\n");
+        for (StartupTimeline.Phase phase : timeline.getPhases()) {
+            sb.append(String.format("  %-20s %8d %8d ms  %s%n", phase.name(), phase.startOffsetMillis(),
+                                    phase.durationMillis(), phase.threadName()));
+        }
+        sb.append(String.format("  %-20s %8d%n", "uptime", timeline.getUptimeMillis()));
+
+        sb.append("\nCorpus\n");
+        appendGauges(sb, metrics, "corpus.");
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+        sb.append(String.format("  %-28s %10s%n", "note memory (estimated)",
+                                formatBytes(dataManager.estimateNoteMemory())));
+        sb.append(String.format("  %-28s %10s of %s%n", "heap used", formatBytes(heapUsed),
+                                formatBytes(runtime.maxMemory())));
+
+        sb.append("\nIndexes\n");
+        appendGauges(sb, metrics, "index.");
+
+        sb.append("\nTimings (ms)          recent: n    p50    p95    p99  session: n    p50    p99    max\n");
+        for (Timer timer : metrics.getTimers()) {
+            if (timer.getCount() == 0 || timer.getName().startsWith(STARTUP_PREFIX)) {
+                continue;
+            }
+            sb.append(String.format("  %-20s %8d %6s %6s %6s %10d %6s %6s %6s%n", timer.getName(),
+                                    timer.getRecentCount(),
+                                    formatMillis(timer.getRecentPercentile(50, TimeUnit.MICROSECONDS)),
+                                    formatMillis(timer.getRecentPercentile(95, TimeUnit.MICROSECONDS)),
+                                    formatMillis(timer.getRecentPercentile(99, TimeUnit.MICROSECONDS)),
+                                    timer.getCount(),
+                                    formatMillis(timer.getPercentile(50, TimeUnit.MICROSECONDS)),
+                                    formatMillis(timer.getPercentile(99, TimeUnit.MICROSECONDS)),
+                                    formatMillis(timer.getMaxTime(TimeUnit.MICROSECONDS))));
+        }
+
+        sb.append("\nCaches\n");
+        appendCacheHitRates(sb, metrics);
+
+        sb.append("\nSaves\n");
+        appendGauges(sb, metrics, "save.");
+
+        return sb.toString();
+    }
+
+    private static void appendGauges(StringBuilder sb, Metrics metrics, String prefix) {
+        for (String name : metrics.getGaugeNames()) {
+            if (name.startsWith(prefix)) {
+                sb.append(String.format("  %-28s %10d%n", name.substring(prefix.length()), metrics.getGaugeValue(name)));
+            }
+        }
+    }
+
+    /**
+     * Pairs up each "cache.X.hit" counter with its "cache.X.miss" counter and reports the hit rate.
+     */
+    private static void appendCacheHitRates(StringBuilder sb, Metrics metrics) {
+        Map<String, Long> hits = new HashMap<>();
+        Map<String, Long> misses = new HashMap<>();
+        for (Counter counter : metrics.getCounters()) {
+            String name = counter.getName();
+            if (!name.startsWith(CACHE_PREFIX)) {
+                continue;
+            }
+            if (name.endsWith(HIT_SUFFIX)) {
+                hits.put(name.substring(CACHE_PREFIX.length(), name.length() - HIT_SUFFIX.length()), counter.get());
+            }
+            else if (name.endsWith(MISS_SUFFIX)) {
+                misses.put(name.substring(CACHE_PREFIX.length(), name.length() - MISS_SUFFIX.length()), counter.get());
+            }
+        }
+        for (String cacheName : hits.keySet().stream().sorted().toList()) {
+            long hitCount = hits.get(cacheName);
+            long total = hitCount + misses.getOrDefault(cacheName, 0L);
+            String rate = total == 0 ? "-" : String.format("%.1f%%", 100.0 * hitCount / total);
+            sb.append(String.format("  %-28s %10s  (%d of %d)%n", cacheName, rate, hitCount, total));
+        }
+    }
+
+    private static String formatMillis(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
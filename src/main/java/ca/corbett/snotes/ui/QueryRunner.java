@@ -0,0 +1,181 @@
+package ca.corbett.snotes.ui;
+
+import ca.corbett.extras.MessageUtil;
+import ca.corbett.extras.progress.MultiProgressDialog;
+import ca.corbett.extras.progress.SimpleProgressWorker;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+
+import javax.swing.SwingUtilities;
+import java.awt.Window;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes Queries on a worker thread, so that a slow search over a big note collection doesn't
+ * freeze the whole application. A progress dialog with a Cancel button is shown if the Query takes
+ * more than a moment to run. Only one Query runs at a time: starting a new one cancels whichever one
+ * is still in progress, and its results (if it manages to finish anyway) are quietly discarded.
+ * <p>
+ * Cancellation is cooperative: the worker checks in with the Query every Query.MONITOR_INTERVAL
+ * Notes, and abandons the execution at the next check once the user has canceled it.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public final class QueryRunner {
+
+    /**
+     * Notified on the Swing EDT when a Query has finished executing. Not notified if the
+     * Query was canceled, or was superseded by a newer Query before it finished.
+     */
+    @FunctionalInterface
+    public interface ResultListener {
+        void queryComplete(Query query, List<Note> results);
+    }
+
+    /**
+     * A Query that was started by execute(). Lets the caller cancel its own Query
+     * without disturbing one that somebody else has started since.
+     */
+    public interface RunningQuery {
+        /**
+         * Cancels this Query, if it is still running. Does nothing if it has already finished,
+         * or was already canceled. Must be invoked from the Swing EDT.
+         */
+        void cancel();
+    }
+
+    private static final Logger log = Logger.getLogger(QueryRunner.class.getName());
+
+    private static final QueryRunner instance = new QueryRunner();
+
+    private MessageUtil messageUtil;
+    private QueryWorker currentWorker;
+
+    private QueryRunner() {
+    }
+
+    public static QueryRunner getInstance() {
+        return instance;
+    }
+
+    /**
+     * Executes the given Query against all currently loaded Notes, on a worker thread.
+     * Any Query that is still running from a previous call is canceled first.
+     * Must be invoked from the Swing EDT.
+     *
+     * @param owner    The window that the progress dialog should be shown over.
+     * @param query    The Query to execute.
+     * @param limit    The maximum number of results to return. See Query.execute().
+     * @param listener Notified on the EDT with the results, if the Query runs to completion.
+     * @return A handle that can cancel this Query, and only this Query.
+     */
+    public RunningQuery execute(Window owner, Query query, int limit, ResultListener listener) {
+        cancel();
+        List<Note> notes = MainWindow.getInstance().getDataManager().getNotes(); // snapshot, taken on the EDT
+        QueryWorker worker = new QueryWorker(query, notes, limit, listener);
+        currentWorker = worker;
+        MultiProgressDialog dialog = new MultiProgressDialog(owner, "Searching...");
+        dialog.setInitialShowDelayMS(500);
+        dialog.runWorker(worker, true);
+        return worker;
+    }
+
+    /**
+     * Cancels whatever Query is currently running, if any. Must be invoked from the Swing EDT.
+     */
+    public void cancel() {
+        if (currentWorker != null) {
+            currentWorker.cancel();
+        }
+    }
+
+    private void deliverResults(QueryWorker worker, List<Note> results) {
+        // We're on the worker thread! Marshall this back to the EDT before notifying:
+        SwingUtilities.invokeLater(() -> {
+            if (worker != currentWorker) {
+                return; // superseded or canceled while we were waiting for the EDT
+            }
+            currentWorker = null;
+            worker.listener.queryComplete(worker.query, results);
+        });
+    }
+
+    private void deliverError(QueryWorker worker, RuntimeException error) {
+        SwingUtilities.invokeLater(() -> {
+            if (worker == currentWorker) {
+                currentWorker = null;
+            }
+            getMessageUtil().error("Search failed", "Unable to execute query: " + error.getMessage(), error);
+        });
+    }
+
+    private MessageUtil getMessageUtil() {
+        if (messageUtil == null) {
+            messageUtil = new MessageUtil(MainWindow.getInstance(), log);
+        }
+        return messageUtil;
+    }
+
+    /**
+     * Runs a single Query. Progress updates double as our cancellation checks: they return false
+     * if the user hit Cancel on the progress dialog, or if a newer Query has replaced this one.
+     */
+    private class QueryWorker extends SimpleProgressWorker implements RunningQuery {
+
+        private final Query query;
+        private final List<Note> notes;
+        private final int limit;
+        private final ResultListener listener;
+        private volatile boolean isCanceled;
+
+        QueryWorker(Query query, List<Note> notes, int limit, ResultListener listener) {
+            this.query = query;
+            this.notes = notes;
+            this.limit = limit;
+            this.listener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            isCanceled = true;
+            if (currentWorker == this) {
+                currentWorker = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            fireProgressBegins(notes.size());
+            List<Note> results;
+            try {
+                results = query.execute(notes, limit, (notesScanned, totalNotes) ->
+                    !isCanceled && fireProgressUpdate(notesScanned, "Searching " + totalNotes + " notes..."));
+            }
+            catch (CancellationException ce) {
+                isCanceled = true;
+                log.info("Query \"" + query.getName() + "\" was canceled.");
+                fireProgressCanceled();
+                return;
+            }
+            catch (RuntimeException re) {
+                log.log(Level.SEVERE, "Query \"" + query.getName() + "\" failed: " + re.getMessage(), re);
+                fireProgressError("Search", re.getMessage());
+                deliverError(this, re);
+                return;
+            }
+
+            log.fine("Query \"" + query.getName() + "\" returned " + results.size() + " results in "
+                         + (System.currentTimeMillis() - startTime) + "ms.");
+            fireProgressComplete();
+            if (!isCanceled) {
+                deliverResults(this, results);
+            }
+        }
+    }
+}
@@ -5,27 +5,40 @@ import ca.corbett.extras.ScrollUtil;
 import ca.corbett.extras.io.KeyStrokeManager;
 import ca.corbett.forms.Alignment;
 import ca.corbett.forms.FormPanel;
+import ca.corbett.forms.fields.CheckBoxField;
+import ca.corbett.forms.fields.LabelField;
+import ca.corbett.forms.fields.PanelField;
 import ca.corbett.forms.fields.ShortTextField;
+import ca.corbett.snotes.model.IncrementalSearch;
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
 import ca.corbett.snotes.model.TagList;
 import ca.corbett.snotes.model.filter.TagFilter;
 import ca.corbett.snotes.model.filter.TextFilter;
 import ca.corbett.snotes.ui.query.QueryFilterPanel;
 
 import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -36,6 +49,12 @@ import java.util.logging.Logger;
  *     for date ranges and other filter options.</li>
  * </ul>
  * <p>
+ *     Simple search also offers search-as-you-type: as the user types, the search is re-run in the
+ *     background (after a short pause in typing), and a live count and a preview of the most recent
+ *     matches are shown in the dialog. See IncrementalSearch for how we avoid rescanning every note
+ *     on every keystroke.
+ * </p>
+ * <p>
  *     The dialog is very keyboard-friendly! Keyboard focus will be placed in the first
  *     text field when the dialog is opened. Type the text to search for and hit Enter,
  *     and the search will be performed. Hit ESC to cancel the search / close the dialog.
@@ -73,11 +92,31 @@ public class SearchDialog extends JDialog {
         }
     }
 
+    /**
+     * How long the user has to pause typing before we kick off a live search.
+     */
+    private static final int LIVE_SEARCH_DELAY_MS = 300;
+
+    /**
+     * How many of the most recent live search results we preview in the dialog.
+     */
+    private static final int PREVIEW_SIZE = 10;
+
     private final KeyStrokeManager keyManager;
+    private final IncrementalSearch incrementalSearch;
+    private final ExecutorService liveSearchExecutor;
+    private final Timer liveSearchTimer;
+    private List<Note> liveSearchNotes;
+    private volatile int liveSearchGeneration; // only ever changed on the EDT, but read by the live search thread
+    private LiveSearchResults liveResults;
+    private QueryRunner.RunningQuery runningSearch; // the search we started, so we cancel only that one
     private JTabbedPane tabPane;
     private FormPanel simpleSearchForm;
     private ShortTextField simpleTextField;
     private ShortTextField simpleTagField;
+    private CheckBoxField liveSearchField;
+    private LabelField liveCountLabel;
+    private DefaultListModel<String> previewListModel;
     private JComboBox<Limit> limitComboBox;
     private QueryFilterPanel advancedSearchForm;
 
@@ -88,9 +127,17 @@ public class SearchDialog extends JDialog {
     public SearchDialog() {
         super(MainWindow.getInstance(), "Search Notes", true);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
-        setSize(550, 400);
+        setSize(550, 520);
         setMinimumSize(new Dimension(475, 260));
         setLocationRelativeTo(MainWindow.getInstance());
+        incrementalSearch = new IncrementalSearch();
+        liveSearchExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Snotes-LiveSearch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        liveSearchTimer = new Timer(LIVE_SEARCH_DELAY_MS, e -> startLiveSearch());
+        liveSearchTimer.setRepeats(false);
         initComponents();
         keyManager = new KeyStrokeManager(this);
         keyManager.registerHandler(KeyStrokeManager.parseKeyStroke("ESC"), e -> dispose());
@@ -100,6 +147,13 @@ public class SearchDialog extends JDialog {
 
     @Override
     public void dispose() {
+        if (runningSearch != null) {
+            runningSearch.cancel(); // no-op if our search already finished
+            runningSearch = null;
+        }
+        liveSearchTimer.stop();
+        liveSearchGeneration++; // discard anything still in flight
+        liveSearchExecutor.shutdownNow();
         keyManager.dispose();
         super.dispose();
     }
@@ -134,6 +188,16 @@ public class SearchDialog extends JDialog {
                 TagFilter tagFilter = new TagFilter(tagList.getTags(), TagFilter.FilterType.ALL);
                 transientQuery.addFilter(tagFilter);
             }
+
+            // If the live search already has the answer for exactly this search, there's no need to run it again:
+            if (liveResults != null && liveResults.matches(textSearch, tagSearch)) {
+                List<Note> results = liveResults.results;
+                if (results.size() > queryLimit) {
+                    results = new ArrayList<>(results.subList(results.size() - queryLimit, results.size()));
+                }
+                showResults(transientQuery, results);
+                return;
+            }
         }
 
         else {
@@ -143,7 +207,18 @@ public class SearchDialog extends JDialog {
             transientQuery = advancedSearchForm.getQuery();
         }
 
-        List<Note> results = transientQuery.execute(MainWindow.getInstance().getDataManager().getNotes(), queryLimit);
+        // Run the search in the background, so a slow search doesn't lock up the whole UI.
+        // If the user kicks off another search before this one finishes, this one is canceled:
+        runningSearch = QueryRunner.getInstance().execute(this, transientQuery, queryLimit, this::showResults);
+    }
+
+    /**
+     * Invoked on the EDT when a search launched from this dialog completes.
+     */
+    private void showResults(Query query, List<Note> results) {
+        if (!isDisplayable()) {
+            return; // The user closed the dialog while the search was running
+        }
         if (results.isEmpty()) {
             getMessageUtil().info("Nothing found", "No notes matched your search criteria.");
             return;
@@ -159,7 +234,7 @@ public class SearchDialog extends JDialog {
             }
         }
 
-        ReaderFrame readerFrame = new ReaderFrame(results, transientQuery);
+        ReaderFrame readerFrame = new ReaderFrame(results, query);
         MainWindow.getInstance().addInternalFrame(readerFrame);
         dispose();
     }
@@ -189,15 +264,123 @@ public class SearchDialog extends JDialog {
 
         simpleTextField = new ShortTextField("Contains text:", 20);
         simpleTextField.setHelpText("Search will be case-insensitive.");
+        simpleTextField.addValueChangedListener(f -> scheduleLiveSearch());
         simpleSearchForm.add(simpleTextField);
 
         simpleTagField = new ShortTextField("Has tag(s):", 20);
         simpleTagField.setHelpText("Comma or space-separated list of tags. Results must contain all given tags.");
+        simpleTagField.addValueChangedListener(f -> scheduleLiveSearch());
         simpleSearchForm.add(simpleTagField);
 
+        liveSearchField = new CheckBoxField("Search as you type", true);
+        liveSearchField.addValueChangedListener(f -> {
+            if (liveSearchField.isChecked()) {
+                scheduleLiveSearch();
+            }
+            else {
+                clearLiveResults();
+            }
+        });
+        simpleSearchForm.add(liveSearchField);
+
+        liveCountLabel = new LabelField("Matches:", "");
+        simpleSearchForm.add(liveCountLabel);
+
+        previewListModel = new DefaultListModel<>();
+        JList<String> previewList = new JList<>(previewListModel);
+        previewList.setVisibleRowCount(PREVIEW_SIZE);
+        previewList.setFocusable(false);
+        PanelField previewField = new PanelField(new BorderLayout());
+        previewField.getPanel().add(ScrollUtil.buildScrollPane(previewList), BorderLayout.CENTER);
+        previewField.setShouldExpand(true);
+        simpleSearchForm.add(previewField);
+
         return simpleSearchForm;
     }
 
+    /**
+     * Invoked as the user types. We wait for a short pause in typing before actually searching,
+     * so that we're not kicking off a search for every single keystroke.
+     */
+    private void scheduleLiveSearch() {
+        if (!liveSearchField.isChecked()) {
+            return;
+        }
+        liveSearchTimer.restart();
+    }
+
+    /**
+     * Kicks off a live search on our background thread, superseding any live search that's
+     * still running. Results are delivered back to the EDT in showLiveResults().
+     */
+    private void startLiveSearch() {
+        if (!isDisplayable() || !liveSearchField.isChecked()) {
+            return;
+        }
+        String textSearch = simpleTextField.getText();
+        String tagSearch = simpleTagField.getText();
+        List<Tag> tags = TagList.fromRawString(tagSearch).getTags();
+        if (liveSearchNotes == null) {
+            // This dialog is modal, so the notes can't change out from under us while it's showing:
+            liveSearchNotes = MainWindow.getInstance().getDataManager().getNotes();
+        }
+        List<Note> notes = liveSearchNotes;
+        int generation = ++liveSearchGeneration;
+        liveSearchExecutor.submit(() -> {
+            try {
+                // Checking the generation lets a newer search cancel this one part way through:
+                List<Note> results = incrementalSearch.search(notes, textSearch, tags,
+                                                              (scanned, total) -> generation == liveSearchGeneration);
+                SwingUtilities.invokeLater(() -> showLiveResults(generation, textSearch, tagSearch, results));
+            }
+            catch (CancellationException ce) {
+                // Superseded by a newer search; nothing to do.
+            }
+            catch (RuntimeException re) {
+                log.log(Level.WARNING, "Live search failed: " + re.getMessage(), re);
+            }
+        });
+    }
+
+    private void showLiveResults(int generation, String textSearch, String tagSearch, List<Note> results) {
+        if (generation != liveSearchGeneration || !liveSearchField.isChecked()) {
+            return; // stale
+        }
+        if (textSearch.isBlank() && tagSearch.isBlank()) {
+            clearLiveResults();
+            return;
+        }
+        liveResults = new LiveSearchResults(textSearch, tagSearch, results);
+        liveCountLabel.setText(results.size() == 1 ? "1 note" : results.size() + " notes");
+        previewListModel.clear();
+        for (int i = results.size() - 1; i >= 0 && i >= results.size() - PREVIEW_SIZE; i--) {
+            previewListModel.addElement(getPreviewLine(results.get(i))); // most recent first
+        }
+    }
+
+    private void clearLiveResults() {
+        liveSearchTimer.stop();
+        liveSearchGeneration++;
+        liveResults = null;
+        liveCountLabel.setText("");
+        previewListModel.clear();
+    }
+
+    /**
+     * Returns a one-line summary of the given Note for our preview list: its date (if any),
+     * and the first non-blank line of its text.
+     */
+    private static String getPreviewLine(Note note) {
+        String firstLine = "";
+        for (String line : note.getText().split("\n", 10)) {
+            if (!line.isBlank()) {
+                firstLine = line.trim();
+                break;
+            }
+        }
+        return (note.hasDate() ? note.getDate().toString() : "(undated)") + "  " + firstLine;
+    }
+
     private JPanel buildAdvancedSearchPanel() {
         advancedSearchForm = new QueryFilterPanel();
 
@@ -240,6 +423,25 @@ public class SearchDialog extends JDialog {
         return messageUtil;
     }
 
+    /**
+     * The results of the most recent live search, along with the exact inputs that produced them.
+     */
+    private static class LiveSearchResults {
+        private final String textSearch;
+        private final String tagSearch;
+        private final List<Note> results;
+
+        LiveSearchResults(String textSearch, String tagSearch, List<Note> results) {
+            this.textSearch = textSearch;
+            this.tagSearch = tagSearch;
+            this.results = results;
+        }
+
+        boolean matches(String textSearch, String tagSearch) {
+            return this.textSearch.equals(textSearch) && this.tagSearch.equals(tagSearch);
+        }
+    }
+
     private class WindowOpenListener extends WindowAdapter {
         @Override
         public void windowOpened(WindowEvent e) {
@@ -9,6 +9,8 @@ import ca.corbett.forms.fields.ShortTextField;
 import ca.corbett.snotes.AppConfig;
 import ca.corbett.snotes.Resources;
 import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.io.LargeNoteBody;
+import ca.corbett.snotes.io.ScratchJournal;
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.model.Tag;
 import ca.corbett.snotes.model.TagList;
@@ -19,25 +21,36 @@ import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextPane;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.InternalFrameAdapter;
 import javax.swing.event.InternalFrameEvent;
+import javax.swing.text.BadLocationException;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Provides an editable view of a single Note.
+ * <p>
+ * Large notes (see DataManager.setLargeNoteThreshold()) are edited a page at a time, with controls
+ * below the editor to move between pages. Only the page being shown is held in the editor, and
+ * saving only rewrites the pages that were actually edited. See LargeNoteBody.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since Snotes 2.0
@@ -58,7 +71,20 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
     private JTextPane textPane;
     private boolean isDirty;
     private boolean hasScrolledToBottom;
+    private boolean isContextPending;
+    private boolean isDisposed;
     private final Timer autoSaveTimer;
+    private ScratchJournal journal;
+    private String journaledDate;
+    private String journaledTags;
+    private LargeNoteBody largeBody;
+    private int currentPage;
+    private boolean isPageDirty;
+    private boolean isLoadingPage;
+    private JPanel pagePanel;
+    private JLabel pageLabel;
+    private JButton previousPageButton;
+    private JButton nextPageButton;
 
     /**
      * Creates a new WriterFrame with a new, blank scratch Note, and no context.
@@ -73,7 +99,7 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
      * No context will be shown.
      */
     public WriterFrame(Note note) {
-        this(note, null);
+        this(note, List.of());
     }
 
     /**
@@ -84,12 +110,26 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
      * @param context an optional List of other Notes to show in the context panel. Can be null or empty.
      */
     public WriterFrame(Note note, List<Note> context) {
+        this(note, CompletableFuture.completedFuture(context == null ? List.of() : context));
+    }
+
+    /**
+     * Creates a new WriterFrame for the given Note, with context that may still be on its way.
+     * The frame opens right away. If the context isn't ready yet, the Context tab shows a
+     * placeholder until it is, and is removed again if it turns out there is no context to show.
+     * If the given Note is null, a scratch Note will be created.
+     *
+     * @param note           the Note to edit in this frame. If null, a new scratch Note will be created.
+     * @param pendingContext the other Notes to show in the context panel, when they're ready. Must not be null.
+     */
+    public WriterFrame(Note note, CompletableFuture<List<Note>> pendingContext) {
         super(Note.getRelativePath(note, AppConfig.getInstance().getDataDirectory()),
               true, true, true, true);
         this.dataManager = MainWindow.getInstance().getDataManager();
         this.context = new ArrayList<>();
-        if (context != null) {
-            this.context.addAll(context);
+        this.isContextPending = !pendingContext.isDone();
+        if (!isContextPending) {
+            this.context.addAll(getContextResult(pendingContext));
         }
         if (note == null) {
             log.warning("WriterFrame created with null note. Creating new scratch note.");
@@ -97,6 +137,7 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
             setTitle(Note.getRelativePath(note, AppConfig.getInstance().getDataDirectory()));
         }
         this.note = note;
+        this.largeBody = dataManager.openLargeNoteBody(note);
         setSize(new Dimension(500, 400));
         setMinimumSize(new Dimension(500, 400));
         setDefaultCloseOperation(JInternalFrame.DISPOSE_ON_CLOSE);
@@ -105,8 +146,11 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
         this.hasScrolledToBottom = false;
         initComponents();
         if (dataManager.isScratchNote(note)) {
-            // For scratch notes, we want to auto-save every minute, so we set up a timer to do that.
-            autoSaveTimer = new Timer(60 * 1000, e -> SwingUtilities.invokeLater(this::save));
+            // For scratch notes, we journal every edit, and flush the journal to disk every minute.
+            journaledDate = dateField.getText();
+            journaledTags = tagField.getText();
+            journal = dataManager.openScratchJournal(note, journaledDate, journaledTags, textPane.getText());
+            autoSaveTimer = new Timer(60 * 1000, e -> SwingUtilities.invokeLater(this::autoSave));
             autoSaveTimer.setRepeats(true);
             autoSaveTimer.start();
         }
@@ -116,16 +160,26 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
 
         reloadUI();
         UIReloadAction.getInstance().registerReloadable(this);
+
+        if (isContextPending) {
+            pendingContext.whenComplete((result, error) -> SwingUtilities.invokeLater(
+                () -> contextReady(getContextResult(pendingContext))));
+        }
     }
 
     @Override
     public void dispose() {
+        isDisposed = true;
         if (autoSaveTimer != null) {
             autoSaveTimer.stop();
         }
         if (contextViewer != null) {
             contextViewer.dispose();
         }
+        if (largeBody != null) {
+            dataManager.closeLargeNoteBody(note);
+            largeBody = null;
+        }
         UIReloadAction.getInstance().unregisterReloadable(this);
         super.dispose();
     }
@@ -143,6 +197,29 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
         dispose();
     }
 
+    /**
+     * Invoked periodically for scratch notes. Rather than rewriting the whole scratch file, we just
+     * append whatever edits were made since the last tick to the note's scratch journal.
+     * If for some reason we have no journal, we fall back to a regular save().
+     */
+    private void autoSave() {
+        if (journal == null) {
+            save();
+            return;
+        }
+        if (!journaledDate.equals(dateField.getText()) || !journaledTags.equals(tagField.getText())) {
+            journaledDate = dateField.getText();
+            journaledTags = tagField.getText();
+            journal.recordHeader(journaledDate, journaledTags);
+        }
+        try {
+            dataManager.flushScratchJournal(note, journaledDate, journaledTags, textPane::getText);
+        }
+        catch (IOException ioe) {
+            log.log(Level.SEVERE, "Failed to journal scratch note: " + note.getSourceFile(), ioe);
+        }
+    }
+
     /**
      * Saves the current Note WITHOUT closing this internal frame. This is intended for external
      * use mostly (for example, user hits Ctrl+S anywhere in the main window).
@@ -153,7 +230,7 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
      *     <li>If the current note is a "scratch" note, this does NOT promote the note to a "real" note.
      *     We will simply perform a scratch save, to save the current contents to the scratch directory.
      *     This allows scratch notes to persist across application restarts, but will not allow them
-     *     to appear in search results.</li>
+     *     to appear in search results. This also compacts the note's scratch journal.</li>
      *     <li>If the current note is a "real" note, this will commit the current contents to the data
      *     directory. This may move the file! Note locations are based on their date and/or tag, both
      *     of which are editable in this frame. If the user has changed either, the file in the data
@@ -164,6 +241,10 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
      *     The only way to promote a scratch note to a real note is for the user to hit the "save" button
      *     in this frame, which will execute saveInternal() instead of this method.
      * </p>
+     * <p>
+     *     The actual disk write is done in the background by the DataManager, so that a slow disk
+     *     won't freeze the editor. If the background write fails, this frame is marked dirty again.
+     * </p>
      */
     public void save() {
         if (!headerForm.isFormValid()) {
@@ -180,8 +261,10 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
                 for (Tag tag : tagList.getTags()) {
                     note.tag(tag);
                 }
-                note.setText(textPane.getText());
-                dataManager.saveScratch(note);
+                applyEditorText();
+                dataManager.saveScratchAsync(note, new BackgroundSaveListener(false));
+                journaledDate = dateField.getText();
+                journaledTags = tagField.getText();
                 isDirty = false;
             }
             catch (IOException ioe) {
@@ -225,7 +308,7 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
         for (Tag tag : tagList.getTags()) {
             note.tag(tag);
         }
-        note.setText(textPane.getText());
+        applyEditorText();
 
         DataManager.CollisionStrategy strategy = DataManager.CollisionStrategy.ABORT; // safe default
         if (dataManager.hasCollision(note)) {
@@ -243,8 +326,16 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
         }
 
         try {
-            dataManager.save(note, strategy);
+            if (disposeIfSuccessful) {
+                // We're about to close, so write synchronously: if it fails, we need to keep the frame open.
+                dataManager.save(note, strategy);
+            }
+            else {
+                dataManager.saveAsync(note, strategy, new BackgroundSaveListener(true));
+            }
             setTitle(Note.getRelativePath(note, AppConfig.getInstance().getDataDirectory())); // path may have changed
+            checkLargeNoteMode();
+            journal = null; // if this was a scratch note, it has been promoted, and its journal is gone
             isDirty = false;
             if (disposeIfSuccessful) {
                 dispose();
@@ -315,50 +406,238 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
             tabPane.addTab("Context", contextViewer);
             selectedTab = 1; // start on the edit tab, always
         }
+        else if (isContextPending) {
+            tabPane.addTab("Context", buildContextPlaceholder());
+            selectedTab = 1;
+        }
 
         textPane = new JTextPane();
-        textPane.setText(note.getText());
+        textPane.setText(largeBody == null ? note.getText() : readPage(0));
         isDirty = false;
 
-        // Set up a listener such that any edit in this text pane sets our isDirty flag:
+        // Set up a listener such that any edit in this text pane sets our isDirty flag,
+        // and gets recorded in our scratch journal, if we have one:
         textPane.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
+                if (isLoadingPage) {
+                    return; // just switching pages - that's not an edit
+                }
                 isDirty = true;
+                isPageDirty = true;
+                if (journal != null) {
+                    try {
+                        journal.recordInsert(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()));
+                    }
+                    catch (BadLocationException ble) {
+                        // Shouldn't happen, since the event just told us this range exists. Nothing we can do here.
+                        log.log(Level.WARNING, "Unable to journal inserted text.", ble);
+                    }
+                }
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
+                if (isLoadingPage) {
+                    return;
+                }
                 isDirty = true;
+                isPageDirty = true;
+                if (journal != null) {
+                    journal.recordRemove(e.getOffset(), e.getLength());
+                }
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
+                if (isLoadingPage) {
+                    return;
+                }
                 isDirty = true;
+                isPageDirty = true;
             }
         });
 
-        tabPane.addTab("Edit", ScrollUtil.buildScrollPane(textPane));
-        if (context.isEmpty()) {
+        tabPane.addTab("Edit", largeBody == null
+            ? ScrollUtil.buildScrollPane(textPane)
+            : buildPagedEditor());
+        if (tabPane.getTabCount() == 1) {
             tabPane.setTabHeaderVisible(false);
         }
         tabPane.setSelectedIndex(selectedTab);
 
-        if (contextViewer != null) {
-            // Listen for tab changes, and scroll to the bottom of the context viewer the first time
-            // it is selected. This is surprisingly difficult, and must be deferred until the component
-            // is actually visible, or it will fail to have any effect. Java Swing is tricky sometimes.
-            tabPane.addChangeListener(e -> {
-                if (!hasScrolledToBottom) {
-                    contextViewer.scrollToBottom();
-                    hasScrolledToBottom = true;
-                }
-            });
-        }
+        // Listen for tab changes, and scroll to the bottom of the context viewer the first time
+        // it is selected. This is surprisingly difficult, and must be deferred until the component
+        // is actually visible, or it will fail to have any effect. Java Swing is tricky sometimes.
+        tabPane.addChangeListener(e -> scrollContextToBottomIfShowing());
 
         return tabPane;
     }
 
+    /**
+     * For large notes, the editor only ever holds one page, with controls underneath to move between pages.
+     */
+    private JComponent buildPagedEditor() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(ScrollUtil.buildScrollPane(textPane), BorderLayout.CENTER);
+
+        pagePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        previousPageButton = new JButton("Previous page");
+        previousPageButton.addActionListener(e -> showPage(currentPage - 1));
+        nextPageButton = new JButton("Next page");
+        nextPageButton.addActionListener(e -> showPage(currentPage + 1));
+        pageLabel = new JLabel();
+        pagePanel.add(previousPageButton);
+        pagePanel.add(pageLabel);
+        pagePanel.add(nextPageButton);
+        panel.add(pagePanel, BorderLayout.SOUTH);
+        updatePageControls();
+        return panel;
+    }
+
+    /**
+     * Hands any edits on the current page back to the LargeNoteBody, and shows the given page instead.
+     */
+    private void showPage(int page) {
+        if (largeBody == null || page < 0 || page >= largeBody.getPageCount() || page == currentPage) {
+            return;
+        }
+        storeCurrentPage();
+        isLoadingPage = true;
+        try {
+            textPane.setText(readPage(page));
+            textPane.setCaretPosition(0);
+        }
+        finally {
+            isLoadingPage = false;
+        }
+        currentPage = page;
+        updatePageControls();
+    }
+
+    private void updatePageControls() {
+        int pageCount = largeBody == null ? 0 : largeBody.getPageCount();
+        pageLabel.setText("Page " + (currentPage + 1) + " of " + Math.max(pageCount, 1));
+        previousPageButton.setEnabled(currentPage > 0);
+        nextPageButton.setEnabled(currentPage < pageCount - 1);
+    }
+
+    /**
+     * Returns the text of the given page of our large note. If it can't be read, the editor is made
+     * read-only, since saving whatever it shows instead would wipe out that page.
+     */
+    private String readPage(int page) {
+        if (page >= largeBody.getPageCount()) {
+            return ""; // an empty body has no pages at all
+        }
+        try {
+            return largeBody.readPage(page);
+        }
+        catch (IOException ioe) {
+            textPane.setEditable(false);
+            getMessageUtil().error("Load error",
+                                   "Unable to read page " + (page + 1) + " of this note: " + ioe.getMessage(),
+                                   ioe);
+            return "";
+        }
+    }
+
+    /**
+     * For large notes, passes any edits on the page currently being shown to the LargeNoteBody.
+     */
+    private void storeCurrentPage() {
+        if (largeBody != null && isPageDirty && currentPage < largeBody.getPageCount()) {
+            largeBody.setPage(currentPage, textPane.getText());
+            note.markDirty();
+        }
+        isPageDirty = false;
+    }
+
+    /**
+     * Puts whatever is in the editor into our Note, ready to be saved: the whole text for regular
+     * notes, or just the current page for large notes, whose other pages are already up to date.
+     */
+    private void applyEditorText() {
+        if (largeBody != null) {
+            storeCurrentPage();
+        }
+        else {
+            note.setText(textPane.getText());
+        }
+    }
+
+    /**
+     * A save can pull a large note's text into memory (appending to it on a collision, for example),
+     * after which its pages no longer mean anything. In that case we go back to editing the whole text.
+     */
+    private void checkLargeNoteMode() {
+        if (largeBody == null || dataManager.getLargeNoteBody(note) == largeBody) {
+            return;
+        }
+        dataManager.closeLargeNoteBody(note);
+        largeBody = null;
+        pagePanel.setVisible(false);
+        isLoadingPage = true;
+        try {
+            textPane.setText(note.getText());
+        }
+        finally {
+            isLoadingPage = false;
+        }
+    }
+
+    /**
+     * Shows in the Context tab while we're waiting for the context to be gathered.
+     */
+    private JComponent buildContextPlaceholder() {
+        JPanel panel = new JPanel(new BorderLayout());
+        JLabel label = new JLabel("Gathering context...", SwingConstants.CENTER);
+        panel.add(label, BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * Invoked on the EDT once our pending context has been gathered. Replaces the placeholder
+     * in the Context tab with the real thing, or removes the tab if there's nothing to show.
+     */
+    private void contextReady(List<Note> results) {
+        isContextPending = false;
+        if (isDisposed) {
+            return;
+        }
+        context.clear();
+        context.addAll(results);
+        if (context.isEmpty()) {
+            tabPane.removeTabAt(0);
+            tabPane.setTabHeaderVisible(false);
+            return;
+        }
+        contextViewer = new MultiNoteViewer(context);
+        tabPane.setComponentAt(0, contextViewer);
+        scrollContextToBottomIfShowing(); // in case the user was already looking at the placeholder
+    }
+
+    private void scrollContextToBottomIfShowing() {
+        if (contextViewer != null && !hasScrolledToBottom && tabPane.getSelectedComponent() == contextViewer) {
+            contextViewer.scrollToBottom();
+            hasScrolledToBottom = true;
+        }
+    }
+
+    /**
+     * Returns the result of the given completed context future, or an empty list if gathering failed.
+     */
+    private static List<Note> getContextResult(CompletableFuture<List<Note>> pendingContext) {
+        try {
+            List<Note> result = pendingContext.join();
+            return result == null ? List.of() : result;
+        }
+        catch (CompletionException | CancellationException e) {
+            log.log(Level.WARNING, "Unable to gather context: " + e.getMessage(), e);
+            return List.of();
+        }
+    }
+
     private JPanel buildButtonPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         panel.setBorder(BorderFactory.createRaisedBevelBorder());
@@ -376,6 +655,34 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
         return messageUtil;
     }
 
+    /**
+     * Hears back from the DataManager when one of our background saves has completed.
+     * If a save fails, we flag ourselves as dirty again so that the next save will retry,
+     * and, for real notes, let the user know about it.
+     */
+    private class BackgroundSaveListener implements DataManager.SaveListener {
+        private final boolean showErrors;
+
+        BackgroundSaveListener(boolean showErrors) {
+            this.showErrors = showErrors;
+        }
+
+        @Override
+        public void saveComplete(Note savedNote) {
+            log.fine("Background save complete: " + savedNote.getSourceFile());
+        }
+
+        @Override
+        public void saveFailed(Note failedNote, IOException ioe) {
+            isDirty = true;
+            if (showErrors) {
+                getMessageUtil().error("Save error",
+                                       "An error occurred while saving the note: " + ioe.getMessage(),
+                                       ioe);
+            }
+        }
+    }
+
     /**
      * We will listen for internal frame close events, and prompt the user about
      * unsaved changes.
@@ -395,7 +702,19 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
                 int result = getMessageUtil().askYesNo("Discard scratch note?",
                                                        "This is a scratch note. Do you want to discard it?");
                 if (result == MessageUtil.YES) {
-                    dataManager.delete(note);
+                    try {
+                        dataManager.delete(note);
+                    }
+                    catch (IOException ioe) {
+                        log.log(Level.SEVERE, "Failed to delete scratch note: " + note.getSourceFile(), ioe);
+                        getMessageUtil().error("Delete error",
+                                               "An error occurred while deleting the scratch note: " + ioe.getMessage(),
+                                               ioe);
+
+                        // Keep the frame open, since the note is still there:
+                        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+                        return;
+                    }
                 }
                 else {
                     // Save the latest contents to the scratch directory, so it can be edited later:
@@ -406,7 +725,7 @@ public class WriterFrame extends JInternalFrame implements UIReloadable {
                         for (Tag tag : tagList.getTags()) {
                             note.tag(tag);
                         }
-                        note.setText(textPane.getText());
+                        applyEditorText();
                         dataManager.saveScratch(note);
                     }
                     catch (IOException ioe) {
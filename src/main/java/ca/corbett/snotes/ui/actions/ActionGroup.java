@@ -100,6 +100,7 @@ public class ActionGroup {
         // Query CRUD actions:
         queryActions.add(new NewQueryAction());
         queryActions.add(new ManageQueriesAction());
+        queryActions.add(new ExportNotesAction());
 
         // Show all Query instances as action links. Clicking one executes the Query!
         DataManager dataManager = MainWindow.getInstance().getDataManager();
@@ -114,6 +115,7 @@ public class ActionGroup {
     public static ActionGroup buildWriteGroup() {
         List<EnhancedAction> writeActions = new ArrayList<>();
         writeActions.add(AppConfig.getInstance().getNewNoteAction());
+        writeActions.add(new ImportNotesAction());
 
         // Template CRUD actions:
         writeActions.add(new NewTemplateAction());
@@ -132,7 +134,9 @@ public class ActionGroup {
     public static ActionGroup buildOptionsGroup() {
         List<EnhancedAction> optionActions = new ArrayList<>();
         optionActions.add(AppConfig.getInstance().getLogConsoleAction());
+        optionActions.add(new PerformanceAction());
         optionActions.add(AppConfig.getInstance().getPreferencesAction());
+        optionActions.add(new PackYearAction());
         optionActions.add(AppConfig.getInstance().getExtensionManagerAction());
         ActionGroup group = buildGroup(OPTIONS, Resources.getIconOptions(), optionActions);
         group.addAction(AppConfig.getInstance().getAboutAction()); // This one always goes at the end
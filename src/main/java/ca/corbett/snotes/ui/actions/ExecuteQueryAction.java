@@ -2,14 +2,12 @@ package ca.corbett.snotes.ui.actions;
 
 import ca.corbett.extras.EnhancedAction;
 import ca.corbett.extras.MessageUtil;
-import ca.corbett.snotes.io.DataManager;
-import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.model.Query;
 import ca.corbett.snotes.ui.MainWindow;
+import ca.corbett.snotes.ui.QueryRunner;
 import ca.corbett.snotes.ui.ReaderFrame;
 
 import java.awt.event.ActionEvent;
-import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -36,10 +34,11 @@ public class ExecuteQueryAction extends EnhancedAction {
             return;
         }
 
-        DataManager dataManager = MainWindow.getInstance().getDataManager();
-        List<Note> results = query.execute(dataManager.getNotes());
-        ReaderFrame readerFrame = new ReaderFrame(results, query); // Let reader frame handle the empty results case
-        MainWindow.getInstance().addInternalFrame(readerFrame);
+        // Run it in the background, so a slow query doesn't lock up the whole UI:
+        QueryRunner.getInstance().execute(MainWindow.getInstance(), query, Integer.MAX_VALUE, (executedQuery, results) -> {
+            ReaderFrame readerFrame = new ReaderFrame(results, executedQuery); // Let reader frame handle the empty results case
+            MainWindow.getInstance().addInternalFrame(readerFrame);
+        });
     }
 
     private MessageUtil getMessageUtil() {
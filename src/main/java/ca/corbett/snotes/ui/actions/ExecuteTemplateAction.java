@@ -2,16 +2,14 @@ package ca.corbett.snotes.ui.actions;
 
 import ca.corbett.extras.EnhancedAction;
 import ca.corbett.extras.MessageUtil;
+import ca.corbett.snotes.io.DataManager;
 import ca.corbett.snotes.model.Note;
-import ca.corbett.snotes.model.Query;
 import ca.corbett.snotes.model.Template;
-import ca.corbett.snotes.model.filter.TagFilter;
 import ca.corbett.snotes.ui.MainWindow;
 import ca.corbett.snotes.ui.WriterFrame;
 
 import java.awt.event.ActionEvent;
 import java.io.IOException;
-import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -46,7 +44,9 @@ public class ExecuteTemplateAction extends EnhancedAction {
                 return;
             }
 
-            WriterFrame writerFrame = new WriterFrame(note, gatherContext());
+            // Context is gathered in the background (and usually cached), so the frame can open right away:
+            DataManager dataManager = MainWindow.getInstance().getDataManager();
+            WriterFrame writerFrame = new WriterFrame(note, dataManager.gatherTemplateContext(template));
             MainWindow.getInstance().addInternalFrame(writerFrame);
         }
         catch (IOException ioe) {
@@ -56,23 +56,6 @@ public class ExecuteTemplateAction extends EnhancedAction {
         }
     }
 
-    /**
-     * Creates and executes a Query based on our template's context settings,
-     * and returns the resulting Notes as a List.
-     */
-    private List<Note> gatherContext() {
-        if (template.getContext() == null
-            || template.getContext() == Template.Context.NONE
-            || template.getTagList().isEmpty()) {
-            return List.of();
-        }
-
-        Query contextQuery = new Query();
-        contextQuery.addFilter(new TagFilter(template.getTagList(), TagFilter.FilterType.ANY));
-        return contextQuery.execute(MainWindow.getInstance().getDataManager().getNotes(),
-                                    template.getContext().getLimit());
-    }
-
     private MessageUtil getMessageUtil() {
         if (messageUtil == null) {
             messageUtil = new MessageUtil(MainWindow.getInstance(), log);
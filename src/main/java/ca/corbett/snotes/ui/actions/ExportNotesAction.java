@@ -0,0 +1,127 @@
+package ca.corbett.snotes.ui.actions;
+
+import ca.corbett.extras.EnhancedAction;
+import ca.corbett.extras.MessageUtil;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.io.ExportReport;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.ui.MainWindow;
+
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Exports either all notes, or the results of a saved Query, to a single zip archive
+ * (preserving the data directory layout) or a JSONL file (one note per line).
+ * The export format is chosen by the file extension the user picks.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class ExportNotesAction extends EnhancedAction {
+
+    private static final Logger log = Logger.getLogger(ExportNotesAction.class.getName());
+
+    private static final String ALL_NOTES = "All notes";
+
+    private MessageUtil messageUtil;
+
+    public ExportNotesAction() {
+        super("Export notes...");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        DataManager dataManager = MainWindow.getInstance().getDataManager();
+
+        // Offer "everything" plus each saved Query:
+        List<Query> queries = dataManager.getQueries();
+        String[] options = new String[queries.size() + 1];
+        options[0] = ALL_NOTES;
+        for (int i = 0; i < queries.size(); i++) {
+            options[i + 1] = queries.get(i).getName();
+        }
+        String selection = getMessageUtil().askSelect("Export notes", "Which notes should be exported?",
+                                                      options, ALL_NOTES);
+        if (selection == null) {
+            return; // user canceled
+        }
+        List<Note> notesToExport = dataManager.getNotes();
+        for (Query query : queries) {
+            if (!ALL_NOTES.equals(selection) && query.getName().equals(selection)) {
+                notesToExport = query.execute(notesToExport);
+                break;
+            }
+        }
+        if (notesToExport.isEmpty()) {
+            getMessageUtil().info("Export notes", "There are no notes to export.");
+            return;
+        }
+
+        FileNameExtensionFilter zipFilter = new FileNameExtensionFilter("Zip archives (*.zip)", "zip");
+        FileNameExtensionFilter jsonlFilter = new FileNameExtensionFilter("JSON lines (*.jsonl)", "jsonl");
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export " + notesToExport.size() + " notes");
+        fileChooser.addChoosableFileFilter(zipFilter);
+        fileChooser.addChoosableFileFilter(jsonlFilter);
+        fileChooser.setFileFilter(zipFilter);
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        if (fileChooser.showSaveDialog(MainWindow.getInstance()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        // Go by the extension if the user typed one, otherwise by the selected filter:
+        File target = fileChooser.getSelectedFile();
+        String name = target.getName().toLowerCase();
+        DataManager.ExportFormat format;
+        if (name.endsWith(".jsonl")) {
+            format = DataManager.ExportFormat.JSONL;
+        }
+        else if (name.endsWith(".zip")) {
+            format = DataManager.ExportFormat.ZIP;
+        }
+        else if (fileChooser.getFileFilter() == jsonlFilter) {
+            format = DataManager.ExportFormat.JSONL;
+            target = new File(target.getParentFile(), target.getName() + ".jsonl");
+        }
+        else {
+            format = DataManager.ExportFormat.ZIP;
+            target = new File(target.getParentFile(), target.getName() + ".zip");
+        }
+
+        if (target.exists() && getMessageUtil().askYesNo("Confirm overwrite",
+                                                         target.getName() + " already exists. Overwrite it?")
+            != MessageUtil.YES) {
+            return;
+        }
+
+        try {
+            dataManager.exportNotes(notesToExport, target, format, this::exportComplete);
+        }
+        catch (IOException ioe) {
+            getMessageUtil().error("Export error", "Unable to export notes: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private void exportComplete(ExportReport report) {
+        if (report.hasError()) {
+            getMessageUtil().error("Export failed", report.getSummary());
+        }
+        else {
+            getMessageUtil().info("Export complete", report.getSummary());
+        }
+    }
+
+    private MessageUtil getMessageUtil() {
+        if (messageUtil == null) {
+            messageUtil = new MessageUtil(MainWindow.getInstance(), log);
+        }
+        return messageUtil;
+    }
+}
@@ -0,0 +1,89 @@
+package ca.corbett.snotes.ui.actions;
+
+import ca.corbett.extras.EnhancedAction;
+import ca.corbett.extras.MessageUtil;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.io.ImportReport;
+import ca.corbett.snotes.ui.MainWindow;
+
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Prompts the user for a directory or zip archive of existing note files, and bulk-imports
+ * all of them into our data directory. This is intended for migrating large collections of
+ * notes from elsewhere, and is much faster than creating them one at a time.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class ImportNotesAction extends EnhancedAction {
+
+    private static final Logger log = Logger.getLogger(ImportNotesAction.class.getName());
+
+    private static final String SKIP = "Skip them";
+    private static final String OVERWRITE = "Overwrite existing notes";
+    private static final String APPEND = "Append to existing notes";
+
+    private MessageUtil messageUtil;
+
+    public ImportNotesAction() {
+        super("Import notes...");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import notes from directory or zip file");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Zip archives", "zip"));
+        fileChooser.setAcceptAllFileFilterUsed(false); // directories are always shown
+        if (fileChooser.showOpenDialog(MainWindow.getInstance()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File source = fileChooser.getSelectedFile();
+
+        String selection = getMessageUtil().askSelect("Import notes",
+                                                      "What should happen to imported notes that have the same"
+                                                          + "\ndate and/or tags as an existing note?",
+                                                      new String[]{SKIP, OVERWRITE, APPEND},
+                                                      SKIP);
+        if (selection == null) {
+            return; // user canceled
+        }
+        DataManager.CollisionStrategy strategy = DataManager.CollisionStrategy.ABORT; // i.e. skip
+        if (OVERWRITE.equals(selection)) {
+            strategy = DataManager.CollisionStrategy.OVERWRITE;
+        }
+        else if (APPEND.equals(selection)) {
+            strategy = DataManager.CollisionStrategy.APPEND;
+        }
+
+        try {
+            MainWindow.getInstance().getDataManager().importNotes(source, strategy, this::importComplete);
+        }
+        catch (IOException ioe) {
+            getMessageUtil().error("Import error", "Unable to import notes: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private void importComplete(ImportReport report) {
+        if (report.getFailedCount() > 0) {
+            getMessageUtil().error("Import finished with errors", report.getSummary());
+        }
+        else {
+            getMessageUtil().info("Import complete", report.getSummary());
+        }
+    }
+
+    private MessageUtil getMessageUtil() {
+        if (messageUtil == null) {
+            messageUtil = new MessageUtil(MainWindow.getInstance(), log);
+        }
+        return messageUtil;
+    }
+}
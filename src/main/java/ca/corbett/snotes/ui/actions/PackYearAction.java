@@ -0,0 +1,80 @@
+package ca.corbett.snotes.ui.actions;
+
+import ca.corbett.extras.EnhancedAction;
+import ca.corbett.extras.MessageUtil;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.ui.MainWindow;
+
+import java.awt.Cursor;
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Offers to pack a past year's notes into a single compressed pack file, to cut down on the
+ * number of files in the data directory. Packed notes are still loaded and searchable as usual,
+ * and editing one automatically unpacks its year again.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class PackYearAction extends EnhancedAction {
+
+    private static final Logger log = Logger.getLogger(PackYearAction.class.getName());
+
+    private MessageUtil messageUtil;
+
+    public PackYearAction() {
+        super("Pack old years...");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        DataManager dataManager = MainWindow.getInstance().getDataManager();
+
+        // Only past years that aren't already packed are candidates:
+        int thisYear = LocalDate.now().getYear();
+        List<Integer> packedYears = dataManager.getPackedYears();
+        List<String> candidates = new ArrayList<>();
+        for (int year : dataManager.getUniqueYears()) {
+            if (year < thisYear && !packedYears.contains(year)) {
+                candidates.add(String.valueOf(year));
+            }
+        }
+        if (candidates.isEmpty()) {
+            getMessageUtil().info("Pack old years", "There are no unpacked past years to pack.");
+            return;
+        }
+
+        String selection = getMessageUtil().askSelect("Pack old years",
+                                                      "Pack all notes for which year into a single file?",
+                                                      candidates.toArray(new String[0]),
+                                                      candidates.get(0));
+        if (selection == null) {
+            return; // user canceled
+        }
+
+        MainWindow mainWindow = MainWindow.getInstance();
+        mainWindow.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        try {
+            int count = dataManager.packYear(Integer.parseInt(selection));
+            getMessageUtil().info("Pack complete", "Packed " + count + " notes from " + selection + ".");
+        }
+        catch (IOException ioe) {
+            getMessageUtil().error("Pack error", "Unable to pack " + selection + ": " + ioe.getMessage(), ioe);
+        }
+        finally {
+            mainWindow.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    private MessageUtil getMessageUtil() {
+        if (messageUtil == null) {
+            messageUtil = new MessageUtil(MainWindow.getInstance(), log);
+        }
+        return messageUtil;
+    }
+}
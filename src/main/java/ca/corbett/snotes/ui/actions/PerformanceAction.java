@@ -0,0 +1,25 @@
+package ca.corbett.snotes.ui.actions;
+
+import ca.corbett.extras.EnhancedAction;
+import ca.corbett.snotes.ui.PerformanceWindow;
+
+import java.awt.event.ActionEvent;
+
+/**
+ * An action for showing the Performance window.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class PerformanceAction extends EnhancedAction {
+
+    public PerformanceAction() {
+        super("Show Performance");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        PerformanceWindow.getInstance().setVisible(true);
+        PerformanceWindow.getInstance().toFront();
+    }
+}
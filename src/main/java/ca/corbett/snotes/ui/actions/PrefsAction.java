@@ -48,6 +48,10 @@ public class PrefsAction extends EnhancedAction {
                 }
             }
 
+            // Notes loaded from now on should respect the current large note size:
+            MainWindow.getInstance().getDataManager()
+                      .setLargeNoteThreshold(AppConfig.getInstance().getLargeNoteThreshold());
+
             // If the user clicked OK, reload the UI:
             UIReloadAction.getInstance().actionPerformed(null);
         }
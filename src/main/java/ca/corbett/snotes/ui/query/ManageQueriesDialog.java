@@ -126,6 +126,11 @@ public class ManageQueriesDialog extends JDialog {
 
     private JPanel buildButtonPanel() {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton profileButton = new JButton("Profile");
+        profileButton.setPreferredSize(new Dimension(110, 24));
+        profileButton.setToolTipText("Profile the selected query against all notes");
+        profileButton.addActionListener(e -> profileSelectedQuery());
+        buttonPanel.add(profileButton);
         JButton newButton = new JButton("Close");
         newButton.setPreferredSize(new Dimension(110, 24));
         newButton.addActionListener(e -> closeDialog());
@@ -133,6 +138,18 @@ public class ManageQueriesDialog extends JDialog {
         return buttonPanel;
     }
 
+    /**
+     * Runs an instrumented execution of the selected Query and shows the results.
+     */
+    private void profileSelectedQuery() {
+        Query query = queryListField.getList().getSelectedValue();
+        if (query == null) {
+            getMessageUtil().info("No query selected", "Please select a query to profile.");
+            return;
+        }
+        new QueryProfileDialog(this, query).setVisible(true);
+    }
+
     /**
      * An internal action to show the QueryBuilderDialog to create a new Query.
      * After the dialog is closed, if a new Query was created, it will be saved
@@ -9,6 +9,7 @@ import ca.corbett.forms.fields.PanelField;
 import ca.corbett.forms.fields.ShortTextField;
 import ca.corbett.snotes.io.DataManager;
 import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.filter.Filter;
 import ca.corbett.snotes.ui.MainWindow;
 import ca.corbett.snotes.ui.UniqueNameValidator;
 
@@ -120,6 +121,23 @@ public class QueryBuilderDialog extends JDialog {
         dispose();
     }
 
+    /**
+     * Builds a throwaway Query from the current filter settings and profiles it.
+     * We deliberately don't use queryFilterPanel.getQuery() here, because that would
+     * modify the Query being edited even if the user later cancels this dialog.
+     */
+    private void profileQuery() {
+        if (!queryFilterPanel.isFormValid()) {
+            return; // validation errors are shown inline
+        }
+        Query query = new Query();
+        query.setName(nameField.getText());
+        for (Filter filter : queryFilterPanel.getFilters()) {
+            query.addFilter(filter);
+        }
+        new QueryProfileDialog(this, query).setVisible(true);
+    }
+
     private void initKeyBindings() {
         keyManager.registerHandler(KeyStrokeManager.parseKeyStroke("ESC"), e -> buttonHandler(false));
     }
@@ -155,7 +173,12 @@ public class QueryBuilderDialog extends JDialog {
 
     private JPanel buildButtonPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JButton button = new JButton("OK");
+        JButton button = new JButton("Profile");
+        button.setToolTipText("Run these filters against all notes and show per-filter timings");
+        button.addActionListener(e -> profileQuery());
+        button.setPreferredSize(new Dimension(100, 24));
+        panel.add(button);
+        button = new JButton("OK");
         button.addActionListener(e -> buttonHandler(true));
         button.setPreferredSize(new Dimension(100, 24));
         panel.add(button);
@@ -11,6 +11,8 @@ import ca.corbett.snotes.model.filter.DateFilterType;
 import ca.corbett.snotes.model.filter.DayOfMonthFilter;
 import ca.corbett.snotes.model.filter.DayOfWeekFilter;
 import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterRegistration;
+import ca.corbett.snotes.model.filter.FilterRegistry;
 import ca.corbett.snotes.model.filter.MonthFilter;
 import ca.corbett.snotes.model.filter.TagFilter;
 import ca.corbett.snotes.model.filter.TextFilter;
@@ -24,11 +26,15 @@ import javax.swing.JTextField;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.time.DayOfWeek;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 /**
  * A custom FormField implementation for viewing or editing a Query filter.
+ * The filter type combo offers each of our built-in FilterTypes, followed by
+ * any Filter types that extensions have registered with FilterRegistry.
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since Snotes 2.0
@@ -91,12 +97,15 @@ public class QueryFilterField extends FormField {
     }
 
     private FilterType filterType;
-    private final JComboBox<FilterType> filterTypeCombo;
+    private FilterRegistration<?> extensionType;
+    private final JComboBox<Object> filterTypeCombo;
     private final JLabel promptLabel;
     private final JTextField filterValueField;
 
     public QueryFilterField() {
-        filterTypeCombo = new JComboBox<>(FilterType.values());
+        List<Object> filterTypes = new ArrayList<>(Arrays.asList(FilterType.values()));
+        filterTypes.addAll(FilterRegistry.getInstance().getRegistrations());
+        filterTypeCombo = new JComboBox<>(filterTypes.toArray());
         filterTypeCombo.setEditable(false);
         filterTypeCombo.setSelectedIndex(0);
         filterValueField = new JTextField(14);
@@ -139,7 +148,12 @@ public class QueryFilterField extends FormField {
      * @param filter An instance of any subclass of Filter.
      */
     public void setValuesFrom(Filter filter) {
-        if (filter instanceof TextFilter textFilter) {
+        FilterRegistration<?> registration = FilterRegistry.getInstance().findRegistration(filter.getClass());
+        if (registration != null) {
+            selectRegistration(registration.getTypeName());
+            filterValueField.setText(registration.format(filter));
+        }
+        else if (filter instanceof TextFilter textFilter) {
             filterTypeCombo.setSelectedItem(
                 textFilter.isCaseSensitive() ? FilterType.TEXT_SENSITIVE : FilterType.TEXT_INSENSITIVE);
             filterValueField.setText(textFilter.getContains());
@@ -196,6 +210,9 @@ public class QueryFilterField extends FormField {
      * @return One of the subclasses of Filter, populated based on this field's current values.
      */
     public Filter getFilter() {
+        if (extensionType != null) {
+            return extensionType.parse(filterValueField.getText());
+        }
         return switch (filterType) {
             case TEXT_INSENSITIVE -> new TextFilter(filterValueField.getText().trim(), false);
 
@@ -243,8 +260,17 @@ public class QueryFilterField extends FormField {
      */
     private void updateFilterType() {
         Object selected = filterTypeCombo.getSelectedItem();
-        if (selected instanceof FilterType selectedType) {
+        if (selected instanceof FilterRegistration<?> registration) {
+            filterType = null;
+            extensionType = registration;
+            promptLabel.setText(registration.getPrompt() != null ? registration.getPrompt() : "");
+            promptLabel.setVisible(true);
+            filterValueField.setVisible(true);
+            setHelpText(registration.getHelpText());
+        }
+        else if (selected instanceof FilterType selectedType) {
             filterType = selectedType;
+            extensionType = null;
             promptLabel.setText(filterType.getPrompt() != null ? filterType.getPrompt() : "");
             promptLabel.setVisible(filterType != FilterType.UNDATED);
             filterValueField.setVisible(filterType != FilterType.UNDATED);
@@ -252,6 +278,28 @@ public class QueryFilterField extends FormField {
         }
     }
 
+    /**
+     * Selects the registered Filter type with the given type name in our combo. We go by name rather than
+     * by instance, since an extension may have registered its Filter types again since we were created.
+     */
+    private void selectRegistration(String typeName) {
+        for (int i = 0; i < filterTypeCombo.getItemCount(); i++) {
+            if (filterTypeCombo.getItemAt(i) instanceof FilterRegistration<?> registration
+                && registration.getTypeName().equals(typeName)) {
+                filterTypeCombo.setSelectedIndex(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Used internally by our validator.
+     * To retrieve the filter for this field, use getFilter() instead.
+     */
+    private FilterRegistration<?> getExtensionType() {
+        return extensionType;
+    }
+
     /**
      * Used internally by our validator.
      * To retrieve the filter for this field, use getFilter() instead.
@@ -277,6 +325,18 @@ public class QueryFilterField extends FormField {
         @Override
         public ValidationResult validate(QueryFilterField fieldToValidate) {
             String value = fieldToValidate.getFilterValue().trim();
+            if (fieldToValidate.getExtensionType() != null) {
+                // Extension filters validate their own values, by refusing to parse invalid ones:
+                try {
+                    fieldToValidate.getExtensionType().parse(value);
+                }
+                catch (IllegalArgumentException e) {
+                    return ValidationResult.invalid(e.getMessage() != null
+                                                        ? e.getMessage()
+                                                        : "Not a valid value for this filter.");
+                }
+                return ValidationResult.valid();
+            }
             switch (fieldToValidate.getFilterType()) {
                 case TEXT_INSENSITIVE, TEXT_SENSITIVE, TAG -> {
                     if (value.isBlank()) {
@@ -88,10 +88,7 @@ public class QueryFilterPanel extends JPanel {
      * @return A Query instance with filters corresponding to our current values.
      */
     public Query getQuery() {
-        List<Filter> filters = new ArrayList<>(filterCount);
-        for (int i = 0; i < filterCount; i++) {
-            filters.add(filterFields.get(i).getFilter());
-        }
+        List<Filter> filters = getFilters();
         Query query;
         if (queryToEdit == null) {
             // This is a new Query:
@@ -112,6 +109,18 @@ public class QueryFilterPanel extends JPanel {
         return query;
     }
 
+    /**
+     * Returns a list of Filters corresponding to our current values. Unlike getQuery(),
+     * this does not modify the Query instance that was supplied to our constructor (if any).
+     */
+    public List<Filter> getFilters() {
+        List<Filter> filters = new ArrayList<>(filterCount);
+        for (int i = 0; i < filterCount; i++) {
+            filters.add(filterFields.get(i).getFilter());
+        }
+        return filters;
+    }
+
     /**
      * Delegates to our FormPanel's isFormValid() method, which checks that all visible fields are valid.
      * Validation errors will be shown inline if anything is wrong.
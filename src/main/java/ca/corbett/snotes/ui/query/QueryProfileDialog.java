@@ -0,0 +1,187 @@
+package ca.corbett.snotes.ui.query;
+
+import ca.corbett.extras.io.KeyStrokeManager;
+import ca.corbett.extras.progress.MultiProgressDialog;
+import ca.corbett.extras.progress.SimpleProgressWorker;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.QueryProfile;
+import ca.corbett.snotes.ui.MainWindow;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Profiles the given Query against all Notes currently loaded in the DataManager,
+ * and shows the resulting QueryProfile report in a read-only text area.
+ * This lets the user see which Filters in a Query are doing the most work,
+ * so they can re-order or rewrite slow Queries.
+ * <p>
+ * Profiling runs every Note through the Query, which can take a while on a big collection,
+ * so it happens on a worker thread once the dialog is shown, the same way QueryRunner executes
+ * Queries. A progress dialog with a Cancel button is shown if it takes more than a moment.
+ * Closing this dialog cancels the profile if it is still running.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since Snotes 2.0
+ */
+public class QueryProfileDialog extends JDialog {
+
+    private static final Logger log = Logger.getLogger(QueryProfileDialog.class.getName());
+
+    private final KeyStrokeManager keyManager;
+    private final Query query;
+    private final JTextArea textArea;
+    private ProfileWorker worker;
+    private QueryProfile profile;
+
+    /**
+     * Builds a dialog to show the profile of the given Query. Profiling starts on a worker thread
+     * when the dialog is shown, and the report is filled in when it finishes.
+     *
+     * @param owner the parent window for this dialog
+     * @param query the Query to profile. Must not be null.
+     */
+    public QueryProfileDialog(Window owner, Query query) {
+        super(owner, "Query profile: " + query.getName(), ModalityType.APPLICATION_MODAL);
+        setSize(new Dimension(640, 360));
+        setLocationRelativeTo((owner != null) ? owner : MainWindow.getInstance());
+        setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        this.query = query;
+        this.textArea = new JTextArea("Profiling...");
+        keyManager = new KeyStrokeManager(this);
+        keyManager.registerHandler(KeyStrokeManager.parseKeyStroke("ESC"), e -> dispose());
+        setLayout(new BorderLayout());
+        add(buildReportPanel(), BorderLayout.CENTER);
+        add(buildButtonPanel(), BorderLayout.SOUTH);
+        addWindowListener(new WindowOpenListener());
+    }
+
+    /**
+     * Returns the QueryProfile that is being shown in this dialog, or null if profiling
+     * hasn't finished yet, or didn't finish (it was canceled, or failed).
+     */
+    public QueryProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(); // no-op if it already finished
+        }
+        keyManager.dispose();
+        super.dispose();
+    }
+
+    /**
+     * Starts profiling on a worker thread. Must be invoked on the EDT.
+     */
+    private void startProfile() {
+        List<Note> notes = MainWindow.getInstance().getDataManager().getNotes(); // snapshot, taken on the EDT
+        worker = new ProfileWorker(notes);
+        MultiProgressDialog dialog = new MultiProgressDialog(this, "Profiling...");
+        dialog.setInitialShowDelayMS(500);
+        dialog.runWorker(worker, true);
+    }
+
+    /**
+     * Invoked on the EDT when profiling is done, with the report to show (or a message, if it didn't finish).
+     */
+    private void showReport(QueryProfile finishedProfile, String report) {
+        if (!isDisplayable()) {
+            return; // closed while we were profiling
+        }
+        profile = finishedProfile;
+        textArea.setText(report);
+        textArea.setCaretPosition(0);
+    }
+
+    private JScrollPane buildReportPanel() {
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        textArea.setCaretPosition(0);
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        return scrollPane;
+    }
+
+    private JPanel buildButtonPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton button = new JButton("Close");
+        button.setPreferredSize(new Dimension(100, 24));
+        button.addActionListener(e -> dispose());
+        panel.add(button);
+        return panel;
+    }
+
+    /**
+     * Profiles our Query. Progress updates double as our cancellation checks: they return false
+     * if the user hit Cancel on the progress dialog, or if this dialog has been closed.
+     */
+    private class ProfileWorker extends SimpleProgressWorker {
+
+        private final List<Note> notes;
+        private volatile boolean isCanceled;
+
+        ProfileWorker(List<Note> notes) {
+            this.notes = notes;
+        }
+
+        void cancel() {
+            isCanceled = true;
+        }
+
+        @Override
+        public void run() {
+            fireProgressBegins(notes.size());
+            QueryProfile result;
+            try {
+                result = query.profile(notes, Integer.MAX_VALUE, (notesScanned, totalNotes) ->
+                    !isCanceled && fireProgressUpdate(notesScanned, "Profiling against " + totalNotes + " notes..."));
+            }
+            catch (CancellationException ce) {
+                log.info("Profile of query \"" + query.getName() + "\" was canceled.");
+                fireProgressCanceled();
+                SwingUtilities.invokeLater(() -> showReport(null, "Profiling was canceled."));
+                return;
+            }
+            catch (RuntimeException re) {
+                log.log(Level.SEVERE, "Profile of query \"" + query.getName() + "\" failed: " + re.getMessage(), re);
+                fireProgressError("Profile", re.getMessage());
+                SwingUtilities.invokeLater(() -> showReport(null, "Profiling failed: " + re.getMessage()));
+                return;
+            }
+
+            String report = result.toReport();
+            log.info(report);
+            fireProgressComplete();
+            SwingUtilities.invokeLater(() -> showReport(result, report));
+        }
+    }
+
+    private class WindowOpenListener extends WindowAdapter {
+        @Override
+        public void windowOpened(WindowEvent e) {
+            // Our progress dialog needs us to be showing, so we wait until now to start:
+            startProfile();
+        }
+    }
+}
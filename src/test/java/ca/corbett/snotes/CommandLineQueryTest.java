@@ -0,0 +1,167 @@
+package ca.corbett.snotes;
+
+import ca.corbett.snotes.io.CorpusGenerator;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.filter.TagFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandLineQueryTest {
+
+    @TempDir
+    File tempDir;
+
+    File dataDir;
+    List<Note> notes;
+    ByteArrayOutputStream out;
+    ByteArrayOutputStream err;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dataDir = new File(tempDir, "data");
+        CorpusGenerator generator = new CorpusGenerator(11).setNoteCount(300).setScratchNoteCount(0)
+                                                           .setQueryCount(0).setTemplateCount(0);
+        generator.generate(dataDir);
+        notes = generator.generateNotes(); // same seed, so the same Notes as on disk
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    @Test
+    void isRequested_shouldOnlyTriggerOnSearchOptions() {
+        assertTrue(CommandLineQuery.isRequested(new String[]{"--search", "x"}));
+        assertTrue(CommandLineQuery.isRequested(new String[]{"--help"}));
+        assertFalse(CommandLineQuery.isRequested(new String[]{}));
+        assertFalse(CommandLineQuery.isRequested(new String[]{"somethingElse"}));
+    }
+
+    @Test
+    void run_withTagAndYear_shouldListExactlyTheMatchingNotes() {
+        // GIVEN the Notes we expect to match a tag and a year:
+        long expected = notes.stream()
+                             .filter(n -> n.hasTag("work") && n.hasDate() && n.getDate().getYear() == 2020)
+                             .count();
+
+        // WHEN we search for them from the command line:
+        int exitCode = run("--tag", "work", "--year", "2020", "--format", "paths");
+
+        // THEN we should get one path per matching Note, and nothing else:
+        List<String> lines = lines(out);
+        assertEquals(expected, lines.size());
+        assertEquals(expected == 0 ? CommandLineQuery.EXIT_NO_MATCHES : CommandLineQuery.EXIT_MATCHED, exitCode);
+        for (String line : lines) {
+            assertTrue(new File(dataDir, line).isFile(), "Not a note file: " + line);
+        }
+        assertEquals("", err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void run_withJsonlFormat_shouldWriteOneObjectPerNote() throws IOException {
+        // WHEN we ask for the 5 most recent Notes as JSON lines:
+        int exitCode = run("--search", "", "--limit", "5", "--format", "jsonl");
+
+        // THEN each line should be a complete JSON object describing a Note:
+        assertEquals(CommandLineQuery.EXIT_MATCHED, exitCode);
+        List<String> lines = lines(out);
+        assertEquals(5, lines.size());
+        ObjectMapper mapper = new ObjectMapper();
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            assertTrue(new File(dataDir, node.get("path").asText()).isFile());
+            assertTrue(node.get("tags").isArray());
+            assertTrue(node.has("date"));
+            assertTrue(node.has("text"));
+        }
+    }
+
+    @Test
+    void run_withSavedQueryName_shouldRunThatQuery() throws IOException {
+        // GIVEN a saved Query:
+        Query saved = new Query().setName("Work notes");
+        saved.addFilter(new TagFilter(List.of(new Tag("work")), TagFilter.FilterType.ALL));
+        DataManager dataManager = new DataManager(dataDir);
+        dataManager.saveQuery(saved);
+        dataManager.shutdown();
+        long expected = notes.stream().filter(n -> n.hasTag("work")).count();
+
+        // WHEN we run it by name (ignoring case):
+        int exitCode = run("--query", "work NOTES", "--format", "paths");
+
+        // THEN we should get its results:
+        assertEquals(CommandLineQuery.EXIT_MATCHED, exitCode);
+        assertEquals(expected, lines(out).size());
+    }
+
+    @Test
+    void run_withUnknownQueryName_shouldFail() {
+        int exitCode = run("--query", "No such query");
+        assertEquals(CommandLineQuery.EXIT_ERROR, exitCode);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("No saved query"));
+    }
+
+    @Test
+    void run_withNoMatches_shouldReturnNoMatchesCode() {
+        int exitCode = run("--search", "this text appears in no generated note at all");
+        assertEquals(CommandLineQuery.EXIT_NO_MATCHES, exitCode);
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void run_withBadArguments_shouldFail() {
+        assertEquals(CommandLineQuery.EXIT_ERROR, run("--year", "last"));
+        assertEquals(CommandLineQuery.EXIT_ERROR, run("--format", "xml", "--search", "x"));
+        assertEquals(CommandLineQuery.EXIT_ERROR, run("--bogus", "x"));
+        assertEquals(CommandLineQuery.EXIT_ERROR, run("--search"));
+    }
+
+    @Test
+    void run_shouldNotWriteToTheDataDirectory() throws IOException {
+        // GIVEN everything currently in our data directory:
+        List<String> before = listTree(dataDir);
+
+        // WHEN we run a query against it:
+        run("--search", "x");
+
+        // THEN nothing should have been created or removed:
+        assertEquals(before, listTree(dataDir));
+    }
+
+    private int run(String... args) {
+        String[] fullArgs = new String[args.length + 2];
+        System.arraycopy(args, 0, fullArgs, 0, args.length);
+        fullArgs[args.length] = "--data-dir";
+        fullArgs[args.length + 1] = dataDir.getAbsolutePath();
+        return CommandLineQuery.run(fullArgs, new PrintStream(out, true, StandardCharsets.UTF_8),
+                                    new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    private static List<String> listTree(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.map(Path::toString).sorted().toList();
+        }
+    }
+
+    private static List<String> lines(ByteArrayOutputStream stream) {
+        return stream.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}
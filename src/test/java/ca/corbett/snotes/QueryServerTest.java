@@ -0,0 +1,195 @@
+package ca.corbett.snotes;
+
+import ca.corbett.snotes.io.CorpusGenerator;
+import ca.corbett.snotes.io.DataManager;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
+import ca.corbett.snotes.model.filter.TagFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryServerTest {
+
+    @TempDir
+    File tempDir;
+
+    File dataDir;
+    File infoFile;
+    DataManager dataManager;
+    QueryServer server;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dataDir = new File(tempDir, "data");
+        new CorpusGenerator(5).setNoteCount(400).setQueryCount(0).generate(dataDir);
+        dataManager = new DataManager(dataDir);
+        dataManager.loadAllNow();
+        Query saved = new Query().setName("Work");
+        saved.addFilter(new TagFilter(List.of(new Tag("work")), TagFilter.FilterType.ALL));
+        dataManager.saveQuery(saved);
+        infoFile = new File(tempDir, "query-server.properties");
+        server = new QueryServer(dataManager, infoFile);
+        server.start();
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop();
+        dataManager.shutdown();
+    }
+
+    @Test
+    void forward_shouldGiveTheSameResultsAsALocalQuery() {
+        // GIVEN the same search, run locally and through the server:
+        Result local = runLocally("--tag", "work", "--search", "e", "--format", "jsonl");
+        Result remote = forward("--tag", "work", "--search", "e", "--format", "jsonl");
+
+        // THEN the results should be identical:
+        assertEquals(CommandLineQuery.EXIT_MATCHED, remote.exitCode);
+        assertEquals(local.out, remote.out);
+        assertEquals("", remote.err);
+    }
+
+    @Test
+    void forward_withSavedQuery_shouldNotModifyTheSavedQuery() {
+        // GIVEN a saved Query with a single filter:
+        Query saved = dataManager.getQueries().get(0);
+        int filterCount = saved.getFilters().size();
+
+        // WHEN we run it, with extra filters, through the server:
+        Result remote = forward("--query", "work", "--year", "2020", "--format", "paths");
+
+        // THEN it should have run, but the saved Query should be untouched:
+        assertEquals(runLocally("--query", "work", "--year", "2020", "--format", "paths").out, remote.out);
+        assertEquals(filterCount, saved.getFilters().size());
+    }
+
+    @Test
+    void forward_withErrors_shouldPassAlongStderrAndExitCode() {
+        Result remote = forward("--query", "No such query");
+        assertEquals(CommandLineQuery.EXIT_ERROR, remote.exitCode);
+        assertTrue(remote.err.contains("No saved query"));
+        assertEquals("", remote.out);
+    }
+
+    @Test
+    void forward_withManyConcurrentRequests_shouldAnswerEachOneCorrectly() throws Exception {
+        // GIVEN the expected answer for each of several different searches:
+        List<String[]> requests = new ArrayList<>();
+        for (int year = 2015; year <= 2024; year++) {
+            requests.add(new String[]{"--year", Integer.toString(year), "--format", "paths"});
+        }
+        List<String> expected = new ArrayList<>();
+        for (String[] request : requests) {
+            expected.add(runLocally(request).out);
+        }
+
+        // WHEN we send them all at once, several times over:
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (String[] request : requests) {
+                futures.add(clients.submit((Callable<Result>)() -> forward(request)));
+            }
+        }
+
+        // THEN every one of them should get its own answer:
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(expected.get(i % requests.size()), futures.get(i).get().out);
+        }
+        clients.shutdown();
+    }
+
+    @Test
+    void forward_withNoServer_shouldReturnNull() {
+        // GIVEN a server that has stopped:
+        server.stop();
+
+        // THEN its info file should be gone, and there should be nothing to forward to:
+        assertFalse(infoFile.exists());
+        assertNull(QueryClient.forward(infoFile, new String[]{"--search", "x"}, nullStream(), nullStream()));
+    }
+
+    @Test
+    void forward_withStaleInfoFile_shouldReturnNull() throws IOException {
+        // GIVEN an info file left behind by a server that is no longer there:
+        int port = server.getPort();
+        server.stop();
+        QueryProtocol.writeInfoFile(infoFile, new QueryProtocol.ServerInfo(port, "stale"));
+
+        // THEN we should give up quietly, so the caller can load the notes itself:
+        assertNull(QueryClient.forward(infoFile, new String[]{"--search", "x"}, nullStream(), nullStream()));
+    }
+
+    @Test
+    void request_withWrongToken_shouldBeRefused() throws IOException {
+        // GIVEN a request that doesn't present the server's token:
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            try {
+                QueryProtocol.writeRequest(socket.getOutputStream(), "not the token", new String[]{"--search", "x"});
+            }
+            catch (SocketException e) {
+                return; // the server hung up as soon as it saw the token, before we even finished asking
+            }
+
+            // THEN the server should hang up without answering:
+            try {
+                assertEquals(-1, socket.getInputStream().read());
+            }
+            catch (SocketException e) {
+                // also a hang-up: the connection was reset because the rest of our request went unread
+            }
+        }
+    }
+
+    private Result forward(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Integer exitCode = QueryClient.forward(infoFile, args, new PrintStream(out, true, StandardCharsets.UTF_8),
+                                               new PrintStream(err, true, StandardCharsets.UTF_8));
+        assertTrue(exitCode != null, "No server to forward to");
+        return new Result(exitCode, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private Result runLocally(String... args) {
+        String[] fullArgs = new String[args.length + 2];
+        System.arraycopy(args, 0, fullArgs, 0, args.length);
+        fullArgs[args.length] = "--data-dir";
+        fullArgs[args.length + 1] = dataDir.getAbsolutePath();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = CommandLineQuery.run(fullArgs, new PrintStream(out, true, StandardCharsets.UTF_8),
+                                            new PrintStream(err, true, StandardCharsets.UTF_8));
+        return new Result(exitCode, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static PrintStream nullStream() {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    private record Result(int exitCode, String out, String err) {
+    }
+}
@@ -0,0 +1,62 @@
+package ca.corbett.snotes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupTrainerTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void isRequested_shouldOnlyMatchTrainingOption() {
+        assertTrue(StartupTrainer.isRequested(new String[]{"--train-startup"}));
+        assertFalse(StartupTrainer.isRequested(new String[]{"--search", "train-startup"}));
+        assertFalse(StartupTrainer.isRequested(new String[0]));
+    }
+
+    @Test
+    void exerciseData_shouldOnlyWriteToGivenDirectory() throws IOException {
+        // GIVEN an empty directory for the synthetic corpus:
+        File corpusDir = new File(tempDir, "corpus");
+
+        // WHEN we run the data side of training in it:
+        StartupTrainer.exerciseData(corpusDir);
+
+        // THEN the corpus should be there, including the note we saved:
+        assertTrue(new File(corpusDir, "static/snotes-startup-training.txt").isFile());
+        assertTrue(new File(corpusDir, ".snotes").isDirectory());
+        File[] contents = tempDir.listFiles();
+        assertTrue(contents != null && contents.length == 1, "Nothing should be written outside the corpus");
+    }
+
+    @Test
+    void run_shouldLeaveConfigurationUntouched() throws IOException {
+        // GIVEN the user's configuration, as it is before training:
+        File configFile = AppConfig.PROPS_FILE;
+        byte[] before = configFile.exists() ? Files.readAllBytes(configFile.toPath()) : null;
+        long lastModified = configFile.lastModified();
+
+        // WHEN we run a full training pass:
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        assertEquals(0, StartupTrainer.run(nowhere, nowhere));
+
+        // THEN the configuration should be exactly as it was:
+        assertEquals(before != null, configFile.exists());
+        if (before != null) {
+            assertArrayEquals(before, Files.readAllBytes(configFile.toPath()));
+        }
+        assertEquals(lastModified, configFile.lastModified());
+    }
+}
@@ -0,0 +1,89 @@
+package ca.corbett.snotes.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtomicWriteBatchTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void commit_withEmptyBatch_shouldDoNothing() throws IOException {
+        // GIVEN an empty batch:
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+
+        // WHEN we commit it:
+        batch.commit();
+
+        // THEN nothing should have been written:
+        String[] contents = tempDir.list();
+        assertNotNull(contents);
+        assertEquals(0, contents.length);
+    }
+
+    @Test
+    void commit_withManyFiles_shouldWriteAllAndRunCallbacks() throws IOException {
+        // GIVEN a batch of writes spread over two directories:
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+        AtomicInteger callbackCount = new AtomicInteger(0);
+        for (int i = 0; i < 10; i++) {
+            File dir = new File(tempDir, (i % 2 == 0) ? "even" : "odd");
+            batch.add(new File(dir, "file" + i + ".txt"), ("content " + i).getBytes(StandardCharsets.UTF_8),
+                      callbackCount::incrementAndGet);
+        }
+        assertEquals(10, batch.size());
+
+        // WHEN we commit it:
+        batch.commit();
+
+        // THEN all files should exist with the right content:
+        for (int i = 0; i < 10; i++) {
+            File dir = new File(tempDir, (i % 2 == 0) ? "even" : "odd");
+            assertEquals("content " + i, Files.readString(new File(dir, "file" + i + ".txt").toPath()));
+        }
+
+        // AND every callback should have run:
+        assertEquals(10, callbackCount.get());
+
+        // AND the batch should now be empty:
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    void commit_withFailedTempWrite_shouldLeaveDiskUntouched() throws IOException {
+        // GIVEN an existing file:
+        File existing = new File(tempDir, "existing.txt");
+        Files.writeString(existing.toPath(), "original");
+
+        // AND a batch that updates it, along with a second file whose temp file cannot be created
+        // (the temp file name is longer than the target name, so this pushes it past the file system limit):
+        AtomicWriteBatch batch = new AtomicWriteBatch();
+        AtomicInteger callbackCount = new AtomicInteger(0);
+        batch.add(existing, "updated".getBytes(StandardCharsets.UTF_8), callbackCount::incrementAndGet);
+        batch.add(new File(tempDir, "x".repeat(250) + ".txt"), "doomed".getBytes(StandardCharsets.UTF_8),
+                  callbackCount::incrementAndGet);
+
+        // WHEN we commit it:
+        // THEN it should fail:
+        assertThrows(IOException.class, batch::commit);
+
+        // AND the existing file should be untouched, with no callbacks run and no temp files left over:
+        assertEquals("original", Files.readString(existing.toPath()));
+        assertEquals(0, callbackCount.get());
+        String[] contents = tempDir.list();
+        assertNotNull(contents);
+        assertEquals(1, contents.length);
+    }
+}
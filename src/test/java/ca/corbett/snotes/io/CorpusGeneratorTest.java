@@ -0,0 +1,164 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorpusGeneratorTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void generate_shouldWriteALoadableDataDirectory() throws IOException {
+        // GIVEN a generator configured for a small corpus:
+        CorpusGenerator generator = new CorpusGenerator(42)
+                .setNoteCount(500)
+                .setScratchNoteCount(4)
+                .setQueryCount(6)
+                .setTemplateCount(3);
+        File dataDir = new File(tempDir, "data");
+
+        // WHEN we generate it and load it back in:
+        generator.generate(dataDir);
+        DataManager dataManager = new DataManager(dataDir);
+        dataManager.loadAllNow();
+
+        // THEN everything we asked for should be there:
+        assertEquals(500, dataManager.getNotes().size());
+        assertEquals(4, dataManager.getScratchNotes().size());
+        assertEquals(6, dataManager.getQueries().size());
+        assertEquals(3, dataManager.getTemplates().size());
+
+        // AND every note should already be in the place that SnotesIO would save it:
+        for (Note note : dataManager.getNotes()) {
+            assertEquals(SnotesIO.computeFile(dataDir, note).getAbsoluteFile(), note.getSourceFile().getAbsoluteFile());
+        }
+        dataManager.shutdown();
+    }
+
+    @Test
+    void generate_withSameSeed_shouldWriteIdenticalFiles() throws IOException {
+        // GIVEN two generators with the same seed and settings:
+        File firstDir = new File(tempDir, "first");
+        File secondDir = new File(tempDir, "second");
+
+        // WHEN we generate both:
+        new CorpusGenerator(7).setNoteCount(300).generate(firstDir);
+        new CorpusGenerator(7).setNoteCount(300).generate(secondDir);
+
+        // THEN the two directories should be identical:
+        assertEquals(readTree(firstDir), readTree(secondDir));
+    }
+
+    @Test
+    void generate_withDifferentSeeds_shouldWriteDifferentFiles() throws IOException {
+        // WHEN we generate two corpora with different seeds:
+        File firstDir = new File(tempDir, "first");
+        File secondDir = new File(tempDir, "second");
+        new CorpusGenerator(1).setNoteCount(100).generate(firstDir);
+        new CorpusGenerator(2).setNoteCount(100).generate(secondDir);
+
+        // THEN they should differ:
+        assertNotEquals(readTree(firstDir), readTree(secondDir));
+    }
+
+    @Test
+    void generateNotes_shouldRespectConfiguration() {
+        // GIVEN a generator with a narrow year span, a tiny vocabulary, and short notes:
+        CorpusGenerator generator = new CorpusGenerator(99)
+                .setNoteCount(2000)
+                .setYearSpan(2020, 2021)
+                .setTagVocabulary(List.of("alpha", "beta", "gamma"))
+                .setMaxTagsPerNote(2)
+                .setDatedFraction(0.5)
+                .setBodyLines(2, 4);
+
+        // WHEN we generate the notes in memory:
+        List<Note> notes = generator.generateNotes();
+
+        // THEN every note should fit within that configuration:
+        assertEquals(2000, notes.size());
+        int datedCount = 0;
+        for (Note note : notes) {
+            if (note.hasDate()) {
+                datedCount++;
+                int year = note.getDate().getYear();
+                assertTrue(year == 2020 || year == 2021, "Unexpected year: " + year);
+            }
+            assertFalse(note.getNonDateTags().isEmpty());
+            assertTrue(note.getText().split(System.lineSeparator()).length <= 4);
+            assertFalse(note.isDirty());
+        }
+
+        // AND roughly half of them should be dated:
+        assertTrue(datedCount > 800 && datedCount < 1200, "Unexpected dated count: " + datedCount);
+    }
+
+    @Test
+    void generateNotes_withManyCollisions_shouldStillGiveEachNoteItsOwnFile() {
+        // GIVEN a generator where almost every note would land in the same place:
+        CorpusGenerator generator = new CorpusGenerator(3)
+                .setNoteCount(200)
+                .setTagVocabulary(List.of("only"))
+                .setDatedFraction(0);
+
+        // WHEN we generate the notes:
+        List<Note> notes = generator.generateNotes();
+
+        // THEN they should all still have different save locations:
+        File dataDir = new File(tempDir, "data");
+        long uniqueLocations = notes.stream().map(note -> SnotesIO.computeFile(dataDir, note)).distinct().count();
+        assertEquals(200, uniqueLocations);
+    }
+
+    @Test
+    void generate_withNonEmptyDirectory_shouldRefuse() throws IOException {
+        // GIVEN a directory that already has something in it:
+        File dataDir = new File(tempDir, "data");
+        assertTrue(dataDir.mkdirs());
+        Files.writeString(new File(dataDir, "existing.txt").toPath(), "Someone's real note");
+
+        // WHEN we try to generate into it, THEN it should be refused:
+        assertThrows(IOException.class, () -> new CorpusGenerator(1).setNoteCount(10).generate(dataDir));
+    }
+
+    @Test
+    void setters_withInvalidValues_shouldThrow() {
+        CorpusGenerator generator = new CorpusGenerator(1);
+        assertThrows(IllegalArgumentException.class, () -> generator.setNoteCount(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.setYearSpan(2024, 2015));
+        assertThrows(IllegalArgumentException.class, () -> generator.setTagVocabulary(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> generator.setDatedFraction(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.setBodyLines(10, 5));
+    }
+
+    /**
+     * Returns the relative path and content of every file under the given directory.
+     */
+    private static Map<String, String> readTree(File dir) throws IOException {
+        Map<String, String> tree = new TreeMap<>();
+        Path root = dir.toPath();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                tree.put(root.relativize(path).toString(), Files.readString(path));
+            }
+        }
+        return tree;
+    }
+}
@@ -2,6 +2,7 @@ package ca.corbett.snotes.io;
 
 import ca.corbett.snotes.model.Note;
 import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.Tag;
 import ca.corbett.snotes.model.Template;
 import ca.corbett.snotes.model.YMDDate;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,12 +13,19 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -488,6 +496,115 @@ class DataManagerTest {
         assertTrue(content.contains("Updated by saveAll"));
     }
 
+    @Test
+    void saveAll_withTouchedButUnchangedNote_shouldNotRewriteFile() throws IOException {
+        // GIVEN a saved note that is then "edited" back to the same content:
+        Note note = dataManager.newNote();
+        note.tag("saveall-unchanged-test");
+        note.setText("Stable content");
+        dataManager.save(note);
+        File noteFile = note.getSourceFile();
+        assertTrue(noteFile.setLastModified(1_000_000_000_000L));
+        note.clearAllTags();
+        note.tag("saveall-unchanged-test");
+        note.setText("Stable content");
+        assertTrue(note.isDirty());
+
+        // WHEN we call saveAll:
+        dataManager.saveAll();
+
+        // THEN the note should be clean, and its file untouched:
+        assertFalse(note.isDirty());
+        assertEquals(1_000_000_000_000L, noteFile.lastModified());
+    }
+
+    @Test
+    void save_withTouchedButUnchangedNote_shouldNotRewriteFile() throws IOException {
+        // GIVEN a saved note that is then "edited" back to the same content:
+        Note note = dataManager.newNote();
+        note.tag("save-unchanged-test");
+        note.setText("Stable content");
+        dataManager.save(note);
+        File noteFile = note.getSourceFile();
+        assertTrue(noteFile.setLastModified(1_000_000_000_000L));
+        note.setText("Stable content");
+
+        // WHEN we save it:
+        dataManager.save(note);
+
+        // THEN the file should be untouched:
+        assertFalse(note.isDirty());
+        assertEquals(noteFile, note.getSourceFile());
+        assertEquals(1_000_000_000_000L, noteFile.lastModified());
+    }
+
+    @Test
+    void saveAll_withManyDirtyNotes_shouldSaveAllAndLeaveNoTempFiles() throws IOException {
+        // GIVEN several saved notes in the same directory that are then modified:
+        List<Note> testNotes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Note note = dataManager.newNote();
+            note.setDate(new YMDDate("2021-06-15"));
+            note.tag("batch" + i);
+            note.setText("Original " + i);
+            dataManager.save(note);
+            note.setText("Batch saved " + i);
+            testNotes.add(note);
+        }
+
+        // WHEN we call saveAll:
+        dataManager.saveAll();
+
+        // THEN every note should be clean and have its new content on disk:
+        for (int i = 0; i < testNotes.size(); i++) {
+            Note note = testNotes.get(i);
+            assertFalse(note.isDirty());
+            assertTrue(Files.readString(note.getSourceFile().toPath()).contains("Batch saved " + i));
+        }
+
+        // AND no temp files should be left in the target directory:
+        File dayDir = testNotes.get(0).getSourceFile().getParentFile();
+        File[] tempFiles = dayDir.listFiles((dir, name) -> name.endsWith("." + SnotesIO.TEMP_EXTENSION));
+        assertNotNull(tempFiles);
+        assertEquals(0, tempFiles.length);
+    }
+
+    @Test
+    void saveAll_withCollidingNotes_shouldSaveOthersAndThrow() throws IOException {
+        // GIVEN two saved notes, one of which is then retagged to collide with the other:
+        // (they must be dated, as undated notes are always saved back to their existing static file)
+        YMDDate date = new YMDDate("2022-03-04");
+        Note note1 = dataManager.newNote();
+        note1.setDate(date);
+        note1.tag("collide-target");
+        note1.setText("Note one");
+        dataManager.save(note1);
+        Note note2 = dataManager.newNote();
+        note2.setDate(date);
+        note2.tag("collide-source");
+        note2.setText("Note two");
+        dataManager.save(note2);
+        note2.untag("collide-source");
+        note2.tag("collide-target");
+
+        // AND a third note that is dirty but does not collide:
+        Note note3 = dataManager.newNote();
+        note3.tag("innocent-bystander");
+        note3.setText("Note three");
+        dataManager.save(note3);
+        note3.setText("Note three, updated");
+
+        // WHEN we call saveAll:
+        // THEN it should report the collision:
+        assertThrows(IOException.class, () -> dataManager.saveAll());
+
+        // AND the colliding note should still be dirty, while the other was saved:
+        assertTrue(note2.isDirty());
+        assertFalse(note3.isDirty());
+        assertTrue(Files.readString(note3.getSourceFile().toPath()).contains("Note three, updated"));
+        assertTrue(Files.readString(note1.getSourceFile().toPath()).contains("Note one"));
+    }
+
     @Test
     void saveAll_withNoNotes_shouldCompleteWithoutError() {
         // GIVEN a fresh DataManager with no notes:
@@ -498,10 +615,338 @@ class DataManagerTest {
         assertDoesNotThrow(() -> dataManager.saveAll());
     }
 
+    // -----------------------------------------------------------------------
+    // asynchronous save tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    void saveScratchAsync_shouldWriteInBackgroundAndNotifyListener() throws Exception {
+        // GIVEN a dirty scratch note:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("async-scratch");
+        scratchNote.setText("Written in the background");
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean succeeded = new AtomicBoolean(false);
+
+        // WHEN we save it asynchronously:
+        dataManager.saveScratchAsync(scratchNote, new DataManager.SaveListener() {
+            @Override
+            public void saveComplete(Note note) {
+                succeeded.set(true);
+                latch.countDown();
+            }
+
+            @Override
+            public void saveFailed(Note note, IOException ioe) {
+                latch.countDown();
+            }
+        });
+
+        // THEN the note should be marked clean right away:
+        assertFalse(scratchNote.isDirty());
+
+        // AND the listener should eventually hear about a successful save:
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(succeeded.get());
+        String content = Files.readString(scratchNote.getSourceFile().toPath());
+        assertTrue(content.contains("Written in the background"));
+    }
+
+    @Test
+    void saveAsync_scratchNote_shouldPromoteImmediatelyAndWriteOnFlush() throws IOException {
+        // GIVEN a scratch note:
+        Note note = dataManager.newNote();
+        note.tag("async-promote");
+        note.setText("Promoted in the background");
+        File scratchFile = note.getSourceFile();
+
+        // WHEN we save it asynchronously:
+        dataManager.saveAsync(note, DataManager.CollisionStrategy.ABORT, null);
+
+        // THEN it should be promoted in memory right away:
+        assertTrue(dataManager.getNotes().contains(note));
+        assertFalse(dataManager.getScratchNotes().contains(note));
+        assertFalse(note.isDirty());
+
+        // AND once flushed, the new file should exist and the scratch file should be gone:
+        assertTrue(dataManager.flushPendingSaves());
+        assertTrue(Files.readString(note.getSourceFile().toPath()).contains("Promoted in the background"));
+        assertFalse(scratchFile.exists());
+    }
+
+    @Test
+    void saveAsync_repeatedSaves_shouldEndWithLatestContent() throws IOException {
+        // GIVEN a saved note:
+        Note note = dataManager.newNote();
+        note.tag("async-repeat");
+        dataManager.save(note);
+
+        // WHEN we save it asynchronously many times in a row:
+        for (int i = 0; i < 20; i++) {
+            note.setText("Revision " + i);
+            dataManager.saveAsync(note, DataManager.CollisionStrategy.ABORT, null);
+        }
+        assertTrue(dataManager.flushPendingSaves());
+
+        // THEN the file should contain the last revision:
+        String content = Files.readString(note.getSourceFile().toPath());
+        assertTrue(content.contains("Revision 19"));
+    }
+
+    @Test
+    void delete_afterSaveAsync_shouldNotResurrectFile() throws IOException {
+        // GIVEN a note with an asynchronous save queued:
+        Note note = dataManager.newNote();
+        note.tag("async-delete");
+        dataManager.saveAsync(note, DataManager.CollisionStrategy.ABORT, null);
+        File savedFile = note.getSourceFile();
+
+        // WHEN we delete it straight away:
+        dataManager.delete(note);
+        dataManager.flushPendingSaves();
+
+        // THEN the file should not exist:
+        assertFalse(savedFile.exists());
+    }
+
+    @Test
+    void shutdown_shouldFlushQueuedSavesAndRejectNewOnes() throws IOException {
+        // GIVEN a scratch note with an asynchronous save queued:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("async-shutdown");
+        scratchNote.setText("Flushed on shutdown");
+        dataManager.saveScratchAsync(scratchNote, null);
+
+        // WHEN we shut down:
+        assertTrue(dataManager.shutdown());
+
+        // THEN the queued save should have landed:
+        assertTrue(Files.readString(scratchNote.getSourceFile().toPath()).contains("Flushed on shutdown"));
+
+        // AND further asynchronous saves should be refused:
+        scratchNote.setText("Too late");
+        assertThrows(IOException.class, () -> dataManager.saveScratchAsync(scratchNote, null));
+    }
+
+    // -----------------------------------------------------------------------
+    // scratch journal tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    void flushScratchJournal_thenRecover_shouldRestoreUnsavedEdits() throws IOException {
+        // GIVEN a scratch note that has been saved once, and then edited via its journal:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("journaled");
+        scratchNote.setText("Saved text");
+        dataManager.saveScratch(scratchNote);
+        ScratchJournal journal = dataManager.openScratchJournal(scratchNote, "", "journaled", "Saved text");
+        assertNotNull(journal);
+        journal.recordInsert(10, " plus unsaved edits");
+        journal.recordHeader("2021-07-08", "journaled, more");
+        dataManager.flushScratchJournal(scratchNote, "2021-07-08", "journaled, more", () -> "unused");
+        assertTrue(dataManager.flushPendingSaves());
+
+        // WHEN we "restart" and load the scratch file, then recover from its journal:
+        DataManager restarted = new DataManager(tempDir);
+        Note loaded = SnotesIO.loadNote(scratchNote.getSourceFile());
+        assertTrue(restarted.recoverFromJournal(loaded));
+
+        // THEN the unsaved edits should be back:
+        assertEquals("Saved text plus unsaved edits", loaded.getText());
+        assertEquals("2021-07-08", loaded.getDate().toString());
+        assertTrue(loaded.hasTag("more"));
+        assertTrue(loaded.isDirty());
+    }
+
+    @Test
+    void saveScratch_withJournal_shouldCompactJournal() throws IOException {
+        // GIVEN a scratch note with a journal on disk:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("compact");
+        ScratchJournal journal = dataManager.openScratchJournal(scratchNote, "", "compact", "");
+        journal.recordInsert(0, "edits");
+        dataManager.flushScratchJournal(scratchNote, "", "compact", () -> "edits");
+        assertTrue(dataManager.flushPendingSaves());
+        assertTrue(journal.getJournalFile().exists());
+
+        // WHEN the note is fully saved:
+        scratchNote.setText("edits");
+        dataManager.saveScratch(scratchNote);
+
+        // THEN the journal should be gone, and the next batch of edits should start a new one:
+        assertFalse(journal.getJournalFile().exists());
+        assertTrue(journal.isStartingNewJournal());
+    }
+
+    @Test
+    void saveScratchAsync_withJournal_shouldRemoveJournalAfterWriting() throws IOException {
+        // GIVEN a scratch note with a journal on disk:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("compact-async");
+        ScratchJournal journal = dataManager.openScratchJournal(scratchNote, "", "compact-async", "");
+        journal.recordInsert(0, "edits");
+        dataManager.flushScratchJournal(scratchNote, "", "compact-async", () -> "edits");
+
+        // WHEN the note is saved in the background:
+        scratchNote.setText("edits");
+        dataManager.saveScratchAsync(scratchNote, null);
+        assertTrue(dataManager.flushPendingSaves());
+
+        // THEN the scratch file should be up to date and the journal should be gone:
+        assertTrue(Files.readString(scratchNote.getSourceFile().toPath()).contains("edits"));
+        assertFalse(journal.getJournalFile().exists());
+    }
+
+    @Test
+    void save_scratchNoteWithJournal_shouldRemoveJournalOnPromotion() throws IOException {
+        // GIVEN a scratch note with a journal on disk:
+        Note scratchNote = dataManager.newNote();
+        scratchNote.tag("promote-journal");
+        ScratchJournal journal = dataManager.openScratchJournal(scratchNote, "", "promote-journal", "");
+        journal.recordInsert(0, "edits");
+        dataManager.flushScratchJournal(scratchNote, "", "promote-journal", () -> "edits");
+
+        // WHEN it is promoted to a real note:
+        scratchNote.setText("edits");
+        dataManager.save(scratchNote);
+
+        // THEN its journal should be gone:
+        assertFalse(journal.getJournalFile().exists());
+    }
+
+    @Test
+    void prepareScratchJournals_shouldRemoveOrphansAndRecoverEmptyScratchFiles() throws IOException {
+        // GIVEN an orphaned journal, and a journal whose scratch file was never written:
+        File scratchDir = new File(tempDir, DataManager.SCRATCH_DIR);
+        assertTrue(scratchDir.mkdirs());
+        File orphanJournal = ScratchJournal.journalFileFor(new File(scratchDir, "gone.txt"));
+        writeJournal(orphanJournal, "orphaned");
+        File emptyScratch = new File(scratchDir, "empty.txt");
+        assertTrue(emptyScratch.createNewFile());
+        writeJournal(ScratchJournal.journalFileFor(emptyScratch), "only in the journal");
+
+        // WHEN we prepare the scratch directory for loading:
+        dataManager.prepareScratchJournals();
+
+        // THEN the orphan should be gone, and the empty scratch file should now hold the journaled text:
+        assertFalse(orphanJournal.exists());
+        assertTrue(emptyScratch.length() > 0);
+        assertTrue(SnotesIO.loadNote(emptyScratch).getText().contains("only in the journal"));
+    }
+
+    private static void writeJournal(File journalFile, String text) throws IOException {
+        ScratchJournal journal = new ScratchJournal(journalFile, "", "scratch", "");
+        journal.recordInsert(0, text);
+        journal.write(journal.drainRecords("", "scratch", () -> text), true);
+    }
+
     // -----------------------------------------------------------------------
     // loadAll tests
     // -----------------------------------------------------------------------
 
+    @Test
+    void loadAllNow_shouldLoadEverythingBeforeReturning() throws IOException {
+        // GIVEN a data directory with a note, a scratch note, and a query in it:
+        Note note = dataManager.newNote();
+        note.setDate(new YMDDate("2024-03-04"));
+        note.tag("loaded");
+        note.setText("Loaded synchronously");
+        dataManager.save(note);
+        Note scratch = dataManager.newNote();
+        scratch.tag("scratch");
+        scratch.setText("Still scratch");
+        dataManager.saveScratch(scratch);
+        Query query = new Query();
+        query.setName("Loaded query");
+        dataManager.saveQuery(query);
+
+        // WHEN a fresh DataManager loads it without any UI:
+        DataManager loaded = new DataManager(tempDir);
+        loaded.loadAllNow();
+
+        // THEN everything should be there already:
+        assertEquals(1, loaded.getNotes().size());
+        assertTrue(loaded.getNotes().get(0).hasTag("loaded"));
+        assertEquals(1, loaded.getScratchNotes().size());
+        assertEquals(1, loaded.getQueries().size());
+    }
+
+    @Test
+    void loadAllNow_withPreload_shouldUsePreloadedNotes() throws IOException {
+        // GIVEN a data directory with both packed and loose notes in it, which has been preloaded:
+        TestNotes.save(dataManager, "2010-06-01", "Note tagged packed", "packed");
+        TestNotes.save(dataManager, "2024-06-01", "Note tagged loose", "loose");
+        dataManager.packYear(2010);
+        NotePreload preload = NotePreload.start(tempDir, SnotesIO.NO_LARGE_NOTES);
+        assertNotNull(preload);
+        preload.getNotes().join();
+
+        // WHEN a note is added after preloading finished, and then a fresh DataManager loads with the preload:
+        TestNotes.save(dataManager, "2024-06-02", "Note tagged late", "late");
+        DataManager loaded = new DataManager(tempDir);
+        loaded.setNotePreload(preload);
+        loaded.loadAllNow();
+
+        // THEN we should get exactly the preloaded notes, packed ones included, and nothing twice:
+        assertEquals(2, loaded.getNotes().size());
+        assertTrue(loaded.getNotes().stream().anyMatch(n -> n.hasTag("packed")));
+        assertTrue(loaded.getNotes().stream().anyMatch(n -> n.hasTag("loose")));
+
+        // AND the preload should only be used once:
+        loaded.loadAllNow();
+        assertEquals(3, loaded.getNotes().size());
+    }
+
+    @Test
+    void loadAllNow_withPreloadForDifferentSettings_shouldIgnorePreload() throws IOException {
+        // GIVEN a preload that was made with a different large note threshold than ours:
+        TestNotes.save(dataManager, "2024-06-01", "Note tagged first", "first");
+        NotePreload preload = NotePreload.start(tempDir, 1024);
+        assertNotNull(preload);
+        preload.getNotes().join();
+        TestNotes.save(dataManager, "2024-06-02", "Note tagged second", "second");
+
+        // WHEN a fresh DataManager loads with it:
+        DataManager loaded = new DataManager(tempDir);
+        loaded.setNotePreload(preload);
+        loaded.loadAllNow();
+
+        // THEN it should have loaded everything itself:
+        assertEquals(2, loaded.getNotes().size());
+    }
+
+    @Test
+    void loadAllNow_withFailedPreload_shouldScanInstead() throws IOException {
+        // GIVEN a data directory with both packed and loose notes in it, whose preload failed:
+        TestNotes.save(dataManager, "2010-06-01", "Note tagged packed", "packed");
+        TestNotes.save(dataManager, "2024-06-01", "Note tagged loose", "loose");
+        dataManager.packYear(2010);
+        NotePreload preload = NotePreload.failed(tempDir, SnotesIO.NO_LARGE_NOTES, new OutOfMemoryError("test"));
+
+        // WHEN a fresh DataManager loads with it:
+        DataManager loaded = new DataManager(tempDir);
+        loaded.setNotePreload(preload);
+        loaded.loadAllNow();
+
+        // THEN it should have loaded everything itself, packed notes included:
+        assertEquals(2, loaded.getNotes().size());
+        assertTrue(loaded.getNotes().stream().anyMatch(n -> n.hasTag("packed")));
+        assertTrue(loaded.getNotes().stream().anyMatch(n -> n.hasTag("loose")));
+    }
+
+    @Test
+    void notePreload_withMissingDir_shouldNotStart() {
+        // GIVEN a data directory that doesn't exist yet:
+        File missingDir = new File(tempDir, "not-created-yet");
+
+        // WHEN we try to preload it:
+        NotePreload preload = NotePreload.start(missingDir, SnotesIO.NO_LARGE_NOTES);
+
+        // THEN there should be nothing to preload, and nothing should have been created:
+        assertNull(preload);
+        assertFalse(missingDir.exists());
+    }
+
     @Test
     void loadAll_withNullDir_shouldThrowIOException() {
         // WHEN we try to load from a null directory:
@@ -988,4 +1433,63 @@ class DataManagerTest {
         assertEquals(3, years.size(), "Expected getUniqueYears to return a list with three unique years");
         assertEquals(List.of(2021, 2022, 2023), years, "Expected the unique years to be [2021, 2022, 2023]");
     }
-}
\ No newline at end of file
+
+    // -----------------------------------------------------------------------
+    // note change tests
+    // -----------------------------------------------------------------------
+
+    @Test
+    void save_withNewDateAndTag_shouldReportOldAndNewFileAndTags() throws IOException {
+        // GIVEN a saved Note, and a listener that has caught up:
+        Note note = dataManager.newNote();
+        note.tag("before");
+        note.setText("Moving note");
+        dataManager.save(note);
+        File oldFile = note.getSourceFile();
+        List<NoteChange> changes = Collections.synchronizedList(new ArrayList<>());
+        dataManager.addNoteChangeListener(changes::addAll);
+        assertTrue(dataManager.flushNoteChanges());
+        changes.clear();
+
+        // WHEN we give it a date and a different tag, and save it again:
+        note.untag("before").tag("after");
+        note.setDate(new YMDDate("2022-03-04"));
+        dataManager.save(note);
+        assertTrue(dataManager.flushNoteChanges());
+
+        // THEN we should hear about where it was and where it went:
+        assertEquals(1, changes.size());
+        NoteChange change = changes.get(0);
+        assertEquals(NoteChange.Kind.UPDATED, change.getKind());
+        assertSame(note, change.getNote());
+        assertEquals(oldFile, change.getOldFile());
+        assertEquals(note.getSourceFile(), change.getNewFile());
+        assertTrue(change.isMoved());
+        assertEquals(List.of(new Tag("before")), change.getOldTags());
+        assertTrue(change.getNewTags().contains(new Tag("after")));
+    }
+
+    @Test
+    void delete_shouldReportRemoved() throws IOException {
+        // GIVEN a saved Note and a listener:
+        Note note = dataManager.newNote();
+        note.tag("doomed");
+        note.setText("Short-lived note");
+        dataManager.save(note);
+        List<NoteChange> changes = Collections.synchronizedList(new ArrayList<>());
+        dataManager.addNoteChangeListener(changes::addAll);
+        assertTrue(dataManager.flushNoteChanges());
+        changes.clear();
+
+        // WHEN we delete it:
+        File oldFile = note.getSourceFile();
+        dataManager.delete(note);
+        assertTrue(dataManager.flushNoteChanges());
+
+        // THEN we should hear that it's gone, and from where:
+        assertEquals(1, changes.size());
+        assertEquals(NoteChange.Kind.REMOVED, changes.get(0).getKind());
+        assertEquals(oldFile, changes.get(0).getOldFile());
+        assertNull(changes.get(0).getNewFile());
+    }
+}
@@ -0,0 +1,287 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.YMDDate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LargeNoteBodyTest {
+
+    private static final int SMALL_PAGE_SIZE = 64;
+
+    @TempDir
+    File dataDir;
+
+    DataManager dataManager;
+
+    @BeforeEach
+    void setup() {
+        dataManager = new DataManager(dataDir);
+    }
+
+    @Test
+    void loadNote_overThreshold_shouldLoadLazilyWithSameText() throws IOException {
+        // GIVEN a note file that is bigger than our threshold:
+        File file = writeNoteFile("big.txt", "#2024-01-01 #log", 50);
+
+        // WHEN we load it with and without a threshold:
+        Note full = SnotesIO.loadNote(file);
+        Note lazy = SnotesIO.loadNote(file, 100);
+
+        // THEN only the second should be lazy, but both should look the same:
+        assertFalse(SnotesIO.isLargeNote(full));
+        assertTrue(SnotesIO.isLargeNote(lazy));
+        assertFalse(lazy.isDirty());
+        assertEquals(full.getTags(), lazy.getTags());
+        assertEquals(full.getText(), lazy.getText());
+        assertEquals(file, lazy.getSourceFile());
+    }
+
+    @Test
+    void open_shouldSplitBodyIntoPagesOnLineBreaks() throws IOException {
+        // GIVEN a note file with many lines:
+        File file = writeNoteFile("paged.txt", "#log", 20);
+
+        // WHEN we open it with a small page size:
+        LargeNoteBody body = LargeNoteBody.open(file, SMALL_PAGE_SIZE);
+
+        // THEN there should be several pages, each of them whole lines, adding up to the whole text:
+        assertTrue(body.getPageCount() > 1);
+        StringBuilder all = new StringBuilder();
+        for (int page = 0; page < body.getPageCount(); page++) {
+            String text = body.readPage(page);
+            assertTrue(text.endsWith("\n"), "page " + page);
+            all.append(text);
+        }
+        assertEquals(bodyOf(20), all.toString());
+        assertEquals("#log", body.getSavedTagLine());
+    }
+
+    @Test
+    void getLengthEstimate_shouldTrackTextLengthWithoutReadingIt() throws IOException {
+        // GIVEN a large note with several pages:
+        File file = writeNoteFile("length.txt", "#log", 20);
+        LargeNoteBody body = LargeNoteBody.open(file, SMALL_PAGE_SIZE);
+        String firstPage = body.readPage(0);
+
+        // WHEN we estimate its length before and after editing a page:
+        long before = body.getLengthEstimate();
+        body.setPage(0, "Short\n");
+        long after = body.getLengthEstimate();
+
+        // THEN it should match the text, and follow the edit:
+        assertEquals(bodyOf(20).length(), before);
+        assertEquals(before - firstPage.length() + "Short\n".length(), after);
+    }
+
+    @Test
+    void saveNote_withEditedPage_shouldSpliceItIn() throws IOException {
+        // GIVEN a large note with one edited page:
+        File file = writeNoteFile("edited.txt", "#log", 20);
+        Note note = openLargeNote(file);
+        LargeNoteBody body = dataManager.getLargeNoteBody(note);
+        String firstPage = body.readPage(0);
+        String lastPage = body.readPage(body.getPageCount() - 1);
+        body.setPage(1, "Replaced page\n");
+        note.markDirty();
+
+        // WHEN we save it:
+        SnotesIO.saveNote(note, file);
+
+        // THEN the file should hold the edit, with the other pages untouched:
+        String reloaded = SnotesIO.loadNote(file).getText().replace(System.lineSeparator(), "\n");
+        assertTrue(reloaded.startsWith(firstPage + "Replaced page\n"));
+        assertTrue(reloaded.endsWith(lastPage));
+        assertFalse(body.isModified());
+        assertFalse(note.isDirty());
+
+        // AND the note should still be readable page by page from the new file:
+        assertEquals("Replaced page\n", body.readPage(1));
+        assertEquals(lastPage, body.readPage(body.getPageCount() - 1));
+    }
+
+    @Test
+    void saveNote_withEditMissingLineBreak_shouldNotJoinPages() throws IOException {
+        // GIVEN an edited page whose last line break has been deleted:
+        File file = writeNoteFile("joined.txt", "#log", 20);
+        Note note = openLargeNote(file);
+        LargeNoteBody body = dataManager.getLargeNoteBody(note);
+        String secondPage = body.readPage(1);
+        body.setPage(0, "No line break");
+
+        // WHEN we save it:
+        SnotesIO.saveNote(note, file);
+
+        // THEN the next page should still start on a line of its own:
+        String reloaded = SnotesIO.loadNote(file).getText().replace(System.lineSeparator(), "\n");
+        assertTrue(reloaded.startsWith("No line break\n" + secondPage));
+    }
+
+    @Test
+    void saveNote_withNoChanges_shouldNotRewriteFile() throws IOException {
+        // GIVEN a large note that hasn't been changed:
+        File file = writeNoteFile("unchanged.txt", "#log", 20);
+        assertTrue(file.setLastModified(1_000_000_000L));
+        Note note = openLargeNote(file);
+        note.markDirty(); // touched, but not changed
+
+        // WHEN we save it:
+        SnotesIO.saveNote(note, file);
+
+        // THEN the file should not have been touched:
+        assertEquals(1_000_000_000L, file.lastModified());
+        assertFalse(note.isDirty());
+    }
+
+    @Test
+    void save_withNewTags_shouldMoveFileWithoutReadingText() throws IOException {
+        // GIVEN a saved note that is being read lazily:
+        Note note = dataManager.newNote();
+        note.setDate(new YMDDate("2024-02-03"));
+        note.tag("log");
+        note.setText(bodyOf(20));
+        dataManager.save(note);
+        File oldFile = note.getSourceFile();
+        note.setTextSource(LargeNoteBody.open(oldFile, SMALL_PAGE_SIZE));
+        LargeNoteBody body = dataManager.getLargeNoteBody(note);
+        String expected = SnotesIO.loadNote(oldFile).getText();
+
+        // WHEN its tags are changed and it is saved:
+        note.untag("log");
+        note.tag("transcript");
+        dataManager.save(note);
+
+        // THEN it should have moved, still be large, and hold the same text:
+        assertNotEquals(oldFile, note.getSourceFile());
+        assertFalse(oldFile.exists());
+        assertSame(body, dataManager.getLargeNoteBody(note));
+        Note reloaded = SnotesIO.loadNote(note.getSourceFile());
+        assertTrue(reloaded.hasTag("transcript"));
+        assertEquals(expected, reloaded.getText());
+    }
+
+    @Test
+    void packYear_shouldReadLargeNotesIntoMemoryFirst() throws IOException {
+        // GIVEN a large note in a past year:
+        Note note = dataManager.newNote();
+        note.setDate(new YMDDate("2016-05-06"));
+        note.tag("log");
+        note.setText(bodyOf(20));
+        dataManager.save(note);
+        note.setTextSource(LargeNoteBody.open(note.getSourceFile(), SMALL_PAGE_SIZE));
+        String expected = note.getText();
+
+        // WHEN that year is packed (which removes the loose file):
+        dataManager.packYear(2016);
+
+        // THEN the note should no longer depend on the file, and still be clean with the same text:
+        assertNull(dataManager.getLargeNoteBody(note));
+        assertEquals(expected, note.getText());
+        assertFalse(note.isDirty());
+        assertTrue(SnotesIO.isUnchanged(note, note.getSourceFile()));
+    }
+
+    @Test
+    void saveAsync_withEditedPage_shouldSpliceOnSaveThread() throws IOException {
+        // GIVEN a saved large note with an edited page and new tags:
+        Note note = dataManager.newNote();
+        note.setDate(new YMDDate("2024-03-04"));
+        note.tag("log");
+        note.setText(bodyOf(20));
+        dataManager.save(note);
+        File oldFile = note.getSourceFile();
+        note.setTextSource(LargeNoteBody.open(oldFile, SMALL_PAGE_SIZE));
+        LargeNoteBody body = dataManager.getLargeNoteBody(note);
+        body.setPage(1, "Replaced page\n");
+        note.untag("log");
+        note.tag("transcript");
+
+        // WHEN we save it in the background:
+        dataManager.saveAsync(note, DataManager.CollisionStrategy.ABORT, null);
+
+        // THEN the bookkeeping should be done right away:
+        assertFalse(note.isDirty());
+        assertNotEquals(oldFile, note.getSourceFile());
+
+        // AND once the write has landed, the file should have moved and hold the edit:
+        assertTrue(dataManager.flushPendingSaves());
+        assertFalse(oldFile.exists());
+        assertFalse(body.isModified());
+        assertSame(body, dataManager.getLargeNoteBody(note));
+        Note reloaded = SnotesIO.loadNote(note.getSourceFile());
+        assertTrue(reloaded.hasTag("transcript"));
+        assertTrue(reloaded.getText().replace(System.lineSeparator(), "\n").contains("Replaced page\n"));
+    }
+
+    @Test
+    void packYear_withLargeNoteOpenInEditor_shouldRefuse() throws IOException {
+        // GIVEN a large note in a past year, whose pages are open in an editor:
+        Note note = dataManager.newNote();
+        note.setDate(new YMDDate("2015-05-06"));
+        note.tag("log");
+        note.setText(bodyOf(20));
+        dataManager.save(note);
+        note.setTextSource(LargeNoteBody.open(note.getSourceFile(), SMALL_PAGE_SIZE));
+        LargeNoteBody body = dataManager.openLargeNoteBody(note);
+
+        // WHEN we try to pack that year, THEN it should be refused, and the editor's pages left alone:
+        assertThrows(IOException.class, () -> dataManager.packYear(2015));
+        assertSame(body, dataManager.getLargeNoteBody(note));
+        assertTrue(note.getSourceFile().exists());
+
+        // AND once the editor is done with it, the year can be packed:
+        dataManager.closeLargeNoteBody(note);
+        assertEquals(1, dataManager.packYear(2015));
+        assertNull(dataManager.getLargeNoteBody(note));
+    }
+
+    @Test
+    void setText_onLargeNote_shouldDropTextSource() throws IOException {
+        // GIVEN a lazily-loaded note:
+        Note note = SnotesIO.loadNote(writeNoteFile("replaced.txt", "#log", 20), 100);
+
+        // WHEN its text is appended to, THEN the whole text should be pulled into memory first:
+        String original = note.getText();
+        note.append("More");
+        assertFalse(SnotesIO.isLargeNote(note));
+        assertEquals(original + "More", note.getText());
+    }
+
+    private Note openLargeNote(File file) throws IOException {
+        LargeNoteBody body = LargeNoteBody.open(file, SMALL_PAGE_SIZE);
+        Note note = SnotesIO.parseNote(List.of(body.getSavedTagLine()), file.getName());
+        note.setTextSource(body);
+        note.setSourceFile(file);
+        note.markClean();
+        return note;
+    }
+
+    private File writeNoteFile(String name, String tagLine, int lineCount) throws IOException {
+        File file = new File(dataDir, name);
+        Files.writeString(file.toPath(), tagLine + "\n\n" + bodyOf(lineCount), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String bodyOf(int lineCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            sb.append("This is line number ").append(i).append(" of the log.\n");
+        }
+        return sb.toString();
+    }
+}
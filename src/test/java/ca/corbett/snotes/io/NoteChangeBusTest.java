@@ -0,0 +1,192 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteChangeBusTest {
+
+    NoteChangeBus bus;
+    Recorder recorder;
+
+    @BeforeEach
+    void setup() {
+        // A delay long enough that nothing is delivered until we flush:
+        bus = new NoteChangeBus(TimeUnit.HOURS.toMillis(1));
+        recorder = new Recorder();
+        bus.subscribe(recorder);
+        flush();
+    }
+
+    @AfterEach
+    void teardown() {
+        bus.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void noteChanged_severalTimes_shouldBeCombinedIntoOneUpdate() {
+        // GIVEN a Note that we already know about:
+        Note note = note("a.txt", "first");
+        bus.noteChanged(note);
+        flush();
+        recorder.batches.clear();
+
+        // WHEN it is saved several times, moving and changing its tags each time:
+        note.setSourceFile(new File("b.txt"));
+        note.untag("first").tag("second");
+        bus.noteChanged(note);
+        note.setSourceFile(new File("c.txt"));
+        note.untag("second").tag("third");
+        bus.noteChanged(note);
+        flush();
+
+        // THEN we should hear about it once, from where it started to where it ended up:
+        assertEquals(1, recorder.batches.size());
+        NoteChange change = recorder.batches.get(0).get(0);
+        assertEquals(NoteChange.Kind.UPDATED, change.getKind());
+        assertEquals(new File("a.txt"), change.getOldFile());
+        assertEquals(new File("c.txt"), change.getNewFile());
+        assertEquals(List.of(new Tag("first")), change.getOldTags());
+        assertEquals(List.of(new Tag("third")), change.getNewTags());
+        assertTrue(change.isMoved());
+    }
+
+    @Test
+    void noteChanged_thenRemoved_withinOneBatch_shouldNotBeDelivered() {
+        // GIVEN a Note that comes and goes before anything is delivered:
+        Note transientNote = note("gone.txt", "x");
+        Note keptNote = note("kept.txt", "y");
+        bus.noteChanged(transientNote);
+        bus.noteChanged(keptNote);
+        bus.noteRemoved(transientNote);
+
+        // WHEN we deliver:
+        flush();
+
+        // THEN only the Note that stayed should be mentioned:
+        assertEquals(1, recorder.batches.size());
+        assertEquals(1, recorder.batches.get(0).size());
+        assertSame(keptNote, recorder.batches.get(0).get(0).getNote());
+        assertEquals(NoteChange.Kind.ADDED, recorder.batches.get(0).get(0).getKind());
+        assertNull(recorder.batches.get(0).get(0).getOldFile());
+    }
+
+    @Test
+    void batches_shouldArriveInOrder_withNotesInTheOrderTheyFirstChanged() {
+        // GIVEN changes to several Notes, delivered in two batches:
+        Note first = note("1.txt", "x");
+        Note second = note("2.txt", "x");
+        bus.noteChanged(first);
+        bus.noteChanged(second);
+        bus.noteChanged(first);
+        flush();
+        bus.noteRemoved(second);
+        flush();
+
+        // THEN each batch should list its Notes in the order they first changed:
+        assertEquals(2, recorder.batches.size());
+        assertSame(first, recorder.batches.get(0).get(0).getNote());
+        assertSame(second, recorder.batches.get(0).get(1).getNote());
+        assertEquals(NoteChange.Kind.REMOVED, recorder.batches.get(1).get(0).getKind());
+        assertEquals(new File("2.txt"), recorder.batches.get(1).get(0).getOldFile());
+    }
+
+    @Test
+    void notesReplaced_shouldRemoveOldNotesAndAddNewOnes() {
+        // GIVEN two Notes that we know about:
+        Note kept = note("kept.txt", "x");
+        Note dropped = note("dropped.txt", "x");
+        bus.noteChanged(kept);
+        bus.noteChanged(dropped);
+        flush();
+        recorder.batches.clear();
+
+        // WHEN everything is replaced, as it is on a reload:
+        Note added = note("added.txt", "x");
+        bus.notesReplaced(List.of(kept, added));
+        flush();
+
+        // THEN it should all arrive as one batch:
+        assertEquals(1, recorder.batches.size());
+        List<NoteChange> batch = recorder.batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals(NoteChange.Kind.REMOVED, find(batch, dropped).getKind());
+        assertEquals(NoteChange.Kind.UPDATED, find(batch, kept).getKind());
+        assertEquals(NoteChange.Kind.ADDED, find(batch, added).getKind());
+    }
+
+    @Test
+    void subscribe_shouldStartWithEveryKnownNote() {
+        // GIVEN a Note that was reported before a second listener arrives:
+        Note note = note("known.txt", "x");
+        bus.noteChanged(note);
+        Recorder lateRecorder = new Recorder();
+
+        // WHEN the second listener subscribes:
+        bus.subscribe(lateRecorder);
+        flush();
+
+        // THEN both should have heard about the Note exactly once:
+        assertEquals(1, recorder.batches.size());
+        assertEquals(1, lateRecorder.batches.size());
+        assertSame(note, lateRecorder.batches.get(0).get(0).getNote());
+        assertEquals(NoteChange.Kind.ADDED, lateRecorder.batches.get(0).get(0).getKind());
+    }
+
+    @Test
+    void deliver_withFailingListener_shouldStillReachTheOthers() {
+        // GIVEN a listener that always throws, subscribed ahead of a working one:
+        NoteChangeBus otherBus = new NoteChangeBus(TimeUnit.HOURS.toMillis(1));
+        Recorder working = new Recorder();
+        otherBus.subscribe(changes -> {
+            throw new IllegalStateException("Broken listener");
+        });
+        otherBus.subscribe(working);
+
+        // WHEN a change is delivered:
+        otherBus.noteChanged(note("x.txt", "x"));
+        assertTrue(otherBus.flush(5, TimeUnit.SECONDS));
+
+        // THEN the working listener should still have heard about it:
+        assertEquals(1, working.batches.size());
+        otherBus.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    private void flush() {
+        assertTrue(bus.flush(5, TimeUnit.SECONDS));
+    }
+
+    private static Note note(String path, String tag) {
+        Note note = new Note();
+        note.setSourceFile(new File(path));
+        return note.tag(tag);
+    }
+
+    private static NoteChange find(List<NoteChange> batch, Note note) {
+        return batch.stream().filter(change -> change.getNote() == note).findFirst().orElseThrow();
+    }
+
+    /**
+     * Collects every batch it is given. Batches are delivered on another thread, but flush() waits for them.
+     */
+    private static class Recorder implements DataManager.NoteChangeListener {
+        private final List<List<NoteChange>> batches = new ArrayList<>();
+
+        @Override
+        public synchronized void notesChanged(List<NoteChange> changes) {
+            batches.add(new ArrayList<>(changes));
+        }
+    }
+}
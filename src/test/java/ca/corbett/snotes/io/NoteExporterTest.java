@@ -0,0 +1,209 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.extras.progress.SimpleProgressAdapter;
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.YMDDate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteExporterTest {
+
+    @TempDir
+    File tempDir;
+
+    File dataDir;
+    DataManager dataManager;
+
+    @BeforeEach
+    void setup() {
+        dataDir = new File(tempDir, "data");
+        dataManager = new DataManager(dataDir);
+    }
+
+    @Test
+    void exportNotes_toZip_shouldPreserveDataDirectoryLayout() throws IOException {
+        // GIVEN a dated note and an undated note on disk:
+        Note dated = TestNotes.save(dataManager, "2022-07-08", "Dated note text", "work");
+        Note undated = TestNotes.save(dataManager, null, "Undated note text", "recipes");
+        File target = new File(tempDir, "export.zip");
+
+        // WHEN we export them to a zip file:
+        ExportReport report = dataManager.exportNotes(List.of(dated, undated), target, DataManager.ExportFormat.ZIP);
+
+        // THEN each note should be stored under its path relative to the data directory, byte for byte:
+        assertFalse(report.hasError());
+        assertEquals(2, report.getExportedCount());
+        assertEquals(target.length(), report.getBytesWritten());
+        try (ZipFile zip = new ZipFile(target)) {
+            assertEquals(2, zip.size());
+            for (Note note : List.of(dated, undated)) {
+                String entryName = Note.getRelativePath(note, dataDir).replace(File.separatorChar, '/');
+                ZipEntry entry = zip.getEntry(entryName);
+                assertNotNull(entry, "Missing entry " + entryName);
+                byte[] expected = Files.readAllBytes(note.getSourceFile().toPath());
+                assertTrue(Arrays.equals(expected, zip.getInputStream(entry).readAllBytes()));
+            }
+            assertNotNull(zip.getEntry("2022/07/08/work.txt"));
+            assertNotNull(zip.getEntry(DataManager.STATIC_DIR + "/recipes.txt"));
+        }
+    }
+
+    @Test
+    void exportNotes_zipRoundTrip_shouldImportCleanly() throws IOException {
+        // GIVEN an exported zip file:
+        TestNotes.save(dataManager, "2020-02-03", "Round trip ☃", "travel");
+        File target = new File(tempDir, "export.zip");
+        dataManager.exportNotes(dataManager.getNotes(), target, DataManager.ExportFormat.ZIP);
+
+        // WHEN we import it into a fresh data directory:
+        DataManager other = new DataManager(new File(tempDir, "other"));
+        ImportReport report = other.importNotes(target, DataManager.CollisionStrategy.ABORT);
+
+        // THEN we should get the same note back:
+        assertEquals(1, report.getImportedCount());
+        Note imported = other.getNotes().get(0);
+        assertEquals(new YMDDate("2020-02-03"), imported.getDate());
+        assertTrue(imported.hasTag("travel"));
+        assertTrue(imported.getText().startsWith("Round trip ☃"));
+    }
+
+    @Test
+    void exportNotes_toJsonLines_shouldWriteOneNotePerLine() throws IOException {
+        // GIVEN notes with awkward content:
+        Note dated = TestNotes.save(dataManager, "2023-01-15", "Line one\nLine \"two\"\n\ttabbed ☃",
+                                    "work", "meeting");
+        Note undated = TestNotes.save(dataManager, null, "Static note", "reference");
+        File target = new File(tempDir, "export.jsonl");
+
+        // WHEN we export them to JSONL:
+        ExportReport report = dataManager.exportNotes(List.of(dated, undated), target,
+                                                      DataManager.ExportFormat.JSONL);
+
+        // THEN each line should be a complete JSON object for one note, with text matching what a load would give:
+        assertEquals(2, report.getExportedCount());
+        List<String> lines = Files.readAllLines(target.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonNode first = mapper.readTree(lines.get(0));
+        assertEquals(Note.getRelativePath(dated, dataDir).replace(File.separatorChar, '/'),
+                     first.get("path").asText());
+        assertTrue(first.get("path").asText().startsWith("2023/01/15/"));
+        assertEquals("2023-01-15", first.get("date").asText());
+        assertEquals(List.of("meeting", "work"), toList(first.get("tags")));
+        assertEquals(SnotesIO.loadNote(dated.getSourceFile()).getText(), first.get("text").asText());
+
+        JsonNode second = mapper.readTree(lines.get(1));
+        assertTrue(second.get("date").isNull());
+        assertEquals(DataManager.STATIC_DIR + "/reference.txt", second.get("path").asText());
+        assertEquals(List.of("reference"), toList(second.get("tags")));
+        assertEquals("Static note\n", second.get("text").asText());
+    }
+
+    @Test
+    void exportNotes_withDirtyNote_shouldUseInMemoryContent() throws IOException {
+        // GIVEN a saved note that has since been edited but not saved:
+        Note note = TestNotes.save(dataManager, "2021-05-05", "Original text", "draft");
+        note.setText("Edited text");
+
+        // WHEN we export it:
+        File target = new File(tempDir, "export.jsonl");
+        dataManager.exportNotes(List.of(note), target, DataManager.ExportFormat.JSONL);
+
+        // THEN the export should reflect the edit, not what's on disk:
+        JsonNode json = new ObjectMapper().readTree(Files.readAllLines(target.toPath()).get(0));
+        assertEquals("Edited text", json.get("text").asText());
+    }
+
+    @Test
+    void exportNotes_whenCanceled_shouldLeaveNothingBehind() throws IOException {
+        // GIVEN an existing file at the export target, and an export that gets canceled part way through:
+        for (int i = 0; i < 5; i++) {
+            TestNotes.save(dataManager, "2024-03-0" + (i + 1), "Note " + i, "tag" + i);
+        }
+        File target = new File(tempDir, "export.zip");
+        Files.writeString(target.toPath(), "previous export");
+        NoteExporter exporter = new NoteExporter(dataManager.getNotes(), dataDir, target,
+                                                 DataManager.ExportFormat.ZIP);
+        exporter.addProgressListener(new SimpleProgressAdapter() {
+            @Override
+            public boolean progressUpdate(int currentStep, String message) {
+                return currentStep < 2;
+            }
+        });
+
+        // WHEN we run it:
+        exporter.run();
+
+        // THEN the previous file should be untouched, with no temp files left over:
+        assertTrue(exporter.getReport().wasCanceled());
+        assertEquals("previous export", Files.readString(target.toPath()));
+        File[] leftovers = tempDir.listFiles((dir, name) -> name.endsWith("." + SnotesIO.TEMP_EXTENSION));
+        assertNotNull(leftovers);
+        assertEquals(0, leftovers.length);
+    }
+
+    @Test
+    void exportNotes_toDataDirectory_shouldThrow() {
+        // GIVEN a target inside the data directory:
+        File target = new File(dataDir, "export.zip");
+
+        // WHEN we try to export there, THEN it should be refused:
+        assertThrows(IOException.class,
+                     () -> dataManager.exportNotes(new ArrayList<>(), target, DataManager.ExportFormat.ZIP));
+    }
+
+    @Test
+    void openNoteBody_shouldMatchParsedText() throws IOException {
+        // GIVEN note files with various layouts:
+        Map<String, String> fileContents = new HashMap<>();
+        fileContents.put("standard.txt", "#tag\n\nHello\nthere\n");
+        fileContents.put("noBlank.txt", "#tag\nHello\nthere");
+        fileContents.put("crlf.txt", "#tag\r\n\r\nHello\r\nthere\r\n");
+        fileContents.put("tagOnly.txt", "#tag\n");
+        fileContents.put("indented.txt", "#tag\n  indented first line\nsecond\n");
+
+        for (Map.Entry<String, String> entry : fileContents.entrySet()) {
+            File file = new File(tempDir, entry.getKey());
+            Files.writeString(file.toPath(), entry.getValue());
+
+            // WHEN we stream the body:
+            StringWriter writer = new StringWriter();
+            try (Reader body = NoteExporter.openNoteBody(file)) {
+                body.transferTo(writer);
+            }
+
+            // THEN it should be identical to what parsing the file gives us:
+            assertEquals(SnotesIO.loadNote(file).getText(), writer.toString(), entry.getKey());
+        }
+    }
+
+    private static List<String> toList(JsonNode array) {
+        List<String> list = new ArrayList<>();
+        array.forEach(node -> list.add(node.asText()));
+        return list;
+    }
+}
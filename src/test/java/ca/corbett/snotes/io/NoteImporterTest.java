@@ -0,0 +1,200 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.YMDDate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteImporterTest {
+
+    @TempDir
+    File tempDir;
+
+    File dataDir;
+    File importDir;
+    DataManager dataManager;
+
+    @BeforeEach
+    void setup() {
+        dataDir = new File(tempDir, "data");
+        importDir = new File(tempDir, "import");
+        assertTrue(importDir.mkdirs());
+        dataManager = new DataManager(dataDir);
+    }
+
+    @Test
+    void importNotes_fromDirectory_shouldWriteAndRegisterAllNotes() throws IOException {
+        // GIVEN a directory tree of note files:
+        writeNoteFile(new File(importDir, "a.txt"), "#2020-01-02 #alpha", "First note");
+        writeNoteFile(new File(new File(importDir, "nested"), "b.txt"), "#beta", "Second note");
+        writeNoteFile(new File(importDir, "c.txt"), "#2021-03-04 #gamma #delta", "Third note");
+
+        // WHEN we import it:
+        ImportReport report = dataManager.importNotes(importDir, DataManager.CollisionStrategy.ABORT);
+
+        // THEN everything should have been written to its proper home and registered:
+        assertEquals(3, report.getFoundCount());
+        assertEquals(3, report.getImportedCount());
+        assertEquals(0, report.getFailedCount());
+        assertEquals(3, dataManager.getNotes().size());
+        for (Note note : dataManager.getNotes()) {
+            assertFalse(note.isDirty());
+            assertTrue(note.getSourceFile().exists());
+            assertTrue(note.getSourceFile().getAbsolutePath().startsWith(dataDir.getAbsolutePath()));
+            assertEquals(SnotesIO.computeFile(dataDir, note).getAbsoluteFile(), note.getSourceFile());
+        }
+        assertTrue(new File(dataDir, "static/beta.txt").exists());
+    }
+
+    @Test
+    void importNotes_fromZipArchive_shouldImportTxtEntries() throws IOException {
+        // GIVEN a zip archive with two notes and something that isn't a note:
+        File archive = new File(tempDir, "export.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            addZipEntry(zip, "notes/one.txt", "#2019-05-06 #zipped\n\nFrom the archive ☃\n");
+            addZipEntry(zip, "notes/two.txt", "#zipped-too\n\nAlso from the archive\n");
+            addZipEntry(zip, "readme.md", "not a note");
+        }
+
+        // WHEN we import it:
+        ImportReport report = dataManager.importNotes(archive, DataManager.CollisionStrategy.ABORT);
+
+        // THEN both notes should be imported, with their content intact:
+        assertEquals(2, report.getImportedCount());
+        Note dated = findByTag("zipped");
+        assertEquals(new YMDDate("2019-05-06"), dated.getDate());
+        assertTrue(dated.getText().contains("From the archive ☃"));
+    }
+
+    @Test
+    void importNotes_withCollisionAndABORT_shouldSkipOnlyTheCollidingNote() throws IOException {
+        // GIVEN an existing note, and an import containing a note that collides with it:
+        Note existing = dataManager.newNote();
+        existing.tag("taken");
+        existing.setText("Original");
+        dataManager.save(existing);
+        writeNoteFile(new File(importDir, "taken.txt"), "#taken", "Imported");
+        writeNoteFile(new File(importDir, "free.txt"), "#free", "Imported");
+
+        // WHEN we import with ABORT:
+        ImportReport report = dataManager.importNotes(importDir, DataManager.CollisionStrategy.ABORT);
+
+        // THEN the colliding note should be skipped, and the other one imported:
+        assertEquals(1, report.getImportedCount());
+        assertEquals(1, report.getSkippedCount());
+        assertEquals(1, report.getProblems().size());
+        assertTrue(Files.readString(existing.getSourceFile().toPath()).contains("Original"));
+        assertEquals(2, dataManager.getNotes().size());
+    }
+
+    @Test
+    void importNotes_withCollisionAndOVERWRITE_shouldReplaceExistingNote() throws IOException {
+        // GIVEN an existing note that collides with an imported one:
+        Note existing = dataManager.newNote();
+        existing.tag("taken");
+        existing.setText("Original");
+        dataManager.save(existing);
+        File existingFile = existing.getSourceFile();
+        writeNoteFile(new File(importDir, "taken.txt"), "#taken", "Replacement");
+
+        // WHEN we import with OVERWRITE:
+        ImportReport report = dataManager.importNotes(importDir, DataManager.CollisionStrategy.OVERWRITE);
+
+        // THEN the file should hold the imported content, and only the new note should be registered:
+        assertEquals(1, report.getOverwrittenCount());
+        assertTrue(Files.readString(existingFile.toPath()).contains("Replacement"));
+        List<Note> notes = dataManager.getNotes();
+        assertEquals(1, notes.size());
+        assertFalse(notes.contains(existing));
+    }
+
+    @Test
+    void importNotes_withCollisionsAndAPPEND_shouldMergeEverything() throws IOException {
+        // GIVEN an existing note, and two imported notes that both collide with it:
+        Note existing = dataManager.newNote();
+        existing.tag("journal");
+        existing.setText("Day one\n");
+        dataManager.save(existing);
+        writeNoteFile(new File(importDir, "1.txt"), "#journal", "Day two");
+        writeNoteFile(new File(importDir, "2.txt"), "#journal", "Day three");
+
+        // WHEN we import with APPEND:
+        ImportReport report = dataManager.importNotes(importDir, DataManager.CollisionStrategy.APPEND);
+
+        // THEN all three should be merged into one file, in order:
+        assertEquals(2, report.getAppendedCount());
+        assertEquals(1, dataManager.getNotes().size());
+        String content = Files.readString(existing.getSourceFile().toPath());
+        assertTrue(content.indexOf("Day one") < content.indexOf("Day two"));
+        assertTrue(content.indexOf("Day two") < content.indexOf("Day three"));
+    }
+
+    @Test
+    void importNotes_withUnparsableFile_shouldReportItAndImportTheRest() throws IOException {
+        // GIVEN an import with one good note and one that has two date tags:
+        writeNoteFile(new File(importDir, "good.txt"), "#good", "Fine");
+        writeNoteFile(new File(importDir, "bad.txt"), "#2020-01-01 #2020-01-02", "Broken");
+
+        // WHEN we import it:
+        ImportReport report = dataManager.importNotes(importDir, DataManager.CollisionStrategy.ABORT);
+
+        // THEN the bad one should be reported as failed:
+        assertEquals(2, report.getFoundCount());
+        assertEquals(1, report.getImportedCount());
+        assertEquals(1, report.getFailedCount());
+    }
+
+    @Test
+    void importNotes_fromWithinDataDirectory_shouldThrow() throws IOException {
+        File inside = new File(dataDir, "somewhere");
+        assertTrue(inside.mkdirs());
+        assertThrows(IOException.class,
+                     () -> dataManager.importNotes(inside, DataManager.CollisionStrategy.ABORT));
+    }
+
+    @Test
+    void appendNoteText_shouldLeaveExactlyOneBlankLine() {
+        assertEquals("new", DataManager.appendNoteText("  ", "new"));
+        assertEquals("old\n\nnew", DataManager.appendNoteText("old", "new"));
+        assertEquals("old\n\nnew", DataManager.appendNoteText("old\n", "new"));
+        assertEquals("old\n\nnew", DataManager.appendNoteText("old\n\n", "new"));
+    }
+
+    private Note findByTag(String tag) {
+        for (Note note : dataManager.getNotes()) {
+            if (note.hasTag(tag)) {
+                return note;
+            }
+        }
+        throw new AssertionError("No imported note with tag " + tag);
+    }
+
+    private static void writeNoteFile(File file, String tagLine, String text) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists()) {
+            assertTrue(parent.mkdirs());
+        }
+        Files.writeString(file.toPath(), tagLine + "\n\n" + text + "\n", StandardCharsets.UTF_8);
+    }
+
+    private static void addZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
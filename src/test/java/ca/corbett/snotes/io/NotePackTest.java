@@ -0,0 +1,211 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.YMDDate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotePackTest {
+
+    @TempDir
+    File dataDir;
+
+    DataManager dataManager;
+
+    @BeforeEach
+    void setup() {
+        dataManager = new DataManager(dataDir);
+    }
+
+    @Test
+    void pack_shouldReplaceLooseFilesWithOnePackFile() throws IOException {
+        // GIVEN a year of loose note files:
+        Note first = TestNotes.save(dataManager, "2015-01-02", "First", "alpha");
+        Note second = TestNotes.save(dataManager, "2015-11-30", "Second", "beta");
+
+        // WHEN we pack that year:
+        int count = NotePack.pack(dataDir, 2015);
+
+        // THEN the loose files should be gone, and the pack should hold them both:
+        assertEquals(2, count);
+        assertFalse(new File(dataDir, "2015").exists());
+        File packFile = NotePack.fileFor(dataDir, 2015);
+        assertTrue(packFile.isFile());
+        assertEquals(List.of(2015), NotePack.findPackedYears(dataDir));
+        List<Note> packed = NotePack.loadAll(packFile);
+        assertEquals(2, packed.size());
+        for (Note note : packed) {
+            assertFalse(note.isDirty());
+            Note original = note.hasTag("alpha") ? first : second;
+            assertEquals(original.getSourceFile().getAbsoluteFile(), note.getSourceFile());
+            assertEquals(original.getText() + System.lineSeparator(), note.getText());
+        }
+    }
+
+    @Test
+    void loadNote_forPackedFile_shouldReadFromPack() throws IOException {
+        // GIVEN a packed note:
+        Note note = TestNotes.save(dataManager, "2016-05-06", "Packed away", "gamma");
+        NotePack.pack(dataDir, 2016);
+        assertFalse(note.getSourceFile().exists());
+
+        // WHEN we load it by its original path:
+        Note loaded = SnotesIO.loadNote(note.getSourceFile());
+
+        // THEN we should get it back transparently:
+        assertEquals(new YMDDate("2016-05-06"), loaded.getDate());
+        assertTrue(loaded.hasTag("gamma"));
+        assertTrue(loaded.getText().startsWith("Packed away"));
+        assertEquals(note.getSourceFile(), loaded.getSourceFile());
+    }
+
+    @Test
+    void unpack_shouldRestoreFilesByteForByte() throws IOException {
+        // GIVEN a packed year:
+        Note note = TestNotes.save(dataManager, "2017-07-08", "Round trip ☃", "delta");
+        byte[] original = Files.readAllBytes(note.getSourceFile().toPath());
+        NotePack.pack(dataDir, 2017);
+
+        // WHEN we unpack it:
+        int count = NotePack.unpack(NotePack.fileFor(dataDir, 2017));
+
+        // THEN the loose file should be back exactly as it was, and the pack should be gone:
+        assertEquals(1, count);
+        assertTrue(note.getSourceFile().exists());
+        assertArrayEquals(original, Files.readAllBytes(note.getSourceFile().toPath()));
+        assertFalse(NotePack.fileFor(dataDir, 2017).exists());
+    }
+
+    @Test
+    void unpack_withNewerLooseFile_shouldKeepLooseFile() throws IOException {
+        // GIVEN a packed note that also exists as a loose file (as after a crash part way through an unpack):
+        Note note = TestNotes.save(dataManager, "2018-02-03", "Old text", "epsilon");
+        NotePack.pack(dataDir, 2018);
+        note.setText("New text");
+        SnotesIO.saveNote(note, note.getSourceFile());
+
+        // WHEN we unpack:
+        NotePack.unpack(NotePack.fileFor(dataDir, 2018));
+
+        // THEN the loose file should win:
+        assertTrue(SnotesIO.loadNote(note.getSourceFile()).getText().startsWith("New text"));
+    }
+
+    @Test
+    void pack_withExistingPack_shouldMergeLooseFiles() throws IOException {
+        // GIVEN a pack, and then some new loose files in the same year:
+        TestNotes.save(dataManager, "2019-01-01", "Packed first", "zeta");
+        NotePack.pack(dataDir, 2019);
+        TestNotes.save(dataManager, "2019-06-06", "Added later", "eta");
+
+        // WHEN we pack again:
+        int count = NotePack.pack(dataDir, 2019);
+
+        // THEN the pack should now hold both:
+        assertEquals(2, count);
+        assertEquals(2, NotePack.loadAll(NotePack.fileFor(dataDir, 2019)).size());
+        assertFalse(new File(dataDir, "2019").exists());
+    }
+
+    @Test
+    void findPack_shouldOnlyMatchPackedYearsInDataDir() throws IOException {
+        // GIVEN a packed year:
+        TestNotes.save(dataManager, "2014-03-03", "Text", "theta");
+        NotePack.pack(dataDir, 2014);
+
+        // WHEN/THEN only files in that year should map to the pack:
+        assertNotNull(NotePack.findPack(dataDir, new File(dataDir, "2014/03/03/theta.txt")));
+        assertNull(NotePack.findPack(dataDir, new File(dataDir, "2013/03/03/theta.txt")));
+        assertNull(NotePack.findPack(dataDir, new File(dataDir, DataManager.STATIC_DIR + "/theta.txt")));
+        assertNull(NotePack.findPack(dataDir, new File(dataDir, "2014.txt")));
+    }
+
+    @Test
+    void packYear_withCurrentYear_shouldThrow() {
+        // GIVEN the current year, WHEN we try to pack it, THEN it should be refused:
+        int thisYear = LocalDate.now().getYear();
+        assertThrows(IOException.class, () -> dataManager.packYear(thisYear));
+    }
+
+    @Test
+    void save_withPackedNote_shouldUnpackYear() throws IOException {
+        // GIVEN two notes in a packed year:
+        Note edited = TestNotes.save(dataManager, "2012-04-05", "Before", "iota");
+        Note other = TestNotes.save(dataManager, "2012-09-10", "Untouched", "kappa");
+        dataManager.packYear(2012);
+        assertTrue(dataManager.isPacked(edited));
+
+        // WHEN we edit and save one of them:
+        edited.setText("After");
+        dataManager.save(edited);
+
+        // THEN the year should have been unpacked, with the edit applied:
+        assertFalse(NotePack.fileFor(dataDir, 2012).exists());
+        assertFalse(dataManager.isPacked(edited));
+        assertTrue(SnotesIO.loadNote(edited.getSourceFile()).getText().startsWith("After"));
+        assertTrue(other.getSourceFile().exists());
+    }
+
+    @Test
+    void hasCollision_withPackedNote_shouldDetectCollision() throws IOException {
+        // GIVEN a packed note:
+        TestNotes.save(dataManager, "2011-11-11", "Existing", "lambda");
+        dataManager.packYear(2011);
+
+        // WHEN we create a new note that would be saved to the same place:
+        Note newNote = dataManager.newNote();
+        newNote.setDate(new YMDDate("2011-11-11"));
+        newNote.tag("lambda");
+
+        // THEN the collision should be detected, even though there's no loose file:
+        assertTrue(dataManager.hasCollision(newNote));
+        assertThrows(IOException.class, () -> dataManager.save(newNote));
+    }
+
+    @Test
+    void delete_withPackedNote_shouldNotComeBack() throws IOException {
+        // GIVEN two notes in a packed year:
+        Note doomed = TestNotes.save(dataManager, "2010-01-01", "Delete me", "mu");
+        Note survivor = TestNotes.save(dataManager, "2010-01-02", "Keep me", "nu");
+        dataManager.packYear(2010);
+
+        // WHEN we delete one of them:
+        dataManager.delete(doomed);
+
+        // THEN it should be gone for good, and the other should still be there:
+        assertFalse(doomed.getSourceFile().exists());
+        assertFalse(NotePack.fileFor(dataDir, 2010).exists());
+        assertTrue(survivor.getSourceFile().exists());
+    }
+
+    @Test
+    void delete_withUnreadablePack_shouldKeepNote() throws IOException {
+        // GIVEN a note in a packed year whose pack file has been damaged:
+        Note note = TestNotes.save(dataManager, "2009-09-09", "Can't touch this", "xi");
+        dataManager.packYear(2009);
+        File packFile = NotePack.fileFor(dataDir, 2009);
+        Files.writeString(packFile.toPath(), "not a zip file");
+
+        // WHEN we try to delete it:
+        assertThrows(IOException.class, () -> dataManager.delete(note));
+
+        // THEN nothing should have been removed:
+        assertTrue(dataManager.getNotes().contains(note));
+        assertTrue(packFile.exists());
+    }
+}
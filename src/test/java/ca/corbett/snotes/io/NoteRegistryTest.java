@@ -0,0 +1,122 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteRegistryTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void add_shouldIndexByIdentityAndPath() {
+        // GIVEN a registry with a note in it:
+        NoteRegistry registry = new NoteRegistry();
+        Note note = noteAt("a.txt");
+
+        // WHEN we add it (twice):
+        assertTrue(registry.add(note));
+        assertFalse(registry.add(note));
+
+        // THEN we should be able to find it both ways, and it should only be there once:
+        assertTrue(registry.contains(note));
+        assertSame(note, registry.findByPath(new File(tempDir, "a.txt")));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void findByPath_withUnnormalizedPath_shouldStillFindNote() {
+        NoteRegistry registry = new NoteRegistry();
+        Note note = noteAt("a.txt");
+        registry.add(note);
+
+        File sameFile = new File(new File(new File(tempDir, "sub"), ".."), "a.txt");
+        assertSame(note, registry.findByPath(sameFile));
+    }
+
+    @Test
+    void remove_shouldDropBothIndexes() {
+        NoteRegistry registry = new NoteRegistry();
+        Note note = noteAt("a.txt");
+        registry.add(note);
+
+        assertTrue(registry.remove(note));
+
+        assertFalse(registry.contains(note));
+        assertNull(registry.findByPath(note.getSourceFile()));
+        assertTrue(registry.isEmpty());
+        assertFalse(registry.remove(note));
+    }
+
+    @Test
+    void reindex_afterSourceFileChanges_shouldFindNoteAtNewPathOnly() {
+        // GIVEN a registered note that gets moved:
+        NoteRegistry registry = new NoteRegistry();
+        Note note = noteAt("old.txt");
+        registry.add(note);
+        File oldFile = note.getSourceFile();
+        note.setSourceFile(new File(tempDir, "new.txt"));
+
+        // THEN even before reindexing, the stale path should not find it:
+        assertNull(registry.findByPath(oldFile));
+
+        // AND after reindexing, it should be found at the new path:
+        registry.reindex(note);
+        assertSame(note, registry.findByPath(new File(tempDir, "new.txt")));
+        assertNull(registry.findByPath(oldFile));
+    }
+
+    @Test
+    void iteration_shouldBeInInsertionOrderAndTolerateConcurrentModification() {
+        // GIVEN a registry with a number of notes:
+        NoteRegistry registry = new NoteRegistry();
+        List<Note> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Note note = noteAt("note" + i + ".txt");
+            expected.add(note);
+            registry.add(note);
+        }
+
+        // THEN snapshot order should match insertion order:
+        assertEquals(expected, registry.snapshot());
+
+        // AND modifying the registry while iterating should not blow up:
+        assertDoesNotThrow(() -> {
+            for (Note note : registry) {
+                if (!note.getSourceFile().getName().startsWith("added-")) {
+                    registry.remove(note);
+                    registry.add(noteAt("added-" + note.getSourceFile().getName()));
+                }
+            }
+        });
+        assertEquals(100, registry.size());
+    }
+
+    @Test
+    void addAndFind_withNullSourceFile_shouldOnlyIndexByIdentity() {
+        NoteRegistry registry = new NoteRegistry();
+        Note note = new Note();
+        registry.add(note);
+
+        assertTrue(registry.contains(note));
+        assertNull(registry.findByPath(null));
+    }
+
+    private Note noteAt(String name) {
+        Note note = new Note();
+        note.setSourceFile(new File(tempDir, name));
+        return note;
+    }
+}
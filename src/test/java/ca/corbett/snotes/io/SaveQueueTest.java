@@ -0,0 +1,121 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SaveQueueTest {
+
+    @TempDir
+    File tempDir;
+
+    SaveQueue saveQueue;
+
+    @BeforeEach
+    void setup() {
+        saveQueue = new SaveQueue();
+    }
+
+    @AfterEach
+    void teardown() {
+        saveQueue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void submit_manyWritesToSameFile_shouldLandInSubmissionOrder() throws IOException {
+        // GIVEN many writes to the same file, from different Notes (so nothing is coalesced):
+        File target = new File(tempDir, "ordered.txt");
+        for (int i = 0; i < 50; i++) {
+            saveQueue.submit(new Note(), target, bytes("version " + i), null, null);
+        }
+
+        // WHEN we flush the queue:
+        assertTrue(saveQueue.flush(5, TimeUnit.SECONDS));
+
+        // THEN the last write should win:
+        assertEquals("version 49", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void submit_withFileToDelete_shouldDeleteOnlyAfterWriting() throws IOException {
+        // GIVEN an old file, and a write that relocates it:
+        File oldFile = new File(tempDir, "old.txt");
+        Files.writeString(oldFile.toPath(), "old");
+        File newFile = new File(new File(tempDir, "sub"), "new.txt");
+
+        // WHEN we submit and flush:
+        saveQueue.submit(new Note(), newFile, bytes("new"), oldFile, null);
+        assertTrue(saveQueue.flush(5, TimeUnit.SECONDS));
+
+        // THEN the new file should exist (with its directory created) and the old one should be gone:
+        assertEquals("new", Files.readString(newFile.toPath()));
+        assertFalse(oldFile.exists());
+    }
+
+    @Test
+    void discard_shouldPreventQueuedWrite() throws IOException {
+        File target = new File(tempDir, "discarded.txt");
+        Note note = new Note();
+
+        // GIVEN a queue whose background thread is stalled on its first write:
+        // (queued writes grab the queue's monitor before starting, so holding it here holds them up)
+        synchronized (saveQueue) {
+            saveQueue.submit(new Note(), new File(tempDir, "blocker.txt"), bytes("x"), null, null);
+            saveQueue.submit(note, target, bytes("should never be written"), null, null);
+
+            // WHEN we discard the second write before it gets a chance to start:
+            saveQueue.discard(note);
+        }
+        assertTrue(saveQueue.flush(5, TimeUnit.SECONDS));
+
+        // THEN the first write should have happened, but not the discarded one:
+        assertTrue(new File(tempDir, "blocker.txt").exists());
+        assertFalse(target.exists());
+        assertFalse(saveQueue.hasPendingWrites());
+    }
+
+    @Test
+    void getQueuedCount_shouldTrackWritesAndTasksUntilTheyFinish() throws IOException {
+        // GIVEN a queue whose background thread is held up:
+        synchronized (saveQueue) {
+            saveQueue.submit(new Note(), new File(tempDir, "one.txt"), bytes("1"), null, null);
+            saveQueue.submit(new Note(), new File(tempDir, "two.txt"), bytes("2"), null, null);
+            saveQueue.submitTask(new Note(), "test task", () -> { }, null);
+
+            // THEN everything we submitted should be counted as queued:
+            assertEquals(3, saveQueue.getQueuedCount());
+        }
+
+        // WHEN the queue is flushed, THEN nothing should be left:
+        assertTrue(saveQueue.flush(5, TimeUnit.SECONDS));
+        assertEquals(0, saveQueue.getQueuedCount());
+    }
+
+    @Test
+    void submit_afterShutdown_shouldThrow() {
+        // GIVEN a queue that has been shut down:
+        assertTrue(saveQueue.shutdown(5, TimeUnit.SECONDS));
+
+        // WHEN we try to submit a write:
+        // THEN it should be refused:
+        assertThrows(IOException.class,
+                     () -> saveQueue.submit(new Note(), new File(tempDir, "late.txt"), bytes("late"), null, null));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,194 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScratchJournalTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void replay_withInsertsAndRemoves_shouldReproduceEditorState() throws IOException {
+        // GIVEN a journal with a snapshot and some edits, including newlines and non-ASCII text:
+        ScratchJournal journal = newJournal("2024-01-02", "tag1", "Hello world");
+        journal.recordInsert(5, ",\nbrave new");
+        journal.recordRemove(0, 1);
+        journal.recordInsert(0, "h");
+        journal.recordInsert("hello,\nbrave new world".length(), " été ☃");
+
+        // WHEN we write it out and replay it:
+        writePending(journal);
+        ScratchJournal.RecoveredState state = ScratchJournal.replay(journal.getJournalFile());
+
+        // THEN we should get back exactly what the editor would have shown:
+        assertNotNull(state);
+        assertEquals("2024-01-02", state.getDate());
+        assertEquals("tag1", state.getTags());
+        assertEquals("hello,\nbrave new world été ☃", state.getText());
+    }
+
+    @Test
+    void replay_withSeveralAppendedBatches_shouldApplyAllOfThem() throws IOException {
+        // GIVEN a journal that was written in three separate batches:
+        ScratchJournal journal = newJournal("", "scratch", "");
+        journal.recordInsert(0, "one");
+        writePending(journal);
+        journal.recordInsert(3, " two");
+        journal.recordHeader("2023-12-31", "scratch, later");
+        writePending(journal);
+        journal.recordInsert(7, " three");
+        writePending(journal);
+
+        // WHEN we replay it:
+        ScratchJournal.RecoveredState state = ScratchJournal.replay(journal.getJournalFile());
+
+        // THEN all three batches should be reflected, with only one snapshot at the top:
+        assertNotNull(state);
+        assertEquals("one two three", state.getText());
+        assertEquals("2023-12-31", state.getDate());
+        assertEquals("scratch, later", state.getTags());
+        assertEquals(1, Files.readAllLines(journal.getJournalFile().toPath()).stream()
+                             .filter(line -> line.startsWith("S ")).count());
+    }
+
+    @Test
+    void replay_withTornFinalRecord_shouldRecoverEverythingBeforeIt() throws IOException {
+        // GIVEN a valid journal, followed by half a record (as if we crashed mid-write):
+        ScratchJournal journal = newJournal("", "tag", "abc");
+        journal.recordInsert(3, "def");
+        writePending(journal);
+        Files.writeString(journal.getJournalFile().toPath(), "I 6 Z2hp", StandardCharsets.UTF_8,
+                          StandardOpenOption.APPEND);
+
+        // WHEN we replay it:
+        ScratchJournal.RecoveredState state = ScratchJournal.replay(journal.getJournalFile());
+
+        // THEN the torn record should be ignored:
+        assertNotNull(state);
+        assertEquals("abcdef", state.getText());
+    }
+
+    @Test
+    void replay_withOutOfRangeOffset_shouldStopAtThatRecord() throws IOException {
+        // GIVEN a journal with an edit that doesn't fit the text, followed by a valid edit:
+        ScratchJournal journal = newJournal("", "tag", "abc");
+        journal.recordRemove(1, 50);
+        journal.recordInsert(0, "x");
+        writePending(journal);
+
+        // WHEN we replay it:
+        ScratchJournal.RecoveredState state = ScratchJournal.replay(journal.getJournalFile());
+
+        // THEN nothing after the bad record should be applied:
+        assertNotNull(state);
+        assertEquals("abc", state.getText());
+    }
+
+    @Test
+    void replay_withoutSnapshot_shouldReturnNull() throws IOException {
+        // GIVEN a journal file that does not start with a snapshot:
+        File journalFile = new File(tempDir, "scratch.txt.journal");
+        Files.writeString(journalFile.toPath(), "I 0 YWJj\n", StandardCharsets.UTF_8);
+
+        // WHEN we replay it, THEN there is nothing to recover:
+        assertNull(ScratchJournal.replay(journalFile));
+        assertNull(ScratchJournal.replay(new File(tempDir, "missing.txt.journal")));
+    }
+
+    @Test
+    void markCompacted_shouldStartNewJournalFromCompactedState() throws IOException {
+        // GIVEN a journal that has already been written to:
+        ScratchJournal journal = newJournal("", "tag", "first");
+        journal.recordInsert(5, " draft");
+        writePending(journal);
+
+        // WHEN the note is fully saved, and then edited some more:
+        journal.markCompacted("", "tag", "first draft");
+        journal.recordInsert(0, "My ");
+        assertTrue(journal.isStartingNewJournal());
+        writePending(journal);
+
+        // THEN the journal on disk should describe only the new state, starting from the compacted text:
+        List<String> lines = Files.readAllLines(journal.getJournalFile().toPath());
+        assertEquals(2, lines.size());
+        assertEquals("My first draft", ScratchJournal.replay(journal.getJournalFile()).getText());
+    }
+
+    @Test
+    void markFailed_shouldRestartFromCurrentState() throws IOException {
+        // GIVEN a journal whose last write failed:
+        ScratchJournal journal = newJournal("", "tag", "abc");
+        journal.recordHeader("", "tag");
+        writePending(journal);
+        journal.recordInsert(3, "def"); // this batch is the one that "failed"
+        journal.drainRecords("", "tag", () -> "unused");
+        journal.markFailed();
+
+        // WHEN we record more edits and write the next batch:
+        journal.recordInsert(6, "ghi");
+        assertTrue(journal.isStartingNewJournal());
+        writePending(journal, "abcdefghi");
+
+        // THEN the journal should have been restarted from the editor's current text:
+        assertEquals("abcdefghi", ScratchJournal.replay(journal.getJournalFile()).getText());
+        assertFalse(journal.isStartingNewJournal());
+    }
+
+    @Test
+    void applyTo_shouldSetDateTagsAndTextAndMarkDirty() {
+        // GIVEN a recovered state and a clean note:
+        ScratchJournal.RecoveredState state = new ScratchJournal.RecoveredState("2022-05-06", "alpha beta", "text");
+        Note note = new Note();
+        note.tag("old");
+        note.markClean();
+
+        // WHEN we apply the state:
+        state.applyTo(note);
+
+        // THEN the note should match it:
+        assertEquals("2022-05-06", note.getDate().toString());
+        assertTrue(note.hasTag("alpha"));
+        assertTrue(note.hasTag("beta"));
+        assertFalse(note.hasTag("old"));
+        assertEquals("text", note.getText());
+        assertTrue(note.isDirty());
+    }
+
+    @Test
+    void journalFileFor_shouldRoundTripWithScratchFileFor() {
+        File scratchFile = new File(tempDir, "snotes123.txt");
+        File journalFile = ScratchJournal.journalFileFor(scratchFile);
+        assertEquals("snotes123.txt.journal", journalFile.getName());
+        assertEquals(scratchFile, ScratchJournal.scratchFileFor(journalFile));
+    }
+
+    private ScratchJournal newJournal(String date, String tags, String text) {
+        return new ScratchJournal(new File(tempDir, "scratch.txt.journal"), date, tags, text);
+    }
+
+    private static void writePending(ScratchJournal journal) throws IOException {
+        writePending(journal, "");
+    }
+
+    private static void writePending(ScratchJournal journal, String currentText) throws IOException {
+        boolean startNewJournal = journal.isStartingNewJournal();
+        List<String> records = journal.drainRecords("", "tag", () -> currentText);
+        journal.markStarted();
+        journal.write(records, startNewJournal);
+    }
+}
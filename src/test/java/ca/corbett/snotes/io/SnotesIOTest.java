@@ -11,11 +11,16 @@ import ca.corbett.snotes.model.filter.DateFilter;
 import ca.corbett.snotes.model.filter.DateFilterType;
 import ca.corbett.snotes.model.filter.DayOfMonthFilter;
 import ca.corbett.snotes.model.filter.DayOfWeekFilter;
+import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterRegistration;
+import ca.corbett.snotes.model.filter.FilterRegistry;
 import ca.corbett.snotes.model.filter.MonthFilter;
 import ca.corbett.snotes.model.filter.TagFilter;
 import ca.corbett.snotes.model.filter.TextFilter;
 import ca.corbett.snotes.model.filter.UndatedFilter;
 import ca.corbett.snotes.model.filter.YearFilter;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -27,6 +32,7 @@ import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
@@ -124,6 +130,49 @@ class SnotesIOTest {
         assertThrows(IOException.class, () -> SnotesIO.loadQuery(savedFile));
     }
 
+    @Test
+    public void saveQuery_withRegisteredExtensionFilter_shouldRoundTrip() throws IOException {
+        // GIVEN a Query that uses a Filter type registered from outside:
+        FilterRegistry.getInstance().register(new FilterRegistration<>(
+            "SnotesIOTestFilter", WordFilter.class, "Word", WordFilter::new, WordFilter::getWord));
+        Query query = new Query();
+        query.setName("Extension Filter Test");
+        query.addFilter(new YearFilter(2020, DateFilterType.ON));
+        query.addFilter(new WordFilter("hello"));
+        File savedFile = new File(tempDir, "extension.query");
+
+        // WHEN we save and load it:
+        SnotesIO.saveQuery(query, savedFile);
+        Query loadedQuery = SnotesIO.loadQuery(savedFile);
+
+        // THEN the extension Filter should be saved under its registered name, and come back intact:
+        assertTrue(Files.readString(savedFile.toPath(), StandardCharsets.UTF_8).contains("\"SnotesIOTestFilter\""));
+        assertEquals(2, loadedQuery.size());
+        assertInstanceOf(WordFilter.class, loadedQuery.getFilters().get(1));
+        assertEquals("hello", ((WordFilter)loadedQuery.getFilters().get(1)).getWord());
+    }
+
+    @Test
+    public void saveQuery_withUnregisteredFilter_shouldThrowIOException() {
+        // GIVEN a Query with a Filter type that nobody registered:
+        Query query = new Query();
+        query.setName("Unregistered Filter Test");
+        query.addFilter(new Filter() {
+            @Override
+            public String getDescription() {
+                return "Unregistered";
+            }
+
+            @Override
+            public boolean isFiltered(Note note) {
+                return false;
+            }
+        });
+
+        // THEN saving it should fail, rather than write something we couldn't load again:
+        assertThrows(IOException.class, () -> SnotesIO.saveQuery(query, new File(tempDir, "unregistered.query")));
+    }
+
     @Test
     public void saveTemplate_withNullFile_shouldThrowIllegalArgumentException() {
         // GIVEN a Template:
@@ -553,6 +602,112 @@ class SnotesIOTest {
         assertTrue(fileContents.contains("Line two"));
     }
 
+    @Test
+    public void saveNote_overExistingFile_shouldReplaceAndLeaveNoTempFiles(@TempDir Path tempDir) throws IOException {
+        // GIVEN a note that has already been saved once:
+        Path noteFile = tempDir.resolve("atomic.txt");
+        Note note = new Note();
+        note.tag("atomic");
+        note.setText("first version");
+        SnotesIO.saveNote(note, noteFile.toFile());
+
+        // WHEN we change it and save it again:
+        note.setText("second version");
+        SnotesIO.saveNote(note, noteFile.toFile());
+
+        // THEN the file should have the new content:
+        String fileContents = Files.readString(noteFile);
+        assertTrue(fileContents.contains("second version"));
+        assertFalse(fileContents.contains("first version"));
+
+        // AND no temp files should be left lying around:
+        try (var stream = Files.list(tempDir)) {
+            assertEquals(List.of(noteFile), stream.toList());
+        }
+    }
+
+    @Test
+    public void saveNote_withTouchedButUnchangedNote_shouldNotRewriteFile(@TempDir Path tempDir) throws IOException {
+        // GIVEN a saved note whose file has an old modification time:
+        File noteFile = tempDir.resolve("unchanged.txt").toFile();
+        Note note = new Note();
+        note.tag("unchanged");
+        note.setText("same text");
+        SnotesIO.saveNote(note, noteFile);
+        assertTrue(noteFile.setLastModified(1_000_000_000_000L));
+
+        // WHEN we re-apply the same tags and text (which marks it dirty) and save again:
+        note.clearAllTags();
+        note.tag("unchanged");
+        note.setText("same text");
+        assertTrue(note.isDirty());
+        SnotesIO.saveNote(note, noteFile);
+
+        // THEN the file should not have been touched, but the note should be clean:
+        assertEquals(1_000_000_000_000L, noteFile.lastModified());
+        assertFalse(note.isDirty());
+    }
+
+    @Test
+    public void saveNote_afterLoad_withUnchangedNote_shouldNotRewriteFile(@TempDir Path tempDir) throws IOException {
+        // GIVEN a note loaded from a file that we didn't write:
+        Path noteFile = tempDir.resolve("loaded.txt");
+        Files.write(noteFile, List.of("#2001-02-03 #loaded", "", "Line one", "Line two"));
+        byte[] originalBytes = Files.readAllBytes(noteFile);
+        assertTrue(noteFile.toFile().setLastModified(1_000_000_000_000L));
+        Note note = SnotesIO.loadNote(noteFile.toFile());
+
+        // WHEN we touch it without changing it, and save it back:
+        note.setText(note.getText());
+        SnotesIO.saveNote(note, noteFile.toFile());
+
+        // THEN the file should be exactly as it was:
+        assertEquals(1_000_000_000_000L, noteFile.toFile().lastModified());
+        assertArrayEquals(originalBytes, Files.readAllBytes(noteFile));
+    }
+
+    @Test
+    public void saveNote_withChangedNoteOrNewTarget_shouldWrite(@TempDir Path tempDir) throws IOException {
+        // GIVEN a saved note:
+        File noteFile = tempDir.resolve("first.txt").toFile();
+        Note note = new Note();
+        note.tag("changing");
+        note.setText("version one");
+        SnotesIO.saveNote(note, noteFile);
+
+        // WHEN we save the same content somewhere else:
+        File otherFile = tempDir.resolve("second.txt").toFile();
+        SnotesIO.saveNote(note, otherFile);
+
+        // THEN it should be written there:
+        assertTrue(Files.readString(otherFile.toPath()).contains("version one"));
+
+        // AND WHEN we change the content, THEN it should be written too:
+        note.setText("version two");
+        SnotesIO.saveNote(note, otherFile);
+        assertTrue(Files.readString(otherFile.toPath()).contains("version two"));
+    }
+
+    @Test
+    public void writeTempFile_shouldNotTouchTargetFile(@TempDir Path tempDir) throws IOException {
+        // GIVEN an existing target file:
+        Path target = tempDir.resolve("target.txt");
+        Files.writeString(target, "original");
+
+        // WHEN we write a temp file for it:
+        File tempFile = SnotesIO.writeTempFile(target.toFile(), "replacement".getBytes(StandardCharsets.UTF_8));
+
+        // THEN the target should be untouched until we commit:
+        assertEquals("original", Files.readString(target));
+        assertTrue(tempFile.getName().endsWith("." + SnotesIO.TEMP_EXTENSION));
+        assertEquals(target.toFile().getParentFile(), tempFile.getParentFile());
+
+        // AND after commit, the target should be replaced and the temp file gone:
+        SnotesIO.commitTempFile(tempFile, target.toFile());
+        assertEquals("replacement", Files.readString(target));
+        assertFalse(tempFile.exists());
+    }
+
     @Test
     public void saveNote_withNullNote_shouldThrowIllegalArgumentException() {
         assertThrows(IllegalArgumentException.class, () -> SnotesIO.saveNote(null, new File("a")));
@@ -850,4 +1005,27 @@ class SnotesIOTest {
         assertNotNull(loaded);
         assertEquals(0, loaded.getOrder());
     }
-}
\ No newline at end of file
+
+    public static class WordFilter extends Filter {
+        private final String word;
+
+        @JsonCreator
+        public WordFilter(@JsonProperty("word") String word) {
+            this.word = word;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Filter by word";
+        }
+
+        @Override
+        public boolean isFiltered(Note note) {
+            return note.getText() == null || !note.getText().contains(word);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Template;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateContextCacheTest {
+
+    @TempDir
+    File dataDir;
+
+    DataManager dataManager;
+    Template template;
+
+    @BeforeEach
+    void setup() {
+        dataManager = new DataManager(dataDir);
+        template = new Template("Standup");
+        template.addTag("standup");
+        template.setContext(Template.Context.MOST_RECENT3);
+    }
+
+    @Test
+    void gatherTemplateContext_shouldReturnMostRecentTaggedNotes() throws Exception {
+        // GIVEN some notes, a few of which carry the template's tag:
+        TestNotes.save(dataManager, "2024-01-01", "Old standup", "standup");
+        Note recent = TestNotes.save(dataManager, "2024-01-05", "Recent standup", "standup");
+        TestNotes.save(dataManager, "2024-01-06", "Something else", "other");
+
+        // WHEN we gather the context:
+        List<Note> context = dataManager.gatherTemplateContext(template).get();
+
+        // THEN we should get the tagged notes, most recent last:
+        assertEquals(2, context.size());
+        assertEquals(recent, context.get(1));
+    }
+
+    @Test
+    void gatherTemplateContext_secondCall_shouldBeAnsweredFromCache() throws Exception {
+        // GIVEN a template whose context has already been gathered once:
+        TestNotes.save(dataManager, "2024-02-01", "Standup", "standup");
+        List<Note> first = dataManager.gatherTemplateContext(template).get();
+
+        // WHEN we gather it again:
+        CompletableFuture<List<Note>> second = dataManager.gatherTemplateContext(template);
+
+        // THEN it should be answered immediately, with the same result:
+        assertTrue(second.isDone());
+        assertEquals(first, second.get());
+    }
+
+    @Test
+    void gatherTemplateContext_afterTaggedNoteSaved_shouldSeeNewNote() throws Exception {
+        // GIVEN a cached context:
+        TestNotes.save(dataManager, "2024-03-01", "First standup", "standup");
+        assertEquals(1, dataManager.gatherTemplateContext(template).get().size());
+
+        // WHEN a new note with the template's tag is saved:
+        TestNotes.save(dataManager, "2024-03-02", "Second standup", "standup");
+
+        // THEN the next gather should include it:
+        assertEquals(2, dataManager.gatherTemplateContext(template).get().size());
+    }
+
+    @Test
+    void invalidate_withUnrelatedNote_shouldKeepEntry() throws IOException {
+        // GIVEN a cached context:
+        Note tagged = TestNotes.save(dataManager, "2024-04-01", "Standup", "standup");
+        Note unrelated = TestNotes.save(dataManager, "2024-04-02", "Unrelated", "other");
+        TemplateContextCache cache = new TemplateContextCache();
+        cache.put(template, cache.getGeneration(), TemplateContextCache.compute(template, dataManager.getNotes()));
+
+        // WHEN an unrelated note changes:
+        cache.invalidate(unrelated);
+
+        // THEN the entry should survive:
+        assertNotNull(cache.get(template));
+
+        // AND WHEN a note in the context changes, THEN it should not:
+        cache.invalidate(tagged);
+        assertNull(cache.get(template));
+    }
+
+    @Test
+    void invalidate_withNoteThatLostTag_shouldDropEntry() throws IOException {
+        // GIVEN a cached context containing a note:
+        Note note = TestNotes.save(dataManager, "2024-05-01", "Standup", "standup");
+        TemplateContextCache cache = new TemplateContextCache();
+        cache.put(template, cache.getGeneration(), TemplateContextCache.compute(template, dataManager.getNotes()));
+
+        // WHEN that note no longer carries the tag:
+        note.untag("standup");
+        note.tag("other");
+        cache.invalidate(note);
+
+        // THEN the entry should be dropped, since the note was in it:
+        assertNull(cache.get(template));
+    }
+
+    @Test
+    void put_afterInvalidation_shouldNotCacheStaleResult() throws IOException {
+        // GIVEN a context computation that starts before a relevant change lands:
+        Note note = TestNotes.save(dataManager, "2024-06-01", "Standup", "standup");
+        TemplateContextCache cache = new TemplateContextCache();
+        long generation = cache.getGeneration();
+        List<Note> results = TemplateContextCache.compute(template, dataManager.getNotes());
+        cache.invalidate(note);
+
+        // WHEN the computation finishes, THEN its result should not be cached:
+        assertFalse(cache.put(template, generation, results));
+        assertNull(cache.get(template));
+    }
+
+    @Test
+    void get_afterTemplateEdited_shouldMiss() throws IOException {
+        // GIVEN a cached context:
+        TestNotes.save(dataManager, "2024-07-01", "Standup", "standup");
+        TemplateContextCache cache = new TemplateContextCache();
+        cache.put(template, cache.getGeneration(), TemplateContextCache.compute(template, dataManager.getNotes()));
+
+        // WHEN the template's context setting is changed:
+        template.setContext(Template.Context.ALL);
+
+        // THEN the cached entry should no longer apply:
+        assertNull(cache.get(template));
+    }
+
+    @Test
+    void gatherTemplateContext_withNoContext_shouldCompleteImmediately() throws Exception {
+        // GIVEN a template that doesn't want context:
+        template.setContext(Template.Context.NONE);
+
+        // WHEN we gather, THEN we should get an empty, already-completed result:
+        CompletableFuture<List<Note>> context = dataManager.gatherTemplateContext(template);
+        assertTrue(context.isDone());
+        assertTrue(context.get().isEmpty());
+    }
+}
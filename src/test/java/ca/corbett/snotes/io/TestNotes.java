@@ -0,0 +1,33 @@
+package ca.corbett.snotes.io;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.YMDDate;
+
+import java.io.IOException;
+
+/**
+ * Builds and saves the Notes that our io tests need as fixtures.
+ */
+final class TestNotes {
+
+    private TestNotes() {
+    }
+
+    /**
+     * Creates a Note with the given date, text and tags, and saves it with the given DataManager.
+     *
+     * @param date The date for the Note, in yyyy-mm-dd form, or null for an undated Note.
+     */
+    static Note save(DataManager dataManager, String date, String text, String... tags) throws IOException {
+        Note note = dataManager.newNote();
+        if (date != null) {
+            note.setDate(new YMDDate(date));
+        }
+        for (String tag : tags) {
+            note.tag(tag);
+        }
+        note.setText(text);
+        dataManager.save(note);
+        return note;
+    }
+}
@@ -0,0 +1,109 @@
+package ca.corbett.snotes.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    void record_shouldTrackCountSumAndMax() {
+        // GIVEN a new Histogram:
+        Histogram histogram = new Histogram("test");
+
+        // WHEN we record some values:
+        histogram.record(5);
+        histogram.record(100);
+        histogram.record(1000);
+
+        // THEN the totals should be exact:
+        assertEquals(3, histogram.getCount());
+        assertEquals(1105, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(1105 / 3.0, histogram.getMean(), 0.0001);
+    }
+
+    @Test
+    void getPercentile_withSmallValues_shouldBeExact() {
+        // GIVEN the values 1 to 10:
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        // THEN percentiles should be exact, since values under 16 have a bucket each:
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(95));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(10, histogram.getPercentile(100));
+    }
+
+    @Test
+    void getPercentile_withLargeValues_shouldBeWithinBucketError() {
+        // GIVEN the values 1 to 100,000:
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+
+        // THEN each percentile should be within about 12% of the true value:
+        assertWithin(50_000, histogram.getPercentile(50));
+        assertWithin(95_000, histogram.getPercentile(95));
+        assertWithin(99_000, histogram.getPercentile(99));
+        assertEquals(100_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void getPercentile_withNothingRecorded_shouldReturnZero() {
+        Histogram histogram = new Histogram("test");
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    void getPercentile_withInvalidPercentile_shouldThrow() {
+        Histogram histogram = new Histogram("test");
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(-1));
+    }
+
+    @Test
+    void record_withExtremeValues_shouldNotFail() {
+        // WHEN we record the extremes:
+        Histogram histogram = new Histogram("test");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        // THEN the negative value counts as zero, and the huge one is the max:
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    void buckets_shouldCoverEveryValueExactlyOnce() {
+        // Every bucket's range should start right after the previous one ends:
+        for (int bucket = 1; bucket < Histogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            assertEquals(Histogram.upperBound(bucket - 1) + 1, Histogram.lowerBound(bucket), "bucket " + bucket);
+            assertEquals(bucket, Histogram.bucketOf(Histogram.lowerBound(bucket)));
+            assertEquals(bucket, Histogram.bucketOf(Histogram.upperBound(bucket)));
+        }
+    }
+
+    @Test
+    void reset_shouldClearEverything() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.125,
+                   "Expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,197 @@
+package ca.corbett.snotes.metrics;
+
+import ca.corbett.snotes.model.Note;
+import ca.corbett.snotes.model.Query;
+import ca.corbett.snotes.model.filter.TextFilter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getters_withSameName_shouldReturnSameInstance() {
+        Metrics metrics = Metrics.getInstance();
+        assertSame(metrics.counter("test.counter"), metrics.counter("test.counter"));
+        assertSame(metrics.timer("test.timer"), metrics.timer("test.timer"));
+        assertSame(metrics.histogram("test.histogram"), metrics.histogram("test.histogram"));
+    }
+
+    @Test
+    void getters_withBlankName_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> Metrics.getInstance().counter(" "));
+        assertThrows(IllegalArgumentException.class, () -> Metrics.getInstance().timer(null));
+    }
+
+    @Test
+    void counter_shouldAccumulate() {
+        // GIVEN a counter:
+        Counter counter = Metrics.getInstance().counter("test.accumulate");
+        long before = counter.get();
+
+        // WHEN we count some things:
+        counter.increment();
+        counter.add(5);
+
+        // THEN it should have counted them:
+        assertEquals(before + 6, counter.get());
+    }
+
+    @Test
+    void timer_shouldRecordInNanoseconds() {
+        // GIVEN a timer:
+        Timer timer = Metrics.getInstance().timer("test.nanos");
+        long before = timer.getCount();
+
+        // WHEN we record two milliseconds:
+        timer.record(TimeUnit.MILLISECONDS.toNanos(2));
+
+        // THEN it should report it in whatever unit we ask for:
+        assertEquals(before + 1, timer.getCount());
+        assertTrue(timer.getMaxTime(TimeUnit.MICROSECONDS) >= 2000);
+    }
+
+    @Test
+    void timer_recentPercentile_shouldOnlyReflectRecentSamples() {
+        // GIVEN a timer that was slow for a while, then got fast:
+        Timer timer = Metrics.getInstance().timer("test.recent");
+        for (int i = 0; i < 1000; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 1000; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        // WHEN we ask for its recent and session-wide percentiles:
+        long recentP99 = timer.getRecentPercentile(99, TimeUnit.MILLISECONDS);
+        long sessionP99 = timer.getPercentile(99, TimeUnit.MILLISECONDS);
+
+        // THEN only the session-wide one should still remember the slow samples:
+        assertEquals(1, recentP99);
+        assertTrue(sessionP99 >= 90, "Unexpected session p99: " + sessionP99);
+        assertTrue(timer.getRecentCount() < 1000);
+    }
+
+    @Test
+    void gauge_shouldBeReadOnDemand() {
+        // GIVEN a gauge backed by something that changes:
+        AtomicLong value = new AtomicLong(5);
+        Metrics.getInstance().gauge("test.gauge", value::get);
+
+        // WHEN the underlying value changes:
+        value.set(42);
+
+        // THEN the gauge should report the new value:
+        assertEquals(42, Metrics.getInstance().getGaugeValue("test.gauge"));
+        assertTrue(Metrics.getInstance().getGaugeNames().contains("test.gauge"));
+    }
+
+    @Test
+    void gauge_withMissingOrFailingSupplier_shouldReportNegativeOne() {
+        Metrics.getInstance().gauge("test.failingGauge", () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertEquals(-1, Metrics.getInstance().getGaugeValue("test.failingGauge"));
+        assertEquals(-1, Metrics.getInstance().getGaugeValue("test.noSuchGauge"));
+    }
+
+    @Test
+    void startupTimeline_phaseComplete_shouldRecordPhaseAndTimer() {
+        // GIVEN a startup phase that has just finished:
+        long startTime = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+
+        // WHEN we record it:
+        StartupTimeline.getInstance().phaseComplete("testPhase", startTime);
+
+        // THEN it should show up on the timeline, and in the metrics registry:
+        StartupTimeline.Phase phase = StartupTimeline.getInstance().getPhases().stream()
+                                                     .filter(p -> p.name().equals("testPhase"))
+                                                     .findFirst().orElseThrow();
+        assertTrue(phase.durationMillis() >= 5);
+        assertTrue(phase.startOffsetMillis() >= 0);
+        assertTrue(phase.getEndOffsetMillis() <= StartupTimeline.getInstance().getUptimeMillis());
+        assertEquals(Thread.currentThread().getName(), phase.threadName());
+        assertTrue(Metrics.getInstance().timer("startup.testPhase").getCount() >= 1);
+    }
+
+    @Test
+    void startupTimeline_markUsable_shouldOnlyCountTheFirstTime() {
+        // GIVEN a milestone on the way to being usable:
+        StartupTimeline timeline = StartupTimeline.getInstance();
+        timeline.milestone("testMilestone");
+
+        // WHEN we're marked usable, more than once:
+        timeline.markUsable();
+        long usableOffset = timeline.getUsableOffsetMillis();
+        timeline.markUsable();
+
+        // THEN only the first one should count:
+        assertTrue(usableOffset >= 0);
+        assertEquals(usableOffset, timeline.getUsableOffsetMillis());
+        assertEquals(1, timeline.getPhases().stream().filter(p -> p.name().equals("usable")).count());
+        StartupTimeline.Phase milestone = timeline.getPhases().stream()
+                                                  .filter(p -> p.name().equals("testMilestone"))
+                                                  .findFirst().orElseThrow();
+        assertEquals(0, milestone.durationMillis());
+        assertTrue(milestone.startOffsetMillis() <= usableOffset);
+    }
+
+    @Test
+    void queryExecute_shouldRecordMetrics() {
+        // GIVEN a Query and some Notes:
+        Timer executeTimer = Metrics.getInstance().timer("query.execute");
+        long before = executeTimer.getCount();
+        Query query = new Query();
+        query.addFilter(new TextFilter("keep"));
+        List<Note> notes = List.of(new Note().setText("keep me"), new Note().setText("not me"));
+
+        // WHEN we execute it:
+        query.execute(notes);
+
+        // THEN the execution should have been timed:
+        assertEquals(before + 1, executeTimer.getCount());
+    }
+
+    @Test
+    void queryExecute_withRecordingRunning_shouldEmitEvent() throws IOException {
+        // GIVEN a Flight Recorder recording that only includes our Query events:
+        Path recordingFile = tempDir.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(QueryExecutionEvent.class);
+            recording.start();
+
+            // WHEN we execute a Query:
+            Query query = new Query().setName("Recorded query");
+            query.addFilter(new TextFilter("keep"));
+            query.execute(List.of(new Note().setText("keep me"), new Note().setText("not me")));
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        // THEN the recording should contain an event describing it:
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                                                  .filter(e -> "Recorded query".equals(e.getString("queryName")))
+                                                  .toList();
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).getInt("filterCount"));
+        assertEquals(2, events.get(0).getInt("inputSize"));
+        assertEquals(1, events.get(0).getInt("outputSize"));
+    }
+}
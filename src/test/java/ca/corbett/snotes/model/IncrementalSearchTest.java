@@ -0,0 +1,104 @@
+package ca.corbett.snotes.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalSearchTest {
+
+    private List<Note> notes;
+    private IncrementalSearch search;
+
+    @BeforeEach
+    void setup() {
+        notes = new ArrayList<>();
+        notes.add(new Note().setText("Team meeting about the budget").setDate(new YMDDate("2024-01-01")).tag("work"));
+        notes.add(new Note().setText("Meet Bob for lunch").setDate(new YMDDate("2024-01-02")).tag("personal"));
+        notes.add(new Note().setText("Meeting notes, part two").setDate(new YMDDate("2024-01-03")).tag("work"));
+        notes.add(new Note().setText("Nothing relevant here").setDate(new YMDDate("2024-01-04")).tag("work"));
+        search = new IncrementalSearch();
+    }
+
+    @Test
+    void search_withExtendedText_shouldNarrowPreviousResults() {
+        // GIVEN a previous search:
+        List<Note> first = search.search(notes, "meet", List.of(), null);
+        assertEquals(3, first.size());
+        assertFalse(search.wasNarrowed());
+
+        // WHEN the user keeps typing:
+        List<Note> second = search.search(notes, "meeting", List.of(), null);
+
+        // THEN only the previous results should have been searched, with the same answer a rescan would give:
+        assertTrue(search.wasNarrowed());
+        assertEquals(IncrementalSearch.buildQuery("meeting", List.of()).execute(notes), second);
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    void search_withShorterText_shouldRescan() {
+        // GIVEN a previous search:
+        search.search(notes, "meeting", List.of(), null);
+
+        // WHEN the user backspaces:
+        List<Note> results = search.search(notes, "meet", List.of(), null);
+
+        // THEN we should have gone back to the full list:
+        assertFalse(search.wasNarrowed());
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    void search_withAddedTag_shouldNarrow() {
+        // GIVEN a previous text-only search:
+        search.search(notes, "meet", List.of(), null);
+
+        // WHEN a tag is added:
+        List<Note> results = search.search(notes, "meet", List.of(new Tag("work")), null);
+
+        // THEN the previous results should have been narrowed:
+        assertTrue(search.wasNarrowed());
+        assertEquals(2, results.size());
+
+        // AND removing the tag again should rescan:
+        assertEquals(3, search.search(notes, "meet", List.of(), null).size());
+        assertFalse(search.wasNarrowed());
+    }
+
+    @Test
+    void search_withNothingToSearchFor_shouldReturnNothingAndReset() {
+        // GIVEN a previous search:
+        search.search(notes, "meet", List.of(), null);
+
+        // WHEN the search text is cleared:
+        List<Note> results = search.search(notes, "  ", List.of(), null);
+
+        // THEN there should be no results, and the next search should rescan:
+        assertTrue(results.isEmpty());
+        search.search(notes, "meeting", List.of(), null);
+        assertFalse(search.wasNarrowed());
+    }
+
+    @Test
+    void search_whenCanceled_shouldKeepPreviousResults() {
+        // GIVEN a previous search:
+        search.search(notes, "meet", List.of(), null);
+
+        // WHEN a narrowing search is canceled:
+        assertThrows(CancellationException.class,
+                     () -> search.search(notes, "meeting", List.of(), (scanned, total) -> false));
+
+        // THEN the previous results should still be the basis for the next narrowing:
+        List<Note> results = search.search(notes, "meeting", List.of(), null);
+        assertTrue(search.wasNarrowed());
+        assertEquals(2, results.size());
+    }
+}
@@ -120,4 +120,20 @@ class NoteTest {
         // THEN it should return the absolute path of the source file:
         assertEquals("/other/path/note1.txt", relativePath);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void setSourceFile_withDifferentFile_shouldClearSavedContentHash() {
+        // GIVEN a Note with a saved content hash for its source file:
+        Note note = new Note();
+        note.setSourceFile(new File("/path/to/note1.txt"));
+        note.setSavedContentHash("abc123");
+
+        // WHEN we set the same source file again, THEN the hash should be kept:
+        note.setSourceFile(new File("/path/to/note1.txt"));
+        assertEquals("abc123", note.getSavedContentHash());
+
+        // AND WHEN we point it at a different file, THEN the hash should be cleared:
+        note.setSourceFile(new File("/path/to/note2.txt"));
+        assertNull(note.getSavedContentHash());
+    }
+}
@@ -5,6 +5,8 @@ import ca.corbett.snotes.model.filter.DateFilter;
 import ca.corbett.snotes.model.filter.DateFilterType;
 import ca.corbett.snotes.model.filter.DayOfMonthFilter;
 import ca.corbett.snotes.model.filter.DayOfWeekFilter;
+import ca.corbett.snotes.model.filter.Filter;
+import ca.corbett.snotes.model.filter.FilterIndex;
 import ca.corbett.snotes.model.filter.FilterTest;
 import ca.corbett.snotes.model.filter.MonthFilter;
 import ca.corbett.snotes.model.filter.TextFilter;
@@ -14,7 +16,11 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.time.DayOfWeek;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -265,5 +271,246 @@ public class QueryTest extends FilterTest {
         // THEN the order should be set to zero:
         assertEquals(0, query.getOrder());
     }
-}
 
+    @Test
+    public void profile_withFilters_shouldMatchExecuteResults() {
+        // GIVEN a query with a YearFilter and a MonthFilter that are matched in our test set:
+        Query query = new Query();
+        query.addFilter(new YearFilter(1997, DateFilterType.ON));
+        query.addFilter(new MonthFilter(4, BooleanFilterType.IS));
+
+        // WHEN we profile it:
+        QueryProfile profile = query.profile(unfilteredList);
+
+        // THEN the results should be identical to a regular execution:
+        assertEquals(query.execute(unfilteredList), profile.getResults());
+        assertEquals(unfilteredList.size(), profile.getInputCount());
+        assertEquals(2, profile.getMatchCount());
+        assertEquals(2, profile.getReturnedCount());
+        assertEquals(QueryProfile.ACCESS_PATH_FULL_SCAN, profile.getAccessPath());
+    }
+
+    @Test
+    public void profile_withFilters_shouldCountEvaluationsAndRejections() {
+        // GIVEN a query with a YearFilter and a MonthFilter:
+        Query query = new Query();
+        query.addFilter(new YearFilter(1997, DateFilterType.ON));
+        query.addFilter(new MonthFilter(4, BooleanFilterType.IS));
+
+        // WHEN we profile it:
+        QueryProfile profile = query.profile(unfilteredList);
+
+        // THEN the first filter should have seen every note:
+        List<QueryProfile.FilterStats> stats = profile.getFilterStats();
+        assertEquals(2, stats.size());
+        assertEquals(unfilteredList.size(), stats.get(0).getEvaluatedCount());
+
+        // AND the second filter should only have seen what survived the first:
+        assertEquals(stats.get(0).getEvaluatedCount() - stats.get(0).getRejectedCount(),
+                     stats.get(1).getEvaluatedCount());
+        assertEquals(profile.getMatchCount(),
+                     stats.get(1).getEvaluatedCount() - stats.get(1).getRejectedCount());
+    }
+
+    @Test
+    public void profile_withLimit_shouldReportMatchedAndReturnedSeparately() {
+        // GIVEN an empty Query:
+        Query query = new Query();
+
+        // WHEN we profile it with a limit:
+        QueryProfile profile = query.profile(unfilteredList, 3);
+
+        // THEN all notes should match, but only the limit should be returned:
+        assertEquals(unfilteredList.size(), profile.getMatchCount());
+        assertEquals(3, profile.getReturnedCount());
+        assertTrue(profile.getFilterStats().isEmpty());
+        assertTrue(profile.getTotalNanos() >= profile.getSortNanos());
+    }
+
+    @Test
+    public void profile_toReport_shouldIncludeFilterDescriptions() {
+        // GIVEN a query with a text filter:
+        Query query = new Query();
+        query.setName("Report test");
+        TextFilter filter = new TextFilter("hello", false);
+        query.addFilter(filter);
+
+        // WHEN we generate a profile report:
+        String report = query.profile(unfilteredList).toReport();
+
+        // THEN it should mention the query name, access path, and filter:
+        assertTrue(report.contains("Report test"));
+        assertTrue(report.contains(QueryProfile.ACCESS_PATH_FULL_SCAN));
+        assertTrue(report.contains(filter.getDescription()));
+    }
+
+    @Test
+    public void execute_withMonitor_shouldReportProgressAndMatchExecute() {
+        // GIVEN a list big enough to span several monitor intervals:
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < Query.MONITOR_INTERVAL * 2 + 10; i++) {
+            notes.add(new Note().setText("Note " + i + (i % 3 == 0 ? " " + TEXT_TO_FIND : "")));
+        }
+        Query query = new Query();
+        query.addFilter(new TextFilter(TEXT_TO_FIND, false));
+        List<Integer> progressReports = new ArrayList<>();
+
+        // WHEN we execute it with a monitor:
+        List<Note> results = query.execute(notes, Integer.MAX_VALUE, (scanned, total) -> {
+            assertEquals(notes.size(), total);
+            progressReports.add(scanned);
+            return true;
+        });
+
+        // THEN we should get the same results as without one, and progress should have been reported:
+        assertEquals(query.execute(notes), results);
+        assertEquals(List.of(Query.MONITOR_INTERVAL, Query.MONITOR_INTERVAL * 2, notes.size()), progressReports);
+    }
+
+    @Test
+    public void execute_withCancelingMonitor_shouldThrowCancellationException() {
+        // GIVEN a list big enough to span several monitor intervals:
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < Query.MONITOR_INTERVAL * 4; i++) {
+            notes.add(new Note().setText("Note " + i));
+        }
+        AtomicInteger checks = new AtomicInteger();
+
+        // WHEN we execute with a monitor that cancels at the first check:
+        // THEN the execution should be abandoned right there:
+        assertThrows(CancellationException.class, () -> new Query().execute(notes, Integer.MAX_VALUE,
+                                                                            (scanned, total) -> {
+                                                                                checks.incrementAndGet();
+                                                                                return false;
+                                                                            }));
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void profile_withMonitor_shouldReportProgressAndBeCancelable() {
+        // GIVEN a list big enough to span several monitor intervals:
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < Query.MONITOR_INTERVAL * 2 + 10; i++) {
+            notes.add(new Note().setText("Note " + i + (i % 3 == 0 ? " " + TEXT_TO_FIND : "")));
+        }
+        Query query = new Query();
+        query.addFilter(new TextFilter(TEXT_TO_FIND, false));
+        List<Integer> progressReports = new ArrayList<>();
+
+        // WHEN we profile it with a monitor:
+        QueryProfile profile = query.profile(notes, Integer.MAX_VALUE, (scanned, total) -> {
+            progressReports.add(scanned);
+            return true;
+        });
+
+        // THEN it should match an unmonitored profile, and progress should have been reported:
+        assertEquals(query.profile(notes).getResults(), profile.getResults());
+        assertEquals(List.of(Query.MONITOR_INTERVAL, Query.MONITOR_INTERVAL * 2, notes.size()), progressReports);
+
+        // AND a monitor that says stop should abandon the profile:
+        assertThrows(CancellationException.class,
+                     () -> query.profile(notes, Integer.MAX_VALUE, (scanned, total) -> false));
+    }
+
+    @Test
+    public void profile_withExpensiveFilterFirst_shouldEvaluateItLast() {
+        // GIVEN a query whose first filter is an expensive text search:
+        Query query = new Query();
+        TextFilter textFilter = new TextFilter("note", false);
+        YearFilter yearFilter = new YearFilter(2020, DateFilterType.ON);
+        query.addFilter(textFilter);
+        query.addFilter(yearFilter);
+
+        // WHEN we profile it:
+        QueryProfile profile = query.profile(unfilteredList);
+
+        // THEN the cheap, selective filter should have gone first, and seen every note:
+        List<QueryProfile.FilterStats> stats = profile.getFilterStats();
+        assertEquals(yearFilter, stats.get(0).getFilter());
+        assertEquals(unfilteredList.size(), stats.get(0).getEvaluatedCount());
+        assertEquals(textFilter, stats.get(1).getFilter());
+        assertTrue(stats.get(1).getEvaluatedCount() < unfilteredList.size());
+
+        // AND the query itself should be unchanged, and give the same results:
+        assertEquals(textFilter, query.getFilters().get(0));
+        assertEquals(List.of(NOTE_JAN_1_2020, NOTE_FEB_15_2020), profile.getResults());
+    }
+
+    @Test
+    public void profile_withIndexedFilter_shouldOnlyEvaluateCandidates() {
+        // GIVEN a query with a filter whose index narrows things down to two notes:
+        IndexedFilter indexedFilter = new IndexedFilter(() -> Set.of(NOTE_JAN_1_2020, NOTE_VERY_OLD));
+        Query query = new Query();
+        query.addFilter(new YearFilter(2020, DateFilterType.ON));
+        query.addFilter(indexedFilter);
+
+        // WHEN we profile it:
+        QueryProfile profile = query.profile(unfilteredList);
+
+        // THEN only the candidates should have been looked at, by either filter:
+        assertTrue(profile.getAccessPath().startsWith(QueryProfile.ACCESS_PATH_INDEX));
+        assertEquals(2, profile.getFilterStats().get(0).getEvaluatedCount());
+        assertEquals(1, indexedFilter.evaluatedCount);
+
+        // AND the results should be whatever passes every filter:
+        assertEquals(List.of(NOTE_JAN_1_2020), profile.getResults());
+    }
+
+    @Test
+    public void execute_withIndexThatCannotAnswer_shouldFallBackToFullScan() {
+        // GIVEN a query with a filter whose index isn't ready:
+        IndexedFilter indexedFilter = new IndexedFilter(() -> null);
+        Query query = new Query();
+        query.addFilter(indexedFilter);
+
+        // WHEN we profile it:
+        QueryProfile profile = query.profile(unfilteredList);
+
+        // THEN every note should have been checked:
+        assertEquals(QueryProfile.ACCESS_PATH_FULL_SCAN, profile.getAccessPath());
+        assertEquals(unfilteredList.size(), indexedFilter.evaluatedCount);
+        assertEquals(unfilteredList.size(), profile.getMatchCount());
+    }
+
+    @Test
+    public void execute_withSeveralIndexes_shouldIntersectTheirCandidates() {
+        // GIVEN two indexed filters whose candidates only overlap on one note:
+        Query query = new Query();
+        query.addFilter(new IndexedFilter(() -> Set.of(NOTE_JAN_1_2020, NOTE_FEB_15_2020, NOTE_VERY_OLD)));
+        query.addFilter(new IndexedFilter(() -> Set.of(NOTE_FEB_15_2020, NOTE_VERY_FUTURE)));
+
+        // WHEN we execute it:
+        List<Note> results = query.execute(unfilteredList);
+
+        // THEN only the note that both indexes agree on should come back:
+        assertEquals(List.of(NOTE_FEB_15_2020), results);
+    }
+
+    /**
+     * A Filter that lets everything through, but has an index, and counts how often it is evaluated.
+     */
+    private static class IndexedFilter extends Filter {
+        private final FilterIndex index;
+        private int evaluatedCount;
+
+        IndexedFilter(FilterIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Indexed test filter";
+        }
+
+        @Override
+        public boolean isFiltered(Note note) {
+            evaluatedCount++;
+            return false;
+        }
+
+        @Override
+        public FilterIndex getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ca.corbett.snotes.model.filter;
+
+import ca.corbett.snotes.model.Note;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterRegistryTest {
+
+    // The registry is a singleton, so each test registers its own Filter class under its own name.
+
+    @Test
+    void register_withNewType_shouldBeFound() {
+        // GIVEN a registration for a new Filter type:
+        FilterRegistration<RegisteredFilter> registration = registrationFor("RegistryTestFilter",
+                                                                            RegisteredFilter.class);
+
+        // WHEN we register it:
+        FilterRegistry.getInstance().register(registration);
+
+        // THEN it should be known, alongside the built-in types:
+        assertSame(registration, FilterRegistry.getInstance().findRegistration(RegisteredFilter.class));
+        assertTrue(FilterRegistry.getInstance().getRegistrations().contains(registration));
+        assertTrue(FilterRegistry.getInstance().isKnown(RegisteredFilter.class));
+        assertTrue(FilterRegistry.getInstance().isKnown(TextFilter.class));
+        assertFalse(FilterRegistry.getInstance().isKnown(UnregisteredFilter.class));
+        assertNull(FilterRegistry.getInstance().findRegistration(UnregisteredFilter.class));
+    }
+
+    @Test
+    void register_withBuiltInName_shouldThrow() {
+        FilterRegistration<UnregisteredFilter> registration = registrationFor("TextFilter", UnregisteredFilter.class);
+        assertThrows(IllegalArgumentException.class, () -> FilterRegistry.getInstance().register(registration));
+        assertFalse(FilterRegistry.getInstance().isKnown(UnregisteredFilter.class));
+    }
+
+    @Test
+    void register_withNameTakenByAnotherClass_shouldThrow() {
+        // GIVEN a Filter type that is already registered:
+        FilterRegistry.getInstance().register(registrationFor("RegistryTestClashFilter", ClashingFilter.class));
+
+        // WHEN another class tries to use its name, THEN it should be refused:
+        assertThrows(IllegalArgumentException.class, () -> FilterRegistry.getInstance().register(
+            registrationFor("RegistryTestClashFilter", UnregisteredFilter.class)));
+
+        // AND registering the same type again should simply replace it:
+        FilterRegistration<ClashingFilter> again = registrationFor("RegistryTestClashFilter", ClashingFilter.class);
+        FilterRegistry.getInstance().register(again);
+        assertSame(again, FilterRegistry.getInstance().findRegistration(ClashingFilter.class));
+    }
+
+    @Test
+    void parse_withInvalidValue_shouldThrow() {
+        FilterRegistration<RegisteredFilter> registration = registrationFor("RegistryTestParseFilter",
+                                                                            RegisteredFilter.class);
+        assertEquals(42, registration.parse(" 42 ").getValue());
+        assertEquals("42", registration.format(new RegisteredFilter(42)));
+        assertThrows(IllegalArgumentException.class, () -> registration.parse("forty-two"));
+    }
+
+    private static <T extends ValueFilter> FilterRegistration<T> registrationFor(String typeName,
+                                                                                 Class<T> filterClass) {
+        return new FilterRegistration<>(typeName, filterClass, typeName,
+                                        text -> {
+                                            try {
+                                                return filterClass.getConstructor(int.class)
+                                                                  .newInstance(Integer.parseInt(text));
+                                            }
+                                            catch (ReflectiveOperationException e) {
+                                                throw new IllegalStateException(e);
+                                            }
+                                        },
+                                        filter -> String.valueOf(filter.getValue()));
+    }
+
+    public abstract static class ValueFilter extends Filter {
+        private final int value;
+
+        ValueFilter(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Test filter";
+        }
+
+        @Override
+        public boolean isFiltered(Note note) {
+            return false;
+        }
+    }
+
+    public static class RegisteredFilter extends ValueFilter {
+        @JsonCreator
+        public RegisteredFilter(@JsonProperty("value") int value) {
+            super(value);
+        }
+    }
+
+    public static class ClashingFilter extends ValueFilter {
+        public ClashingFilter(int value) {
+            super(value);
+        }
+    }
+
+    public static class UnregisteredFilter extends ValueFilter {
+        public UnregisteredFilter(int value) {
+            super(value);
+        }
+    }
+}